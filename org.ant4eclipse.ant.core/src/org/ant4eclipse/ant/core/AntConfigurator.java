@@ -14,6 +14,7 @@ package org.ant4eclipse.ant.core;
 import org.ant4eclipse.lib.core.configuration.Ant4EclipseConfiguration;
 import org.ant4eclipse.lib.core.configuration.Ant4EclipseConfigurationImpl;
 import org.ant4eclipse.lib.core.logging.Ant4EclipseLogger;
+import org.ant4eclipse.lib.core.metrics.Metrics;
 import org.ant4eclipse.lib.core.service.DefaultServiceRegistryConfiguration;
 import org.ant4eclipse.lib.core.service.ServiceRegistry;
 import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
@@ -68,6 +69,11 @@ public class AntConfigurator {
           }
         }
 
+        // write the metrics at the end of the build if requested
+        if (Metrics.getMetricsFile() != null) {
+          project.addBuildListener(new MetricsBuildListener(Metrics.getMetricsFile()));
+        }
+
         // backup the registry, so we can reuse it if necessary
         project.addReference(REF_REGISTRY, ServiceRegistryAccess.instance());
 
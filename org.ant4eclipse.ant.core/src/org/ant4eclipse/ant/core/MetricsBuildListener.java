@@ -0,0 +1,101 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.ant.core;
+
+import java.io.File;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.metrics.Metrics;
+import org.apache.tools.ant.BuildEvent;
+import org.apache.tools.ant.BuildListener;
+
+/**
+ * <p>
+ * {@link BuildListener} that writes the ant4eclipse {@link Metrics} to a file when the build has finished. The
+ * metrics are reset afterwards, so each file only contains the values of a single build, even if the metrics are
+ * kept by a long running VM (e.g. an IDE).
+ * </p>
+ *
+ * @author agent
+ */
+public class MetricsBuildListener implements BuildListener {
+
+  /** the file the metrics are written to */
+  private File _metricsFile;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link MetricsBuildListener}.
+   * </p>
+   *
+   * @param metricsFile
+   *          the file the metrics are written to. Not <code>null</code>.
+   */
+  public MetricsBuildListener(File metricsFile) {
+    Assure.notNull("metricsFile", metricsFile);
+
+    this._metricsFile = metricsFile;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void buildFinished(BuildEvent event) {
+    try {
+      Metrics.write(this._metricsFile);
+    } finally {
+      Metrics.reset();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void buildStarted(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void messageLogged(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void targetFinished(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void targetStarted(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void taskFinished(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void taskStarted(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+}
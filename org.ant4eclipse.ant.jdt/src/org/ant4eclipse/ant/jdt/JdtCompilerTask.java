@@ -13,11 +13,15 @@ package org.ant4eclipse.ant.jdt;
 
 import java.io.File;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.ant4eclipse.ant.core.AntConfigurator;
 import org.ant4eclipse.ant.jdt.ecj.A4ECompilerAdapter;
 import org.ant4eclipse.ant.jdt.ecj.EcjCompilerAdapter;
 import org.ant4eclipse.ant.jdt.ecj.JavacCompilerAdapter;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.CacheDirectory;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.taskdefs.Javac;
 import org.apache.tools.ant.taskdefs.compilers.CompilerAdapter;
@@ -37,6 +41,8 @@ public class JdtCompilerTask extends Javac {
 
   private static final String MSG_FAILURE           = "The compilation failed. Check the output for more information.";
 
+  private static final String MSG_NOT_INCREMENTAL   = "Incremental compilation is not possible (%s).";
+
   private String              _errprop              = null;
 
   private String              _updateprop           = null;
@@ -45,6 +51,8 @@ public class JdtCompilerTask extends Javac {
 
   private boolean             _warnings             = true;
 
+  private boolean             _incremental          = false;
+
   /**
    * The CompilerAdapter for this compilation
    */
@@ -60,6 +68,19 @@ public class JdtCompilerTask extends Javac {
     this._warnings = enable;
   }
 
+  /**
+   * Enables/disables incremental compilation. If enabled, all source files are passed to the compiler adapter which
+   * only compiles the modified source files and the source files depending on types whose structure has changed.
+   * Incremental compilation requires the ecj compiler, a destination directory and a persistent cache directory (see
+   * {@link CacheDirectory}) for the dependency information.
+   * 
+   * @param enable
+   *          <code>true</code> <=> Enables incremental compilation.
+   */
+  public void setIncremental(boolean enable) {
+    this._incremental = enable;
+  }
+
   /**
    * Enables/disables the use of the ecj compiler.
    * 
@@ -106,6 +127,7 @@ public class JdtCompilerTask extends Javac {
         this._a4eCompilerAdapter = new JavacCompilerAdapter();
       }
       this._a4eCompilerAdapter.setWarnings(this._warnings);
+      this._a4eCompilerAdapter.setIncremental(this._incremental);
     }
     return this._a4eCompilerAdapter;
   }
@@ -163,6 +185,34 @@ public class JdtCompilerTask extends Javac {
 
   }
 
+  /**
+   * In case of an incremental compilation all source files are passed to the compiler adapter, as the outdated source
+   * files can't be determined by comparing the time stamps of the source and class files only.
+   * 
+   * {@inheritDoc}
+   */
+  @Override
+  protected void scanDir(File srcDir, File destDir, String[] files) {
+    if (!this._incremental) {
+      super.scanDir(srcDir, destDir, files);
+      return;
+    }
+    List<File> newFiles = new ArrayList<File>();
+    for (String file : files) {
+      if (file.endsWith(".java")) {
+        newFiles.add(new File(srcDir, file));
+      }
+    }
+    if (!newFiles.isEmpty()) {
+      File[] newCompileList = new File[this.compileList.length + newFiles.size()];
+      System.arraycopy(this.compileList, 0, newCompileList, 0, this.compileList.length);
+      for (int i = 0; i < newFiles.size(); i++) {
+        newCompileList[this.compileList.length + i] = newFiles.get(i);
+      }
+      this.compileList = newCompileList;
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -179,6 +229,22 @@ public class JdtCompilerTask extends Javac {
     super.setCompiler(EcjCompilerAdapter.class.getName());
     super.setIncludeantruntime(false);
 
+    // check whether incremental compilation is possible
+    if (this._incremental) {
+      AntConfigurator.configureAnt4Eclipse(getProject());
+      if (!this._useecj) {
+        A4ELogging.warn(MSG_NOT_INCREMENTAL, "the ecj compiler is not used");
+        this._incremental = false;
+      } else if (getDestdir() == null) {
+        A4ELogging.warn(MSG_NOT_INCREMENTAL, "no destination directory has been specified");
+        this._incremental = false;
+      } else if (!CacheDirectory.isEnabled()) {
+        A4ELogging.warn(MSG_NOT_INCREMENTAL, "the system property '" + CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME
+            + "' has not been set");
+        this._incremental = false;
+      }
+    }
+
     // Set Compiler Adapter (only if Ant >= 1.8.0);
     try {
       Method addAdapterMethod = getClass().getMethod("add", CompilerAdapter.class);
@@ -20,7 +20,8 @@ import org.ant4eclipse.ant.platform.core.MacroExecutionValues;
 import org.ant4eclipse.ant.platform.core.PathComponent;
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
-import org.ant4eclipse.lib.core.util.PerformanceLogging;
+import org.ant4eclipse.lib.core.metrics.Metrics;
+import org.ant4eclipse.lib.core.metrics.Timer;
 import org.ant4eclipse.lib.jdt.model.project.JavaProjectRole;
 import org.ant4eclipse.lib.jdt.tools.JdtResolver;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspath;
@@ -33,6 +34,9 @@ import org.apache.tools.ant.types.Path;
 
 public class JdtExecutorValuesProvider implements JdtExecutorValues {
 
+  /** the time spent to provide the executor values */
+  private static final Timer             PROVIDE_VALUES = Metrics.timer("jdt.provideExecutorValues");
+
   /** the internally used path component */
   private PathComponent                  _pathComponent;
 
@@ -68,7 +72,7 @@ public class JdtExecutorValuesProvider implements JdtExecutorValues {
       List<JdtClasspathContainerArgument> jdtClasspathContainerArguments, MacroExecutionValues executionValues,
       Set<String> requestedPaths) {
 
-    PerformanceLogging.start(getClass(), "provideExecutorValues");
+    long start = PROVIDE_VALUES.start();
 
     // provide the executor values from the platform component
     this._platformExecutorValuesProvider.provideExecutorValues(javaProjectRole.getEclipseProject(), executionValues);
@@ -225,7 +229,7 @@ public class JdtExecutorValuesProvider implements JdtExecutorValues {
       }
     }
 
-    PerformanceLogging.stop(getClass(), "provideExecutorValues");
+    PROVIDE_VALUES.stop(start);
 
     // return compilerArguments
     return compilerArguments;
@@ -17,17 +17,22 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.ant4eclipse.ant.core.AntConfigurator;
 import org.ant4eclipse.ant.jdt.EcjAdditionalCompilerArguments;
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
-import org.ant4eclipse.lib.core.util.PerformanceLogging;
 import org.ant4eclipse.lib.core.util.StringMap;
 import org.ant4eclipse.lib.core.util.Utilities;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
@@ -35,10 +40,14 @@ import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
 import org.ant4eclipse.lib.jdt.ecj.DefaultCompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.DependencyDatabase;
+import org.ant4eclipse.lib.jdt.ecj.DependencyInfo;
 import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
 import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
 import org.ant4eclipse.lib.jdt.ecj.SourceFileFactory;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.CompileJobResultImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClasspathClassFileLoaderImpl;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.taskdefs.compilers.DefaultCompilerAdapter;
 import org.apache.tools.ant.taskdefs.condition.Os;
@@ -83,6 +92,8 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
 
   private boolean             _warnings                         = true;
 
+  private boolean             _incremental                      = false;
+
   /**
    * Enables/disables the generation of warn messages.
    * 
@@ -93,6 +104,19 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
     this._warnings = newwarnings;
   }
 
+  /**
+   * Enables/disables incremental compilation. If enabled, only the source files that have been modified since the
+   * last compilation and the source files that depend on types whose structure has changed are compiled. This requires
+   * that the javac task passes all source files (not only the outdated ones) and that the compiler is able to collect
+   * {@link DependencyInfo DependencyInfos}.
+   * 
+   * @param newincremental
+   *          <code>true</code> <=> Enable incremental compilation.
+   */
+  public void setIncremental(boolean newincremental) {
+    this._incremental = newincremental;
+  }
+
   /**
    * <p>
    * Checks the preconditions of the A4ECompilerAdapter
@@ -130,6 +154,11 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
     compileJobDescription.setSourceFiles(sourceFiles);
     compileJobDescription.setClassFileLoader(createClassFileLoader(ecjAdditionalCompilerArguments));
 
+    // if the destination directory has been specified for the javac task the class files are written there, too
+    if (getJavac().getDestdir() != null) {
+      compileJobDescription.setAdditionalDestinationFolder(getJavac().getDestdir().getAbsoluteFile());
+    }
+
     // Step 5: set the compiler options
     String compilerOptionsFileName = extractJavacCompilerArg(COMPILER_OPTIONS_FILE, null);
     String defaultCompilerOptionsFileName = extractJavacCompilerArg(DEFAULT_COMPILER_OPTIONS_FILE, null);
@@ -142,7 +171,12 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
     }
 
     // Step 6: Compile
-    CompileJobResult compileJobResult = compile(compileJobDescription);
+    CompileJobResult compileJobResult = null;
+    if (this._incremental && (getJavac().getDestdir() != null)) {
+      compileJobResult = compileIncrementally(compileJobDescription);
+    } else {
+      compileJobResult = compile(compileJobDescription);
+    }
 
     // Step 7: dump result
     CategorizedProblem[] categorizedProblems = compileJobResult.getCategorizedProblems();
@@ -191,23 +225,6 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
       }
     }
 
-    // if the destination directory has been specified for the javac task we might need
-    // to copy the generated class files
-    if (compileJobResult.succeeded() && (getJavac().getDestdir() != null)) {
-      /**
-       * @todo [12-Apr-2011:KASI] This needs to be supported for Javac, too. It would be possible to use the destdir
-       *       alternatively but references like the EcjAdditionalCompilerArguments need to be adopted in this case.
-       */
-      File destdir = Utilities.getCanonicalFile(getJavac().getDestdir());
-
-      PerformanceLogging.start(A4ECompilerAdapter.class, "cloneClasses");
-      try {
-        cloneClasses(destdir, compileJobResult.getCompiledClassFiles());
-      } finally {
-        PerformanceLogging.stop(A4ECompilerAdapter.class, "cloneClasses");
-      }
-    }
-
     // throw Exception if compilation was not successful
     if (!compileJobResult.succeeded()) {
       throw new Ant4EclipseException(EcjExceptionCodes.COMPILATION_WAS_NOT_SUCCESFUL);
@@ -219,35 +236,196 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
   }
 
   /**
-   * Clones all generated class files while copying them into the user specified directory.
+   * Runs the compilation according to the supplied compilation description.
+   * 
+   * @param description
+   *          The description which provides all necessary information for the compilation.
    * 
-   * @param destdir
-   *          The destination director to save the classes to. Not <code>null</code>.
-   * @param compiledclasses
-   *          A map which provides all compiled classes. Not <code>null</code>.
+   * @return A descriptional instance which provides some information which came up during the compilation.
    */
-  private void cloneClasses(File destdir, Map<String, File> compiledclasses) {
-    if (!destdir.isAbsolute()) {
-      destdir = destdir.getAbsoluteFile();
+  protected abstract CompileJobResult compile(CompileJobDescription description);
+
+  /**
+   * <p>
+   * Compiles the source files of the given description incrementally: the dependency database of the destination
+   * directory is used to determine the source files that have been modified or removed since the last compilation and
+   * the source files that depend on types whose structure has changed (either in one of the compiled source files or on
+   * the class path). The compilation is repeated until no further types have changed.
+   * </p>
+   * 
+   * @param description
+   *          the description containing all source files. Not <code>null</code>.
+   * @return the merged result of all compilation rounds.
+   */
+  private CompileJobResult compileIncrementally(DefaultCompileJobDescription description) {
+
+    File destdir = Utilities.getCanonicalFile(getJavac().getDestdir());
+    DependencyDatabase database = DependencyDatabase.load(destdir);
+
+    // all source files, keyed by their location
+    SourceFile[] allSourceFiles = description.getSourceFiles();
+    Map<File, SourceFile> sourceFiles = new HashMap<File, SourceFile>();
+    for (SourceFile sourceFile : allSourceFiles) {
+      sourceFiles.put(sourceFile.getSourceFile().getAbsoluteFile(), sourceFile);
+    }
+
+    // the class path the sources are compiled against
+    File[] classpathEntries = getClasspathEntries();
+
+    // remove source files that don't exist anymore
+    Set<String> changedTypes = new HashSet<String>();
+    for (File sourceFile : database.getSourceFiles()) {
+      if (!sourceFiles.containsKey(sourceFile)) {
+        A4ELogging.debug("Source file '%s' has been removed.", sourceFile);
+        changedTypes.addAll(database.remove(sourceFile));
+      }
     }
-    for (Map.Entry<String, File> entry : compiledclasses.entrySet()) {
-      File destfile = Utilities.getCanonicalFile(new File(destdir, entry.getKey()));
-      Utilities.mkdirs(destfile.getParentFile());
-      if (!destfile.equals(entry.getValue())) {
-        Utilities.copy(entry.getValue(), destfile);
+
+    // determine the source files to compile
+    Set<File> filesToCompile = new LinkedHashSet<File>();
+    Set<String> changedClasspathTypes = database.getChangedClasspathTypes(classpathEntries);
+    if ((changedClasspathTypes == null) || !database.hasCompilerOptions(description.getCompilerOptions())) {
+      A4ELogging.info("Compiling all %d source files as the class path or the compiler options have changed.",
+          Integer.valueOf(allSourceFiles.length));
+      filesToCompile.addAll(sourceFiles.keySet());
+    } else {
+      changedTypes.addAll(changedClasspathTypes);
+      for (File sourceFile : sourceFiles.keySet()) {
+        if (database.isModified(sourceFile)) {
+          filesToCompile.add(sourceFile);
+        }
+      }
+      filesToCompile.addAll(database.getDependents(changedTypes));
+    }
+
+    // the class files of the source files that are not compiled must be visible to the compiler
+    ClassFileLoader classFileLoader = description.getClassFileLoader();
+    description.setCollectDependencyInfos(true);
+
+    boolean succeeded = true;
+    List<CategorizedProblem> problems = new ArrayList<CategorizedProblem>();
+    Map<String, File> compiledClassFiles = new HashMap<String, File>();
+    Set<File> compiledFiles = new HashSet<File>();
+    int round = 0;
+
+    while (!filesToCompile.isEmpty()) {
+
+      round++;
+      compiledFiles.addAll(filesToCompile);
+      A4ELogging.info("Incremental compilation round %d: compiling %d of %d source files.", Integer.valueOf(round),
+          Integer.valueOf(filesToCompile.size()), Integer.valueOf(allSourceFiles.length));
+
+      // keep the original order of the source files (package-info.java files have to be compiled first)
+      List<SourceFile> roundSourceFiles = new ArrayList<SourceFile>();
+      for (SourceFile sourceFile : allSourceFiles) {
+        if (filesToCompile.contains(sourceFile.getSourceFile().getAbsoluteFile())) {
+          roundSourceFiles.add(sourceFile);
+        }
       }
+      description.setSourceFiles(roundSourceFiles.toArray(new SourceFile[roundSourceFiles.size()]));
+      description.setClassFileLoader(createIncrementalClassFileLoader(classFileLoader, allSourceFiles));
+
+      CompileJobResult result = compile(description);
+      problems.addAll(Arrays.asList(result.getCategorizedProblems()));
+      compiledClassFiles.putAll(result.getCompiledClassFiles());
+
+      // record the dependencies and collect the types whose structure has changed
+      Set<String> roundChangedTypes = new HashSet<String>();
+      for (SourceFile sourceFile : roundSourceFiles) {
+        File file = sourceFile.getSourceFile().getAbsoluteFile();
+        DependencyInfo dependencyInfo = result.getDependencyInfos().get(sourceFile.getSourceFile());
+        if (dependencyInfo != null) {
+          roundChangedTypes.addAll(database.update(file, sourceFile.getDestinationFolder(), dependencyInfo));
+        } else {
+          database.invalidate(file);
+        }
+      }
+
+      if (!result.succeeded()) {
+        // the changed types have already been recorded, so their dependents must be compiled next time
+        Set<File> dependents = database.getDependents(roundChangedTypes);
+        dependents.removeAll(filesToCompile);
+        for (File dependent : dependents) {
+          database.markModified(dependent);
+        }
+        succeeded = false;
+        break;
+      }
+
+      filesToCompile = database.getDependents(roundChangedTypes);
+      filesToCompile.removeAll(compiledFiles);
+    }
+
+    if (round == 0) {
+      A4ELogging.info("Incremental compilation: all %d source files are up to date.", Integer
+          .valueOf(allSourceFiles.length));
+    }
+
+    // the class path and the compiler options are only recorded after a successful compilation
+    if (succeeded) {
+      database.setCompilationEnvironment(classpathEntries, description.getCompilerOptions());
     }
+    database.save();
+
+    // restore the description
+    description.setSourceFiles(allSourceFiles);
+    description.setClassFileLoader(classFileLoader);
+
+    CompileJobResultImpl result = new CompileJobResultImpl();
+    result.setSucceeded(succeeded);
+    result.setCategorizedProblems(problems.toArray(new CategorizedProblem[problems.size()]));
+    result.setCompiledClassFiles(compiledClassFiles);
+    return result;
   }
 
   /**
-   * Runs the compilation according to the supplied compilation description.
+   * <p>
+   * Returns a {@link ClassFileLoader} that additionally provides the class files in the destination folders of the
+   * given source files. These class files have been produced by earlier compilations of the source files that aren't
+   * compiled in the current round. A new loader is created for each compilation round as the content of the destination folders
+   * changes.
+   * </p>
    * 
-   * @param description
-   *          The description which provides all necessary information for the compilation.
+   * @param classFileLoader
+   *          the class file loader for the class path. Not <code>null</code>.
+   * @param sourceFiles
+   *          all source files. Not <code>null</code>.
+   * @return the class file loader to use.
+   */
+  private ClassFileLoader createIncrementalClassFileLoader(ClassFileLoader classFileLoader, SourceFile[] sourceFiles) {
+    Set<File> destinationFolders = new LinkedHashSet<File>();
+    destinationFolders.add(Utilities.getCanonicalFile(getJavac().getDestdir()));
+    for (SourceFile sourceFile : sourceFiles) {
+      destinationFolders.add(Utilities.getCanonicalFile(sourceFile.getDestinationFolder()));
+    }
+    List<ClassFileLoader> classFileLoaders = new LinkedList<ClassFileLoader>();
+    classFileLoaders.add(classFileLoader);
+    for (File destinationFolder : destinationFolders) {
+      if (destinationFolder.isDirectory()) {
+        classFileLoaders.add(new ClasspathClassFileLoaderImpl(destinationFolder, EcjAdapter.PROJECT));
+      }
+    }
+    return ClassFileLoaderFactory.createCompoundClassFileLoader(classFileLoaders.toArray(new ClassFileLoader[0]));
+  }
+
+  /**
+   * <p>
+   * Returns the entries of the boot class path and the class path.
+   * </p>
    * 
-   * @return A descriptional instance which provides some information which came up during the compilation.
+   * @return the entries of the boot class path and the class path.
    */
-  protected abstract CompileJobResult compile(CompileJobDescription description);
+  private File[] getClasspathEntries() {
+    List<File> result = new LinkedList<File>();
+    for (Path path : new Path[] { getJavac().getBootclasspath(), getJavac().getClasspath() }) {
+      if (path != null) {
+        for (String entry : path.list()) {
+          result.add(new File(entry));
+        }
+      }
+    }
+    return result.toArray(new File[result.size()]);
+  }
 
   /**
    * <p>
@@ -479,7 +657,8 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
 
   /**
    * <p>
-   * Create a boot class loader.
+   * Returns the boot class loader. The boot class loader for a specific boot class path and access restrictions is
+   * created (and indexed) only once and shared by all compilations.
    * </p>
    * 
    * @param compilerArguments
@@ -492,47 +671,26 @@ public abstract class A4ECompilerAdapter extends DefaultCompilerAdapter {
     // Step 1: get the boot class path as specified in the javac task
     Path bootclasspath = getJavac().getBootclasspath();
 
-    // if (ClassFileLoaderCache.getInstance().hasClassFileLoader(bootclasspath.toString())) {
-    // return ClassFileLoaderCache.getInstance().getClassFileLoader(bootclasspath.toString());
-    // }
-
-    // Step 2: create ClassFileLoaders for each entry in the boot class path
-    List<ClassFileLoader> bootClassFileLoaders = new LinkedList<ClassFileLoader>();
-
-    // Step 3: iterate over the boot class path entries as specified in the ant path
+    // Step 2: collect the boot class path entries as specified in the ant path
+    List<File> bootClasspathEntries = new LinkedList<File>();
     for (Iterator<FileResource> iterator = bootclasspath.iterator(); iterator.hasNext();) {
-
-      // get the file resource
-      FileResource fileResource = iterator.next();
-
-      // create class file loader
-      if (fileResource.getFile().exists()) {
-        ClassFileLoader classFileLoader = ClassFileLoaderFactory.createClasspathClassFileLoader(fileResource.getFile(),
-            EcjAdapter.LIBRARY);
-        bootClassFileLoaders.add(classFileLoader);
-      }
+      bootClasspathEntries.add(iterator.next().getFile());
     }
 
-    // Step 4: create compound class file loader
-    ClassFileLoader classFileLoader = ClassFileLoaderFactory.createCompoundClassFileLoader(bootClassFileLoaders
-        .toArray(new ClassFileLoader[0]));
-
-    // Step 5: create FilteringClassFileLoader is necessary
+    // Step 3: get the access restrictions if necessary
+    String accessRestrictions = null;
     if (compilerArguments != null && compilerArguments.hasBootClassPathAccessRestrictions()) {
+      accessRestrictions = compilerArguments.getBootClassPathAccessRestrictions();
 
       // Step 4: debug
       if (A4ELogging.isDebuggingEnabled()) {
-        A4ELogging.debug("Boot class path access restrictions: '%s'",
-            compilerArguments.getBootClassPathAccessRestrictions());
+        A4ELogging.debug("Boot class path access restrictions: '%s'", accessRestrictions);
       }
-
-      classFileLoader = ClassFileLoaderFactory.createFilteringClassFileLoader(classFileLoader,
-          compilerArguments.getBootClassPathAccessRestrictions());
     }
 
-    // ClassFileLoaderCache.getInstance().storeClassFileLoader(bootclasspath.toString(), classFileLoader);
-
-    return classFileLoader;
+    // Step 5: return the shared boot class loader
+    return ClassFileLoaderFactory.createBootClassFileLoader(bootClasspathEntries.toArray(new File[bootClasspathEntries
+        .size()]), accessRestrictions);
   }
 
   /**
@@ -12,7 +12,8 @@
 package org.ant4eclipse.ant.jdt.ecj;
 
 import org.ant4eclipse.lib.core.logging.A4ELogging;
-import org.ant4eclipse.lib.core.util.PerformanceLogging;
+import org.ant4eclipse.lib.core.metrics.Metrics;
+import org.ant4eclipse.lib.core.metrics.Timer;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
 import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
@@ -29,21 +30,25 @@ import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
  */
 public class EcjCompilerAdapter extends A4ECompilerAdapter {
 
+  /** the time spent to compile */
+  private static final Timer COMPILE = Metrics.timer("ecj.compile");
+
   /**
    * {@inheritDoc}
    */
   @Override
   protected CompileJobResult compile(CompileJobDescription description) {
 
-    PerformanceLogging.start(EcjCompilerAdapter.class, "compile");
+    long start = COMPILE.start();
 
     CompileJobResult result = null;
 
     try {
       result = EcjAdapter.Factory.create().compile(description);
     } finally {
-      long duration = PerformanceLogging.stop(EcjCompilerAdapter.class, "compile");
-      if (duration > 0) {
+      long nanos = COMPILE.stop(start);
+      if (nanos >= 0) {
+        long duration = nanos / 1000000;
         int compiledClasses = (result == null ? -1 : result.getCompiledClassFiles().size());
         A4ELogging.info("ECJ Compilation took %d ms for %d class files (avg: %f ms/class)", //
             duration, compiledClasses, (double) duration / compiledClasses);
@@ -12,6 +12,7 @@
 package org.ant4eclipse.ant.jdt.type;
 
 import java.io.File;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -20,6 +21,7 @@ import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
 import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.internal.model.jre.JavaRuntimeLoader;
 import org.ant4eclipse.lib.jdt.model.ContainerTypes;
 import org.ant4eclipse.lib.jdt.model.jre.JavaRuntime;
 import org.ant4eclipse.lib.jdt.model.jre.JavaRuntimeRegistry;
@@ -28,15 +30,28 @@ import org.apache.tools.ant.DirectoryScanner;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.types.FileSet;
 import org.apache.tools.ant.types.Path;
+import org.apache.tools.ant.types.ResourceCollection;
+import org.apache.tools.ant.types.resources.FileResource;
 
 /**
  * A datatype used as a container for classpathes.
+ * <p>
+ * If the system property <code>ant4eclipse.parallelJreDetection</code> is set to <code>true</code>, the java runtimes
+ * are detected in parallel. In this case they are registered when this data type is validated (i.e. before the next
+ * ant4eclipse task is executed) or when one of the paths of the java runtimes is used, whatever happens first.
+ * </p>
  * 
  * @author Daniel Kasmeroglu (daniel.kasmeroglu@kasisoft.net)
  */
 public class JreContainer extends AbstractAnt4EclipseDataType {
 
-  private String _defaultJre;
+  /** the name of the system property that enables the parallel detection of the java runtimes */
+  public static final String PARALLEL_DETECTION_PROPERTY_NAME = "ant4eclipse.parallelJreDetection";
+
+  private String             _defaultJre;
+
+  /** the java runtimes that are detected in background and haven't been registered yet */
+  private List<Runtime>      _pendingRuntimes;
 
   /**
    * Simply initialises this new type.
@@ -47,6 +62,7 @@ public class JreContainer extends AbstractAnt4EclipseDataType {
   public JreContainer(Project project) {
     super(project);
     this._defaultJre = null;
+    this._pendingRuntimes = new LinkedList<Runtime>();
   }
 
   /**
@@ -80,24 +96,22 @@ public class JreContainer extends AbstractAnt4EclipseDataType {
 
     boolean isDefault = runtime.getId().equals(this._defaultJre);
 
-    JavaRuntimeRegistry javaRuntimeRegistry = ServiceRegistryAccess.instance().getService(JavaRuntimeRegistry.class);
+    Path path = new Path(getProject());
 
-    // If specified: add files for jre (otherwise required JRE jars are determined automatically)
-    List<File> jreFiles = getSelectedJreFiles(runtime);
+    if (Boolean.getBoolean(PARALLEL_DETECTION_PROPERTY_NAME)) {
 
-    JavaRuntime javaRuntime = javaRuntimeRegistry.registerJavaRuntime(runtime.getId(), runtime.getLocation(),
-        runtime.getExtDirs(), runtime.getEndorsedDirs(), jreFiles);
+      // detect the java runtime in background and register it later on
+      JavaRuntimeLoader.detectJavaRuntimeInBackground(location);
+      this._pendingRuntimes.add(runtime);
+      path.add(new JavaRuntimeLibraries(runtime.getId()));
 
-    Assure.notNull("javaRuntime", javaRuntime);
+    } else {
 
-    if (isDefault) {
-      javaRuntimeRegistry.setDefaultJavaRuntime(runtime.getId());
-    }
-
-    Path path = new Path(getProject());
-    File[] libraries = javaRuntime.getLibraries();
-    for (File librarie : libraries) {
-      path.createPathElement().setLocation(librarie);
+      JavaRuntime javaRuntime = registerJavaRuntime(runtime);
+      File[] libraries = javaRuntime.getLibraries();
+      for (File librarie : libraries) {
+        path.createPathElement().setLocation(librarie);
+      }
     }
 
     getProject().addReference(ContainerTypes.VMTYPE_PREFIX + runtime.getId(), path);
@@ -109,6 +123,48 @@ public class JreContainer extends AbstractAnt4EclipseDataType {
     }
   }
 
+  /**
+   * Registers the java runtimes that have been detected in background.
+   */
+  @Override
+  protected void doValidate() {
+    registerPendingRuntimes();
+  }
+
+  /**
+   * Registers the java runtimes that have been detected in background (in the order they have been added).
+   */
+  private synchronized void registerPendingRuntimes() {
+    while (!this._pendingRuntimes.isEmpty()) {
+      registerJavaRuntime(this._pendingRuntimes.remove(0));
+    }
+  }
+
+  /**
+   * Registers the supplied java runtime environment.
+   * 
+   * @param runtime
+   *          The java runtime environment configuration that shall be registered.
+   * @return The registered java runtime.
+   */
+  private JavaRuntime registerJavaRuntime(Runtime runtime) {
+    JavaRuntimeRegistry javaRuntimeRegistry = ServiceRegistryAccess.instance().getService(JavaRuntimeRegistry.class);
+
+    // If specified: add files for jre (otherwise required JRE jars are determined automatically)
+    List<File> jreFiles = getSelectedJreFiles(runtime);
+
+    JavaRuntime javaRuntime = javaRuntimeRegistry.registerJavaRuntime(runtime.getId(), runtime.getLocation(),
+        runtime.getExtDirs(), runtime.getEndorsedDirs(), jreFiles);
+
+    Assure.notNull("javaRuntime", javaRuntime);
+
+    if (runtime.getId().equals(this._defaultJre)) {
+      javaRuntimeRegistry.setDefaultJavaRuntime(runtime.getId());
+    }
+
+    return javaRuntime;
+  }
+
   /**
    * Returns the files that are selected by {@link FileSet FileSets} for the specified runtime.
    * <p>
@@ -134,6 +190,52 @@ public class JreContainer extends AbstractAnt4EclipseDataType {
     return files;
   }
 
+  /**
+   * The libraries of a java runtime that is registered when the libraries are used for the first time.
+   */
+  private class JavaRuntimeLibraries implements ResourceCollection {
+
+    private String _id;
+
+    public JavaRuntimeLibraries(String id) {
+      this._id = id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Iterator<?> iterator() {
+      return getLibraries().iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+      return getLibraries().size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isFilesystemOnly() {
+      return true;
+    }
+
+    private List<FileResource> getLibraries() {
+      // make sure the java runtime has been registered
+      registerPendingRuntimes();
+
+      JavaRuntime javaRuntime = ServiceRegistryAccess.instance().getService(JavaRuntimeRegistry.class).getJavaRuntime(
+          this._id);
+      List<FileResource> result = new LinkedList<FileResource>();
+      for (File library : javaRuntime.getLibraries()) {
+        result.add(new FileResource(library));
+      }
+      return result;
+    }
+  }
+
   public static class Runtime {
 
     private String        _id;
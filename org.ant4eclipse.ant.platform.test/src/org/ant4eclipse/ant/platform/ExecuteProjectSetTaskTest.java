@@ -101,6 +101,17 @@ public class ExecuteProjectSetTaskTest extends AbstractWorkspaceBasedBuildFileTe
     expectLog("executeProjectSetFiltered", expected.toString());
   }
 
+  public void testExecuteProjectSetParallel() {
+    executeTarget("executeProjectSetParallel");
+    String log = getLog();
+    for (String projectname : PROJECTNAMES_VALID) {
+      String expected = String.format("%s%s%s~", getTestWorkspaceDirectory().getAbsolutePath(), File.separator,
+          projectname);
+      assertEquals(log.indexOf(expected), log.lastIndexOf(expected));
+      assertTrue(log.indexOf(expected) != -1);
+    }
+  }
+
   public void testExecuteInvalidProjectSet() {
     StringBuffer expected = new StringBuffer();
     for (String projectname : PROJECTNAMES_VALID) {
@@ -29,6 +29,9 @@ import org.ant4eclipse.ant.platform.core.delegate.MacroExecutionValuesProvider;
 import org.ant4eclipse.ant.platform.core.delegate.ProjectReferenceAwareDelegate;
 import org.ant4eclipse.ant.platform.core.delegate.SubElementAndAttributesDelegate;
 import org.ant4eclipse.ant.platform.core.task.AbstractProjectSetPathBasedTask;
+import org.ant4eclipse.lib.core.dependencygraph.DependencyGraph;
+import org.ant4eclipse.lib.core.dependencygraph.DependencyGraphScheduler;
+import org.ant4eclipse.lib.core.dependencygraph.VertexExecutor;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
 import org.ant4eclipse.lib.core.util.StopWatchService;
@@ -173,9 +176,6 @@ public class ExecuteProjectSetTask extends AbstractProjectSetPathBasedTask imple
   protected void preconditions() throws BuildException {
     super.preconditions();
 
-    if (this._resolveBuildOrder && this._threadCount > 1) {
-      throw new BuildException("In parallel mode (threadCount>1) build order can not be resolved");
-    }
     if (this._threadCount < 1) {
       throw new BuildException("ThreadCount must at least be 1");
     }
@@ -193,6 +193,13 @@ public class ExecuteProjectSetTask extends AbstractProjectSetPathBasedTask imple
     requireAllWorkspaceProjectsOrProjectSetOrProjectNamesSet();
     requireWorkspaceDirectoryOrWorkspaceIdSet();
 
+    // in parallel mode the build order is respected by executing each project after its referenced projects
+    if (this._resolveBuildOrder && (this._threadCount > 1)) {
+      executeScheduled();
+      stopWatchService.getOrCreateStopWatch("executeProjectSet").stop();
+      return;
+    }
+
     // get all eclipse projects and calculate the build order if necessary
     List<EclipseProject> projects = null;
     if (this._resolveBuildOrder) {
@@ -298,6 +305,71 @@ public class ExecuteProjectSetTask extends AbstractProjectSetPathBasedTask imple
 
   }
 
+  /**
+   * <p>
+   * Executes the macro definitions for all projects on up to <code>threadCount</code> threads. A project is executed as
+   * soon as all the projects it references have been executed, so independent projects are executed at the same time.
+   * </p>
+   */
+  private void executeScheduled() {
+
+    // resolve the dependency graph and the build order
+    DependencyGraph<EclipseProject> dependencyGraph = BuildOrderResolver.resolveDependencyGraph(getWorkspace(),
+        getProjectNames(), this._projectReferenceAwareDelegate.getProjectReferenceTypes(),
+        this._subElementAndAttributeDelegate.getSubElements());
+    List<EclipseProject> projects = BuildOrderResolver.resolveBuildOrder(dependencyGraph, getProjectNames());
+
+    DependencyGraphScheduler<EclipseProject> scheduler = new DependencyGraphScheduler<EclipseProject>(
+        dependencyGraph, this._threadCount);
+
+    // execute the macro definitions
+    for (final ScopedMacroDefinition<Scope> scopedMacroDefinition : getScopedMacroDefinitions()) {
+
+      long start = System.currentTimeMillis();
+
+      Map<EclipseProject, Long> times = scheduler.execute(projects, new VertexExecutor<EclipseProject>() {
+        public void execute(EclipseProject eclipseProject) {
+          executeMacroInstance(scopedMacroDefinition, eclipseProject);
+        }
+      });
+
+      // report the wall time of each project
+      long sum = 0;
+      for (Map.Entry<EclipseProject, Long> entry : times.entrySet()) {
+        A4ELogging.info("Project '%s' took %d ms.", entry.getKey().getSpecifiedName(), entry.getValue());
+        sum += entry.getValue().longValue();
+      }
+      A4ELogging.info("Executed %d projects on %d threads in %d ms (%d ms in total).", Integer.valueOf(times.size()),
+          Integer.valueOf(this._threadCount), Long.valueOf(System.currentTimeMillis() - start), Long.valueOf(sum));
+    }
+  }
+
+  /**
+   * <p>
+   * Executes the given macro definition for the given project.
+   * </p>
+   * 
+   * @param scopedMacroDefinition
+   *          the macro definition
+   * @param eclipseProject
+   *          the project
+   */
+  private void executeMacroInstance(ScopedMacroDefinition<Scope> scopedMacroDefinition,
+      final EclipseProject eclipseProject) {
+
+    this._macroExecutionDelegate.executeMacroInstance(scopedMacroDefinition.getMacroDef(),
+        new MacroExecutionValuesProvider() {
+
+          public MacroExecutionValues provideMacroExecutionValues(MacroExecutionValues values) {
+            // set the values
+            ExecuteProjectSetTask.this._platformExecutorValuesProvider.provideExecutorValues(eclipseProject, values);
+
+            // return result
+            return values;
+          }
+        });
+  }
+
   class BuildCallable implements Callable<Void> {
     private final List<EclipseProject>   _projects = new LinkedList<EclipseProject>();
 
@@ -323,21 +395,7 @@ public class ExecuteProjectSetTask extends AbstractProjectSetPathBasedTask imple
         // eclipseProject.getSpecifiedName()));
 
         // execute macro instance
-        ExecuteProjectSetTask.this._macroExecutionDelegate.executeMacroInstance(
-            this._scopedMacroDefinition.getMacroDef(), new MacroExecutionValuesProvider() {
-
-              public MacroExecutionValues provideMacroExecutionValues(MacroExecutionValues values) {
-                // set the values
-                ExecuteProjectSetTask.this._platformExecutorValuesProvider
-                    .provideExecutorValues(eclipseProject, values);
-
-                // System.out.println(String.format("ExecuteProjectSetTask[%s] 3: %s", Thread.currentThread(),
-                // values.getProperties()));
-
-                // return result
-                return values;
-              }
-            });
+        executeMacroInstance(this._scopedMacroDefinition, eclipseProject);
 
       }
       return null;
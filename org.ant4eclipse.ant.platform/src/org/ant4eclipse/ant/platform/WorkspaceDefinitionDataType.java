@@ -103,6 +103,7 @@ public class WorkspaceDefinitionDataType extends AbstractAnt4EclipseDataType {
     if (projectDirectories.isEmpty()) {
       A4ELogging.warn("No directories found for workspace %s", this._id);
     }
+    WorkspaceRegistryBuildListener.register(getProject());
     WorkspaceRegistry registry = ServiceRegistryAccess.instance().getService(WorkspaceRegistry.class);
     registry.registerWorkspace(this._id,
         new FilesetWorkspaceDefinition(projectDirectories.toArray(new File[projectDirectories.size()])));
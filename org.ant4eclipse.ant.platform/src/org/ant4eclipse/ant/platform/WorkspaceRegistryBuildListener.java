@@ -0,0 +1,159 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.ant.platform;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceRegistry;
+import org.apache.tools.ant.BuildEvent;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.SubBuildListener;
+
+/**
+ * <p>
+ * {@link SubBuildListener} that tells the {@link WorkspaceRegistry} when an ant build that uses the registered
+ * workspaces is running (see {@link WorkspaceRegistry#beginBuild()}), so watched workspaces are only refreshed between
+ * builds.
+ * </p>
+ *
+ * @author agent
+ */
+public class WorkspaceRegistryBuildListener implements SubBuildListener {
+
+  /** the name of the reference that holds the listener of a project */
+  private static final String REFERENCE = "org.ant4eclipse.WORKSPACEREGISTRYBUILDLISTENER";
+
+  /** the ant project */
+  private Project             _project;
+
+  /** the workspace registry */
+  private WorkspaceRegistry   _workspaceRegistry;
+
+  /** indicates whether the build has been finished */
+  private boolean             _finished;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link WorkspaceRegistryBuildListener}.
+   * </p>
+   *
+   * @param project
+   *          the ant project
+   * @param workspaceRegistry
+   *          the workspace registry
+   */
+  private WorkspaceRegistryBuildListener(Project project, WorkspaceRegistry workspaceRegistry) {
+    this._project = project;
+    this._workspaceRegistry = workspaceRegistry;
+  }
+
+  /**
+   * <p>
+   * Begins a build for the given ant project, unless this has already been done. The build ends when the ant project
+   * has been finished.
+   * </p>
+   *
+   * @param project
+   *          the ant project. Not <code>null</code>.
+   */
+  public static synchronized void register(Project project) {
+    Assure.notNull("project", project);
+
+    if (project.getReference(REFERENCE) == null) {
+      WorkspaceRegistry workspaceRegistry = ServiceRegistryAccess.instance().getService(WorkspaceRegistry.class);
+      WorkspaceRegistryBuildListener listener = new WorkspaceRegistryBuildListener(project, workspaceRegistry);
+      workspaceRegistry.beginBuild();
+      project.addBuildListener(listener);
+      project.addReference(REFERENCE, listener);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void buildFinished(BuildEvent event) {
+    finish();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void subBuildFinished(BuildEvent event) {
+    // the listeners are copied to the projects of sub builds
+    if (event.getProject() == this._project) {
+      finish();
+    }
+  }
+
+  /**
+   * <p>
+   * Ends the build (once).
+   * </p>
+   */
+  private synchronized void finish() {
+    if (!this._finished) {
+      this._finished = true;
+      if (this._workspaceRegistry.isInitialized()) {
+        this._workspaceRegistry.endBuild();
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void buildStarted(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void subBuildStarted(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void messageLogged(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void targetFinished(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void targetStarted(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void taskFinished(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void taskStarted(BuildEvent event) {
+    // emtpy method block - we don't need this event here...
+  }
+}
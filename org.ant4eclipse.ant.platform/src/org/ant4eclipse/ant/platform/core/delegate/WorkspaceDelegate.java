@@ -14,6 +14,7 @@ package org.ant4eclipse.ant.platform.core.delegate;
 import java.io.File;
 
 import org.ant4eclipse.ant.core.delegate.AbstractAntDelegate;
+import org.ant4eclipse.ant.platform.WorkspaceRegistryBuildListener;
 import org.ant4eclipse.ant.platform.core.WorkspaceComponent;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
@@ -139,6 +140,9 @@ public class WorkspaceDelegate extends AbstractAntDelegate implements WorkspaceC
 
     if (this._workspace == null) {
 
+      // watched workspaces must not change while this build is running
+      WorkspaceRegistryBuildListener.register(getAntProject());
+
       if (!ServiceRegistryAccess.instance().getService(WorkspaceRegistry.class).containsWorkspace(getIdentifier())) {
 
         if (isWorkspaceDirectorySet()) {
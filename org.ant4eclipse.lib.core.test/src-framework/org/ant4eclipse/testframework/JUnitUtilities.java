@@ -16,7 +16,12 @@ import org.junit.Assert;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 
 /**
  * <p>
@@ -55,6 +60,48 @@ public class JUnitUtilities {
     return byteout.toByteArray();
   }
 
+  /**
+   * <p>
+   * Creates a jar file with the given manifest headers and entries. An entry name that ends with a slash denotes a
+   * directory and has no content.
+   * </p>
+   * 
+   * @param file
+   *          The jar file to create. Not <code>null</code>.
+   * @param headers
+   *          Pairs of manifest header names and values. Maybe <code>null</code>.
+   * @param entries
+   *          Pairs of entry names and contents.
+   * 
+   * @return The jar file. Not <code>null</code>.
+   */
+  public static final File createJarFile(File file, String[] headers, String... entries) {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    if (headers != null) {
+      for (int i = 0; i < headers.length; i += 2) {
+        manifest.getMainAttributes().putValue(headers[i], headers[i + 1]);
+      }
+    }
+    try {
+      JarOutputStream output = new JarOutputStream(new FileOutputStream(file), manifest);
+      try {
+        for (int i = 0; i < entries.length; i++) {
+          output.putNextEntry(new JarEntry(entries[i]));
+          if (!entries[i].endsWith("/")) {
+            output.write(entries[++i].getBytes("UTF-8"));
+          }
+          output.closeEntry();
+        }
+      } finally {
+        output.close();
+      }
+    } catch (IOException ex) {
+      Assert.fail(ex.getMessage());
+    }
+    return file;
+  }
+
   /**
    * <p>
    * Creates a temporary directory.
@@ -12,10 +12,13 @@
 package org.ant4eclipse.lib.core;
 
 import org.ant4eclipse.lib.core.data.VersionTest;
+import org.ant4eclipse.lib.core.dependencygraph.DependencyGraphSchedulerTest;
 import org.ant4eclipse.lib.core.dependencygraph.DependencyGraphTest;
 import org.ant4eclipse.lib.core.logging.Failuretest;
 import org.ant4eclipse.lib.core.logging.LoggingUsageTest;
+import org.ant4eclipse.lib.core.metrics.MetricsTest;
 import org.ant4eclipse.lib.core.nls.NLSTest;
+import org.ant4eclipse.lib.core.osgi.BundleExpansionCacheTest;
 import org.ant4eclipse.lib.core.service.PropertiesBasedServiceRegistryConfigurationTest;
 import org.ant4eclipse.lib.core.service.ServiceRegistryTest;
 import org.ant4eclipse.lib.core.util.ManifestHelperTest;
@@ -26,7 +29,8 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ AssureTest.class, ClassNameTest.class, DefaultConfiguratorTest.class, VersionTest.class,
-    DependencyGraphTest.class, Failuretest.class, LoggingUsageTest.class, NLSTest.class,
+    DependencyGraphTest.class, DependencyGraphSchedulerTest.class, Failuretest.class, LoggingUsageTest.class,
+    MetricsTest.class, NLSTest.class, BundleExpansionCacheTest.class,
     PropertiesBasedServiceRegistryConfigurationTest.class, ServiceRegistryTest.class, ManifestHelperTest.class,
     UtilitiesTest.class, XQueryHandlerTest.class })
 public class AllCoreTests {
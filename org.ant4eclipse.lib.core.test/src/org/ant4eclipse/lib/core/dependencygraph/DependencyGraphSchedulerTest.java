@@ -0,0 +1,166 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.dependencygraph;
+
+import org.ant4eclipse.lib.core.CoreExceptionCode;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test: DependencyGraphScheduler
+ *
+ * @author agent
+ */
+public class DependencyGraphSchedulerTest {
+
+  /**
+   * <p>
+   * Each vertex must be executed after the vertices it depends on.
+   * </p>
+   */
+  @Test
+  public void dependenciesAreExecutedFirst() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+    graph.addEdge("o1", "o11");
+    graph.addEdge("o1", "o12");
+    graph.addEdge("o12", "o121");
+    graph.addEdge("o1", "o2");
+    graph.addVertex("o3");
+
+    final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+    DependencyGraphScheduler<String> scheduler = new DependencyGraphScheduler<String>(graph, 4);
+    Map<String, Long> times = scheduler.execute(graph.calculateOrder(), new VertexExecutor<String>() {
+      public void execute(String vertex) {
+        executed.add(vertex);
+      }
+    });
+
+    Assert.assertEquals(6, executed.size());
+    Assert.assertEquals(6, times.size());
+    // o3 is independent, so it may be executed at any time
+    Assert.assertTrue(executed.indexOf("o11") < executed.indexOf("o1"));
+    Assert.assertTrue(executed.indexOf("o12") < executed.indexOf("o1"));
+    Assert.assertTrue(executed.indexOf("o2") < executed.indexOf("o1"));
+    Assert.assertTrue(executed.indexOf("o121") < executed.indexOf("o12"));
+  }
+
+  /**
+   * <p>
+   * Dependencies via vertices that are not executed must be respected.
+   * </p>
+   */
+  @Test
+  public void transitiveDependenciesAreRespected() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+    graph.addEdge("a", "b");
+    graph.addEdge("b", "c");
+
+    final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+    DependencyGraphScheduler<String> scheduler = new DependencyGraphScheduler<String>(graph, 2);
+    scheduler.execute(Arrays.asList("c", "a"), new VertexExecutor<String>() {
+      public void execute(String vertex) {
+        executed.add(vertex);
+      }
+    });
+
+    Assert.assertEquals(Arrays.asList("c", "a"), executed);
+  }
+
+  /**
+   * <p>
+   * Independent vertices must be executed at the same time.
+   * </p>
+   */
+  @Test
+  public void independentVerticesAreExecutedConcurrently() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+    graph.addVertex("a");
+    graph.addVertex("b");
+
+    // each vertex waits for the other one, so this only terminates if both are executed concurrently
+    final CountDownLatch latch = new CountDownLatch(2);
+
+    DependencyGraphScheduler<String> scheduler = new DependencyGraphScheduler<String>(graph, 2);
+    scheduler.execute(graph.calculateOrder(), new VertexExecutor<String>() {
+      public void execute(String vertex) {
+        latch.countDown();
+        try {
+          Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          Assert.fail();
+        }
+      }
+    });
+  }
+
+  /**
+   * <p>
+   * A failure stops the execution and is rethrown.
+   * </p>
+   */
+  @Test
+  public void failureIsRethrown() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+    graph.addEdge("a", "b");
+
+    final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+    DependencyGraphScheduler<String> scheduler = new DependencyGraphScheduler<String>(graph, 2);
+    try {
+      scheduler.execute(graph.calculateOrder(), new VertexExecutor<String>() {
+        public void execute(String vertex) {
+          executed.add(vertex);
+          throw new IllegalStateException(vertex);
+        }
+      });
+      Assert.fail();
+    } catch (IllegalStateException ex) {
+      Assert.assertEquals("b", ex.getMessage());
+    }
+
+    Assert.assertEquals(Arrays.asList("b"), executed);
+  }
+
+  /**
+   * <p>
+   * Cyclic graphs can't be executed.
+   * </p>
+   */
+  @Test
+  public void cyclicDependencyGraph() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+    graph.addEdge("o1", "o2");
+    graph.addEdge("o2", "o1");
+
+    try {
+      new DependencyGraphScheduler<String>(graph, 2).execute(Arrays.asList("o1", "o2"), new VertexExecutor<String>() {
+        public void execute(String vertex) {
+          Assert.fail();
+        }
+      });
+      Assert.fail();
+    } catch (Ant4EclipseException ex) {
+      Assert.assertEquals(CoreExceptionCode.CYCLIC_DEPENDENCIES_EXCEPTION, ex.getExceptionCode());
+    }
+  }
+}
@@ -18,6 +18,7 @@ import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -87,6 +88,86 @@ public class DependencyGraphTest {
     }
   }
 
+  @Test
+  public void cycles() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+
+    graph.addEdge("a", "b");
+    graph.addEdge("b", "c");
+    graph.addEdge("c", "a");
+    graph.addEdge("c", "d");
+    graph.addEdge("d", "e");
+    graph.addEdge("e", "d");
+    graph.addEdge("f", "f");
+    graph.addEdge("g", "a");
+
+    List<List<String>> cycles = graph.calculateCycles();
+    Assert.assertEquals(3, cycles.size());
+    Assert.assertEquals(Arrays.asList("a", "b", "c"), cycles.get(0));
+    Assert.assertEquals(Arrays.asList("d", "e"), cycles.get(1));
+    Assert.assertEquals(Arrays.asList("f"), cycles.get(2));
+
+    try {
+      graph.calculateOrder();
+      Assert.fail();
+    } catch (Ant4EclipseException ex) {
+      Assert.assertEquals(CoreExceptionCode.CYCLIC_DEPENDENCIES_EXCEPTION, ex.getExceptionCode());
+      Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("a -> b -> c -> a', 'd -> e -> d', 'f -> f"));
+    }
+  }
+
+  @Test
+  public void levels() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+
+    graph.addVertex("x");
+    graph.addEdge("a", "b");
+    graph.addEdge("a", "c");
+    graph.addEdge("a", "c");
+    graph.addEdge("c", "b");
+    graph.addEdge("d", "b");
+
+    List<List<String>> levels = graph.calculateLevels();
+    Assert.assertEquals(3, levels.size());
+    Assert.assertEquals(Arrays.asList("x", "b"), levels.get(0));
+    Assert.assertEquals(Arrays.asList("c", "d"), levels.get(1));
+    Assert.assertEquals(Arrays.asList("a"), levels.get(2));
+
+    Assert.assertEquals(Arrays.asList("x", "b", "c", "d", "a"), graph.calculateOrder());
+    Assert.assertEquals(Arrays.asList("b", "c"), graph.getDependencies("a"));
+    Assert.assertTrue(graph.calculateCycles().isEmpty());
+  }
+
+  @Test
+  public void documentedOrder() {
+    DependencyGraph<String> graph = new DependencyGraph<String>();
+
+    graph.addEdge("A", "B");
+    graph.addEdge("A", "C");
+    graph.addEdge("A", "D");
+    graph.addEdge("C", "E");
+
+    Assert.assertEquals(Arrays.asList("B", "D", "E", "C", "A"), graph.calculateOrder());
+  }
+
+  @Test
+  public void largeGraph() {
+    DependencyGraph<Integer> graph = new DependencyGraph<Integer>();
+    int count = 20000;
+    for (int i = 1; i < count; i++) {
+      graph.addEdge(Integer.valueOf(i), Integer.valueOf(i - 1));
+    }
+
+    List<Integer> result = graph.calculateOrder();
+    Assert.assertEquals(count, result.size());
+    for (int i = 0; i < count; i++) {
+      Assert.assertEquals(i, result.get(i).intValue());
+    }
+
+    graph.addEdge(Integer.valueOf(0), Integer.valueOf(count - 1));
+    Assert.assertEquals(count, graph.calculateCycles().get(0).size());
+  }
+
   @Test
   public void edge() {
     Object parent = new Object();
@@ -0,0 +1,78 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsTest {
+
+  @Test
+  public void counter() {
+    Counter counter = new Counter("test.counter", true);
+    counter.increment();
+    counter.add(41);
+    Assert.assertEquals(42, counter.get());
+    Assert.assertEquals(Long.valueOf(42), counter.getValues().get("value"));
+    counter.reset();
+    Assert.assertEquals(0, counter.get());
+  }
+
+  @Test
+  public void histogram() {
+    Histogram histogram = new Histogram("test.histogram", true);
+    Assert.assertEquals(0, histogram.getMin());
+    Assert.assertEquals(0, histogram.getMax());
+    Assert.assertEquals(0, histogram.getPercentile(50));
+
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    Assert.assertEquals(100, histogram.getCount());
+    Assert.assertEquals(5050, histogram.getSum());
+    Assert.assertEquals(1, histogram.getMin());
+    Assert.assertEquals(100, histogram.getMax());
+    // 50 is in the bucket [32, 63], 99 in the bucket [64, 127] which is capped by the maximum
+    Assert.assertEquals(63, histogram.getPercentile(50));
+    Assert.assertEquals(100, histogram.getPercentile(99));
+    Assert.assertEquals(Long.valueOf(50), histogram.getValues().get("mean"));
+
+    histogram.record(-5);
+    Assert.assertEquals(0, histogram.getMin());
+
+    histogram.reset();
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getMax());
+  }
+
+  @Test
+  public void timer() {
+    Timer timer = new Timer("test.timer", true);
+    long start = timer.start();
+    Assert.assertTrue(timer.stop(start) >= 0);
+    Assert.assertEquals(1, timer.getCount());
+    Assert.assertEquals("timer", timer.getType());
+  }
+
+  @Test
+  public void disabled() {
+    Counter counter = new Counter("test.counter", false);
+    counter.add(5);
+    Assert.assertEquals(0, counter.get());
+
+    Timer timer = new Timer("test.timer", false);
+    Assert.assertEquals(0, timer.start());
+    Assert.assertEquals(-1, timer.stop(0));
+    Assert.assertEquals(0, timer.getCount());
+  }
+
+} /* ENDCLASS */
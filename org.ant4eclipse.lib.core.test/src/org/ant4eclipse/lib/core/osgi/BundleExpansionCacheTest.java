@@ -0,0 +1,130 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.osgi;
+
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+public class BundleExpansionCacheTest extends ConfigurableAnt4EclipseTestCase {
+
+  /** the bundle class path: the root, an inner jar, class folders and a '/'-prefixed inner jar */
+  private static final String[] BUNDLE_CLASSPATH = { ".", "lib/inner.jar", "classes", "folder/", "/lib/second.jar" };
+
+  private TestDirectory         _testDirectory;
+
+  private File                  _bundle;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    this._bundle = new File(this._testDirectory.getRootDir(), "bundle.jar");
+  }
+
+  @Override
+  public void dispose() {
+    System.getProperties().remove(CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME);
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void expandToExpansionDirectory() throws IOException {
+    createBundle();
+    File expansionDirectory = this._testDirectory.createSubDirectory("expansion");
+
+    File destination = expand(expansionDirectory);
+    Assert.assertEquals(new File(expansionDirectory, "bundle_1.0.0"), destination);
+    assertExpanded(destination);
+  }
+
+  @Test
+  public void expandToCacheDirectory() throws IOException {
+    createBundle();
+    File cacheDirectory = new File(this._testDirectory.getRootDir(), "cache");
+    System.setProperty(CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME, cacheDirectory.getAbsolutePath());
+    File expansionDirectory = this._testDirectory.createSubDirectory("expansion");
+
+    File destination = expand(expansionDirectory);
+    Assert.assertEquals(new File(cacheDirectory, "bundleExpansion"), destination.getParentFile());
+    assertExpanded(destination);
+
+    // the expanded bundle is reused
+    Assert.assertEquals(destination, expand(expansionDirectory));
+    Assert.assertEquals(0, expansionDirectory.list().length);
+  }
+
+  private File expand(File expansionDirectory) throws IOException {
+    JarFile jarFile = new JarFile(this._bundle);
+    try {
+      return BundleExpansionCache.expand(this._bundle, jarFile, BUNDLE_CLASSPATH, expansionDirectory, "bundle_1.0.0");
+    } finally {
+      jarFile.close();
+    }
+  }
+
+  private void assertExpanded(File destination) {
+    Set<String> expected = new TreeSet<String>(Arrays.asList("classes/a/A.class", "classes/b.txt", "folder/c.txt",
+        "lib/inner.jar", "lib/second.jar"));
+    Assert.assertEquals(expected, list(destination, ""));
+    Assert.assertEquals("lib/inner.jar", new String(JUnitUtilities.loadFile(new File(destination, "lib/inner.jar"))));
+    Assert.assertEquals("classes/a/A.class", new String(JUnitUtilities.loadFile(new File(destination,
+        "classes/a/A.class"))));
+  }
+
+  private static Set<String> list(File directory, String prefix) {
+    Set<String> result = new TreeSet<String>();
+    for (File file : directory.listFiles()) {
+      if (file.isDirectory()) {
+        result.addAll(list(file, prefix + file.getName() + "/"));
+      } else {
+        result.add(prefix + file.getName());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Creates the bundle. The content of each file is its name.
+   */
+  private void createBundle() throws IOException {
+    JarOutputStream output = new JarOutputStream(new FileOutputStream(this._bundle));
+    try {
+      for (String name : new String[] { "META-INF/MANIFEST.MF", "Root.class", "lib/inner.jar", "lib/second.jar",
+          "lib/unused.jar", "classes/", "classes/a/A.class", "classes/b.txt", "folder/c.txt", "folderx/d.txt",
+          "other/E.class" }) {
+        output.putNextEntry(new JarEntry(name));
+        if (!name.endsWith("/")) {
+          output.write(name.getBytes("UTF-8"));
+        }
+        output.closeEntry();
+      }
+    } finally {
+      output.close();
+    }
+  }
+
+} /* ENDCLASS */
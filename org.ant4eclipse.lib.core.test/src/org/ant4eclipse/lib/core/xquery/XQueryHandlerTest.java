@@ -11,6 +11,7 @@
  **********************************************************************/
 package org.ant4eclipse.lib.core.xquery;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
@@ -19,8 +20,12 @@ import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.xquery.XQuery;
 import org.ant4eclipse.lib.core.xquery.XQueryHandler;
 import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 
 /**
  * A simple handler used to verify the functionality of the XQueryHandler class.
@@ -133,6 +138,80 @@ public class XQueryHandlerTest {
     assertEquals("4", values10[1]);
   }
 
+  /**
+   * Text of a parent element that precedes a matched child is not part of the child's content, and the content of
+   * an element with children is the text following its last child.
+   */
+  @Test
+  public void mixedContent() {
+    XQueryHandler handler = new XQueryHandler();
+    XQuery query1 = handler.createQuery("/root/desc");
+    XQuery query2 = handler.createQuery("/root/desc/b");
+    XQuery query3 = handler.createQuery("/root/desc/@lang");
+
+    XQueryHandler.queryInputStream(
+        stream("<root><desc lang='en'> before <b> bold </b> after </desc><desc>plain</desc></root>"), handler);
+
+    assertArrayEquals(new String[] { "after", "plain" }, query1.getResult());
+    assertArrayEquals(new String[] { "bold" }, query2.getResult());
+    assertArrayEquals(new String[] { "en", null }, query3.getResult());
+  }
+
+  /**
+   * Wildcards, indices and <code>count()</code> on several levels of the same document.
+   */
+  @Test
+  public void wildcardIndexedAndCountQueries() {
+    XQueryHandler handler = new XQueryHandler();
+    XQuery query1 = handler.createQuery("/*/*/@id");
+    XQuery query2 = handler.createQuery("/root/*/item");
+    XQuery query3 = handler.createQuery("/root/list[1]/item");
+    XQuery query4 = handler.createQuery("/root/list/item[0]");
+    XQuery query5 = handler.createQuery("/root/list/item[count()]");
+    XQuery query6 = handler.createQuery("/root/*/item[count()]");
+
+    XQueryHandler.queryInputStream(stream("<root>" + "<list id='a'><item>a1</item><item>a2</item></list>"
+        + "<set id='b'><item>b1</item></set>" + "<list id='c'><item>c1</item><item>c2</item><item>c3</item></list>"
+        + "</root>"), handler);
+
+    assertArrayEquals(new String[] { "a", "b", "c" }, query1.getResult());
+    assertArrayEquals(new String[] { "a1", "a2", "b1", "c1", "c2", "c3" }, query2.getResult());
+    assertArrayEquals(new String[] { "c1", "c2", "c3" }, query3.getResult());
+    assertArrayEquals(new String[] { "a1", "c1" }, query4.getResult());
+    assertArrayEquals(new String[] { "2", "3" }, query5.getResult());
+    // the occurrences are counted per parent element name, so a wildcard parent counts all items
+    assertArrayEquals(new String[] { "6" }, query6.getResult());
+  }
+
+  /**
+   * A document that is parsed while another one is being parsed on the same thread (e.g. a file referenced by another
+   * one) gets a parser of its own, and the parsers are reused afterwards.
+   */
+  @Test
+  public void nestedParse() {
+    final XQueryHandler inner = new XQueryHandler();
+    final XQuery innerQuery = inner.createQuery("/inner/value");
+
+    XQueryHandler outer = new XQueryHandler() {
+      @Override
+      public void startElement(String uri, String localname, String qname, Attributes attributes) throws SAXException {
+        super.startElement(uri, localname, qname, attributes);
+        if ("ref".equals(qname)) {
+          XQueryHandler.queryInputStream(stream("<inner><value>" + attributes.getValue("name") + "</value></inner>"),
+              inner);
+          assertArrayEquals(new String[] { attributes.getValue("name") }, innerQuery.getResult());
+        }
+      }
+    };
+    XQuery outerQuery = outer.createQuery("/outer/ref/@name");
+
+    for (int i = 0; i < 2; i++) {
+      XQueryHandler.queryInputStream(stream("<outer><ref name='one'/><ref name='two'/></outer>"), outer);
+      assertArrayEquals(new String[] { "one", "two" }, outerQuery.getResult());
+      assertArrayEquals(new String[] { "two" }, innerQuery.getResult());
+    }
+  }
+
   @Test
   public void invalidQueries() {
     XQueryHandler handler = new XQueryHandler();
@@ -143,4 +222,12 @@ public class XQueryHandlerTest {
     }
   }
 
+  private static InputStream stream(String xml) {
+    try {
+      return new ByteArrayInputStream(xml.getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
 } /* ENDCLASS */
@@ -41,9 +41,13 @@ public class CoreExceptionCode extends ExceptionCode {
   public static CoreExceptionCode X_QUERY_DUCPLICATE_ENTRY_EXCEPTION;
 
   /** - */
-  @NLSMessage("The specified graph contains cyclic dependencies (e.g. '%s').")
+  @NLSMessage("The specified graph contains cyclic dependencies ('%s').")
   public static CoreExceptionCode CYCLIC_DEPENDENCIES_EXCEPTION;
 
+  /** - */
+  @NLSMessage("The execution of the dependency graph has been interrupted.")
+  public static CoreExceptionCode DEPENDENCY_GRAPH_EXECUTION_INTERRUPTED;
+
   /** - */
   @NLSMessage("Path '%s' must not be a file")
   public static CoreExceptionCode PATH_MUST_NOT_BE_A_FILE;
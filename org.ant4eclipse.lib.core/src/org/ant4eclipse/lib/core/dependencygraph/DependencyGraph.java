@@ -15,10 +15,14 @@ import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.CoreExceptionCode;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -40,12 +44,19 @@ import java.util.Set;
  *                                 E
  * </pre>
  * 
- * will be transformed to E,B,D,C,A or B,E,D,C,A.
+ * will be transformed to B,D,E,C,A if the vertices have been added in the order A,B,C,D,E: the vertices are ordered by
+ * their level (see {@link #calculateLevels()}) first, so B, D and E (which don't depend on any other vertex) come
+ * first, followed by C and finally A.
  * </p>
  * 
  * <p>
- * The order of the nodes depends on the order of the tree definition via {@link DependencyGraph#addVertex(Object)} and
- * {@link DependencyGraph#addEdge(Object, Object)}.
+ * Within a level the order of the nodes depends on the order of the tree definition via
+ * {@link DependencyGraph#addVertex(Object)} and {@link DependencyGraph#addEdge(Object, Object)}.
+ * </p>
+ * 
+ * <p>
+ * The vertices are kept in adjacency lists, so the order (as well as the levels and the cycles) of a graph is computed
+ * in linear time (with respect to the number of vertices and edges).
  * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
@@ -56,14 +67,20 @@ import java.util.Set;
  */
 public final class DependencyGraph<T> {
 
-  /** vertices */
-  private List<T>           _vertices;
+  /** vertices (in the order they have been added) */
+  private List<T>             _vertices;
+
+  /** the indices of the vertices */
+  private Map<T, Integer>     _indices;
+
+  /** the indices of the vertices each vertex depends on (in the order the edges have been added) */
+  private List<List<Integer>> _dependencies;
 
-  /** edges */
-  private List<Edge<T>>     _edges;
+  /** edges (used to ignore duplicate edges) */
+  private Set<Edge<T>>        _edges;
 
   /** renderer */
-  private VertexRenderer<T> _renderer;
+  private VertexRenderer<T>   _renderer;
 
   /**
    * <p>
@@ -71,8 +88,10 @@ public final class DependencyGraph<T> {
    * </p>
    */
   public DependencyGraph() {
-    this._vertices = new LinkedList<T>();
-    this._edges = new LinkedList<Edge<T>>();
+    this._vertices = new ArrayList<T>();
+    this._indices = new HashMap<T, Integer>();
+    this._dependencies = new ArrayList<List<Integer>>();
+    this._edges = new HashSet<Edge<T>>();
   }
 
   /**
@@ -100,8 +119,10 @@ public final class DependencyGraph<T> {
    */
   public void addVertex(T vertex) {
     Assure.notNull("vertex", vertex);
-    if (!this._vertices.contains(vertex)) {
+    if (!this._indices.containsKey(vertex)) {
+      this._indices.put(vertex, Integer.valueOf(this._vertices.size()));
       this._vertices.add(vertex);
+      this._dependencies.add(new ArrayList<Integer>());
     }
   }
 
@@ -117,7 +138,7 @@ public final class DependencyGraph<T> {
    */
   public boolean containsVertex(T vertex) {
     Assure.notNull("vertex", vertex);
-    return this._vertices.contains(vertex);
+    return this._indices.containsKey(vertex);
   }
 
   /**
@@ -135,190 +156,296 @@ public final class DependencyGraph<T> {
     Assure.notNull("child", child);
     addVertex(parent);
     addVertex(child);
-    this._edges.add(new Edge<T>(parent, child));
+    if (this._edges.add(new Edge<T>(parent, child))) {
+      this._dependencies.get(this._indices.get(parent).intValue()).add(this._indices.get(child));
+    }
   }
 
   /**
    * <p>
-   * Computers the order of all the nodes.
+   * Returns the vertices the given vertex directly depends on (the children of the given vertex) in the order the edges
+   * have been added.
    * </p>
    * 
-   * @return the ordered list of all the nodes..
+   * @param vertex
+   *          the vertex
+   * @return the vertices the given vertex directly depends on. Not <code>null</code>.
    */
-  public List<T> calculateOrder() {
-
-    // setup a matrix that contains a true value iff there is a the first index donates a parent of the second value
-    boolean[][] matrix = new boolean[this._vertices.size()][this._vertices.size()];
-
-    // fill the diagonale
-    for (boolean[] element : matrix) {
-      Arrays.fill(element, false);
-    }
-
-    // set each value to true iff there is a relationship form first to second...
-    for (int i = 0; i < this._edges.size(); i++) {
-      Edge<T> edge = this._edges.get(i);
-      int fromidx = this._vertices.indexOf(edge.getParent());
-      int toidx = this._vertices.indexOf(edge.getChild());
-
-      if ((fromidx == -1) || (toidx == -1)) {
-        // one of the edge's vertices has not been
-        // added to this graph (f.e. if it's a dependency
-        // on the outside of a specific context)
-        continue;
+  public List<T> getDependencies(T vertex) {
+    Assure.notNull("vertex", vertex);
+    List<T> result = new ArrayList<T>();
+    Integer index = this._indices.get(vertex);
+    if (index != null) {
+      for (Integer dependency : this._dependencies.get(index.intValue())) {
+        result.add(this._vertices.get(dependency.intValue()));
       }
-
-      matrix[fromidx][toidx] = true;
     }
+    return result;
+  }
 
-    List<T> list = new LinkedList<T>();
-
-    // iterates across the matrix as long as we didn't found
-    // a cycle and there are still edges to be processed
-    while (reduce(list, matrix)) {
-      // nothing to do...
+  /**
+   * <p>
+   * Computers the order of all the nodes.
+   * </p>
+   * 
+   * @return the ordered list of all the nodes..
+   */
+  public List<T> calculateOrder() {
+    List<T> result = new ArrayList<T>(this._vertices.size());
+    for (List<T> level : calculateLevels()) {
+      result.addAll(level);
     }
-
-    return list;
+    return result;
   }
 
   /**
    * <p>
-   * Reduces the internal matrix. Reduction means that the supplied matrix will be modified while vertices that doesn't
-   * refer to any other one can be added to the list since they no longer depend on another vertex. Reduction is an
-   * iterative process, so it's necessary to run this function until the matrix doesn't contain an edge.
+   * Computes the levels of the graph. The first level contains the vertices that don't depend on any other vertex, each
+   * further level contains the vertices that only depend on vertices of the preceding levels. The vertices of a level
+   * don't depend on each other, so they can be processed in parallel once the preceding levels have been processed.
+   * The vertices of a level are listed in the order they have been added.
+   * </p>
+   * <p>
+   * Concatenating the levels results in the order computed by {@link #calculateOrder()}.
    * </p>
    * 
-   * @param result
-   *          The list that will receive the vertices.
-   * @param matrix
-   *          The current state of the matrix representing the graph.
-   * 
-   * @return true <=> There are still edges within the matrix so a succeeding iteration is required.
+   * @return the levels of the graph. Not <code>null</code>.
    */
-  private boolean reduce(List<T> result, boolean[][] matrix) {
-    int zeros = 0;
-    int[] count = countEdges(matrix);
-
-    List<T> removable = new LinkedList<T>();
-
-    // add currently independent vertices to the list
-    // of removable candidates
-    for (int i = 0; i < count.length; i++) {
-      if (count[i] == 0) {
-        T vertex = this._vertices.get(i);
-
-        if (!result.contains(vertex)) {
-          removable.add(vertex);
-        }
-
-        zeros++;
+  public List<List<T>> calculateLevels() {
+    int count = this._vertices.size();
+
+    // the number of dependencies that haven't been assigned to a level yet
+    int[] pending = new int[count];
+
+    // the dependents of each vertex (the dependents of vertex i are stored from offsets[i] to offsets[i + 1])
+    int[] offsets = new int[count + 1];
+    for (int i = 0; i < count; i++) {
+      List<Integer> dependencies = this._dependencies.get(i);
+      pending[i] = dependencies.size();
+      for (Integer dependency : dependencies) {
+        offsets[dependency.intValue() + 1]++;
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    int[] dependents = new int[offsets[count]];
+    int[] position = new int[count];
+    System.arraycopy(offsets, 0, position, 0, count);
+    for (int i = 0; i < count; i++) {
+      for (Integer dependency : this._dependencies.get(i)) {
+        dependents[position[dependency.intValue()]++] = i;
       }
     }
 
-    if (removable.isEmpty()) {
-      if (zeros < matrix.length) {
-        // get the first cycle and create an apropriate textual representation
-        StringBuffer buffer = new StringBuffer();
-        for (int i = 0; i < count.length; i++) {
-          if (count[i] > 0) {
-            cycleString(buffer, new HashSet<T>(), i, matrix);
-            break;
-          }
-        }
-        throw new Ant4EclipseException(CoreExceptionCode.CYCLIC_DEPENDENCIES_EXCEPTION, buffer.toString());
+    // assign the levels (Kahn's algorithm, processing one level after the other)
+    int[] levels = new int[count];
+    int[] current = new int[count];
+    int[] next = new int[count];
+    int currentSize = 0;
+    for (int i = 0; i < count; i++) {
+      if (pending[i] == 0) {
+        current[currentSize++] = i;
       }
-    } else {
-      // we need to clear the removable vertices, so they won't
-      // be processed within the next iteration
-      for (int i = 0; i < matrix.length; i++) {
-        for (int j = 0; j < matrix.length; j++) {
-          if (matrix[i][j]) {
-            if (removable.contains(this._vertices.get(j))) {
-              matrix[i][j] = false;
-            }
+    }
+    int assigned = 0;
+    int levelCount = 0;
+    while (currentSize > 0) {
+      int nextSize = 0;
+      for (int i = 0; i < currentSize; i++) {
+        int vertex = current[i];
+        levels[vertex] = levelCount;
+        for (int j = offsets[vertex]; j < offsets[vertex + 1]; j++) {
+          if (--pending[dependents[j]] == 0) {
+            next[nextSize++] = dependents[j];
           }
         }
       }
+      assigned += currentSize;
+      levelCount++;
+      int[] swap = current;
+      current = next;
+      next = swap;
+      currentSize = nextSize;
+    }
 
-      result.addAll(removable);
+    if (assigned < count) {
+      throw new Ant4EclipseException(CoreExceptionCode.CYCLIC_DEPENDENCIES_EXCEPTION, renderCycles(calculateCycles()));
     }
 
-    return zeros < matrix.length;
+    // distribute the vertices (in the order they have been added) to their levels
+    List<List<T>> result = new ArrayList<List<T>>(levelCount);
+    for (int i = 0; i < levelCount; i++) {
+      result.add(new ArrayList<T>());
+    }
+    for (int i = 0; i < count; i++) {
+      result.get(levels[i]).add(this._vertices.get(i));
+    }
+    return result;
   }
 
   /**
    * <p>
-   * Creates a String which is used to create a textual representation of a cycle.
+   * Computes the cycles of the graph. For each strongly connected component that contains a cycle (i.e. that consists
+   * of more than one vertex or of a single vertex that depends on itself) one (shortest) cycle through the vertex of
+   * the component that has been added first is returned. So each vertex that is part of a cycle is contained in exactly
+   * one strongly connected component, but not necessarily in one of the returned cycles.
+   * </p>
+   * <p>
+   * A cycle is a list of vertices where each vertex depends on the next one and the last vertex depends on the first
+   * one. The cycles are ordered by their first vertex (in the order the vertices have been added).
    * </p>
    * 
-   * @param buffer
-   *          The buffer used to collect the data.
-   * @param processed
-   *          A list of added vertices which is required for the abortion criteria.
-   * @param idx
-   *          The index of the vertex which is part of the cycle.
-   * @param matrix
-   *          The current state of the matrix.
+   * @return the cycles of the graph. Not <code>null</code>, empty if the graph doesn't contain cycles.
    */
-  private void cycleString(StringBuffer buffer, Set<T> processed, int idx, boolean[][] matrix) {
-    T vertex = this._vertices.get(idx);
-    if (this._renderer == null) {
-      buffer.append(String.valueOf(vertex));
-    } else {
-      buffer.append(this._renderer.renderVertex(vertex));
+  public List<List<T>> calculateCycles() {
+    int count = this._vertices.size();
+
+    // Tarjan's algorithm (iterative, so large graphs don't overflow the stack)
+    int[] index = new int[count];
+    Arrays.fill(index, -1);
+    int[] lowlink = new int[count];
+    int[] component = new int[count];
+    boolean[] onStack = new boolean[count];
+    int[] stack = new int[count];
+    int stackSize = 0;
+    int[] callStack = new int[count];
+    int[] edgePosition = new int[count];
+    int callStackSize = 0;
+    int counter = 0;
+    List<int[]> components = new ArrayList<int[]>();
+
+    for (int root = 0; root < count; root++) {
+      if (index[root] != -1) {
+        continue;
+      }
+      index[root] = lowlink[root] = counter++;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      callStack[callStackSize] = root;
+      edgePosition[callStackSize++] = 0;
+
+      while (callStackSize > 0) {
+        int vertex = callStack[callStackSize - 1];
+        List<Integer> dependencies = this._dependencies.get(vertex);
+        if (edgePosition[callStackSize - 1] < dependencies.size()) {
+          int dependency = dependencies.get(edgePosition[callStackSize - 1]++).intValue();
+          if (index[dependency] == -1) {
+            index[dependency] = lowlink[dependency] = counter++;
+            stack[stackSize++] = dependency;
+            onStack[dependency] = true;
+            callStack[callStackSize] = dependency;
+            edgePosition[callStackSize++] = 0;
+          } else if (onStack[dependency]) {
+            lowlink[vertex] = Math.min(lowlink[vertex], index[dependency]);
+          }
+        } else {
+          callStackSize--;
+          if (callStackSize > 0) {
+            int caller = callStack[callStackSize - 1];
+            lowlink[caller] = Math.min(lowlink[caller], lowlink[vertex]);
+          }
+          if (lowlink[vertex] == index[vertex]) {
+            // pop the strongly connected component and remember its first vertex
+            int first = vertex;
+            int size = 0;
+            int member;
+            do {
+              member = stack[--stackSize];
+              onStack[member] = false;
+              component[member] = components.size();
+              first = Math.min(first, member);
+              size++;
+            } while (member != vertex);
+            components.add(new int[] { first, size });
+          }
+        }
+      }
     }
-    if (processed.contains(vertex)) {
-      return;
+
+    // select the components containing a cycle
+    List<int[]> cyclic = new ArrayList<int[]>();
+    for (int[] entry : components) {
+      if ((entry[1] > 1) || this._dependencies.get(entry[0]).contains(Integer.valueOf(entry[0]))) {
+        cyclic.add(entry);
+      }
     }
-    buffer.append(" -> ");
-    processed.add(vertex);
-    for (int i = 0; i < matrix.length; i++) {
-      if (matrix[idx][i]) {
-        cycleString(buffer, processed, i, matrix);
-        break;
+    Collections.sort(cyclic, new Comparator<int[]>() {
+      public int compare(int[] o1, int[] o2) {
+        return o1[0] - o2[0];
+      }
+    });
+
+    // find a shortest cycle through the first vertex of each component (breadth-first search within the component)
+    List<List<T>> result = new ArrayList<List<T>>();
+    int[] predecessor = new int[count];
+    int[] queue = new int[count];
+    for (int[] entry : cyclic) {
+      int first = entry[0];
+      int queueStart = 0;
+      int queueEnd = 0;
+      int last = -1;
+      Arrays.fill(predecessor, -1);
+      queue[queueEnd++] = first;
+      while ((last == -1) && (queueStart < queueEnd)) {
+        int vertex = queue[queueStart++];
+        for (Integer dependency : this._dependencies.get(vertex)) {
+          int next = dependency.intValue();
+          if (next == first) {
+            last = vertex;
+            break;
+          }
+          if ((component[next] == component[first]) && (predecessor[next] == -1)) {
+            predecessor[next] = vertex;
+            queue[queueEnd++] = next;
+          }
+        }
+      }
+      List<T> cycle = new ArrayList<T>();
+      for (int vertex = last; vertex != first; vertex = predecessor[vertex]) {
+        cycle.add(0, this._vertices.get(vertex));
       }
+      cycle.add(0, this._vertices.get(first));
+      result.add(cycle);
     }
+    return result;
   }
 
   /**
    * <p>
-   * Returns a list with the counted number of edges.
+   * Creates a textual representation of the given cycles.
    * </p>
    * 
-   * @param matrix
-   *          The matrix which provides graph representation.
-   * 
-   * @return A list with the length of the matrix where each element holds the number of edges of the related row.
+   * @param cycles
+   *          the cycles
+   * @return a textual representation of the given cycles.
    */
-  private int[] countEdges(boolean[][] matrix) {
-    int[] result = new int[matrix.length];
-    // count the number of edges for each row
-    for (int i = 0; i < matrix.length; i++) {
-      result[i] = sum(matrix[i]);
+  private String renderCycles(List<List<T>> cycles) {
+    StringBuffer buffer = new StringBuffer();
+    for (List<T> cycle : cycles) {
+      if (buffer.length() > 0) {
+        buffer.append("', '");
+      }
+      for (T vertex : cycle) {
+        buffer.append(renderVertex(vertex));
+        buffer.append(" -> ");
+      }
+      buffer.append(renderVertex(cycle.get(0)));
     }
-    return result;
+    return buffer.toString();
   }
 
   /**
    * <p>
-   * Returns the number of 'true'-values in the given array.
+   * Returns the textual representation of the given vertex.
    * </p>
    * 
-   * @param row
-   *          the array of boolean
-   * @return the number of 'true'-values in the given array.
+   * @param vertex
+   *          the vertex
+   * @return the textual representation of the given vertex.
    */
-  private int sum(boolean[] row) {
-    int result = 0;
-
-    for (boolean element : row) {
-      if (element) {
-        result++;
-      }
-    }
-
-    return result;
+  private String renderVertex(T vertex) {
+    return this._renderer == null ? String.valueOf(vertex) : this._renderer.renderVertex(vertex);
   }
 
 } /* ENDCLASS */
@@ -0,0 +1,260 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.dependencygraph;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.CoreExceptionCode;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+
+/**
+ * <p>
+ * Executes the vertices of a {@link DependencyGraph} on a bounded number of threads. A vertex is executed as soon as
+ * all the vertices it depends on have been executed, so independent vertices (e.g. projects that don't reference each
+ * other) are executed at the same time.
+ * </p>
+ * <p>
+ * If the execution of a vertex fails, no further vertices are started. The scheduler waits for the vertices that are
+ * currently executed and rethrows the first failure afterwards.
+ * </p>
+ *
+ * @author agent
+ *
+ * @param <T>
+ *          the type of the vertices
+ */
+public class DependencyGraphScheduler<T> {
+
+  /** the dependency graph */
+  private DependencyGraph<T> _graph;
+
+  /** the maximum number of concurrently executed vertices */
+  private int                _threadCount;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link DependencyGraphScheduler}.
+   * </p>
+   *
+   * @param graph
+   *          the dependency graph. Not <code>null</code>.
+   * @param threadCount
+   *          the maximum number of concurrently executed vertices. Must be greater than 0.
+   */
+  public DependencyGraphScheduler(DependencyGraph<T> graph, int threadCount) {
+    Assure.notNull("graph", graph);
+    Assure.assertTrue(threadCount > 0, "threadCount must be greater than 0");
+
+    this._graph = graph;
+    this._threadCount = threadCount;
+  }
+
+  /**
+   * <p>
+   * Executes the given vertices. A vertex is executed after all the given vertices it depends on (directly or via
+   * vertices that are not part of the given list) have been executed. Vertices that are ready at the same time are
+   * started in the order of the given list.
+   * </p>
+   *
+   * @param vertices
+   *          the vertices to execute (usually in build order). Not <code>null</code>.
+   * @param executor
+   *          the executor that is called for each vertex. Not <code>null</code>.
+   * @return the wall time (in milliseconds) that has been needed to execute each vertex, in the order of completion.
+   */
+  public Map<T, Long> execute(List<T> vertices, VertexExecutor<T> executor) {
+    Assure.notNull("vertices", vertices);
+    Assure.notNull("executor", executor);
+
+    // fail early (with a meaningful message) if the graph contains cycles
+    this._graph.calculateOrder();
+
+    // compute the number of unfinished dependencies and the dependents of each vertex
+    Set<T> members = new LinkedHashSet<T>(vertices);
+    Map<T, Integer> pending = new HashMap<T, Integer>();
+    Map<T, List<T>> dependents = new HashMap<T, List<T>>();
+    for (T vertex : members) {
+      dependents.put(vertex, new LinkedList<T>());
+    }
+    for (T vertex : members) {
+      Set<T> dependencies = getMemberDependencies(vertex, members);
+      pending.put(vertex, Integer.valueOf(dependencies.size()));
+      for (T dependency : dependencies) {
+        dependents.get(dependency).add(vertex);
+      }
+    }
+
+    Map<T, Long> result = Collections.synchronizedMap(new LinkedHashMap<T, Long>());
+
+    ExecutorService executorService = Executors.newFixedThreadPool(Math.min(this._threadCount, Math.max(1, members
+        .size())), new SchedulerThreadFactory());
+    CompletionService<T> completionService = new ExecutorCompletionService<T>(executorService);
+
+    try {
+      int running = 0;
+      for (T vertex : members) {
+        if (pending.get(vertex).intValue() == 0) {
+          completionService.submit(new VertexCallable(vertex, executor, result));
+          running++;
+        }
+      }
+
+      Throwable failure = null;
+      while (running > 0) {
+        T finished = null;
+        try {
+          finished = completionService.take().get();
+        } catch (ExecutionException ex) {
+          if (failure == null) {
+            failure = ex.getCause();
+          }
+        } catch (InterruptedException ex) {
+          executorService.shutdownNow();
+          Thread.currentThread().interrupt();
+          throw new Ant4EclipseException(ex, CoreExceptionCode.DEPENDENCY_GRAPH_EXECUTION_INTERRUPTED);
+        }
+        running--;
+
+        // don't start any other vertex after a failure
+        if ((finished == null) || (failure != null)) {
+          continue;
+        }
+
+        for (T dependent : dependents.get(finished)) {
+          int remaining = pending.get(dependent).intValue() - 1;
+          pending.put(dependent, Integer.valueOf(remaining));
+          if (remaining == 0) {
+            completionService.submit(new VertexCallable(dependent, executor, result));
+            running++;
+          }
+        }
+      }
+
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+        throw (Error) failure;
+      } else if (failure != null) {
+        throw new RuntimeException(failure);
+      }
+    } finally {
+      executorService.shutdown();
+    }
+
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the members the given vertex depends on. Dependencies on vertices that are not members are followed, so
+   * transitive dependencies between members are preserved.
+   * </p>
+   *
+   * @param vertex
+   *          the vertex
+   * @param members
+   *          the vertices that are executed
+   * @return the members the given vertex depends on.
+   */
+  private Set<T> getMemberDependencies(T vertex, Set<T> members) {
+    Set<T> result = new LinkedHashSet<T>();
+    Set<T> visited = new HashSet<T>();
+    List<T> queue = new LinkedList<T>(this._graph.getDependencies(vertex));
+    while (!queue.isEmpty()) {
+      T dependency = queue.remove(0);
+      if (dependency.equals(vertex) || !visited.add(dependency)) {
+        continue;
+      }
+      if (members.contains(dependency)) {
+        result.add(dependency);
+      } else {
+        queue.addAll(this._graph.getDependencies(dependency));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Executes a single vertex and records the needed wall time.
+   * </p>
+   */
+  private class VertexCallable implements Callable<T> {
+
+    /** the vertex */
+    private T                 _vertex;
+
+    /** the executor */
+    private VertexExecutor<T> _executor;
+
+    /** receives the wall time */
+    private Map<T, Long>      _times;
+
+    /**
+     * @param vertex
+     * @param executor
+     * @param times
+     */
+    public VertexCallable(T vertex, VertexExecutor<T> executor, Map<T, Long> times) {
+      this._vertex = vertex;
+      this._executor = executor;
+      this._times = times;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public T call() {
+      long start = System.currentTimeMillis();
+      this._executor.execute(this._vertex);
+      this._times.put(this._vertex, Long.valueOf(System.currentTimeMillis() - start));
+      return this._vertex;
+    }
+  }
+
+  /**
+   * <p>
+   * Creates the (non-daemon) worker threads using the common ant4eclipse thread name prefix.
+   * </p>
+   */
+  private static class SchedulerThreadFactory implements ThreadFactory {
+
+    /** the number of created threads */
+    private AtomicInteger _count = new AtomicInteger();
+
+    /**
+     * {@inheritDoc}
+     */
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable);
+      thread.setName("A4E-Scheduler-" + this._count.incrementAndGet());
+      return thread;
+    }
+  }
+}
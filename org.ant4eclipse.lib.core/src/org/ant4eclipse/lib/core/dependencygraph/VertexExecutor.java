@@ -0,0 +1,38 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.dependencygraph;
+
+/**
+ * <p>
+ * Interface for a vertex executor. A vertex executor performs the work associated with a vertex (e.g. builds a
+ * project) when it's called by a {@link DependencyGraphScheduler}.
+ * </p>
+ *
+ * @author agent
+ *
+ * @param <T>
+ *          the type of the vertices
+ */
+public interface VertexExecutor<T> {
+
+  /**
+   * <p>
+   * Performs the work associated with the given vertex. This method might be called concurrently for different
+   * vertices, but it's never called before the work for all vertices the given vertex depends on has been completed.
+   * </p>
+   *
+   * @param vertex
+   *          the vertex to execute.
+   */
+  void execute(T vertex);
+
+} /* ENDINTERFACE */
@@ -0,0 +1,106 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A metric that counts events or quantities (e.g. the number of bytes read).
+ * </p>
+ *
+ * @author agent
+ */
+public class Counter extends Metric {
+
+  /** the current value */
+  private AtomicLong _value;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link Counter}.
+   * </p>
+   *
+   * @param name
+   *          the name of the counter
+   * @param enabled
+   *          <code>true</code> if values should be recorded
+   */
+  Counter(String name, boolean enabled) {
+    super(name, enabled);
+    this._value = new AtomicLong();
+  }
+
+  /**
+   * <p>
+   * Increments this counter by one.
+   * </p>
+   */
+  public void increment() {
+    if (isEnabled()) {
+      this._value.incrementAndGet();
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the given amount to this counter.
+   * </p>
+   *
+   * @param amount
+   *          the amount to add
+   */
+  public void add(long amount) {
+    if (isEnabled()) {
+      this._value.addAndGet(amount);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the current value of this counter.
+   * </p>
+   *
+   * @return the current value of this counter.
+   */
+  public long get() {
+    return this._value.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getType() {
+    return "counter";
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, Long> getValues() {
+    Map<String, Long> result = new LinkedHashMap<String, Long>();
+    result.put("value", Long.valueOf(get()));
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset() {
+    this._value.set(0);
+  }
+}
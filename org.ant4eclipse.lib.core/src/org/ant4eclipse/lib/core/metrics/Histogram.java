@@ -0,0 +1,205 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A metric that records the distribution of non-negative values. The values are counted in buckets whose bounds are
+ * powers of two, so recording a value neither allocates nor locks. Percentiles are reported as the upper bound of the
+ * bucket that contains them, i.e. they are accurate within a factor of two.
+ * </p>
+ *
+ * @author agent
+ */
+public class Histogram extends Metric {
+
+  /** the number of buckets: bucket <code>n</code> contains the values in <code>[2^(n-1), 2^n - 1]</code> */
+  private static final int BUCKET_COUNT = 65;
+
+  /** the number of values per bucket */
+  private AtomicLongArray  _buckets;
+
+  /** the number of recorded values */
+  private AtomicLong       _count;
+
+  /** the sum of all recorded values */
+  private AtomicLong       _sum;
+
+  /** the smallest recorded value */
+  private AtomicLong       _min;
+
+  /** the largest recorded value */
+  private AtomicLong       _max;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link Histogram}.
+   * </p>
+   *
+   * @param name
+   *          the name of the histogram
+   * @param enabled
+   *          <code>true</code> if values should be recorded
+   */
+  Histogram(String name, boolean enabled) {
+    super(name, enabled);
+    this._buckets = new AtomicLongArray(BUCKET_COUNT);
+    this._count = new AtomicLong();
+    this._sum = new AtomicLong();
+    this._min = new AtomicLong(Long.MAX_VALUE);
+    this._max = new AtomicLong(Long.MIN_VALUE);
+  }
+
+  /**
+   * <p>
+   * Records the given value. Negative values are recorded as 0.
+   * </p>
+   *
+   * @param value
+   *          the value to record
+   */
+  public void record(long value) {
+    if (!isEnabled()) {
+      return;
+    }
+    if (value < 0) {
+      value = 0;
+    }
+    this._buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+    this._count.incrementAndGet();
+    this._sum.addAndGet(value);
+    long min = this._min.get();
+    while ((value < min) && !this._min.compareAndSet(min, value)) {
+      min = this._min.get();
+    }
+    long max = this._max.get();
+    while ((value > max) && !this._max.compareAndSet(max, value)) {
+      max = this._max.get();
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the number of recorded values.
+   * </p>
+   *
+   * @return the number of recorded values.
+   */
+  public long getCount() {
+    return this._count.get();
+  }
+
+  /**
+   * <p>
+   * Returns the sum of all recorded values.
+   * </p>
+   *
+   * @return the sum of all recorded values.
+   */
+  public long getSum() {
+    return this._sum.get();
+  }
+
+  /**
+   * <p>
+   * Returns the smallest recorded value or 0 if no value has been recorded.
+   * </p>
+   *
+   * @return the smallest recorded value.
+   */
+  public long getMin() {
+    return getCount() == 0 ? 0 : this._min.get();
+  }
+
+  /**
+   * <p>
+   * Returns the largest recorded value or 0 if no value has been recorded.
+   * </p>
+   *
+   * @return the largest recorded value.
+   */
+  public long getMax() {
+    return getCount() == 0 ? 0 : this._max.get();
+  }
+
+  /**
+   * <p>
+   * Returns an upper bound of the given percentile of the recorded values. The result never exceeds the largest
+   * recorded value.
+   * </p>
+   *
+   * @param percentile
+   *          the percentile (between 0 and 100)
+   * @return an upper bound of the given percentile or 0 if no value has been recorded.
+   */
+  public long getPercentile(int percentile) {
+    long count = getCount();
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (count * percentile + 99) / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += this._buckets.get(i);
+      if (seen >= rank) {
+        long upperBound = i == 64 ? Long.MAX_VALUE : (1L << i) - 1;
+        return Math.min(upperBound, getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getType() {
+    return "histogram";
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, Long> getValues() {
+    long count = getCount();
+    Map<String, Long> result = new LinkedHashMap<String, Long>();
+    result.put("count", Long.valueOf(count));
+    result.put("sum", Long.valueOf(getSum()));
+    result.put("min", Long.valueOf(getMin()));
+    result.put("max", Long.valueOf(getMax()));
+    result.put("mean", Long.valueOf(count == 0 ? 0 : getSum() / count));
+    result.put("p50", Long.valueOf(getPercentile(50)));
+    result.put("p90", Long.valueOf(getPercentile(90)));
+    result.put("p99", Long.valueOf(getPercentile(99)));
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      this._buckets.set(i, 0);
+    }
+    this._count.set(0);
+    this._sum.set(0);
+    this._min.set(Long.MAX_VALUE);
+    this._max.set(Long.MIN_VALUE);
+  }
+}
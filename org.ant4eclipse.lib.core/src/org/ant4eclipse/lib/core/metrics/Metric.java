@@ -0,0 +1,95 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.metrics;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * Base class of all metrics. A metric has a unique name (e.g. <code>ecj.findType</code>) and records values only if
+ * metrics have been enabled (see {@link Metrics}). A disabled metric ignores all recorded values, so instrumented code
+ * doesn't have to check whether metrics are enabled.
+ * </p>
+ *
+ * @author agent
+ */
+public abstract class Metric {
+
+  /** the name of the metric */
+  private String  _name;
+
+  /** indicates whether values are recorded */
+  private boolean _enabled;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link Metric}.
+   * </p>
+   *
+   * @param name
+   *          the name of the metric
+   * @param enabled
+   *          <code>true</code> if values should be recorded
+   */
+  Metric(String name, boolean enabled) {
+    this._name = name;
+    this._enabled = enabled;
+  }
+
+  /**
+   * <p>
+   * Returns the name of this metric.
+   * </p>
+   *
+   * @return the name of this metric.
+   */
+  public String getName() {
+    return this._name;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if this metric records values.
+   * </p>
+   *
+   * @return <code>true</code> if this metric records values.
+   */
+  public boolean isEnabled() {
+    return this._enabled;
+  }
+
+  /**
+   * <p>
+   * Returns the type of this metric (<code>counter</code>, <code>histogram</code> or <code>timer</code>).
+   * </p>
+   *
+   * @return the type of this metric.
+   */
+  public abstract String getType();
+
+  /**
+   * <p>
+   * Returns the current values of this metric, keyed by the name of the value (e.g. <code>count</code> or
+   * <code>max</code>). The values are returned in the order they should be reported.
+   * </p>
+   *
+   * @return the current values of this metric.
+   */
+  public abstract Map<String, Long> getValues();
+
+  /**
+   * <p>
+   * Discards all recorded values.
+   * </p>
+   */
+  public abstract void reset();
+}
@@ -0,0 +1,265 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.metrics;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+/**
+ * <p>
+ * Registry of the ant4eclipse metrics. Instrumented classes obtain their metrics once and keep them in static fields:
+ * </p>
+ *
+ * <pre>
+ * private static final Timer FIND_TYPE = Metrics.timer(&quot;ecj.findType&quot;);
+ * </pre>
+ * <p>
+ * Metrics are disabled unless the system property {@link #ENABLE_PROPERTY_NAME} is <code>true</code> or the system
+ * property {@link #FILE_PROPERTY_NAME} is set. Disabled metrics don't record anything, so instrumentation costs a
+ * single field access if metrics are disabled. If {@link #FILE_PROPERTY_NAME} is set, the metrics are written to the
+ * specified file at the end of each build (as CSV if the file name ends with <code>.csv</code>, as JSON otherwise).
+ * </p>
+ *
+ * @author agent
+ */
+public class Metrics {
+
+  /** the name of the system property that enables the metrics */
+  public static final String                         ENABLE_PROPERTY_NAME = "ant4eclipse.enableMetrics";
+
+  /** the name of the system property that specifies the file the metrics are written to */
+  public static final String                         FILE_PROPERTY_NAME   = "ant4eclipse.metricsFile";
+
+  /** the columns of the CSV format */
+  private static final String[]                      CSV_COLUMNS          = { "value", "count", "sum", "min", "max",
+      "mean", "p50", "p90", "p99"                                        };
+
+  /** indicates whether the metrics are enabled */
+  private static final boolean                       ENABLED              = Boolean.getBoolean(ENABLE_PROPERTY_NAME)
+                                                                              || (getMetricsFile() != null);
+
+  /** the registered metrics, keyed by name */
+  private static final ConcurrentMap<String, Metric> METRICS              = new ConcurrentHashMap<String, Metric>();
+
+  /**
+   * <p>
+   * Returns <code>true</code> if metrics are enabled.
+   * </p>
+   *
+   * @return <code>true</code> if metrics are enabled.
+   */
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * <p>
+   * Returns the file the metrics should be written to at the end of a build or <code>null</code> if no such file has
+   * been specified.
+   * </p>
+   *
+   * @return the file the metrics should be written to or <code>null</code>.
+   */
+  public static File getMetricsFile() {
+    String fileName = Utilities.cleanup(System.getProperty(FILE_PROPERTY_NAME));
+    return fileName == null ? null : new File(fileName);
+  }
+
+  /**
+   * <p>
+   * Returns the {@link Counter} with the given name. The counter is created if necessary.
+   * </p>
+   *
+   * @param name
+   *          the name of the counter. Neither <code>null</code> nor empty.
+   * @return the {@link Counter} with the given name.
+   */
+  public static Counter counter(String name) {
+    return register(new Counter(name, ENABLED), Counter.class);
+  }
+
+  /**
+   * <p>
+   * Returns the {@link Histogram} with the given name. The histogram is created if necessary.
+   * </p>
+   *
+   * @param name
+   *          the name of the histogram. Neither <code>null</code> nor empty.
+   * @return the {@link Histogram} with the given name.
+   */
+  public static Histogram histogram(String name) {
+    return register(new Histogram(name, ENABLED), Histogram.class);
+  }
+
+  /**
+   * <p>
+   * Returns the {@link Timer} with the given name. The timer is created if necessary.
+   * </p>
+   *
+   * @param name
+   *          the name of the timer. Neither <code>null</code> nor empty.
+   * @return the {@link Timer} with the given name.
+   */
+  public static Timer timer(String name) {
+    return register(new Timer(name, ENABLED), Timer.class);
+  }
+
+  /**
+   * <p>
+   * Returns all registered metrics, sorted by name.
+   * </p>
+   *
+   * @return all registered metrics.
+   */
+  public static Map<String, Metric> getMetrics() {
+    return new TreeMap<String, Metric>(METRICS);
+  }
+
+  /**
+   * <p>
+   * Discards the values of all registered metrics.
+   * </p>
+   */
+  public static void reset() {
+    for (Metric metric : METRICS.values()) {
+      metric.reset();
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the current values of all registered metrics to the given file. The metrics are written as CSV if the file
+   * name ends with <code>.csv</code>, as JSON otherwise.
+   * </p>
+   *
+   * @param file
+   *          the file to write. Not <code>null</code>.
+   */
+  public static void write(File file) {
+    Assure.notNull("file", file);
+
+    File directory = file.getAbsoluteFile().getParentFile();
+    if (directory != null) {
+      Utilities.mkdirs(directory);
+    }
+    String content = file.getName().toLowerCase().endsWith(".csv") ? toCsv() : toJson();
+    Utilities.writeFile(file, content, "UTF-8");
+    A4ELogging.debug("Wrote %d metrics to '%s'.", Integer.valueOf(METRICS.size()), file);
+  }
+
+  /**
+   * <p>
+   * Returns the current values of all registered metrics as a JSON object. The object contains one member per metric
+   * (sorted by name) that contains the type and the values of the metric. Durations are given in nanoseconds.
+   * </p>
+   *
+   * @return the current values of all registered metrics as a JSON object.
+   */
+  public static String toJson() {
+    StringBuilder builder = new StringBuilder("{");
+    boolean firstMetric = true;
+    for (Metric metric : getMetrics().values()) {
+      builder.append(firstMetric ? "" : ",").append(Utilities.NL);
+      builder.append("  ").append(quote(metric.getName())).append(": { \"type\": ").append(quote(metric.getType()));
+      for (Map.Entry<String, Long> value : metric.getValues().entrySet()) {
+        builder.append(", ").append(quote(value.getKey())).append(": ").append(value.getValue());
+      }
+      builder.append(" }");
+      firstMetric = false;
+    }
+    builder.append(Utilities.NL).append("}").append(Utilities.NL);
+    return builder.toString();
+  }
+
+  /**
+   * <p>
+   * Returns the current values of all registered metrics as CSV. The first line contains the column names, each
+   * following line contains one metric (sorted by name). Durations are given in nanoseconds.
+   * </p>
+   *
+   * @return the current values of all registered metrics as CSV.
+   */
+  public static String toCsv() {
+    StringBuilder builder = new StringBuilder("name,type");
+    for (String column : CSV_COLUMNS) {
+      builder.append(',').append(column);
+    }
+    builder.append(Utilities.NL);
+    for (Metric metric : getMetrics().values()) {
+      builder.append(metric.getName()).append(',').append(metric.getType());
+      Map<String, Long> values = metric.getValues();
+      for (String column : CSV_COLUMNS) {
+        Long value = values.get(column);
+        builder.append(',').append(value == null ? "" : value.toString());
+      }
+      builder.append(Utilities.NL);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * <p>
+   * Registers the given metric unless a metric with the same name has already been registered. Disabled metrics are
+   * not registered.
+   * </p>
+   *
+   * @param metric
+   *          the metric to register
+   * @param type
+   *          the type of the metric
+   * @return the registered metric with the name of the given metric.
+   */
+  private static <T extends Metric> T register(T metric, Class<T> type) {
+    Assure.nonEmpty("name", metric.getName());
+    if (!ENABLED) {
+      return metric;
+    }
+    Metric existing = METRICS.putIfAbsent(metric.getName(), metric);
+    if (existing == null) {
+      return metric;
+    }
+    Assure.assertTrue(existing.getClass() == type, "The metric '" + metric.getName() + "' is a "
+        + existing.getType() + ", not a " + metric.getType());
+    return type.cast(existing);
+  }
+
+  /**
+   * <p>
+   * Returns the given text as a JSON string literal.
+   * </p>
+   *
+   * @param text
+   *          the text
+   * @return the given text as a JSON string literal.
+   */
+  private static String quote(String text) {
+    StringBuilder builder = new StringBuilder("\"");
+    for (int i = 0; i < text.length(); i++) {
+      char ch = text.charAt(i);
+      if ((ch == '"') || (ch == '\\')) {
+        builder.append('\\').append(ch);
+      } else if (ch < ' ') {
+        builder.append(String.format("\\u%04x", Integer.valueOf(ch)));
+      } else {
+        builder.append(ch);
+      }
+    }
+    return builder.append('"').toString();
+  }
+}
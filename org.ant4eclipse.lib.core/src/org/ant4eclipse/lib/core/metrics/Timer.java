@@ -0,0 +1,86 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.metrics;
+
+/**
+ * <p>
+ * A {@link Histogram} of durations in nanoseconds. A timer doesn't keep any state between {@link #start()} and
+ * {@link #stop(long)}, so it can be used by several threads concurrently and for nested invocations:
+ * </p>
+ *
+ * <pre>
+ * long start = TIMER.start();
+ * try {
+ *   ...
+ * } finally {
+ *   TIMER.stop(start);
+ * }
+ * </pre>
+ * <p>
+ * If the timer is disabled, neither {@link #start()} nor {@link #stop(long)} reads the system clock.
+ * </p>
+ *
+ * @author agent
+ */
+public class Timer extends Histogram {
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link Timer}.
+   * </p>
+   *
+   * @param name
+   *          the name of the timer
+   * @param enabled
+   *          <code>true</code> if durations should be recorded
+   */
+  Timer(String name, boolean enabled) {
+    super(name, enabled);
+  }
+
+  /**
+   * <p>
+   * Starts a measurement.
+   * </p>
+   *
+   * @return the start time that has to be passed to {@link #stop(long)}.
+   */
+  public long start() {
+    return isEnabled() ? System.nanoTime() : 0;
+  }
+
+  /**
+   * <p>
+   * Stops a measurement and records its duration.
+   * </p>
+   *
+   * @param start
+   *          the start time as returned by {@link #start()}
+   * @return the duration in nanoseconds or <code>-1</code> if the timer is disabled.
+   */
+  public long stop(long start) {
+    if (!isEnabled()) {
+      return -1;
+    }
+    long duration = System.nanoTime() - start;
+    record(duration);
+    return duration;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getType() {
+    return "timer";
+  }
+}
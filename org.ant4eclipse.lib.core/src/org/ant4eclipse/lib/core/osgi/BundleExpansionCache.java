@@ -0,0 +1,238 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.osgi;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.CoreExceptionCode;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+/**
+ * <p>
+ * Extracts the entries of the bundle class path (inner jars and class folders) of jared bundles. If a persistent cache
+ * directory has been configured (see {@link CacheDirectory}), the entries are extracted to a directory that is named
+ * after the hash of the bundle's content, so they are shared by all builds and processes that use the same cache
+ * directory. Otherwise they are extracted to the given expansion directory.
+ * </p>
+ * <p>
+ * Each bundle is extracted to a temporary directory which is renamed afterwards, so a directory that exists is always
+ * complete. Concurrent extractions of the same bundle are serialized by a lock within this process and by a file lock
+ * across processes, while different bundles are extracted concurrently.
+ * </p>
+ *
+ * @author agent
+ */
+public class BundleExpansionCache {
+
+  /** the name of the area in the cache directory */
+  private static final String              AREA         = "bundleExpansion";
+
+  /** the content hashes of the bundles, keyed by location, length and modification time */
+  private static final Map<String, String> CONTENT_HASH = new Hashtable<String, String>();
+
+  /** the locks that serialize the extractions within this process, keyed by destination */
+  private static final Map<String, Object> LOCKS        = new HashMap<String, Object>();
+
+  /**
+   * <p>
+   * Returns the directory that contains the extracted bundle class path entries of the given bundle. The entries are
+   * extracted if necessary.
+   * </p>
+   *
+   * @param location
+   *          the location of the jared bundle
+   * @param jarFile
+   *          the jar file of the bundle
+   * @param bundleClasspath
+   *          the bundle class path entries (see {@link org.ant4eclipse.lib.core.util.ManifestHelper#getBundleClasspath})
+   * @param expansionDirectory
+   *          the directory that is used if no persistent cache directory has been configured
+   * @param name
+   *          the name of the directory within the expansion directory (e.g. <code>symbolicname_version</code>)
+   * @return the directory that contains the extracted bundle class path entries.
+   */
+  public static File expand(File location, JarFile jarFile, String[] bundleClasspath, File expansionDirectory,
+      String name) {
+    Assure.isFile("location", location);
+    Assure.notNull("jarFile", jarFile);
+    Assure.notNull("bundleClasspath", bundleClasspath);
+    Assure.notNull("expansionDirectory", expansionDirectory);
+    Assure.nonEmpty("name", name);
+
+    File destination = getDestination(location, expansionDirectory, name);
+    if (destination.isDirectory()) {
+      A4ELogging.debug("Already expanded '%s' to '%s'", location, destination);
+      return destination;
+    }
+
+    synchronized (getLock(destination)) {
+      Utilities.mkdirs(destination.getParentFile());
+      RandomAccessFile lockFile = null;
+      FileLock lock = null;
+      File tempDirectory = null;
+      try {
+        lockFile = new RandomAccessFile(new File(destination.getPath() + ".lock"), "rw");
+        lock = lockFile.getChannel().lock();
+
+        // another process might have extracted the bundle in the meantime
+        if (destination.isDirectory()) {
+          return destination;
+        }
+
+        A4ELogging.debug("Expanding '%s' to '%s'", location, destination);
+        tempDirectory = File.createTempFile(destination.getName(), ".tmp", destination.getParentFile());
+        tempDirectory.delete();
+        Utilities.mkdirs(tempDirectory);
+        extract(jarFile, bundleClasspath, tempDirectory);
+        if (!tempDirectory.renameTo(destination)) {
+          throw new IOException("Could not rename '" + tempDirectory + "' to '" + destination + "'.");
+        }
+        return destination;
+      } catch (IOException ex) {
+        throw new Ant4EclipseException(ex, CoreExceptionCode.IO_FAILURE);
+      } finally {
+        if (lock != null) {
+          try {
+            lock.release();
+          } catch (IOException ex) {
+            A4ELogging.debug("Could not release lock for '%s': %s", destination, ex.toString());
+          }
+        }
+        Utilities.close(lockFile);
+        if ((tempDirectory != null) && tempDirectory.exists()) {
+          Utilities.delete(tempDirectory);
+        }
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the destination directory for the given bundle.
+   * </p>
+   */
+  private static File getDestination(File location, File expansionDirectory, String name) {
+    File cacheDir = CacheDirectory.getCacheDir(AREA);
+    if (cacheDir == null) {
+      return new File(expansionDirectory, name);
+    }
+
+    String key = location.getAbsolutePath() + "|" + location.length() + "|" + location.lastModified();
+    String contentHash = CONTENT_HASH.get(key);
+    if (contentHash == null) {
+      try {
+        contentHash = CacheDirectory.hash(location);
+      } catch (IOException ex) {
+        throw new Ant4EclipseException(ex, CoreExceptionCode.IO_FAILURE);
+      }
+      CONTENT_HASH.put(key, contentHash);
+    }
+    return new File(cacheDir, contentHash);
+  }
+
+  /**
+   * <p>
+   * Returns the lock object for the given destination directory.
+   * </p>
+   */
+  private static Object getLock(File destination) {
+    synchronized (LOCKS) {
+      Object result = LOCKS.get(destination.getPath());
+      if (result == null) {
+        result = new Object();
+        LOCKS.put(destination.getPath(), result);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * <p>
+   * Extracts the inner jars and the contents of the class folders of the given bundle class path to the given
+   * directory. The root of the bundle (<code>.</code>) is not extracted as it can be taken from the jar file itself.
+   * </p>
+   */
+  private static void extract(JarFile jarFile, String[] bundleClasspath, File directory) throws IOException {
+
+    // collect the names of the entries and the prefixes of the folders to extract
+    Set<String> names = new HashSet<String>();
+    List<String> prefixes = new ArrayList<String>();
+    for (String entry : bundleClasspath) {
+      String name = entry.startsWith("/") ? entry.substring(1) : entry;
+      if ((name.length() == 0) || ".".equals(name)) {
+        continue;
+      }
+      JarEntry jarEntry = jarFile.getJarEntry(name);
+      if ((jarEntry != null) && !jarEntry.isDirectory()) {
+        names.add(name);
+      } else {
+        prefixes.add(name.endsWith("/") ? name : name + "/");
+      }
+    }
+
+    byte[] buffer = new byte[16384];
+    Enumeration<JarEntry> entries = jarFile.entries();
+    while (entries.hasMoreElements()) {
+      JarEntry jarEntry = entries.nextElement();
+      if (jarEntry.isDirectory() || !(names.contains(jarEntry.getName()) || startsWith(jarEntry.getName(), prefixes))) {
+        continue;
+      }
+      File destFile = new File(directory, jarEntry.getName());
+      Utilities.mkdirs(destFile.getParentFile());
+      InputStream input = null;
+      OutputStream output = null;
+      try {
+        input = jarFile.getInputStream(jarEntry);
+        output = new FileOutputStream(destFile);
+        Utilities.copy(input, output, buffer);
+      } finally {
+        Utilities.close((Closeable) input);
+        Utilities.close((Closeable) output);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given name starts with one of the given prefixes.
+   * </p>
+   */
+  private static boolean startsWith(String name, List<String> prefixes) {
+    for (String prefix : prefixes) {
+      if (name.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
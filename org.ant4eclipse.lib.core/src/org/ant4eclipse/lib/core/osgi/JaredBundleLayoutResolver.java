@@ -17,7 +17,6 @@ import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.core.util.ManifestHelper;
 import org.ant4eclipse.lib.core.util.ManifestHelper.ManifestHeaderElement;
-import org.ant4eclipse.lib.core.util.Utilities;
 
 import java.io.File;
 import java.io.IOException;
@@ -134,7 +133,8 @@ public class JaredBundleLayoutResolver implements BundleLayoutResolver {
 
   /**
    * <p>
-   * Expands the jared bundle to the expansion directory and returns all files that belongs to the bundle class path.
+   * Extracts the bundle class path entries of the jared bundle (see {@link BundleExpansionCache}) and returns all files
+   * that belongs to the bundle class path. The root of the bundle (<code>.</code>) is taken from the jar file itself.
    * </p>
    * 
    * @return all files that belongs to the bundle class path.
@@ -154,11 +154,14 @@ public class JaredBundleLayoutResolver implements BundleLayoutResolver {
 
     String version = ManifestHelper.getManifestHeader(this._manifest, ManifestHelper.BUNDLE_VERSION);
 
-    File destination = new File(this._expansionDirectory, elements[0].getValues()[0] + "_" + version);
+    // get bundle class path
+    String[] bundleClasspathEntries = ManifestHelper.getBundleClasspath(this._manifest);
 
-    // unwrap jar file
+    // extract the bundle class path entries
+    File destination;
     try {
-      Utilities.expandJarFile(this._jarFile, destination);
+      destination = BundleExpansionCache.expand(this._location, this._jarFile, bundleClasspathEntries,
+          this._expansionDirectory, elements[0].getValues()[0] + "_" + version);
     } catch (Ant4EclipseException ex) {
       if (ex.getExceptionCode() == CoreExceptionCode.IO_FAILURE) {
         // log error
@@ -173,15 +176,12 @@ public class JaredBundleLayoutResolver implements BundleLayoutResolver {
     // prepare results
     List<File> result = new LinkedList<File>();
 
-    // get bundle class path
-    String[] bundleClasspathEntries = ManifestHelper.getBundleClasspath(this._manifest);
-
     // add class path entries to the result
     for (String bundleClasspathEntrie : bundleClasspathEntries) {
 
       // add 'self'
       if (".".equals(bundleClasspathEntrie)) {
-        result.add(destination);
+        result.add(this._location);
       }
       // add entry
       else {
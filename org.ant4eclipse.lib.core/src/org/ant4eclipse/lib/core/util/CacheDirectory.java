@@ -0,0 +1,229 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.core.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+
+/**
+ * <p>
+ * Helper class to access the persistent cache directory. The cache directory is used to store data that survives the
+ * current ant4eclipse run (e.g. package indices of jar files), so it can be reused by subsequent builds.
+ * </p>
+ * <p>
+ * Persistent caching is disabled unless the system property {@link #CACHE_DIRECTORY_PROPERTY_NAME} is set.
+ * </p>
+ *
+ * @author agent
+ */
+public class CacheDirectory {
+
+  /** the name of the cache directory property **/
+  public static final String CACHE_DIRECTORY_PROPERTY_NAME = "ant4eclipse.cache.directory";
+
+  /** the hex digits used to render hash values */
+  private static final char[] HEX_DIGITS                   = "0123456789abcdef".toCharArray();
+
+  /**
+   * <p>
+   * Returns <code>true</code> if a persistent cache directory has been configured.
+   * </p>
+   *
+   * @return <code>true</code> if a persistent cache directory has been configured.
+   */
+  public static boolean isEnabled() {
+    return Utilities.cleanup(System.getProperty(CACHE_DIRECTORY_PROPERTY_NAME)) != null;
+  }
+
+  /**
+   * <p>
+   * Returns the cache directory for the given area (e.g. <code>"packageindex"</code>) or <code>null</code> if no
+   * persistent cache directory has been configured. The directory will be created if necessary.
+   * </p>
+   *
+   * @param area
+   *          the name of the cache area. Neither <code>null</code> nor empty.
+   * @return the cache directory for the given area or <code>null</code>.
+   */
+  public static synchronized File getCacheDir(String area) {
+    Assure.nonEmpty("area", area);
+
+    String cacheDirectory = Utilities.cleanup(System.getProperty(CACHE_DIRECTORY_PROPERTY_NAME));
+    if (cacheDirectory == null) {
+      return null;
+    }
+
+    File result = new File(cacheDirectory, area);
+    if (!result.isDirectory()) {
+      Utilities.mkdirs(result);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the cache file for the given key in the given area or <code>null</code> if no persistent cache directory
+   * has been configured. The file itself doesn't need to exist.
+   * </p>
+   *
+   * @param area
+   *          the name of the cache area. Neither <code>null</code> nor empty.
+   * @param key
+   *          the key of the cache entry (e.g. an absolute path). Not <code>null</code>.
+   * @return the cache file or <code>null</code>.
+   */
+  public static File getCacheFile(String area, String key) {
+    Assure.notNull("key", key);
+    File cacheDir = getCacheDir(area);
+    return cacheDir == null ? null : new File(cacheDir, hash(key));
+  }
+
+  /**
+   * <p>
+   * Writes the given content to the destination file. The content is written to a temporary file first which is
+   * renamed afterwards, so concurrent readers (possibly in other processes) never see partially written files. Failures
+   * are logged but not propagated as a cache entry can always be recomputed.
+   * </p>
+   *
+   * @param destination
+   *          the destination file. Not <code>null</code>.
+   * @param content
+   *          the content to write. Not <code>null</code>.
+   * @return <code>true</code> if the file has been written successfully.
+   */
+  public static boolean writeAtomically(File destination, byte[] content) {
+    Assure.notNull("destination", destination);
+    Assure.notNull("content", content);
+
+    File tempFile = null;
+    OutputStream output = null;
+    try {
+      tempFile = File.createTempFile(destination.getName(), ".tmp", destination.getParentFile());
+      output = new FileOutputStream(tempFile);
+      output.write(content);
+      output.close();
+      output = null;
+      if (!tempFile.renameTo(destination)) {
+        // some platforms (windows) don't allow to rename onto an existing file
+        destination.delete();
+        if (!tempFile.renameTo(destination)) {
+          A4ELogging.debug("Could not write cache file '%s'.", destination);
+          return false;
+        }
+      }
+      return true;
+    } catch (IOException ex) {
+      A4ELogging.debug("Could not write cache file '%s': %s", destination, ex.toString());
+      return false;
+    } finally {
+      Utilities.close((Closeable) output);
+      if ((tempFile != null) && tempFile.exists()) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns a hex encoded MD5 hash for the given text. The hash can be used as a file name.
+   * </p>
+   *
+   * @param text
+   *          the text to hash. Not <code>null</code>.
+   * @return a hex encoded MD5 hash for the given text.
+   */
+  public static String hash(String text) {
+    Assure.notNull("text", text);
+    try {
+      return hash(text.getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException ex) {
+      // UTF-8 is always supported
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns a hex encoded MD5 hash for the given bytes.
+   * </p>
+   *
+   * @param content
+   *          the content to hash. Not <code>null</code>.
+   * @return a hex encoded MD5 hash for the given bytes.
+   */
+  public static String hash(byte[] content) {
+    Assure.notNull("content", content);
+    try {
+      return toHex(MessageDigest.getInstance("MD5").digest(content));
+    } catch (NoSuchAlgorithmException ex) {
+      // MD5 is always supported
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns a hex encoded MD5 hash for the content of the given file. The file is read in chunks, so it doesn't need to
+   * fit into memory.
+   * </p>
+   *
+   * @param file
+   *          the file to hash. Not <code>null</code>.
+   * @return a hex encoded MD5 hash for the content of the given file.
+   * @throws IOException
+   *           if the file can't be read.
+   */
+  public static String hash(File file) throws IOException {
+    Assure.isFile("file", file);
+    InputStream input = null;
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      input = new FileInputStream(file);
+      byte[] buffer = new byte[16384];
+      int count;
+      while ((count = input.read(buffer)) != -1) {
+        digest.update(buffer, 0, count);
+      }
+      return toHex(digest.digest());
+    } catch (NoSuchAlgorithmException ex) {
+      // MD5 is always supported
+      throw new RuntimeException(ex);
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the hex representation of the given digest.
+   * </p>
+   */
+  private static String toHex(byte[] digest) {
+    char[] result = new char[digest.length * 2];
+    for (int i = 0; i < digest.length; i++) {
+      result[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0x0f];
+      result[i * 2 + 1] = HEX_DIGITS[digest[i] & 0x0f];
+    }
+    return new String(result);
+  }
+}
@@ -18,7 +18,9 @@ import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
  * 
  * @author
  * 
+ * @deprecated use the timers provided by {@link org.ant4eclipse.lib.core.metrics.Metrics} instead.
  */
+@Deprecated
 public class PerformanceLogging {
 
   private static final boolean ENABLE_PERFORMANCE_LOGGING = Boolean.getBoolean("ant4eclipse.enablePerformanceLogging");
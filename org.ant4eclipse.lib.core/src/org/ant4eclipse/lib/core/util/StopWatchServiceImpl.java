@@ -28,7 +28,7 @@ public class StopWatchServiceImpl implements StopWatchService {
     this._managedStopWatches = new Hashtable<String, StopWatch>();
   }
 
-  public StopWatch getOrCreateStopWatch(String name) {
+  public synchronized StopWatch getOrCreateStopWatch(String name) {
 
     StopWatch stopWatch = this._managedStopWatches.get(name);
     if (stopWatch == null) {
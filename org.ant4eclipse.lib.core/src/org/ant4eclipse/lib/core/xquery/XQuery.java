@@ -243,12 +243,14 @@ public class XQuery {
    *          The name of the current element.
    * @param attrs
    *          The attributes associated with this element.
+   * 
+   * @return true <=> The element has been accepted, so {@link #endVisit(int, String)} has to be called when it's left.
    */
-  void visit(int depth, String element, Attributes attrs) {
+  boolean visit(int depth, String element, Attributes attrs) {
 
     if (depth >= this._splitted.length) {
       // this element is to deep for this query
-      return;
+      return false;
     }
 
     // modify the element counters
@@ -280,10 +282,14 @@ public class XQuery {
           }
         }
 
+        return true;
+
       }
 
     }
 
+    return false;
+
   }
 
   /**
@@ -314,6 +320,36 @@ public class XQuery {
 
   }
 
+  /**
+   * Returns the number of element levels this query refers to.
+   * 
+   * @return The number of element levels this query refers to.
+   */
+  int getLength() {
+    return this._splitted.length;
+  }
+
+  /**
+   * Returns the name of the element this query refers to on the supplied level.
+   * 
+   * @param depth
+   *          The level within the XML document.
+   * 
+   * @return The name of the element or <code>*</code> if any element is accepted.
+   */
+  String getElement(int depth) {
+    return this._splitted[depth];
+  }
+
+  /**
+   * Returns true if this query waits for the text content of the current element (or a default value).
+   * 
+   * @return true <=> The query is going to collect a value when the matched element has been left.
+   */
+  boolean isMatched() {
+    return this._matched;
+  }
+
   /**
    * Prepare this query for another XML document.
    */
@@ -15,41 +15,68 @@ import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.CoreExceptionCode;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.parsers.FactoryConfigurationError;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
  * A SAX handler allowing to collect XML related data using simple queries (similar to XPath but currently not providing
  * it's complete functionality).
  * </p>
+ * <p>
+ * Before a document is parsed, the queries are compiled into a dispatch table that maps each level and element name
+ * to the queries referring to it, so an element is only passed to the queries that can be affected by it. The text
+ * content of the elements is only collected while a query is waiting for it.
+ * </p>
  * 
  * @author Daniel Kasmeroglu (daniel.kasmeroglu@kasisoft.net)
  */
 public class XQueryHandler extends DefaultHandler {
 
   /** - */
-  private StringBuffer            _buffer;
+  private StringBuilder                       _buffer;
 
   /** - */
-  private int                     _depth;
+  private int                                 _depth;
 
   /** - */
-  private Vector<XQuery>          _queries;
+  private List<XQuery>                        _queries;
+
+  private String                              _fileName;
+
+  /** the queries per level, keyed by the element name they refer to. <code>null</code> if not compiled yet. */
+  private List<Map<String, List<XQuery>>>     _queriesByElement;
+
+  /** the queries per level that accept any element */
+  private List<List<XQuery>>                  _wildcardQueries;
 
-  private String                  _fileName;
+  /** the queries that accepted the currently open element of each level */
+  private List<List<XQuery>>                  _acceptingQueries;
+
+  /** the number of queries waiting for the text content of an element */
+  private int                                 _matchedQueries;
 
   /** - */
-  private static SAXParserFactory factory;
+  private static SAXParserFactory             factory;
+
+  /** the parser of each thread that is currently not in use */
+  private static final ThreadLocal<SAXParser> PARSER = new ThreadLocal<SAXParser>();
 
   /**
    * Initialises this handler.
@@ -59,8 +86,8 @@ public class XQueryHandler extends DefaultHandler {
    */
   public XQueryHandler(String fileName) {
     super();
-    this._buffer = new StringBuffer();
-    this._queries = new Vector<XQuery>();
+    this._buffer = new StringBuilder();
+    this._queries = new ArrayList<XQuery>();
     this._depth = 0;
     this._fileName = fileName;
   }
@@ -83,22 +110,57 @@ public class XQueryHandler extends DefaultHandler {
   public XQuery createQuery(String query) {
     XQuery result = new XQuery(this._fileName, query);
     this._queries.add(result);
+    this._queriesByElement = null;
     return result;
   }
 
+  /**
+   * Compiles the queries into the dispatch table.
+   */
+  private void compile() {
+    this._queriesByElement = new ArrayList<Map<String, List<XQuery>>>();
+    this._wildcardQueries = new ArrayList<List<XQuery>>();
+    this._acceptingQueries = new ArrayList<List<XQuery>>();
+    for (XQuery query : this._queries) {
+      for (int depth = 0; depth < query.getLength(); depth++) {
+        if (depth == this._queriesByElement.size()) {
+          this._queriesByElement.add(new HashMap<String, List<XQuery>>());
+          this._wildcardQueries.add(new ArrayList<XQuery>());
+          this._acceptingQueries.add(new ArrayList<XQuery>());
+        }
+        String element = query.getElement(depth);
+        if ("*".equals(element)) {
+          this._wildcardQueries.get(depth).add(query);
+        } else {
+          List<XQuery> queries = this._queriesByElement.get(depth).get(element);
+          if (queries == null) {
+            queries = new ArrayList<XQuery>();
+            this._queriesByElement.get(depth).put(element, queries);
+          }
+          queries.add(query);
+        }
+      }
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public void startDocument() throws SAXException {
+    if (this._queriesByElement == null) {
+      compile();
+    }
     this._depth = 0;
+    this._matchedQueries = 0;
     for (int i = 0; i < this._queries.size(); i++) {
       XQuery query = this._queries.get(i);
       query.reset();
     }
-    if (this._buffer.length() > 0) {
-      this._buffer.delete(0, this._buffer.length());
+    for (List<XQuery> queries : this._acceptingQueries) {
+      queries.clear();
     }
+    this._buffer.setLength(0);
   }
 
   /**
@@ -107,15 +169,44 @@ public class XQueryHandler extends DefaultHandler {
   @Override
   public void startElement(String uri, String localname, String qname, Attributes attributes) throws SAXException {
 
-    for (int i = 0; i < this._queries.size(); i++) {
-      XQuery query = this._queries.get(i);
-      query.visit(this._depth, qname, attributes);
+    if (this._depth < this._queriesByElement.size()) {
+      List<XQuery> queries = this._queriesByElement.get(this._depth).get(qname);
+      if (queries != null) {
+        visit(queries, qname, attributes);
+      }
+      visit(this._wildcardQueries.get(this._depth), qname, attributes);
     }
 
     this._depth++;
 
   }
 
+  /**
+   * Passes the current element to the supplied queries.
+   * 
+   * @param queries
+   *          The queries that refer to the current element.
+   * @param qname
+   *          The name of the current element.
+   * @param attributes
+   *          The attributes of the current element.
+   */
+  private void visit(List<XQuery> queries, String qname, Attributes attributes) {
+    for (int i = 0; i < queries.size(); i++) {
+      XQuery query = queries.get(i);
+      boolean matched = query.isMatched();
+      if (query.visit(this._depth, qname, attributes)) {
+        // the query has to be notified when the element is left
+        this._acceptingQueries.get(this._depth).add(query);
+      }
+      if (!matched && query.isMatched()) {
+        // the content of the element starts here, the text of the parent isn't part of it
+        this._matchedQueries++;
+        this._buffer.setLength(0);
+      }
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -124,15 +215,24 @@ public class XQueryHandler extends DefaultHandler {
 
     this._depth--;
 
-    String str = this._buffer.toString().trim();
-    for (int i = 0; i < this._queries.size(); i++) {
-      XQuery query = this._queries.get(i);
-      query.endVisit(this._depth, str);
+    if (this._depth < this._acceptingQueries.size()) {
+      List<XQuery> queries = this._acceptingQueries.get(this._depth);
+      String str = null;
+      for (int i = 0; i < queries.size(); i++) {
+        XQuery query = queries.get(i);
+        boolean matched = query.isMatched();
+        if (matched && (str == null)) {
+          str = this._buffer.toString().trim();
+        }
+        query.endVisit(this._depth, str);
+        if (matched && !query.isMatched()) {
+          this._matchedQueries--;
+        }
+      }
+      queries.clear();
     }
 
-    if (this._buffer.length() > 0) {
-      this._buffer.delete(0, this._buffer.length());
-    }
+    this._buffer.setLength(0);
 
   }
 
@@ -141,7 +241,9 @@ public class XQueryHandler extends DefaultHandler {
    */
   @Override
   public void characters(char[] ch, int start, int length) throws SAXException {
-    this._buffer.append(ch, start, length);
+    if (this._matchedQueries > 0) {
+      this._buffer.append(ch, start, length);
+    }
   }
 
   /**
@@ -155,12 +257,15 @@ public class XQueryHandler extends DefaultHandler {
   public static void queryFile(File xmlfile, XQueryHandler handler) {
     Assure.isFile("xmlfile", xmlfile);
     Assure.notNull("handler", handler);
+    InputStream inputStream = null;
     try {
-      SAXParserFactory factory = getSAXParserFactory();
-      factory.newSAXParser().parse(new FileInputStream(xmlfile), handler);
+      inputStream = new FileInputStream(xmlfile);
+      parse(inputStream, handler);
     } catch (Exception ex) {
       A4ELogging.error(ex.getMessage());
       throw (new Ant4EclipseException(ex, CoreExceptionCode.X_QUERY_PARSE_EXCEPTION));
+    } finally {
+      Utilities.close((Closeable) inputStream);
     }
   }
 
@@ -176,22 +281,47 @@ public class XQueryHandler extends DefaultHandler {
     Assure.notNull("inputStream", inputStream);
     Assure.notNull("handler", handler);
     try {
-      SAXParserFactory factory = getSAXParserFactory();
-      factory.newSAXParser().parse(inputStream, handler);
+      parse(inputStream, handler);
     } catch (Exception ex) {
       A4ELogging.error(ex.getMessage());
       throw (new Ant4EclipseException(ex, CoreExceptionCode.X_QUERY_PARSE_EXCEPTION));
     }
   }
 
-  private static SAXParserFactory getSAXParserFactory() throws FactoryConfigurationError {
+  /**
+   * Parses the supplied inputstream using the parser of the current thread. The parser is reset and handed back after
+   * the parsing, so nested invocations (and invocations after a failure) get a parser of their own.
+   * 
+   * @param inputStream
+   *          The XML inputstream that shall be parsed.
+   * @param handler
+   *          The handler which provides all queries.
+   */
+  private static void parse(InputStream inputStream, XQueryHandler handler) throws Exception {
+    SAXParser parser = PARSER.get();
+    if (parser == null) {
+      parser = newSAXParser();
+    } else {
+      PARSER.set(null);
+    }
+    parser.parse(inputStream, handler);
+    parser.reset();
+    PARSER.set(parser);
+  }
+
+  /**
+   * Creates a new parser. The shared factory isn't thread safe, so the access is synchronized (the parsers are used
+   * concurrently, e.g. while the projects of a workspace are read in parallel).
+   */
+  private static synchronized SAXParser newSAXParser() throws FactoryConfigurationError, ParserConfigurationException,
+      SAXException {
 
     if (factory == null) {
       factory = SAXParserFactory.newInstance();
       // factory.setFeature("http://xml.org/sax/features/string-interning", true);
       factory.setValidating(false);
     }
-    return factory;
+    return factory.newSAXParser();
   }
 
 } /* ENDCLASS */
@@ -46,6 +46,19 @@ public interface ClassFileLoader {
    */
   boolean hasPackage(String packageName);
 
+  /**
+   * <p>
+   * This method returns <code>true</code> if {@link ClassFileLoader} has a package with the name (regardless of any
+   * visibility restrictions). Implementations must not create any objects to answer this request, as it is issued
+   * very frequently by the compiler.
+   * </p>
+   * 
+   * @param packageName
+   *          the name of the package. The instance may be reused by the caller, so it must not be stored.
+   * @return <code>true</code> if the package is available via this {@link ClassFileLoader}
+   */
+  boolean hasPackage(CompoundName packageName);
+
   /**
    * <p>
    * Returns an instance of type {@link ClassFile} that represents the specified class or <code>null</code> if no such
@@ -59,6 +72,23 @@ public interface ClassFileLoader {
    */
   ClassFile loadClass(ClassName className);
 
+  /**
+   * <p>
+   * Returns an instance of type {@link ClassFile} that represents the specified class or <code>null</code> if no such
+   * class can be found. Implementations must not create any objects if the package isn't provided by this
+   * {@link ClassFileLoader}.
+   * </p>
+   * 
+   * @param packageName
+   *          the name of the package that contains the class. The instance may be reused by the caller, so it must not
+   *          be stored.
+   * @param typeName
+   *          the simple name of the class.
+   * @return an instance of type {@link ClassFile} that represents the specified class or <code>null</code> if the class
+   *         is not available.
+   */
+  ClassFile loadClass(CompoundName packageName, char[] typeName);
+
   /**
    * <p>
    * Returns an instance of type {@link SourceFile} that is the source file for the specified class or <code>null</code>
@@ -72,6 +102,23 @@ public interface ClassFileLoader {
    */
   ReferableSourceFile loadSource(ClassName className);
 
+  /**
+   * <p>
+   * Returns an instance of type {@link SourceFile} that is the source file for the specified class or <code>null</code>
+   * if no such source can be found. Implementations must not create any objects if the package isn't provided by this
+   * {@link ClassFileLoader}.
+   * </p>
+   * 
+   * @param packageName
+   *          the name of the package that contains the class. The instance may be reused by the caller, so it must not
+   *          be stored.
+   * @param typeName
+   *          the simple name of the class.
+   * @return an instance of type {@link SourceFile} that is the source file for the specified class or <code>null</code>
+   *         if no such source can be found.
+   */
+  ReferableSourceFile loadSource(CompoundName packageName, char[] typeName);
+
   /**
    * Returns a list of File entries describing classpath entries associated with this ClassFileLoader instance. Please
    * note that the list may not be complete if the implementation of this interface provides a class from an unknown
@@ -12,9 +12,15 @@
 package org.ant4eclipse.lib.jdt.ecj;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
-import org.ant4eclipse.lib.core.util.PerformanceLogging;
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.metrics.Counter;
+import org.ant4eclipse.lib.core.metrics.Metrics;
+import org.ant4eclipse.lib.core.metrics.Timer;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.BootClassFileLoaderImpl;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCache;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClasspathClassFileLoaderImpl;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.CompoundClassFileLoaderImpl;
@@ -28,6 +34,24 @@ import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.FilteringClassFileLoade
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
 public class ClassFileLoaderFactory {
+
+  /** the time spent to create (or look up) class path class file loaders */
+  private static final Timer   CREATE_CLASSPATH_LOADER = Metrics.timer("ecj.classFileLoader.createClasspath");
+
+  /** the time spent to create compound class file loaders */
+  private static final Timer   CREATE_COMPOUND_LOADER  = Metrics.timer("ecj.classFileLoader.createCompound");
+
+  /** the time spent to create filtering class file loaders */
+  private static final Timer   CREATE_FILTERING_LOADER = Metrics.timer("ecj.classFileLoader.createFiltering");
+
+  /** the time spent to create (or look up) boot class file loaders */
+  private static final Timer   CREATE_BOOT_LOADER      = Metrics.timer("ecj.classFileLoader.createBoot");
+
+  /** the number of class path class file loaders that have been created (i.e. that couldn't be taken from the cache) */
+  private static final Counter CLASSPATH_LOADERS       = Metrics.counter("ecj.classFileLoader.created");
+
+  /** the number of boot class file loaders that have been created (i.e. that couldn't be taken from the cache) */
+  private static final Counter BOOT_LOADERS            = Metrics.counter("ecj.classFileLoader.bootCreated");
 
   // /**
   // * <p>
@@ -70,8 +94,7 @@ public class ClassFileLoaderFactory {
    */
   public static ClassFileLoader createClasspathClassFileLoader(File source, byte type, File[] classpathEntries,
       File[] sourcepathEntries) {
-    PerformanceLogging.start(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-mitSourcePath");
-    PerformanceLogging.start(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-mitSourcePath-" + source);
+    long start = CREATE_CLASSPATH_LOADER.start();
     try {
       ClassFileLoaderCacheKey cacheKey = new ClassFileLoaderCacheKey(source, type, classpathEntries, sourcepathEntries);
 
@@ -80,17 +103,66 @@ public class ClassFileLoaderFactory {
       if (classFileLoader == null) {
         // Create new ClassFileLoader
         classFileLoader = new ClasspathClassFileLoaderImpl(source, type, classpathEntries, sourcepathEntries);
+        CLASSPATH_LOADERS.increment();
 
-        // add ClassFileLoader to Cache
-        ClassFileLoaderCache.getInstance().storeClassFileLoader(cacheKey, classFileLoader);
+        // add ClassFileLoader to Cache (another thread might have been faster)
+        classFileLoader = ClassFileLoaderCache.getInstance().storeClassFileLoader(cacheKey, classFileLoader);
   }
 
       // Return the ClassFileLoader
       return classFileLoader;
     } finally {
-      // Stop performance logging
-      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-mitSourcePath");
-      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-mitSourcePath-" + source);
+      CREATE_CLASSPATH_LOADER.stop(start);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the boot class file loader for the given libraries of a java runtime. The returned class file loader is
+   * created once and shared by all compilations that use the same libraries with the same access restrictions. The
+   * class files contained in the libraries are indexed when the class file loader is created.
+   * </p>
+   * 
+   * @param libraries
+   *          the libraries of the java runtime (libraries that don't exist are ignored)
+   * @param accessRestrictions
+   *          the access restrictions for the boot class path, may be <code>null</code>
+   * @return the (shared) boot class file loader.
+   */
+  public static ClassFileLoader createBootClassFileLoader(File[] libraries, String accessRestrictions) {
+    Assure.notNull("libraries", libraries);
+
+    long start = CREATE_BOOT_LOADER.start();
+    try {
+      BootClassFileLoaderCacheKey cacheKey = new BootClassFileLoaderCacheKey(libraries, accessRestrictions);
+
+      // Try to get the shared boot ClassFileLoader
+      ClassFileLoaderCache classFileLoaderCache = ClassFileLoaderCache.getInstance();
+      ClassFileLoader classFileLoader = classFileLoaderCache.getBootClassFileLoader(cacheKey);
+      if (classFileLoader == null) {
+
+        // Create new ClassFileLoaders for each existing library
+        List<ClassFileLoader> classFileLoaders = new ArrayList<ClassFileLoader>(libraries.length);
+        for (File library : libraries) {
+          if (library.exists()) {
+            classFileLoaders.add(new BootClassFileLoaderImpl(library, EcjAdapter.LIBRARY));
+          }
+        }
+        classFileLoader = createCompoundClassFileLoader(classFileLoaders.toArray(new ClassFileLoader[classFileLoaders
+            .size()]));
+        if (accessRestrictions != null) {
+          classFileLoader = createFilteringClassFileLoader(classFileLoader, accessRestrictions);
+        }
+        BOOT_LOADERS.increment();
+
+        // add ClassFileLoader to Cache (another thread might have been faster)
+        classFileLoader = classFileLoaderCache.storeBootClassFileLoader(cacheKey, classFileLoader);
+      }
+
+      // Return the ClassFileLoader
+      return classFileLoader;
+    } finally {
+      CREATE_BOOT_LOADER.stop(start);
     }
   }
 
@@ -162,6 +234,54 @@ public class ClassFileLoaderFactory {
 
   }
 
+  private static class BootClassFileLoaderCacheKey {
+    private final File[] _libraries;
+
+    private final String _accessRestrictions;
+
+    public BootClassFileLoaderCacheKey(File[] libraries, String accessRestrictions) {
+      this._libraries = libraries.clone();
+      this._accessRestrictions = accessRestrictions;
+    }
+
+    @Override
+    public int hashCode() {
+      final int prime = 31;
+      int result = 1;
+      result = prime * result + Arrays.hashCode(this._libraries);
+      result = prime * result + ((this._accessRestrictions == null) ? 0 : this._accessRestrictions.hashCode());
+      return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null) {
+        return false;
+      }
+      if (getClass() != obj.getClass()) {
+        return false;
+      }
+      BootClassFileLoaderCacheKey other = (BootClassFileLoaderCacheKey) obj;
+      if (!Arrays.equals(this._libraries, other._libraries)) {
+        return false;
+      }
+      if (this._accessRestrictions == null) {
+        return other._accessRestrictions == null;
+      }
+      return this._accessRestrictions.equals(other._accessRestrictions);
+    }
+
+    @Override
+    public String toString() {
+      return "BootClassFileLoaderCacheKey [_libraries=" + Arrays.toString(this._libraries) + ", _accessRestrictions="
+          + this._accessRestrictions + "]";
+    }
+
+  }
+
   // /**
   // * <p>
   // * </p>
@@ -199,8 +319,7 @@ public class ClassFileLoaderFactory {
    * @return a new instance of type {@link ClassFileLoader}.
    */
   public static ClassFileLoader createClasspathClassFileLoader(File entry, byte type) {
-    PerformanceLogging.start(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-ohneAlles");
-    PerformanceLogging.start(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-ohneAlles-" + entry);
+    long start = CREATE_CLASSPATH_LOADER.start();
     try {
       String cacheKey = String.valueOf(entry) + "/" + type;
       // Try to get ClassFileLoader from cache
@@ -208,15 +327,15 @@ public class ClassFileLoaderFactory {
       if (classFileLoader == null) {
         // Create new ClassFileLoader
         classFileLoader = new ClasspathClassFileLoaderImpl(entry, type);
+        CLASSPATH_LOADERS.increment();
 
-        // add to cache
-        ClassFileLoaderCache.getInstance().storeClassFileLoader(cacheKey, classFileLoader);
+        // add to cache (another thread might have been faster)
+        classFileLoader = ClassFileLoaderCache.getInstance().storeClassFileLoader(cacheKey, classFileLoader);
       }
 
       return classFileLoader;
     } finally {
-      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-ohneAlles");
-      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createClasspathClassFileLoader-ohneAlles-" + entry);
+      CREATE_CLASSPATH_LOADER.stop(start);
     }
   }
 
@@ -232,11 +351,11 @@ public class ClassFileLoaderFactory {
    *         loaders.
    */
   public static ClassFileLoader createCompoundClassFileLoader(ClassFileLoader[] classFileLoaders) {
-    PerformanceLogging.start(ClassFileLoaderFactory.class, "createCompoundClassFileLoader");
+    long start = CREATE_COMPOUND_LOADER.start();
     try {
-    return new CompoundClassFileLoaderImpl(classFileLoaders);
+      return new CompoundClassFileLoaderImpl(classFileLoaders);
     } finally {
-      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createCompoundClassFileLoader");
+      CREATE_COMPOUND_LOADER.stop(start);
     }
   }
 
@@ -253,11 +372,11 @@ public class ClassFileLoaderFactory {
    * @return the class file loader
    */
   public static ClassFileLoader createFilteringClassFileLoader(ClassFileLoader classFileLoader, String filter) {
-    PerformanceLogging.start(ClassFileLoaderFactory.class, "createFilteringClassFileLoader");
+    long start = CREATE_FILTERING_LOADER.start();
     try {
-    return new FilteringClassFileLoader(classFileLoader, filter);
+      return new FilteringClassFileLoader(classFileLoader, filter);
     } finally {
-      PerformanceLogging.stop(ClassFileLoaderFactory.class, "createFilteringClassFileLoader");
+      CREATE_FILTERING_LOADER.stop(start);
     }
   }
 
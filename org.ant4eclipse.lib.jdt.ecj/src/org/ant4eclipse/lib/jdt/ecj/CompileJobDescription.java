@@ -11,6 +11,7 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.ecj;
 
+import java.io.File;
 import java.util.Map;
 
 /**
@@ -50,4 +51,26 @@ public interface CompileJobDescription {
    *         compilation process.
    */
   ClassFileLoader getClassFileLoader();
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the {@link DependencyInfo DependencyInfos} of the compiled source files should be
+   * reported in the {@link CompileJobResult}.
+   * </p>
+   * 
+   * @return <code>true</code> if the {@link DependencyInfo DependencyInfos} of the compiled source files should be
+   *         reported.
+   */
+  boolean isCollectDependencyInfos();
+
+  /**
+   * <p>
+   * Returns a folder that receives a copy of all compiled class files in addition to the destination folders of the
+   * source files (e.g. the destination directory of the javac task). The class files are only copied if the
+   * compilation has been successful.
+   * </p>
+   * 
+   * @return a folder that receives a copy of all compiled class files, may be <code>null</code>.
+   */
+  File getAdditionalDestinationFolder();
 }
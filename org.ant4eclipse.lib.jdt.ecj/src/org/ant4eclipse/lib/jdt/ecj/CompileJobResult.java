@@ -50,4 +50,12 @@ public interface CompileJobResult {
    */
   Map<String, File> getCompiledClassFiles();
 
+  /**
+   * Returns the {@link DependencyInfo DependencyInfos} of the successfully compiled source files, keyed by the source
+   * file. The map is only filled if the {@link CompileJobDescription} requested the dependency infos.
+   * 
+   * @return the {@link DependencyInfo DependencyInfos} of the compiled source files. Not <code>null</code>.
+   */
+  Map<File, DependencyInfo> getDependencyInfos();
+
 }
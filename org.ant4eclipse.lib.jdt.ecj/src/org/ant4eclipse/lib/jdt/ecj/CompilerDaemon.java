@@ -0,0 +1,389 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import org.ant4eclipse.lib.core.DefaultConfigurator;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.EcjAdapterImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon.CompileJobCodec;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ * A long running process that compiles {@link CompileJobDescription CompileJobDescriptions} on behalf of ant4eclipse
+ * builds running on the same machine. The compiler daemon keeps its class file loaders, open jar files and parsed
+ * binary types between the compilations, so subsequent builds don't have to read the (boot) class path again.
+ * </p>
+ * <p>
+ * Cached entries for jar files are discarded as soon as the size or the modification time of the jar file changes.
+ * Class file loaders for directories are always recreated.
+ * </p>
+ * <p>
+ * The compiler daemon is started with <code>java org.ant4eclipse.lib.jdt.ecj.CompilerDaemon [port]</code> and stopped
+ * with <code>java org.ant4eclipse.lib.jdt.ecj.CompilerDaemon stop [port]</code>. An ant4eclipse build uses the
+ * compiler daemon if the system property <code>ant4eclipse.compilerDaemonPort</code> is set. If the compiler daemon
+ * can't be reached, the build compiles locally. The compiler daemon only accepts connections from the local machine.
+ * </p>
+ * <p>
+ * On startup the compiler daemon generates a random secret and stores it in a file that is only accessible by its
+ * owner (<code>~/.ant4eclipse/compilerDaemon-[port].secret</code> unless the system property
+ * <code>ant4eclipse.compilerDaemonSecretFile</code> is set). Every request has to start with this secret, so only
+ * processes of the same user can use the compiler daemon. Requests with a wrong or missing secret are rejected.
+ * </p>
+ *
+ * @author agent
+ */
+public class CompilerDaemon {
+
+  /** the name of the system property that specifies the port of the compiler daemon */
+  public static final String PORT_PROPERTY_NAME        = "ant4eclipse.compilerDaemonPort";
+
+  /** the name of the system property that specifies the file containing the secret of the compiler daemon */
+  public static final String SECRET_FILE_PROPERTY_NAME = "ant4eclipse.compilerDaemonSecretFile";
+
+  /** the default port */
+  public static final int    DEFAULT_PORT              = 21417;
+
+  /** the timeout (in milliseconds) for reading a request */
+  private static final int   REQUEST_TIMEOUT           = 60000;
+
+  /** the number of random bytes of the secret */
+  private static final int   SECRET_LENGTH             = 32;
+
+  /** the port */
+  private int                _port;
+
+  /** the secret that has to be sent with every request, <code>null</code> if the compiler daemon is not running */
+  private String             _secret;
+
+  /** the server socket, <code>null</code> if the compiler daemon is not running */
+  private ServerSocket       _serverSocket;
+
+  /** the executor that processes the requests */
+  private ExecutorService    _executor;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompilerDaemon}.
+   * </p>
+   *
+   * @param port
+   *          the port to listen on
+   */
+  public CompilerDaemon(int port) {
+    this._port = port;
+  }
+
+  /**
+   * <p>
+   * Accepts and processes requests until the compiler daemon is {@link #stop() stopped}. Each request is processed on
+   * its own thread, so builds that compile several projects in parallel are served concurrently.
+   * </p>
+   *
+   * @throws IOException
+   *           if the server socket couldn't be created
+   */
+  public void run() throws IOException {
+    this._serverSocket = new ServerSocket();
+    this._serverSocket.bind(new InetSocketAddress(InetAddress.getByName(null), this._port));
+
+    // the secret is created after the port has been bound, so the secret of another daemon is never overwritten
+    File secretFile = getSecretFile(this._port);
+    try {
+      this._secret = createSecret(secretFile);
+    } catch (IOException ex) {
+      this._serverSocket.close();
+      throw ex;
+    }
+    this._executor = Executors.newCachedThreadPool();
+    A4ELogging.info("Compiler daemon is listening on port %d.", Integer.valueOf(this._port));
+    try {
+      while (!this._serverSocket.isClosed()) {
+        final Socket socket;
+        try {
+          socket = this._serverSocket.accept();
+        } catch (SocketException ex) {
+          // the server socket has been closed
+          break;
+        }
+        this._executor.execute(new Runnable() {
+          public void run() {
+            processRequest(socket);
+          }
+        });
+      }
+    } finally {
+      this._executor.shutdown();
+      if (!secretFile.delete()) {
+        A4ELogging.warn("Could not delete secret file '%s'.", secretFile);
+      }
+      A4ELogging.info("Compiler daemon on port %d has been stopped.", Integer.valueOf(this._port));
+    }
+  }
+
+  /**
+   * <p>
+   * Stops the compiler daemon. Requests that are currently processed are completed.
+   * </p>
+   */
+  public void stop() {
+    if (this._serverSocket != null) {
+      try {
+        this._serverSocket.close();
+      } catch (IOException ex) {
+        // nothing to do here...
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Processes a single request.
+   * </p>
+   *
+   * @param socket
+   *          the socket of the request
+   */
+  private void processRequest(Socket socket) {
+    try {
+      socket.setSoTimeout(REQUEST_TIMEOUT);
+      DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+      int version = input.readInt();
+      if (version != CompileJobCodec.VERSION) {
+        output.writeByte(CompileJobCodec.ERROR);
+        output.writeUTF("Unsupported protocol version " + version);
+      } else if (!MessageDigest.isEqual(this._secret.getBytes("UTF-8"), input.readUTF().getBytes("UTF-8"))) {
+        A4ELogging.warn("Rejected request from %s with an invalid secret.", socket.getRemoteSocketAddress());
+        output.writeByte(CompileJobCodec.ERROR);
+        output.writeUTF("Invalid secret");
+      } else {
+        byte request = input.readByte();
+        if (request == CompileJobCodec.SHUTDOWN) {
+          output.writeByte(CompileJobCodec.OK);
+          stop();
+        } else {
+          compile(input, output);
+        }
+      }
+      output.flush();
+    } catch (IOException ex) {
+      A4ELogging.warn("Could not process request: %s", ex.toString());
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException ex) {
+        // nothing to do here...
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Reads a compile job, compiles it and writes the result.
+   * </p>
+   */
+  private void compile(DataInputStream input, DataOutputStream output) throws IOException {
+    CompileJobResult result = null;
+    String failure = null;
+    try {
+      // discard the cached entries for modified jar files before the class file loaders are looked up
+      ClassFileLoaderCache.getInstance().invalidateModifiedEntries();
+      CompileJobDescription description = CompileJobCodec.readDescription(input);
+      long start = System.currentTimeMillis();
+      result = new EcjAdapterImpl().compile(description);
+      A4ELogging.info("Compiled %d source files in %d ms.", Integer.valueOf(description.getSourceFiles().length), Long
+          .valueOf(System.currentTimeMillis() - start));
+    } catch (RuntimeException ex) {
+      A4ELogging.error("Compilation failed: %s", ex.toString());
+      failure = ex.toString();
+    }
+    if (result != null) {
+      output.writeByte(CompileJobCodec.OK);
+      CompileJobCodec.writeResult(output, result);
+    } else {
+      output.writeByte(CompileJobCodec.ERROR);
+      output.writeUTF(failure);
+    }
+  }
+
+  /**
+   * <p>
+   * Sends a shutdown request to the compiler daemon listening on the given port.
+   * </p>
+   *
+   * @param port
+   *          the port of the compiler daemon
+   * @throws IOException
+   *           if the compiler daemon couldn't be reached
+   */
+  public static void shutdown(int port) throws IOException {
+    String secret = readSecret(port);
+    Socket socket = new Socket(InetAddress.getByName(null), port);
+    try {
+      DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+      output.writeInt(CompileJobCodec.VERSION);
+      output.writeUTF(secret);
+      output.writeByte(CompileJobCodec.SHUTDOWN);
+      output.flush();
+      DataInputStream input = new DataInputStream(socket.getInputStream());
+      if (input.readByte() != CompileJobCodec.OK) {
+        throw new IOException(input.readUTF());
+      }
+    } finally {
+      socket.close();
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the file that contains the secret of the compiler daemon listening on the given port.
+   * </p>
+   *
+   * @param port
+   *          the port of the compiler daemon
+   * @return the file that contains the secret of the compiler daemon.
+   */
+  public static File getSecretFile(int port) {
+    String secretFile = System.getProperty(SECRET_FILE_PROPERTY_NAME);
+    if (secretFile != null) {
+      return new File(secretFile);
+    }
+    return new File(new File(System.getProperty("user.home"), ".ant4eclipse"), "compilerDaemon-" + port + ".secret");
+  }
+
+  /**
+   * <p>
+   * Reads the secret of the compiler daemon listening on the given port.
+   * </p>
+   *
+   * @param port
+   *          the port of the compiler daemon
+   * @return the secret of the compiler daemon.
+   * @throws IOException
+   *           if the secret file doesn't exist
+   */
+  public static String readSecret(int port) throws IOException {
+    File secretFile = getSecretFile(port);
+    if (!secretFile.isFile()) {
+      throw new IOException("The secret file '" + secretFile + "' doesn't exist.");
+    }
+    return Utilities.readTextContent(secretFile, "UTF-8", false).toString().trim();
+  }
+
+  /**
+   * <p>
+   * Creates a new random secret and stores it in the given file, which is made accessible for its owner only before
+   * the secret is written.
+   * </p>
+   */
+  private static String createSecret(File secretFile) throws IOException {
+    byte[] bytes = new byte[SECRET_LENGTH];
+    new SecureRandom().nextBytes(bytes);
+    StringBuilder builder = new StringBuilder();
+    for (byte b : bytes) {
+      builder.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+    }
+    String result = builder.toString();
+
+    File directory = secretFile.getAbsoluteFile().getParentFile();
+    if (!directory.isDirectory()) {
+      Utilities.mkdirs(directory);
+      restrictToOwner(directory);
+    }
+    if (secretFile.exists() && !secretFile.delete()) {
+      throw new IOException("Could not delete the secret file '" + secretFile + "'.");
+    }
+    if (!secretFile.createNewFile()) {
+      throw new IOException("Could not create the secret file '" + secretFile + "'.");
+    }
+    restrictToOwner(secretFile);
+    Utilities.writeFile(secretFile, result.getBytes("UTF-8"));
+    return result;
+  }
+
+  /**
+   * <p>
+   * Makes the given file accessible for its owner only. The methods of {@link File} that change the permissions are
+   * invoked reflectively as they are not available on Java 5. On Windows the permissions of other users can't be
+   * revoked this way; there the secret relies on the access rights of the user's home directory.
+   * </p>
+   */
+  private static void restrictToOwner(File file) throws IOException {
+    boolean posix = File.separatorChar == '/';
+    try {
+      for (String name : new String[] { "setReadable", "setWritable", "setExecutable" }) {
+        Method method = File.class.getMethod(name, boolean.class, boolean.class);
+        boolean revoked = ((Boolean) method.invoke(file, Boolean.FALSE, Boolean.FALSE)).booleanValue();
+        if (!revoked && posix) {
+          throw new IOException("Could not restrict the access to '" + file + "'.");
+        }
+        if (!"setExecutable".equals(name) || file.isDirectory()) {
+          method.invoke(file, Boolean.TRUE, Boolean.TRUE);
+        }
+      }
+    } catch (NoSuchMethodException ex) {
+      throw new IOException("Could not restrict the access to '" + file + "': " + ex.toString());
+    } catch (IllegalAccessException ex) {
+      throw new IOException("Could not restrict the access to '" + file + "': " + ex.toString());
+    } catch (InvocationTargetException ex) {
+      throw new IOException("Could not restrict the access to '" + file + "': " + ex.getCause());
+    }
+  }
+
+  /**
+   * <p>
+   * Starts (or stops) the compiler daemon.
+   * </p>
+   *
+   * @param args
+   *          <code>[port]</code> to start the compiler daemon, <code>stop [port]</code> to stop it.
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    boolean stop = (args.length > 0) && "stop".equals(args[0]);
+    int portIndex = stop ? 1 : 0;
+    int port = args.length > portIndex ? Integer.parseInt(args[portIndex]) : DEFAULT_PORT;
+
+    if (stop) {
+      shutdown(port);
+      return;
+    }
+
+    // the caches are enabled before they are created, so they are kept between the compilations
+    System.setProperty("ant4eclipse.enableClassFileLoaderCache", "true");
+    System.setProperty("ant4eclipse.cacheBinaryTypes", "true");
+    DefaultConfigurator.configureAnt4Eclipse();
+
+    new CompilerDaemon(port).run();
+  }
+}
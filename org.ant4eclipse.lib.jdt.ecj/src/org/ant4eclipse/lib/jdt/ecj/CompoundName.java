@@ -0,0 +1,312 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * A dotted name (e.g. a package name like <code>java.lang</code>) that is represented as a view on the
+ * <code>char</code> arrays used by the eclipse java compiler. The name consists of the first <code>length</code>
+ * elements of a <code>char[][]</code> optionally followed by a last segment, so the segments that the compiler passes
+ * in can be used without copying them.
+ * </p>
+ * <p>
+ * Two {@link CompoundName CompoundNames} are equal if they consist of the same segments, regardless of how these
+ * segments are split between the array and the last segment. Therefore a {@link CompoundName} can be used to look up
+ * maps that are keyed by {@link CompoundName CompoundNames} which have been created with
+ * {@link #fromQualifiedName(String)}.
+ * </p>
+ * <p>
+ * To avoid allocations on lookups a single instance can be reused as a lookup key by calling
+ * {@link #set(char[][], int, char[])}. Instances that are used as keys of a map must not be modified.
+ * </p>
+ *
+ * @author agent
+ */
+public final class CompoundName {
+
+  /** - */
+  private static final char[][] NO_SEGMENTS = new char[0][];
+
+  /** the leading segments (only the first <code>_length</code> elements are used) */
+  private char[][]              _segments;
+
+  /** the number of leading segments */
+  private int                   _length;
+
+  /** the last segment, may be <code>null</code> */
+  private char[]                _last;
+
+  /** the hash code */
+  private int                   _hashCode;
+
+  /**
+   * <p>
+   * Creates a new, empty instance of type {@link CompoundName}. Use {@link #set(char[][], int, char[])} to assign the
+   * segments.
+   * </p>
+   */
+  public CompoundName() {
+    set(NO_SEGMENTS, 0, null);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompoundName}.
+   * </p>
+   *
+   * @param segments
+   *          the leading segments. May be <code>null</code> if <code>length</code> is 0.
+   * @param length
+   *          the number of leading segments to use.
+   * @param last
+   *          the last segment. May be <code>null</code>.
+   */
+  public CompoundName(char[][] segments, int length, char[] last) {
+    set(segments, length, last);
+  }
+
+  /**
+   * <p>
+   * Creates a new {@link CompoundName} for the given dotted name (e.g. <code>java.lang</code>). The empty string
+   * results in a {@link CompoundName} without any segments.
+   * </p>
+   *
+   * @param qualifiedName
+   *          the dotted name. Not <code>null</code>.
+   * @return a new {@link CompoundName} for the given dotted name.
+   */
+  public static CompoundName fromQualifiedName(String qualifiedName) {
+    Assure.notNull("qualifiedName", qualifiedName);
+
+    if (qualifiedName.length() == 0) {
+      return new CompoundName();
+    }
+
+    String[] parts = qualifiedName.split("\\.");
+    char[][] segments = new char[parts.length][];
+    for (int i = 0; i < parts.length; i++) {
+      segments[i] = parts[i].toCharArray();
+    }
+    return new CompoundName(segments, segments.length, null);
+  }
+
+  /**
+   * <p>
+   * Assigns new segments to this {@link CompoundName}. This method must only be used for instances that serve as
+   * lookup keys.
+   * </p>
+   *
+   * @param segments
+   *          the leading segments. May be <code>null</code> if <code>length</code> is 0.
+   * @param length
+   *          the number of leading segments to use.
+   * @param last
+   *          the last segment. May be <code>null</code>.
+   * @return this instance.
+   */
+  public CompoundName set(char[][] segments, int length, char[] last) {
+    this._segments = segments == null ? NO_SEGMENTS : segments;
+    this._length = length;
+    this._last = last;
+
+    int hashCode = 1;
+    for (int i = 0; i < length; i++) {
+      hashCode = hashCode(hashCode, this._segments[i]);
+    }
+    if (last != null) {
+      hashCode = hashCode(hashCode, last);
+    }
+    this._hashCode = hashCode;
+
+    return this;
+  }
+
+  /**
+   * <p>
+   * Returns the number of segments of this name.
+   * </p>
+   *
+   * @return the number of segments of this name.
+   */
+  public int size() {
+    return this._last == null ? this._length : this._length + 1;
+  }
+
+  /**
+   * <p>
+   * Returns the segment with the given index.
+   * </p>
+   *
+   * @param index
+   *          the index of the segment
+   * @return the segment with the given index.
+   */
+  public char[] getSegment(int index) {
+    return index < this._length ? this._segments[index] : this._last;
+  }
+
+  /**
+   * <p>
+   * Returns an immutable copy of this name that can be used as the key of a map.
+   * </p>
+   *
+   * @return an immutable copy of this name.
+   */
+  public CompoundName copy() {
+    char[][] segments = new char[size()][];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = getSegment(i).clone();
+    }
+    return new CompoundName(segments, segments.length, null);
+  }
+
+  /**
+   * <p>
+   * Returns the name of this {@link CompoundName} using the given separator (e.g. <code>java/lang</code>) followed by
+   * the given suffix.
+   * </p>
+   *
+   * @param separator
+   *          the separator
+   * @param suffix
+   *          the suffix. May be <code>null</code>.
+   * @return the name of this {@link CompoundName} using the given separator followed by the given suffix.
+   */
+  public String toString(char separator, String suffix) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0, size = size(); i < size; i++) {
+      if (i > 0) {
+        builder.append(separator);
+      }
+      builder.append(getSegment(i));
+    }
+    if (suffix != null) {
+      builder.append(suffix);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * <p>
+   * Returns the file name of the class with the given simple name that is contained in the package represented by
+   * this {@link CompoundName} (e.g. <code>java/lang/Object.class</code>).
+   * </p>
+   *
+   * @param typeName
+   *          the simple name of the class
+   * @return the file name of the class.
+   */
+  public String asClassFileName(char[] typeName) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0, size = size(); i < size; i++) {
+      builder.append(getSegment(i)).append('/');
+    }
+    return builder.append(typeName).append(".class").toString();
+  }
+
+  /**
+   * <p>
+   * Returns the qualified name of the class with the given simple name that is contained in the package represented by
+   * this {@link CompoundName} (e.g. <code>java.lang.Object</code>).
+   * </p>
+   *
+   * @param typeName
+   *          the simple name of the class
+   * @return the qualified name of the class.
+   */
+  public String asQualifiedName(char[] typeName) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0, size = size(); i < size; i++) {
+      builder.append(getSegment(i)).append('.');
+    }
+    return builder.append(typeName).toString();
+  }
+
+  /**
+   * <p>
+   * Returns the dotted name (e.g. <code>java.lang</code>).
+   * </p>
+   *
+   * @return the dotted name.
+   */
+  @Override
+  public String toString() {
+    return toString('.', null);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return this._hashCode;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof CompoundName)) {
+      return false;
+    }
+    CompoundName other = (CompoundName) obj;
+    int size = size();
+    if ((this._hashCode != other._hashCode) || (size != other.size())) {
+      return false;
+    }
+    for (int i = size - 1; i >= 0; i--) {
+      if (!equals(getSegment(i), other.getSegment(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * <p>
+   * Combines the given hash code with the hash code of the given segment.
+   * </p>
+   */
+  private static int hashCode(int hashCode, char[] segment) {
+    int result = hashCode;
+    for (char c : segment) {
+      result = 31 * result + c;
+    }
+    return 31 * result + '.';
+  }
+
+  /**
+   * <p>
+   * Compares two segments.
+   * </p>
+   */
+  private static boolean equals(char[] segment1, char[] segment2) {
+    if (segment1 == segment2) {
+      return true;
+    }
+    if (segment1.length != segment2.length) {
+      return false;
+    }
+    for (int i = segment1.length - 1; i >= 0; i--) {
+      if (segment1[i] != segment2[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
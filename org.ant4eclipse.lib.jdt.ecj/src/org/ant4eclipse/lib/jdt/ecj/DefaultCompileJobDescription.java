@@ -14,6 +14,7 @@ package org.ant4eclipse.lib.jdt.ecj;
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.util.StringMap;
 
+import java.io.File;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -35,6 +36,12 @@ public class DefaultCompileJobDescription implements CompileJobDescription {
   /** the source files */
   private SourceFile[]        _sourceFiles;
 
+  /** indicates whether dependency infos should be collected */
+  private boolean             _collectDependencyInfos;
+
+  /** the folder that receives a copy of all class files */
+  private File                _additionalDestinationFolder;
+
   /**
    * <p>
    * Creates a new instance of type {@link DefaultCompileJobDescription}.
@@ -84,6 +91,20 @@ public class DefaultCompileJobDescription implements CompileJobDescription {
     return this._sourceFiles;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isCollectDependencyInfos() {
+    return this._collectDependencyInfos;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public File getAdditionalDestinationFolder() {
+    return this._additionalDestinationFolder;
+  }
+
   /**
    * <p>
    * Sets the class file loader.
@@ -123,6 +144,30 @@ public class DefaultCompileJobDescription implements CompileJobDescription {
     this._sourceFiles = sourceFiles;
   }
 
+  /**
+   * <p>
+   * Specifies whether the dependency infos of the compiled source files should be collected.
+   * </p>
+   * 
+   * @param collectDependencyInfos
+   *          <code>true</code> if the dependency infos should be collected.
+   */
+  public void setCollectDependencyInfos(boolean collectDependencyInfos) {
+    this._collectDependencyInfos = collectDependencyInfos;
+  }
+
+  /**
+   * <p>
+   * Sets the folder that receives a copy of all compiled class files.
+   * </p>
+   * 
+   * @param additionalDestinationFolder
+   *          the folder that receives a copy of all compiled class files, may be <code>null</code>.
+   */
+  public void setAdditionalDestinationFolder(File additionalDestinationFolder) {
+    this._additionalDestinationFolder = additionalDestinationFolder;
+  }
+
   /**
    * {@inheritDoc}
    */
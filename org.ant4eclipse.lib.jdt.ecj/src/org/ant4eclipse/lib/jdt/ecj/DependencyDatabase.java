@@ -0,0 +1,755 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * Persistent database that stores the {@link DependencyInfo DependencyInfos} of all source files that have been
+ * compiled into an output folder. The database is used for incremental compilation: it tells which source files have
+ * been modified or removed since the last compilation and which source files depend on types whose structure has
+ * changed.
+ * </p>
+ * <p>
+ * Besides the source files the database keeps track of the class path the sources have been compiled against. If a
+ * class path entry is the output folder of another incrementally compiled project, the structural hashes of its types
+ * are remembered, so only the sources that depend on changed types need to be recompiled. All other class path entries
+ * are compared by their time stamps; if such an entry changes, a full compilation is required. The database of another
+ * project is only used if the class files it has recorded are still present in its output folder with the sizes and
+ * modification times they had when the database has been stored.
+ * </p>
+ * <p>
+ * The database is stored in the persistent cache directory (see {@link CacheDirectory}). If no cache directory has
+ * been configured, the database is not persisted at all.
+ * </p>
+ *
+ * @author agent
+ */
+public class DependencyDatabase {
+
+  /** the name of the cache area */
+  private static final String              AREA      = "dependencies";
+
+  /** the version of the database file format */
+  private static final int                 VERSION   = 2;
+
+  /** the maximum number of elements that is accepted when reading the database file */
+  private static final int                 MAX_COUNT = 1000000;
+
+  /** the output folder */
+  private File                             _outputFolder;
+
+  /** the database file, <code>null</code> if the database is not persisted */
+  private File                             _databaseFile;
+
+  /** the hash of the compiler options, <code>null</code> if unknown */
+  private String                           _compilerOptionsHash;
+
+  /** the entries for the compiled source files, keyed by the absolute path of the source file */
+  private Map<String, Entry>               _entries;
+
+  /** the stamps of the class path entries, <code>null</code> if unknown */
+  private Map<String, String>              _classpathStamps;
+
+  /** the structural hashes of the types of those class path entries that have a dependency database */
+  private Map<String, Map<String, String>> _classpathTypes;
+
+  /** the stamp of the class files in the output folder when the database has been stored */
+  private String                           _classFileStamp;
+
+  /**
+   * <p>
+   * Creates a new, empty instance of type {@link DependencyDatabase}.
+   * </p>
+   *
+   * @param outputFolder
+   *          the output folder
+   * @param databaseFile
+   *          the database file, may be <code>null</code>
+   */
+  private DependencyDatabase(File outputFolder, File databaseFile) {
+    this._outputFolder = outputFolder;
+    this._databaseFile = databaseFile;
+    this._entries = new LinkedHashMap<String, Entry>();
+    this._classpathTypes = new HashMap<String, Map<String, String>>();
+  }
+
+  /**
+   * <p>
+   * Loads the dependency database for the given output folder. If there's no (valid) database for this output folder
+   * an empty database is returned.
+   * </p>
+   *
+   * @param outputFolder
+   *          the output folder. Not <code>null</code>.
+   * @return the dependency database for the given output folder. Never <code>null</code>.
+   */
+  public static DependencyDatabase load(File outputFolder) {
+    Assure.notNull("outputFolder", outputFolder);
+
+    File canonicalFolder = Utilities.getCanonicalFile(outputFolder);
+    DependencyDatabase result = new DependencyDatabase(canonicalFolder, CacheDirectory.getCacheFile(AREA,
+        canonicalFolder.getPath()));
+    if ((result._databaseFile != null) && result._databaseFile.isFile()) {
+      result.read();
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the output folder of this database.
+   * </p>
+   *
+   * @return the output folder of this database.
+   */
+  public File getOutputFolder() {
+    return this._outputFolder;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the database doesn't contain any source file.
+   * </p>
+   *
+   * @return <code>true</code> if the database doesn't contain any source file.
+   */
+  public boolean isEmpty() {
+    return this._entries.isEmpty();
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the recorded source files have been compiled with the given compiler options.
+   * </p>
+   *
+   * @param compilerOptions
+   *          the compiler options. Not <code>null</code>.
+   * @return <code>true</code> if the recorded source files have been compiled with the given compiler options.
+   */
+  public boolean hasCompilerOptions(Map<String, String> compilerOptions) {
+    Assure.notNull("compilerOptions", compilerOptions);
+    return hash(compilerOptions).equals(this._compilerOptionsHash);
+  }
+
+  /**
+   * <p>
+   * Returns all source files that are recorded in this database.
+   * </p>
+   *
+   * @return all source files that are recorded in this database.
+   */
+  public Set<File> getSourceFiles() {
+    Set<File> result = new LinkedHashSet<File>();
+    for (String sourceFile : this._entries.keySet()) {
+      result.add(new File(sourceFile));
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given source file isn't recorded in this database, if it has been modified since
+   * it has been recorded or if one of the class files that have been produced from it doesn't exist anymore (e.g.
+   * because the output folder has been cleaned).
+   * </p>
+   *
+   * @param sourceFile
+   *          the source file. Not <code>null</code>.
+   * @return <code>true</code> if the given source file has to be compiled.
+   */
+  public boolean isModified(File sourceFile) {
+    Assure.notNull("sourceFile", sourceFile);
+    Entry entry = this._entries.get(sourceFile.getAbsolutePath());
+    if ((entry == null) || (entry._lastModified != sourceFile.lastModified())
+        || (entry._length != sourceFile.length())) {
+      return true;
+    }
+    for (String classFileName : entry._dependencyInfo.getClassFileNames()) {
+      if (!new File(entry._destinationFolder, classFileName).isFile()
+          || !new File(this._outputFolder, classFileName).isFile()) {
+        A4ELogging.debug("Class file '%s' of source file '%s' is missing.", classFileName, sourceFile);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * <p>
+   * Returns the structural hashes of all types that have been compiled into the output folder.
+   * </p>
+   *
+   * @return the structural hashes of all types, keyed by the binary type name.
+   */
+  public Map<String, String> getStructuralHashes() {
+    Map<String, String> result = new HashMap<String, String>();
+    for (Entry entry : this._entries.values()) {
+      result.putAll(entry._dependencyInfo.getStructuralHashes());
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns all recorded source files that reference at least one of the given types.
+   * </p>
+   *
+   * @param typeNames
+   *          the binary names of the types. Not <code>null</code>.
+   * @return all recorded source files that reference at least one of the given types.
+   */
+  public Set<File> getDependents(Set<String> typeNames) {
+    Assure.notNull("typeNames", typeNames);
+
+    Set<File> result = new LinkedHashSet<File>();
+    if (typeNames.isEmpty()) {
+      return result;
+    }
+    for (Map.Entry<String, Entry> entry : this._entries.entrySet()) {
+      for (String typeName : typeNames) {
+        if (entry.getValue()._dependencyInfo.references(typeName)) {
+          result.add(new File(entry.getKey()));
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the types of the given class path whose structure has changed since the class path has been recorded. If
+   * the changes can't be determined (e.g. because a jar file has been modified or the class path is unknown)
+   * <code>null</code> is returned, which means that all source files have to be compiled.
+   * </p>
+   *
+   * @param classpathEntries
+   *          the class path entries. Not <code>null</code>.
+   * @return the binary names of the changed types or <code>null</code>.
+   */
+  public Set<String> getChangedClasspathTypes(File[] classpathEntries) {
+    Assure.notNull("classpathEntries", classpathEntries);
+
+    if ((this._classpathStamps == null) || (this._classpathStamps.size() != classpathEntries.length)) {
+      return null;
+    }
+
+    Set<String> result = new HashSet<String>();
+    for (File classpathEntry : classpathEntries) {
+      String path = classpathEntry.getAbsolutePath();
+      String stamp = this._classpathStamps.get(path);
+      if (stamp == null) {
+        return null;
+      }
+      DependencyDatabase database = getClasspathDatabase(classpathEntry);
+      if (database != null) {
+        Map<String, String> recorded = this._classpathTypes.get(path);
+        if (recorded == null) {
+          return null;
+        }
+        Map<String, String> current = database.getStructuralHashes();
+        for (Map.Entry<String, String> type : current.entrySet()) {
+          if (!type.getValue().equals(recorded.get(type.getKey()))) {
+            result.add(type.getKey());
+          }
+        }
+        for (String typeName : recorded.keySet()) {
+          if (!current.containsKey(typeName)) {
+            result.add(typeName);
+          }
+        }
+      } else if (!stamp.equals(getStamp(classpathEntry))) {
+        A4ELogging.debug("Class path entry '%s' has been modified.", classpathEntry);
+        return null;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Records the given class path and compiler options. This method should be called after all source files have been
+   * compiled successfully.
+   * </p>
+   *
+   * @param classpathEntries
+   *          the class path entries. Not <code>null</code>.
+   * @param compilerOptions
+   *          the compiler options. Not <code>null</code>.
+   */
+  public void setCompilationEnvironment(File[] classpathEntries, Map<String, String> compilerOptions) {
+    Assure.notNull("classpathEntries", classpathEntries);
+    Assure.notNull("compilerOptions", compilerOptions);
+
+    this._compilerOptionsHash = hash(compilerOptions);
+    this._classpathStamps = new LinkedHashMap<String, String>();
+    this._classpathTypes.clear();
+    for (File classpathEntry : classpathEntries) {
+      String path = classpathEntry.getAbsolutePath();
+      DependencyDatabase database = getClasspathDatabase(classpathEntry);
+      if (database != null) {
+        this._classpathStamps.put(path, "database");
+        this._classpathTypes.put(path, database.getStructuralHashes());
+      } else {
+        this._classpathStamps.put(path, getStamp(classpathEntry));
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Records the given {@link DependencyInfo} for the given source file. Class files that have been produced by an
+   * earlier compilation of the source file but that haven't been produced this time are deleted.
+   * </p>
+   *
+   * @param sourceFile
+   *          the compiled source file. Not <code>null</code>.
+   * @param destinationFolder
+   *          the folder the class files have been written to. Not <code>null</code>.
+   * @param dependencyInfo
+   *          the {@link DependencyInfo} of the source file. Not <code>null</code>.
+   * @return the binary names of all types whose structure has changed (including added and removed types).
+   */
+  public Set<String> update(File sourceFile, File destinationFolder, DependencyInfo dependencyInfo) {
+    Assure.notNull("sourceFile", sourceFile);
+    Assure.notNull("destinationFolder", destinationFolder);
+    Assure.notNull("dependencyInfo", dependencyInfo);
+
+    Entry entry = new Entry(sourceFile.lastModified(), sourceFile.length(), destinationFolder.getAbsolutePath(),
+        dependencyInfo);
+    Entry previous = this._entries.put(sourceFile.getAbsolutePath(), entry);
+
+    Set<String> result = new HashSet<String>();
+    Map<String, String> hashes = dependencyInfo.getStructuralHashes();
+    if (previous == null) {
+      result.addAll(hashes.keySet());
+      return result;
+    }
+
+    Map<String, String> previousHashes = previous._dependencyInfo.getStructuralHashes();
+    for (Map.Entry<String, String> type : hashes.entrySet()) {
+      if (!type.getValue().equals(previousHashes.get(type.getKey()))) {
+        result.add(type.getKey());
+      }
+    }
+    for (String typeName : previousHashes.keySet()) {
+      if (!hashes.containsKey(typeName)) {
+        result.add(typeName);
+      }
+    }
+
+    // delete class files that aren't produced anymore
+    boolean sameFolder = previous._destinationFolder.equals(entry._destinationFolder);
+    File previousFolder = new File(previous._destinationFolder);
+    for (String classFileName : previous._dependencyInfo.getClassFileNames()) {
+      if (!dependencyInfo.getClassFileNames().contains(classFileName)) {
+        deleteClassFile(previous._destinationFolder, classFileName);
+      } else if (!sameFolder && !previousFolder.equals(this._outputFolder)) {
+        // the class file has been written to the output folder again, so it's only obsolete in the old folder
+        deleteClassFile(new File(previousFolder, classFileName));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * <p>
+   * Removes the given source file from the database and deletes all the class files that have been produced from it.
+   * </p>
+   *
+   * @param sourceFile
+   *          the source file. Not <code>null</code>.
+   * @return the binary names of the types that have been produced from the source file.
+   */
+  public Set<String> remove(File sourceFile) {
+    Assure.notNull("sourceFile", sourceFile);
+
+    Set<String> result = new HashSet<String>();
+    Entry entry = this._entries.remove(sourceFile.getAbsolutePath());
+    if (entry != null) {
+      result.addAll(entry._dependencyInfo.getStructuralHashes().keySet());
+      for (String classFileName : entry._dependencyInfo.getClassFileNames()) {
+        deleteClassFile(entry._destinationFolder, classFileName);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Removes the given source file from the database without deleting any class files, so it will be compiled again
+   * next time (e.g. because it couldn't be compiled).
+   * </p>
+   *
+   * @param sourceFile
+   *          the source file. Not <code>null</code>.
+   */
+  public void invalidate(File sourceFile) {
+    Assure.notNull("sourceFile", sourceFile);
+    this._entries.remove(sourceFile.getAbsolutePath());
+  }
+
+  /**
+   * <p>
+   * Marks the given source file as modified without deleting any class files, so it will be compiled again next time
+   * (e.g. because a type it depends on has changed, but the compilation has been aborted before it could be compiled).
+   * In contrast to {@link #invalidate(File)} the class files that have been produced from the source file are still
+   * known, so they are deleted if they aren't produced anymore.
+   * </p>
+   *
+   * @param sourceFile
+   *          the source file. Not <code>null</code>.
+   */
+  public void markModified(File sourceFile) {
+    Assure.notNull("sourceFile", sourceFile);
+    Entry entry = this._entries.get(sourceFile.getAbsolutePath());
+    if (entry != null) {
+      entry._lastModified = -1;
+    }
+  }
+
+  /**
+   * <p>
+   * Stores this database in the persistent cache directory.
+   * </p>
+   */
+  public void save() {
+    if (this._databaseFile == null) {
+      return;
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeInt(VERSION);
+      output.writeUTF(this._outputFolder.getPath());
+      output.writeUTF(this._compilerOptionsHash == null ? "" : this._compilerOptionsHash);
+      output.writeInt(this._entries.size());
+      for (Map.Entry<String, Entry> entry : this._entries.entrySet()) {
+        Entry value = entry.getValue();
+        output.writeUTF(entry.getKey());
+        output.writeLong(value._lastModified);
+        output.writeLong(value._length);
+        output.writeUTF(value._destinationFolder);
+        writeNames(output, value._dependencyInfo.getQualifiedReferences());
+        writeNames(output, value._dependencyInfo.getSimpleNameReferences());
+        writeNames(output, value._dependencyInfo.getClassFileNames());
+        writeHashes(output, value._dependencyInfo.getStructuralHashes());
+      }
+      output.writeBoolean(this._classpathStamps != null);
+      if (this._classpathStamps != null) {
+        output.writeInt(this._classpathStamps.size());
+        for (Map.Entry<String, String> stamp : this._classpathStamps.entrySet()) {
+          output.writeUTF(stamp.getKey());
+          output.writeUTF(stamp.getValue());
+          Map<String, String> types = this._classpathTypes.get(stamp.getKey());
+          output.writeBoolean(types != null);
+          if (types != null) {
+            writeHashes(output, types);
+          }
+        }
+      }
+      output.writeUTF(computeClassFileStamp());
+      output.close();
+      CacheDirectory.writeAtomically(this._databaseFile, bytes.toByteArray());
+    } catch (IOException ex) {
+      // can't happen as we're writing to memory
+      A4ELogging.debug("Could not write dependency database for '%s': %s", this._outputFolder, ex.toString());
+    }
+  }
+
+  /**
+   * <p>
+   * Reads the database file. If the file can't be read, the database remains empty.
+   * </p>
+   */
+  private void read() {
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(this._databaseFile)));
+      if ((input.readInt() != VERSION) || !this._outputFolder.getPath().equals(input.readUTF())) {
+        return;
+      }
+      String compilerOptionsHash = input.readUTF();
+      Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+      int count = readCount(input);
+      for (int i = 0; i < count; i++) {
+        String sourceFile = input.readUTF();
+        long lastModified = input.readLong();
+        long length = input.readLong();
+        String destinationFolder = input.readUTF();
+        DependencyInfo dependencyInfo = new DependencyInfo(readNames(input), readNames(input), readNames(input),
+            readHashes(input));
+        entries.put(sourceFile, new Entry(lastModified, length, destinationFolder, dependencyInfo));
+      }
+      Map<String, String> classpathStamps = null;
+      Map<String, Map<String, String>> classpathTypes = new HashMap<String, Map<String, String>>();
+      if (input.readBoolean()) {
+        classpathStamps = new LinkedHashMap<String, String>();
+        count = readCount(input);
+        for (int i = 0; i < count; i++) {
+          String path = input.readUTF();
+          classpathStamps.put(path, input.readUTF());
+          if (input.readBoolean()) {
+            classpathTypes.put(path, readHashes(input));
+          }
+        }
+      }
+      String classFileStamp = input.readUTF();
+      this._compilerOptionsHash = compilerOptionsHash.length() == 0 ? null : compilerOptionsHash;
+      this._entries = entries;
+      this._classpathStamps = classpathStamps;
+      this._classpathTypes = classpathTypes;
+      this._classFileStamp = classFileStamp;
+    } catch (IOException ex) {
+      A4ELogging.debug("Could not read dependency database '%s' for '%s': %s", this._databaseFile,
+          this._outputFolder, ex.toString());
+    } catch (RuntimeException ex) {
+      // a corrupt database file is treated like a missing one
+      A4ELogging.debug("Could not read dependency database '%s' for '%s': %s", this._databaseFile,
+          this._outputFolder, ex.toString());
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+
+  /**
+   * <p>
+   * Computes the stamp of the class files that are recorded in this database. The stamp covers the names, sizes and
+   * modification times of the class files in the output folder.
+   * </p>
+   */
+  private String computeClassFileStamp() {
+    StringBuilder builder = new StringBuilder();
+    for (Entry entry : this._entries.values()) {
+      for (String classFileName : entry._dependencyInfo.getClassFileNames()) {
+        File classFile = new File(this._outputFolder, classFileName);
+        builder.append(classFileName).append(':').append(classFile.length()).append(':').append(
+            classFile.lastModified()).append('\n');
+      }
+    }
+    return CacheDirectory.hash(builder.toString());
+  }
+
+  /**
+   * <p>
+   * Returns the dependency database of the given class path entry or <code>null</code> if the class path entry is not
+   * the output folder of an incrementally compiled project or if the output folder has been modified since the
+   * database has been stored (e.g. by another build tool), so the database doesn't describe its content anymore.
+   * </p>
+   */
+  private static DependencyDatabase getClasspathDatabase(File classpathEntry) {
+    if (!classpathEntry.isDirectory()) {
+      return null;
+    }
+    DependencyDatabase result = load(classpathEntry);
+    if (result.isEmpty()) {
+      return null;
+    }
+    if (!result.computeClassFileStamp().equals(result._classFileStamp)) {
+      A4ELogging.debug("The class files in '%s' don't match the dependency database.", classpathEntry);
+      return null;
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the stamp of the given class path entry. The stamp of a jar file consists of its size and modification
+   * time, the stamp of a directory of the number of contained files and the latest modification time.
+   * </p>
+   */
+  private static String getStamp(File classpathEntry) {
+    if (classpathEntry.isFile()) {
+      return classpathEntry.length() + ":" + classpathEntry.lastModified();
+    } else if (classpathEntry.isDirectory()) {
+      long[] stamp = new long[2];
+      computeDirectoryStamp(classpathEntry, stamp);
+      return stamp[0] + "/" + stamp[1];
+    } else {
+      return "missing";
+    }
+  }
+
+  /**
+   * <p>
+   * Counts the files of the given directory and computes their latest modification time.
+   * </p>
+   */
+  private static void computeDirectoryStamp(File directory, long[] stamp) {
+    File[] children = directory.listFiles();
+    if (children == null) {
+      return;
+    }
+    for (File child : children) {
+      if (child.isDirectory()) {
+        computeDirectoryStamp(child, stamp);
+      } else {
+        stamp[0]++;
+        stamp[1] = Math.max(stamp[1], child.lastModified());
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Deletes the given class file from the given destination folder and from the output folder.
+   * </p>
+   */
+  private void deleteClassFile(String destinationFolder, String classFileName) {
+    deleteClassFile(new File(destinationFolder, classFileName));
+    deleteClassFile(new File(this._outputFolder, classFileName));
+  }
+
+  /**
+   * <p>
+   * Deletes the given class file.
+   * </p>
+   */
+  private static void deleteClassFile(File classFile) {
+    if (classFile.isFile()) {
+      A4ELogging.debug("Deleting obsolete class file '%s'.", classFile);
+      if (!classFile.delete()) {
+        A4ELogging.warn("Could not delete obsolete class file '%s'.", classFile);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns a hash for the given compiler options.
+   * </p>
+   */
+  private static String hash(Map<String, String> compilerOptions) {
+    return CacheDirectory.hash(new TreeMap<String, String>(compilerOptions).toString());
+  }
+
+  /**
+   * <p>
+   * Writes the given names.
+   * </p>
+   */
+  private static void writeNames(DataOutputStream output, Set<String> names) throws IOException {
+    output.writeInt(names.size());
+    for (String name : names) {
+      output.writeUTF(name);
+    }
+  }
+
+  /**
+   * <p>
+   * Reads names that have been written with {@link #writeNames(DataOutputStream, Set)}.
+   * </p>
+   */
+  private static Set<String> readNames(DataInputStream input) throws IOException {
+    int count = readCount(input);
+    Set<String> result = new LinkedHashSet<String>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(input.readUTF());
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Writes the given hashes.
+   * </p>
+   */
+  private static void writeHashes(DataOutputStream output, Map<String, String> hashes) throws IOException {
+    output.writeInt(hashes.size());
+    for (Map.Entry<String, String> hash : hashes.entrySet()) {
+      output.writeUTF(hash.getKey());
+      output.writeUTF(hash.getValue());
+    }
+  }
+
+  /**
+   * <p>
+   * Reads hashes that have been written with {@link #writeHashes(DataOutputStream, Map)}.
+   * </p>
+   */
+  private static Map<String, String> readHashes(DataInputStream input) throws IOException {
+    int count = readCount(input);
+    Map<String, String> result = new HashMap<String, String>(count);
+    for (int i = 0; i < count; i++) {
+      result.put(input.readUTF(), input.readUTF());
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Reads a count and makes sure that it is within the accepted range, so a corrupt file can't cause huge allocations.
+   * </p>
+   */
+  private static int readCount(DataInputStream input) throws IOException {
+    int result = input.readInt();
+    if ((result < 0) || (result > MAX_COUNT)) {
+      throw new IOException("Invalid count " + result);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * The recorded information about a compiled source file.
+   * </p>
+   */
+  private static class Entry {
+
+    /** the modification time of the source file */
+    private long           _lastModified;
+
+    /** the size of the source file */
+    private long           _length;
+
+    /** the folder that contains the produced class files */
+    private String         _destinationFolder;
+
+    /** the dependency info */
+    private DependencyInfo _dependencyInfo;
+
+    /**
+     * @param lastModified
+     * @param length
+     * @param destinationFolder
+     * @param dependencyInfo
+     */
+    public Entry(long lastModified, long length, String destinationFolder, DependencyInfo dependencyInfo) {
+      this._lastModified = lastModified;
+      this._length = length;
+      this._destinationFolder = destinationFolder;
+      this._dependencyInfo = dependencyInfo;
+    }
+  }
+}
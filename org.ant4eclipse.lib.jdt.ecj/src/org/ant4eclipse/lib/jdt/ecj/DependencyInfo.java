@@ -0,0 +1,174 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import org.ant4eclipse.lib.core.Assure;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Describes the dependencies of a compiled source file: the names that have been referenced by the source file and the
+ * types that have been produced from it.
+ * </p>
+ * <p>
+ * The references are recorded the same way the eclipse java compiler records them: the qualified references contain
+ * the dotted names of all referenced types and packages (e.g. <code>java.util.List</code> and <code>java.util</code>),
+ * the simple name references contain all simple names that have been looked up (e.g. <code>List</code>).
+ * </p>
+ *
+ * @author agent
+ */
+public class DependencyInfo {
+
+  /** the dotted names of the referenced types and packages */
+  private Set<String>         _qualifiedReferences;
+
+  /** the referenced simple names */
+  private Set<String>         _simpleNameReferences;
+
+  /** the names of all produced class files (e.g. <code>java/util/Map$Entry.class</code>) */
+  private Set<String>         _classFileNames;
+
+  /** the structural hashes of all produced types that are visible outside of the source file */
+  private Map<String, String> _structuralHashes;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link DependencyInfo}.
+   * </p>
+   *
+   * @param qualifiedReferences
+   *          the dotted names of the referenced types and packages. Not <code>null</code>.
+   * @param simpleNameReferences
+   *          the referenced simple names. Not <code>null</code>.
+   * @param classFileNames
+   *          the names of all produced class files. Not <code>null</code>.
+   * @param structuralHashes
+   *          the structural hashes of all produced types that are not local or anonymous, keyed by the binary type name
+   *          (e.g. <code>java/util/Map$Entry</code>). Not <code>null</code>.
+   */
+  public DependencyInfo(Set<String> qualifiedReferences, Set<String> simpleNameReferences, Set<String> classFileNames,
+      Map<String, String> structuralHashes) {
+    Assure.notNull("qualifiedReferences", qualifiedReferences);
+    Assure.notNull("simpleNameReferences", simpleNameReferences);
+    Assure.notNull("classFileNames", classFileNames);
+    Assure.notNull("structuralHashes", structuralHashes);
+
+    this._qualifiedReferences = qualifiedReferences;
+    this._simpleNameReferences = simpleNameReferences;
+    this._classFileNames = classFileNames;
+    this._structuralHashes = structuralHashes;
+  }
+
+  /**
+   * <p>
+   * Returns the dotted names of the referenced types and packages.
+   * </p>
+   *
+   * @return the dotted names of the referenced types and packages.
+   */
+  public Set<String> getQualifiedReferences() {
+    return Collections.unmodifiableSet(this._qualifiedReferences);
+  }
+
+  /**
+   * <p>
+   * Returns the referenced simple names.
+   * </p>
+   *
+   * @return the referenced simple names.
+   */
+  public Set<String> getSimpleNameReferences() {
+    return Collections.unmodifiableSet(this._simpleNameReferences);
+  }
+
+  /**
+   * <p>
+   * Returns the names of all produced class files (e.g. <code>java/util/Map$Entry.class</code>).
+   * </p>
+   *
+   * @return the names of all produced class files.
+   */
+  public Set<String> getClassFileNames() {
+    return Collections.unmodifiableSet(this._classFileNames);
+  }
+
+  /**
+   * <p>
+   * Returns the structural hashes of all produced types that are not local or anonymous, keyed by the binary type name
+   * (e.g. <code>java/util/Map$Entry</code>). The structural hash of a type only changes if a change of the type might
+   * affect the compilation of other types (e.g. if a non-private method has been added or removed).
+   * </p>
+   *
+   * @return the structural hashes of all produced types.
+   */
+  public Map<String, String> getStructuralHashes() {
+    return Collections.unmodifiableMap(this._structuralHashes);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the source file references the type with the given binary name (e.g.
+   * <code>java/util/Map$Entry</code>). Like the eclipse java compiler a member type is treated like its top level
+   * type, so this method might return <code>true</code> for types that aren't referenced at all.
+   * </p>
+   *
+   * @param typeName
+   *          the binary name of the type.
+   * @return <code>true</code> if the source file (possibly) references the given type.
+   */
+  public boolean references(String typeName) {
+    Assure.notNull("typeName", typeName);
+
+    // member types are recorded by the name of their top level type
+    int memberIndex = typeName.indexOf('$');
+    String topLevelName = memberIndex == -1 ? typeName : typeName.substring(0, memberIndex);
+
+    int packageIndex = topLevelName.lastIndexOf('/');
+    String simpleName = topLevelName.substring(packageIndex + 1);
+    if (!this._simpleNameReferences.contains(simpleName)) {
+      return false;
+    }
+    if (packageIndex == -1) {
+      return true;
+    }
+
+    // single segment names are only recorded as simple names
+    String packageName = topLevelName.substring(0, packageIndex).replace('/', '.');
+    if (packageName.indexOf('.') == -1) {
+      return this._simpleNameReferences.contains(packageName);
+    }
+    return this._qualifiedReferences.contains(packageName);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[DependencyInfo:");
+    buffer.append(" _qualifiedReferences: ");
+    buffer.append(this._qualifiedReferences);
+    buffer.append(", _simpleNameReferences: ");
+    buffer.append(this._simpleNameReferences);
+    buffer.append(", _classFileNames: ");
+    buffer.append(this._classFileNames);
+    buffer.append(", _structuralHashes: ");
+    buffer.append(this._structuralHashes);
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
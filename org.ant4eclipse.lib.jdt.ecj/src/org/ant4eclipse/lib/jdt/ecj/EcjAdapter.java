@@ -12,6 +12,7 @@
 package org.ant4eclipse.lib.jdt.ecj;
 
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.EcjAdapterImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon.DaemonEcjAdapterImpl;
 
 /**
  * <p>
@@ -49,12 +50,18 @@ public interface EcjAdapter {
 
     /**
      * <p>
-     * Creates a new instance of type {@link EcjAdapter}
+     * Creates a new instance of type {@link EcjAdapter}. If the system property
+     * <code>ant4eclipse.compilerDaemonPort</code> is set, the returned adapter delegates the compilation to the
+     * {@link CompilerDaemon} listening on that port.
      * </p>
      * 
      * @return a new instance of type {@link EcjAdapter}.
      */
     public static EcjAdapter create() {
+      Integer port = Integer.getInteger(CompilerDaemon.PORT_PROPERTY_NAME);
+      if (port != null) {
+        return new DaemonEcjAdapterImpl(port.intValue(), new EcjAdapterImpl());
+      }
       return new EcjAdapterImpl();
     }
   }
@@ -48,6 +48,9 @@ public class EcjExceptionCodes extends ExceptionCode {
   @NLSMessage("Compilation was not successful.")
   public static EcjExceptionCodes COMPILATION_WAS_NOT_SUCCESFUL;
 
+  @NLSMessage("The compilation has been interrupted.")
+  public static ExceptionCode     COMPILATION_INTERRUPTED_EXCEPTION;
+
   @NLSMessage("Source folder for source file '%s' does not exist.")
   public static ExceptionCode     SOURCE_FOLDER_FOR_SOURCE_FILE_DOES_NOT_EXIST;
 
@@ -0,0 +1,138 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.jdt.ecj.CompoundName;
+import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+
+/**
+ * <p>
+ * The name environment for a single batch of a project whose source files are compiled in several batches
+ * concurrently. Types that are defined by source files of the other batches are answered as compilation units, so the
+ * compiler of this batch takes their declarations from source (see <code>EcjAdapterImpl.BatchCompiler</code>). All
+ * other lookups are delegated to the name environment that is shared by all batches.
+ * </p>
+ * <p>
+ * An instance of this class is used by a single compiler, so it is not thread-safe. The shared name environment must
+ * be thread-safe.
+ * </p>
+ *
+ * @author agent
+ */
+public class BatchNameEnvironment implements INameEnvironment {
+
+  /** the name environment that is shared by all batches */
+  private INameEnvironment                    _nameEnvironment;
+
+  /** the compilation units of all batches, keyed by the names of their top-level types */
+  private Map<CompoundName, ICompilationUnit> _sourceTypes;
+
+  /** the packages that contain compilation units (including their parent packages) */
+  private Set<CompoundName>                   _sourcePackages;
+
+  /** the compilation units of this batch */
+  private Set<ICompilationUnit>               _batchUnits;
+
+  /** reusable lookup key */
+  private CompoundName                        _probe;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link BatchNameEnvironment}.
+   * </p>
+   *
+   * @param nameEnvironment
+   *          the thread-safe name environment that is shared by all batches
+   * @param sourceTypes
+   *          the compilation units of all batches, keyed by the names of their top-level types
+   * @param sourcePackages
+   *          the packages that contain compilation units (including their parent packages)
+   * @param batchUnits
+   *          the compilation units of this batch
+   */
+  public BatchNameEnvironment(INameEnvironment nameEnvironment, Map<CompoundName, ICompilationUnit> sourceTypes,
+      Set<CompoundName> sourcePackages, Set<ICompilationUnit> batchUnits) {
+    Assure.notNull("nameEnvironment", nameEnvironment);
+    Assure.notNull("sourceTypes", sourceTypes);
+    Assure.notNull("sourcePackages", sourcePackages);
+    Assure.notNull("batchUnits", batchUnits);
+
+    this._nameEnvironment = nameEnvironment;
+    this._sourceTypes = sourceTypes;
+    this._sourcePackages = sourcePackages;
+    this._batchUnits = batchUnits;
+    this._probe = new CompoundName();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public NameEnvironmentAnswer findType(char[][] compoundTypeName) {
+    int packageLength = compoundTypeName.length - 1;
+    NameEnvironmentAnswer answer = findSourceType(this._probe.set(compoundTypeName, packageLength,
+        compoundTypeName[packageLength]));
+    return answer != null ? answer : this._nameEnvironment.findType(compoundTypeName);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
+    NameEnvironmentAnswer answer = findSourceType(this._probe.set(packageName, packageName == null ? 0
+        : packageName.length, typeName));
+    return answer != null ? answer : this._nameEnvironment.findType(typeName, packageName);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isPackage(char[][] parentPackageName, char[] packageName) {
+    if (this._sourcePackages.contains(this._probe.set(parentPackageName, parentPackageName == null ? 0
+        : parentPackageName.length, packageName))) {
+      return true;
+    }
+    return this._nameEnvironment.isPackage(parentPackageName, packageName);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The shared name environment is cleaned up after all batches have been compiled.
+   * </p>
+   */
+  public void cleanup() {
+    // nothing to do here...
+  }
+
+  /**
+   * <p>
+   * Returns an answer for the given type if it is defined by a compilation unit of another batch.
+   * </p>
+   *
+   * @param typeName
+   *          the qualified name of the type
+   * @return the answer or <code>null</code>.
+   */
+  private NameEnvironmentAnswer findSourceType(CompoundName typeName) {
+    ICompilationUnit compilationUnit = this._sourceTypes.get(typeName);
+    if ((compilationUnit == null) || this._batchUnits.contains(compilationUnit)) {
+      return null;
+    }
+    return new NameEnvironmentAnswer(compilationUnit, null);
+  }
+}
@@ -0,0 +1,392 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.metrics.Counter;
+import org.ant4eclipse.lib.core.metrics.Metrics;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Writes class files to disc on a small number of worker threads, so writing the class files overlaps with the
+ * compilation of the remaining source files. The worker threads are shared by all instances (e.g. by the requestors of
+ * concurrently compiled batches). The number of pending class files is bounded: if the workers can't keep up, the
+ * compiler thread writes the class file itself.
+ * </p>
+ * <p>
+ * A class file is not written if the existing file already has the same content. This keeps the modification times of
+ * unchanged class files stable, so subsequent tasks (e.g. <code>jar</code>) don't consider them to be modified.
+ * </p>
+ * <p>
+ * If requested, the writer keeps the content of the written class files, so they can be written to another folder
+ * later on without reading them back from disc.
+ * </p>
+ * <p>
+ * The number of worker threads can be specified with the system property
+ * <code>ant4eclipse.classFileWriterThreads</code>. A value of 0 disables the worker threads, so all class files are
+ * written on the compiler thread.
+ * </p>
+ *
+ * @author agent
+ */
+public class ClassFileWriter {
+
+  /** the name of the system property that specifies the number of worker threads */
+  public static final String   THREAD_COUNT_PROPERTY_NAME = "ant4eclipse.classFileWriterThreads";
+
+  /** the maximum number of pending class files per worker thread */
+  private static final int     QUEUE_SIZE_PER_THREAD      = 64;
+
+  /** the number of class files that have been written (all instances) */
+  private static final Counter CLASS_FILES_WRITTEN        = Metrics.counter("ecj.classFile.written");
+
+  /** the number of bytes that have been written to class files (all instances) */
+  private static final Counter BYTES_WRITTEN              = Metrics.counter("ecj.classFile.bytesWritten");
+
+  /** the number of unchanged class files that haven't been written (all instances) */
+  private static final Counter CLASS_FILES_SKIPPED        = Metrics.counter("ecj.classFile.skipped");
+
+  /** the executor that is shared by all instances, <code>null</code> if it hasn't been created yet */
+  private static ThreadPoolExecutor executor;
+
+  /** indicates whether the class files are written on the calling thread */
+  private static boolean            synchronous;
+
+  /** the directories that are known to exist */
+  private Map<File, Boolean>        _directories;
+
+  /** the class files that have been written successfully, keyed by the name of the class file */
+  private Map<String, File>         _writtenClassFiles;
+
+  /** the content of the written class files, <code>null</code> if it isn't kept */
+  private Map<String, byte[]>       _contents;
+
+  /** the class files that couldn't be written */
+  private List<String>              _failures;
+
+  /** the number of tasks that haven't been finished yet, guarded by <code>this</code> */
+  private int                       _pending;
+
+  /** the first unexpected throwable of a task, <code>null</code> if there was none */
+  private Throwable                 _throwable;
+
+  /** the number of class files that have been written */
+  private AtomicInteger        _written;
+
+  /** the number of class files that have been skipped because they didn't change */
+  private AtomicInteger        _skipped;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ClassFileWriter}.
+   * </p>
+   */
+  public ClassFileWriter() {
+    this(false);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ClassFileWriter}.
+   * </p>
+   *
+   * @param keepContents
+   *          <code>true</code> if the content of the written class files should be kept (see {@link #getContents()}).
+   */
+  public ClassFileWriter(boolean keepContents) {
+    if (keepContents) {
+      this._contents = new Hashtable<String, byte[]>();
+    }
+    this._directories = new ConcurrentHashMap<File, Boolean>();
+    this._writtenClassFiles = new Hashtable<String, File>();
+    this._failures = Collections.synchronizedList(new LinkedList<String>());
+    this._written = new AtomicInteger();
+    this._skipped = new AtomicInteger();
+  }
+
+  /**
+   * <p>
+   * Writes the given class file to the given destination. The content must not be modified afterwards. The class file
+   * is added to the {@link #getWrittenClassFiles() written class files} once it has been written successfully.
+   * </p>
+   *
+   * @param classFileName
+   *          the name of the class file (e.g. <code>java/util/Map$Entry.class</code>). Not <code>null</code>.
+   * @param content
+   *          the content of the class file. Not <code>null</code>.
+   * @param destination
+   *          the file to write. Not <code>null</code>.
+   */
+  public void write(final String classFileName, final byte[] content, final File destination) {
+    Assure.notNull("classFileName", classFileName);
+    Assure.notNull("content", content);
+    Assure.notNull("destination", destination);
+
+    execute(new Runnable() {
+      public void run() {
+        if (writeClassFile(content, destination)) {
+          ClassFileWriter.this._writtenClassFiles.put(classFileName, destination);
+          if (ClassFileWriter.this._contents != null) {
+            ClassFileWriter.this._contents.put(classFileName, content);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * <p>
+   * Returns the class files that have been written successfully.
+   * </p>
+   *
+   * @return the class files that have been written successfully, keyed by the name of the class file.
+   */
+  public Map<String, File> getWrittenClassFiles() {
+    return Collections.unmodifiableMap(this._writtenClassFiles);
+  }
+
+  /**
+   * <p>
+   * Returns the content of the class files that have been written successfully.
+   * </p>
+   *
+   * @return the content of the written class files, keyed by the name of the class file. Empty if the content isn't
+   *         kept.
+   */
+  public Map<String, byte[]> getContents() {
+    if (this._contents == null) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(this._contents);
+  }
+
+  /**
+   * <p>
+   * Waits until all class files have been written. If a task failed unexpectedly, its throwable is rethrown.
+   * </p>
+   *
+   * @return the names of the class files that couldn't be written. Not <code>null</code>.
+   */
+  public List<String> finish() {
+    synchronized (this) {
+      try {
+        while (this._pending > 0) {
+          wait();
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        this._failures.add("Interrupted while writing class files");
+      }
+    }
+    A4ELogging.debug("Wrote %d class files, skipped %d unchanged class files.", Integer.valueOf(this._written.get()),
+        Integer.valueOf(this._skipped.get()));
+
+    Throwable throwable = this._throwable;
+    if (throwable instanceof RuntimeException) {
+      throw (RuntimeException) throwable;
+    } else if (throwable instanceof Error) {
+      throw (Error) throwable;
+    } else if (throwable != null) {
+      throw new RuntimeException(throwable);
+    }
+    return this._failures;
+  }
+
+  /**
+   * <p>
+   * Executes the given task on the shared worker threads (or on the calling thread if there are no worker threads or if
+   * they can't keep up). Any throwable of the task is remembered, so it can be rethrown by {@link #finish()}.
+   * </p>
+   *
+   * @param task
+   *          the task to execute
+   */
+  private void execute(final Runnable task) {
+    synchronized (this) {
+      this._pending++;
+    }
+    Runnable wrapper = new Runnable() {
+      public void run() {
+        try {
+          task.run();
+        } catch (Throwable throwable) {
+          synchronized (ClassFileWriter.this) {
+            if (ClassFileWriter.this._throwable == null) {
+              ClassFileWriter.this._throwable = throwable;
+            }
+          }
+        } finally {
+          synchronized (ClassFileWriter.this) {
+            ClassFileWriter.this._pending--;
+            ClassFileWriter.this.notifyAll();
+          }
+        }
+      }
+    };
+
+    ThreadPoolExecutor executor = getExecutor();
+    if (executor != null) {
+      executor.execute(wrapper);
+    } else {
+      wrapper.run();
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the executor that is shared by all instances. The worker threads are daemon threads, so the executor is
+   * never shut down.
+   * </p>
+   *
+   * @return the shared executor or <code>null</code> if the class files should be written on the calling thread.
+   */
+  static synchronized ThreadPoolExecutor getExecutor() {
+    if ((executor == null) && !synchronous) {
+      int threadCount = Integer.getInteger(THREAD_COUNT_PROPERTY_NAME,
+          Math.min(4, Runtime.getRuntime().availableProcessors())).intValue();
+      if (threadCount > 0) {
+        executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(threadCount * QUEUE_SIZE_PER_THREAD), new WriterThreadFactory(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+      } else {
+        synchronous = true;
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * <p>
+   * Writes the given class file unless the destination already has the same content.
+   * </p>
+   *
+   * @param content
+   *          the content of the class file
+   * @param destination
+   *          the destination
+   * @return <code>true</code> if the destination has the given content afterwards.
+   */
+  private boolean writeClassFile(byte[] content, File destination) {
+    try {
+      File directory = destination.getParentFile();
+      if (!this._directories.containsKey(directory)) {
+        Utilities.mkdirs(directory);
+        this._directories.put(directory, Boolean.TRUE);
+      }
+      if (hasContent(destination, content)) {
+        A4ELogging.debug("class file '%s' is unchanged", destination);
+        this._skipped.incrementAndGet();
+        CLASS_FILES_SKIPPED.increment();
+      } else {
+        A4ELogging.debug("writing class file: '%s'", destination);
+        Utilities.writeFile(destination, content);
+        this._written.incrementAndGet();
+        CLASS_FILES_WRITTEN.increment();
+        BYTES_WRITTEN.add(content.length);
+      }
+      return true;
+    } catch (Ant4EclipseException ex) {
+      A4ELogging.error("Could not write classfile '%s': %s", destination, ex.toString());
+      this._failures.add(destination.getPath());
+      return false;
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given file exists and has the given content.
+   * </p>
+   *
+   * @param file
+   *          the file
+   * @param content
+   *          the expected content
+   * @return <code>true</code> if the given file exists and has the given content.
+   */
+  private static boolean hasContent(File file, byte[] content) {
+    if (file.length() != content.length || !file.isFile()) {
+      return false;
+    }
+    try {
+      return Arrays.equals(readFile(file, content.length), content);
+    } catch (IOException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * <p>
+   * Reads the given number of bytes from the given file.
+   * </p>
+   *
+   * @param file
+   *          the file
+   * @param length
+   *          the number of bytes to read
+   * @return the content of the file.
+   * @throws IOException
+   *           if the file couldn't be read
+   */
+  private static byte[] readFile(File file, int length) throws IOException {
+    byte[] result = new byte[length];
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new FileInputStream(file));
+      input.readFully(result);
+      return result;
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+
+  /**
+   * <p>
+   * Creates the daemon worker threads.
+   * </p>
+   */
+  private static class WriterThreadFactory implements ThreadFactory {
+
+    /** the number of created threads */
+    private AtomicInteger _count = new AtomicInteger();
+
+    /**
+     * {@inheritDoc}
+     */
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable);
+      thread.setName("A4E-ClassFileWriter-" + this._count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
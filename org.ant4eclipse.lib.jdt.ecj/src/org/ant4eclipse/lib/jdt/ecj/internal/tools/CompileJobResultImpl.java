@@ -12,6 +12,7 @@
 package org.ant4eclipse.lib.jdt.ecj.internal.tools;
 
 import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.DependencyInfo;
 import org.eclipse.jdt.core.compiler.CategorizedProblem;
 
 import java.io.File;
@@ -20,11 +21,13 @@ import java.util.Map;
 
 public class CompileJobResultImpl implements CompileJobResult {
 
-  private boolean              _succeeded;
+  private boolean                   _succeeded;
 
-  private CategorizedProblem[] _categorizedProblems;
+  private CategorizedProblem[]      _categorizedProblems;
 
-  private Map<String, File>    _compiledclassfiles;
+  private Map<String, File>         _compiledclassfiles;
+
+  private Map<File, DependencyInfo> _dependencyInfos;
 
   /**
    * {@inheritDoc}
@@ -69,4 +72,25 @@ public class CompileJobResultImpl implements CompileJobResult {
     this._compiledclassfiles = compiledclasses;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public Map<File, DependencyInfo> getDependencyInfos() {
+    if (this._dependencyInfos == null) {
+      return Collections.emptyMap();
+    } else {
+      return this._dependencyInfos;
+    }
+  }
+
+  /**
+   * Changes the map which contains the dependency infos of the compiled source files.
+   * 
+   * @param dependencyInfos
+   *          A map for the dependency infos. Maybe <code>null</code>.
+   */
+  public void setDependencyInfos(Map<File, DependencyInfo> dependencyInfos) {
+    this._dependencyInfos = dependencyInfos;
+  }
+
 }
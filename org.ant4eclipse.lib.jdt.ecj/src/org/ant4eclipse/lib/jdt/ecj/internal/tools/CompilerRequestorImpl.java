@@ -11,9 +11,8 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.ecj.internal.tools;
 
-import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
-import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.DependencyInfo;
 import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
 import org.eclipse.jdt.core.compiler.CategorizedProblem;
@@ -24,10 +23,13 @@ import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * <p>
@@ -35,6 +37,10 @@ import java.util.Map;
  * {@link CompilerRequestorImpl} writes the compiled class files to disc or reports the errors in case the compilation
  * was not successful.
  * </p>
+ * <p>
+ * The class files are written asynchronously by a {@link ClassFileWriter}, so {@link #finish()} has to be called after
+ * the compilation. A class file is only reported as compiled once it has been written successfully.
+ * </p>
  * 
  * @author Nils Hartmann (nils@nilshartmann.net)
  */
@@ -46,8 +52,11 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
   /** the list of categorized problems */
   protected List<CategorizedProblem> _categorizedProblems;
 
-  /** collection of class files which have been compiled */
-  private Map<String, File>          _compiledClassFiles;
+  /** the dependency infos of the compiled source files, <code>null</code> if they haven't been requested */
+  private Map<File, DependencyInfo>  _dependencyInfos;
+
+  /** the writer for the class files, which also collects the class files that have been compiled */
+  private ClassFileWriter            _classFileWriter;
 
   /**
    * <p>
@@ -55,9 +64,41 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
    * </p>
    */
   public CompilerRequestorImpl() {
+    this(false);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompilerRequestorImpl}.
+   * </p>
+   *
+   * @param collectDependencyInfos
+   *          <code>true</code> if the {@link DependencyInfo DependencyInfos} of the compiled source files should be
+   *          collected. This requires that the compiler produces reference information.
+   */
+  public CompilerRequestorImpl(boolean collectDependencyInfos) {
+    this(collectDependencyInfos, false);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CompilerRequestorImpl}.
+   * </p>
+   *
+   * @param collectDependencyInfos
+   *          <code>true</code> if the {@link DependencyInfo DependencyInfos} of the compiled source files should be
+   *          collected. This requires that the compiler produces reference information.
+   * @param keepClassFileContents
+   *          <code>true</code> if the content of the compiled class files should be kept (see
+   *          {@link #getCompiledClassFileContents()}).
+   */
+  public CompilerRequestorImpl(boolean collectDependencyInfos, boolean keepClassFileContents) {
     this._compilationSuccessful = true;
     this._categorizedProblems = new LinkedList<CategorizedProblem>();
-    this._compiledClassFiles = new Hashtable<String, File>();
+    if (collectDependencyInfos) {
+      this._dependencyInfos = new Hashtable<File, DependencyInfo>();
+    }
+    this._classFileWriter = new ClassFileWriter(keepClassFileContents);
   }
 
   /**
@@ -66,7 +107,29 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
    * @return A map for the compiled class files. Not <code>null</code>.
    */
   public Map<String, File> getCompiledClassFiles() {
-    return Collections.unmodifiableMap(this._compiledClassFiles);
+    return this._classFileWriter.getWrittenClassFiles();
+  }
+
+  /**
+   * Returns the content of the compiled class files if it has been requested.
+   * 
+   * @return the content of the compiled class files, keyed by the name of the class file. Not <code>null</code>.
+   */
+  public Map<String, byte[]> getCompiledClassFileContents() {
+    return this._classFileWriter.getContents();
+  }
+
+  /**
+   * Returns the {@link DependencyInfo DependencyInfos} of the successfully compiled source files, keyed by the source
+   * file.
+   * 
+   * @return the {@link DependencyInfo DependencyInfos} of the compiled source files. Not <code>null</code>.
+   */
+  public Map<File, DependencyInfo> getDependencyInfos() {
+    if (this._dependencyInfos == null) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(this._dependencyInfos);
   }
 
   /**
@@ -99,6 +162,8 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
 
     if (!result.hasErrors()) {
       ClassFile[] classFiles = result.getClassFiles();
+      Set<String> classFileNames = new LinkedHashSet<String>();
+      Map<String, String> structuralHashes = new HashMap<String, String>();
       for (ClassFile classFile2 : classFiles) {
         char[][] compoundName = classFile2.getCompoundName();
         StringBuffer classFileName = new StringBuffer();
@@ -110,20 +175,24 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
         }
         classFileName.append(".class");
         File classFile = new File(destinationDirectory, classFileName.toString());
-        File classDir = classFile.getParentFile();
-        if (!classDir.exists()) {
-          classDir.mkdirs();
-        }
-        try {
-          A4ELogging.debug("writing class file: '%s'", classFile);
-          Utilities.writeFile(classFile, classFile2.getBytes());
-          this._compiledClassFiles.put(classFileName.toString(), classFile);
-        } catch (Ant4EclipseException ioe) {
-          A4ELogging.error("Could not write classfile '%s': %s", classFileName.toString(), ioe.toString());
-          ioe.printStackTrace();
-          this._compilationSuccessful = false;
+
+        // the bytes are copied by the class file, so they can be written asynchronously
+        byte[] bytes = classFile2.getBytes();
+        this._classFileWriter.write(classFileName.toString(), bytes, classFile);
+
+        if (this._dependencyInfos != null) {
+          String typeName = String.valueOf(classFile2.fileName());
+          classFileNames.add(classFileName.toString());
+          String structuralHash = StructuralHash.compute(typeName, bytes);
+          if (structuralHash != null) {
+            structuralHashes.put(typeName, structuralHash);
+          }
         }
       }
+      if (this._dependencyInfos != null) {
+        this._dependencyInfos.put(sourceFile.getSourceFile(), new DependencyInfo(toNames(result.qualifiedReferences),
+            toNames(result.simpleNameReferences), classFileNames, structuralHashes));
+      }
     } else {
       this._compilationSuccessful = false;
     }
@@ -145,6 +214,18 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
     return this._compilationSuccessful;
   }
 
+  /**
+   * <p>
+   * Waits until all class files have been written. The compilation is marked as not successful if a class file
+   * couldn't be written. If writing a class file failed unexpectedly, the cause is rethrown.
+   * </p>
+   */
+  public void finish() {
+    if (!this._classFileWriter.finish().isEmpty()) {
+      this._compilationSuccessful = false;
+    }
+  }
+
   /**
    * <p>
    * Returns the categorized problems.
@@ -155,4 +236,49 @@ public class CompilerRequestorImpl implements ICompilerRequestor {
   public CategorizedProblem[] getCategorizedProblems() {
     return this._categorizedProblems.toArray(new CategorizedProblem[0]);
   }
+
+  /**
+   * <p>
+   * Converts the given compound names into dotted names.
+   * </p>
+   * 
+   * @param compoundNames
+   *          the compound names. May be <code>null</code>.
+   * @return the dotted names.
+   */
+  private static Set<String> toNames(char[][][] compoundNames) {
+    Set<String> result = new LinkedHashSet<String>();
+    if (compoundNames != null) {
+      for (char[][] compoundName : compoundNames) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < compoundName.length; i++) {
+          if (i > 0) {
+            builder.append('.');
+          }
+          builder.append(compoundName[i]);
+        }
+        result.add(builder.toString());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Converts the given simple names into strings.
+   * </p>
+   * 
+   * @param simpleNames
+   *          the simple names. May be <code>null</code>.
+   * @return the simple names as strings.
+   */
+  private static Set<String> toNames(char[][] simpleNames) {
+    Set<String> result = new LinkedHashSet<String>();
+    if (simpleNames != null) {
+      for (char[] simpleName : simpleNames) {
+        result.add(String.valueOf(simpleName));
+      }
+    }
+    return result;
+  }
 }
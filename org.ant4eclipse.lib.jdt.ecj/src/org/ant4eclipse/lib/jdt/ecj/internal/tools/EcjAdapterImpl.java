@@ -11,21 +11,49 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.ecj.internal.tools;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.metrics.Counter;
+import org.ant4eclipse.lib.core.metrics.Metrics;
+import org.ant4eclipse.lib.core.util.Utilities;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
 import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.CompoundName;
+import org.ant4eclipse.lib.jdt.ecj.DependencyInfo;
 import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
 import org.eclipse.jdt.internal.compiler.Compiler;
 import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
 import org.eclipse.jdt.internal.compiler.IErrorHandlingPolicy;
 import org.eclipse.jdt.internal.compiler.IProblemFactory;
+import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
 import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
 import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
 import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
@@ -38,11 +66,40 @@ import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
  * <li>setting the compiler options as specified in the eclipse project or in the global settings</li>
  * <li>setting the java runtime environment as specified in the eclipse project</li>
  * </ul>
+ * <p>
+ * The source files of large projects can be compiled concurrently by setting the system property
+ * <code>ant4eclipse.ecjCompileThreads</code> to the number of threads to use. The source files are split into batches
+ * of consecutive source files (at least <code>ant4eclipse.ecjMinimumBatchSize</code> source files per batch, default:
+ * 500) that are compiled by separate compilers. The compilers share the name environment; types that are defined in the
+ * source files of other batches (including secondary types) are taken from source, but only their declarations are
+ * used, their method bodies are neither resolved nor compiled by the batch. The results of the batches are merged in
+ * the order of the source files, so problems are reported in the same order as in a sequential compilation. If a
+ * batch can't be compiled successfully, all source files are compiled again by a single compiler, so that the reported
+ * problems don't depend on how the source files have been split.
+ * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
 public final class EcjAdapterImpl implements EcjAdapter {
 
+  /** the name of the system property that specifies the number of threads that compile a single project */
+  public static final String   COMPILE_THREADS_PROPERTY_NAME    = "ant4eclipse.ecjCompileThreads";
+
+  /** the name of the system property that specifies the minimum number of source files per batch */
+  public static final String   MINIMUM_BATCH_SIZE_PROPERTY_NAME = "ant4eclipse.ecjMinimumBatchSize";
+
+  /** the default minimum number of source files per batch */
+  public static final int      DEFAULT_MINIMUM_BATCH_SIZE       = 500;
+
+  /** the number of compilations that have been split into batches */
+  private static final Counter BATCHED_COMPILATIONS             = Metrics.counter("ecj.compile.batched");
+
+  /** the number of compilation units of other batches whose declarations have been used by a batch */
+  private static final Counter FOREIGN_UNITS                    = Metrics.counter("ecj.compile.foreignUnits");
+
+  /** the number of batched compilations that had to be repeated by a single compiler */
+  private static final Counter SEQUENTIAL_FALLBACKS             = Metrics.counter("ecj.compile.sequentialFallback");
+
   /**
    * {@inheritDoc}
    */
@@ -52,24 +109,73 @@ public final class EcjAdapterImpl implements EcjAdapter {
     // create the name environment
     INameEnvironment nameEnvironment = new NameEnvironmentImpl(description.getClassFileLoader());
 
-    // get the compiler options
-    Map<String, String> compilerOptions = description.getCompilerOptions();
-
     // retrieve the compilation units
     ICompilationUnit[] sources = getCompilationUnits(description.getSourceFiles());
 
+    try {
+
+      // compile the batches concurrently if requested
+      List<ICompilationUnit[]> batches = splitIntoBatches(sources);
+      if (batches.size() > 1) {
+        BATCHED_COMPILATIONS.increment();
+        List<CompilerRequestorImpl> requestors = compileBatches(description, nameEnvironment, sources, batches);
+        CompileJobResultImpl result = createResult(requestors);
+        if (result.succeeded()) {
+          return writeToAdditionalDestinationFolder(description, requestors, result);
+        }
+        SEQUENTIAL_FALLBACKS.increment();
+        A4ELogging.debug("Compilation of %d batches was not successful, compiling %d source files again.", Integer
+            .valueOf(batches.size()), Integer.valueOf(sources.length));
+      }
+
+      // compile all source files with a single compiler
+      CompilerRequestorImpl requestor = new CompilerRequestorImpl(description.isCollectDependencyInfos(),
+          hasAdditionalDestinationFolder(description));
+      List<CompilerRequestorImpl> requestors = Arrays.asList(compile(description, nameEnvironment, sources, null,
+          requestor));
+      return writeToAdditionalDestinationFolder(description, requestors, createResult(requestors));
+
+    } finally {
+      nameEnvironment.cleanup();
+    }
+  }
+
+  /**
+   * <p>
+   * Compiles the given compilation units.
+   * </p>
+   * 
+   * @param description
+   *          the compile job description
+   * @param nameEnvironment
+   *          the name environment
+   * @param sources
+   *          the compilation units
+   * @param batchUnits
+   *          the compilation units of the batch if the given compilation units are a batch, <code>null</code> otherwise
+   * @param requestor
+   *          the requestor that receives the compilation results
+   * @return the given requestor.
+   */
+  private CompilerRequestorImpl compile(CompileJobDescription description, INameEnvironment nameEnvironment,
+      ICompilationUnit[] sources, Set<ICompilationUnit> batchUnits, CompilerRequestorImpl requestor) {
+
+    // get the compiler options
+    Map<String, String> compilerOptions = description.getCompilerOptions();
+
     // create the error handling policy
     IErrorHandlingPolicy policy = DefaultErrorHandlingPolicies.proceedWithAllProblems();
 
     // create the problem factory
     IProblemFactory problemFactory = new DefaultProblemFactory(Locale.getDefault());
 
-    // create the compiler requestor
-    CompilerRequestorImpl requestor = new CompilerRequestorImpl();
+    // the dependency infos are built from the reference information
+    CompilerOptions options = new CompilerOptions(compilerOptions);
+    options.produceReferenceInfo = description.isCollectDependencyInfos();
 
     // create the compiler
-    Compiler compiler = new Compiler(nameEnvironment, policy, new CompilerOptions(compilerOptions), requestor,
-        problemFactory);
+    Compiler compiler = batchUnits == null ? new Compiler(nameEnvironment, policy, options, requestor, problemFactory)
+        : new BatchCompiler(nameEnvironment, policy, options, requestor, problemFactory, batchUnits);
 
     if (Boolean.getBoolean("a4e.ecj.useMultiThreading")) {
       compiler.useSingleThread = false;
@@ -80,18 +186,236 @@ public final class EcjAdapterImpl implements EcjAdapter {
     setupAnnotationProcessor(compiler);
 
     // compile
-    compiler.compile(sources);
+    try {
+      compiler.compile(sources);
+    } finally {
+      requestor.finish();
+    }
+
+    return requestor;
+  }
+
+  /**
+   * <p>
+   * Compiles the given batches concurrently. The first batch is compiled on the calling thread.
+   * </p>
+   * 
+   * @param description
+   *          the compile job description
+   * @param nameEnvironment
+   *          the (thread-safe) name environment that is shared by all batches
+   * @param sources
+   *          all compilation units
+   * @param batches
+   *          the batches
+   * @return the requestors of the batches (in the order of the batches).
+   */
+  private List<CompilerRequestorImpl> compileBatches(final CompileJobDescription description,
+      final INameEnvironment nameEnvironment, ICompilationUnit[] sources, List<ICompilationUnit[]> batches) {
+
+    A4ELogging.debug("Compiling %d source files in %d batches.", Integer.valueOf(sources.length), Integer
+        .valueOf(batches.size()));
+
+    // index the packages that are defined by the compilation units
+    final Set<CompoundName> sourcePackages = new HashSet<CompoundName>();
+    for (ICompilationUnit source : sources) {
+      char[][] packageName = source.getPackageName();
+      int packageLength = packageName == null ? 0 : packageName.length;
+      for (int i = 1; i <= packageLength; i++) {
+        sourcePackages.add(new CompoundName(packageName, i, null));
+      }
+    }
+
+    // the types are indexed by the tasks (each task indexes its own batch), as the source files have to be read
+    final ConcurrentMap<CompoundName, ICompilationUnit> sourceTypes = new ConcurrentHashMap<CompoundName,
+        ICompilationUnit>();
+    final CountDownLatch indexed = new CountDownLatch(batches.size());
+    final long sourceLevel = new CompilerOptions(description.getCompilerOptions()).sourceLevel;
+
+    // create the tasks
+    List<Callable<CompilerRequestorImpl>> tasks = new ArrayList<Callable<CompilerRequestorImpl>>();
+    for (final ICompilationUnit[] batch : batches) {
+      tasks.add(new Callable<CompilerRequestorImpl>() {
+        public CompilerRequestorImpl call() throws InterruptedException {
+          try {
+            indexTopLevelTypes(batch, sourceLevel, sourceTypes);
+          } finally {
+            indexed.countDown();
+          }
+          indexed.await();
+          Set<ICompilationUnit> batchUnits = new HashSet<ICompilationUnit>(Arrays.asList(batch));
+          return compile(description, new BatchNameEnvironment(nameEnvironment, sourceTypes, sourcePackages,
+              batchUnits), batch, batchUnits, new BatchCompilerRequestor(description, batchUnits));
+        }
+      });
+    }
+
+    // compile the batches
+    ExecutorService executorService = Executors.newFixedThreadPool(tasks.size() - 1, new CompilerThreadFactory());
+    try {
+      List<Future<CompilerRequestorImpl>> futures = new ArrayList<Future<CompilerRequestorImpl>>();
+      for (Callable<CompilerRequestorImpl> task : tasks.subList(1, tasks.size())) {
+        futures.add(executorService.submit(task));
+      }
+
+      List<CompilerRequestorImpl> requestors = new ArrayList<CompilerRequestorImpl>();
+      try {
+        requestors.add(tasks.get(0).call());
+        for (Future<CompilerRequestorImpl> future : futures) {
+          requestors.add(future.get());
+        }
+      } catch (ExecutionException ex) {
+        executorService.shutdownNow();
+        Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+      } catch (InterruptedException ex) {
+        executorService.shutdownNow();
+        Thread.currentThread().interrupt();
+        throw new Ant4EclipseException(ex, EcjExceptionCodes.COMPILATION_INTERRUPTED_EXCEPTION);
+      } catch (RuntimeException ex) {
+        executorService.shutdownNow();
+        throw ex;
+      } catch (Exception ex) {
+        // can't happen, the tasks only throw InterruptedExceptions
+        executorService.shutdownNow();
+        throw new RuntimeException(ex);
+      }
+
+      return requestors;
+
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the top-level types (i.e. the main type and the secondary types) of the given compilation units to the given
+   * index. A type that is defined by several compilation units is mapped to one of them, the compiler reports the
+   * duplicate anyway.
+   * </p>
+   * 
+   * @param units
+   *          the compilation units
+   * @param sourceLevel
+   *          the source level of the compilation units
+   * @param sourceTypes
+   *          the (thread-safe) index of the types defined by the compilation units
+   */
+  private static void indexTopLevelTypes(ICompilationUnit[] units, long sourceLevel,
+      ConcurrentMap<CompoundName, ICompilationUnit> sourceTypes) {
+    for (ICompilationUnit unit : units) {
+      char[][] packageName = unit.getPackageName();
+      int packageLength = packageName == null ? 0 : packageName.length;
+      sourceTypes.putIfAbsent(new CompoundName(packageName, packageLength, unit.getMainTypeName()), unit);
+      for (char[] typeName : TopLevelTypeScanner.getTopLevelTypeNames(unit.getContents(), sourceLevel)) {
+        sourceTypes.putIfAbsent(new CompoundName(packageName, packageLength, typeName), unit);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Creates the compile job result from the given requestors.
+   * </p>
+   * 
+   * @param requestors
+   *          the requestors (in the order of the compiled source files)
+   * @return the compile job result.
+   */
+  private CompileJobResultImpl createResult(List<CompilerRequestorImpl> requestors) {
+
+    boolean succeeded = true;
+    List<CategorizedProblem> categorizedProblems = new ArrayList<CategorizedProblem>();
+    Map<String, File> compiledClassFiles = new HashMap<String, File>();
+    Map<File, DependencyInfo> dependencyInfos = new HashMap<File, DependencyInfo>();
+
+    for (CompilerRequestorImpl requestor : requestors) {
+      succeeded &= requestor.isCompilationSuccessful();
+      categorizedProblems.addAll(Arrays.asList(requestor.getCategorizedProblems()));
+      compiledClassFiles.putAll(requestor.getCompiledClassFiles());
+      dependencyInfos.putAll(requestor.getDependencyInfos());
+    }
 
     // create the compile job result
     CompileJobResultImpl result = new CompileJobResultImpl();
-    result.setSucceeded(requestor.isCompilationSuccessful());
-    result.setCategorizedProblems(requestor.getCategorizedProblems());
-    result.setCompiledClassFiles(requestor.getCompiledClassFiles());
+    result.setSucceeded(succeeded);
+    result.setCategorizedProblems(categorizedProblems.toArray(new CategorizedProblem[categorizedProblems.size()]));
+    result.setCompiledClassFiles(compiledClassFiles);
+    result.setDependencyInfos(dependencyInfos);
 
     // return the result
     return result;
   }
 
+  /**
+   * <p>
+   * Returns <code>true</code> if the compiled class files have to be written to an additional destination folder, so
+   * the requestors have to keep their content.
+   * </p>
+   * 
+   * @param description
+   *          the compile job description
+   * @return <code>true</code> if the given description has an additional destination folder.
+   */
+  private static boolean hasAdditionalDestinationFolder(CompileJobDescription description) {
+    return description.getAdditionalDestinationFolder() != null;
+  }
+
+  /**
+   * <p>
+   * Writes the compiled class files to the additional destination folder of the given description. The class files are
+   * only written if the compilation has been successful. Their content is taken from the requestors, so the class files
+   * are not read back from the destination folders of the source files.
+   * </p>
+   * 
+   * @param description
+   *          the compile job description
+   * @param requestors
+   *          the requestors that have kept the content of the compiled class files
+   * @param result
+   *          the compile job result
+   * @return the given result, which is marked as not successful if a class file couldn't be written.
+   */
+  private CompileJobResultImpl writeToAdditionalDestinationFolder(CompileJobDescription description,
+      List<CompilerRequestorImpl> requestors, CompileJobResultImpl result) {
+
+    File additionalDestinationFolder = description.getAdditionalDestinationFolder();
+    if (!result.succeeded() || (additionalDestinationFolder == null)) {
+      return result;
+    }
+    additionalDestinationFolder = Utilities.getCanonicalFile(additionalDestinationFolder);
+
+    // the class files of a source folder whose output folder is the additional destination folder are not written twice
+    Map<File, Boolean> needsCopy = new HashMap<File, Boolean>();
+    ClassFileWriter classFileWriter = new ClassFileWriter();
+    for (CompilerRequestorImpl requestor : requestors) {
+      Map<String, byte[]> contents = requestor.getCompiledClassFileContents();
+      for (Map.Entry<String, File> classFile : requestor.getCompiledClassFiles().entrySet()) {
+        String path = classFile.getValue().getPath();
+        File destinationFolder = new File(path.substring(0, path.length() - classFile.getKey().length()));
+        Boolean copy = needsCopy.get(destinationFolder);
+        if (copy == null) {
+          copy = Boolean.valueOf(!additionalDestinationFolder.equals(Utilities.getCanonicalFile(destinationFolder)));
+          needsCopy.put(destinationFolder, copy);
+        }
+        if (copy.booleanValue()) {
+          classFileWriter.write(classFile.getKey(), contents.get(classFile.getKey()), new File(
+              additionalDestinationFolder, classFile.getKey()));
+        }
+      }
+    }
+    if (!classFileWriter.finish().isEmpty()) {
+      result.setSucceeded(false);
+    }
+    return result;
+  }
+
   private void setupAnnotationProcessor(Compiler compiler) {
     // compiler.annotationProcessorManager = Utilities
     // .newInstance("org.eclipse.jdt.internal.compiler.apt.dispatch.BatchAnnotationProcessorManager");
@@ -100,6 +424,46 @@ public final class EcjAdapterImpl implements EcjAdapter {
     // // annotationManager.setOut(this.out);
   }
 
+  /**
+   * <p>
+   * Splits the given compilation units into batches that can be compiled concurrently. Each batch contains consecutive
+   * compilation units. If possible, a batch ends at the end of a package, so the compilation units of a package are
+   * compiled together.
+   * </p>
+   * 
+   * @param sources
+   *          the compilation units
+   * @return the batches (a single batch if the compilation units should not be compiled concurrently).
+   */
+  private List<ICompilationUnit[]> splitIntoBatches(ICompilationUnit[] sources) {
+
+    int threadCount = Integer.getInteger(COMPILE_THREADS_PROPERTY_NAME, 1).intValue();
+    int minimumBatchSize = Math.max(1, Integer.getInteger(MINIMUM_BATCH_SIZE_PROPERTY_NAME,
+        DEFAULT_MINIMUM_BATCH_SIZE).intValue());
+    int batchCount = Math.min(threadCount, sources.length / minimumBatchSize);
+
+    List<ICompilationUnit[]> result = new ArrayList<ICompilationUnit[]>();
+    if (batchCount < 2) {
+      result.add(sources);
+      return result;
+    }
+
+    int batchSize = (sources.length + batchCount - 1) / batchCount;
+    int start = 0;
+    while (start < sources.length) {
+      int end = Math.min(start + batchSize, sources.length);
+      int limit = Math.min(end + batchSize / 2, sources.length);
+      while ((end < limit) && CharOperation.equals(sources[end - 1].getPackageName(), sources[end].getPackageName())) {
+        end++;
+      }
+      ICompilationUnit[] batch = new ICompilationUnit[end - start];
+      System.arraycopy(sources, start, batch, 0, batch.length);
+      result.add(batch);
+      start = end;
+    }
+    return result;
+  }
+
   /**
    * <p>
    * Returns the compilation units for the given source files.
@@ -127,4 +491,104 @@ public final class EcjAdapterImpl implements EcjAdapter {
     // return the result
     return result.toArray(new ICompilationUnit[result.size()]);
   }
-}
\ No newline at end of file
+
+  /**
+   * <p>
+   * Accepts the results of the compilation units of a single batch. The results of the compilation units of other
+   * batches (whose declarations have been taken from source because they are referenced by the batch) are ignored,
+   * they are reported by the compiler of their own batch.
+   * </p>
+   */
+  private static class BatchCompilerRequestor extends CompilerRequestorImpl {
+
+    /** the compilation units of the batch */
+    private Set<ICompilationUnit> _batchUnits;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link BatchCompilerRequestor}.
+     * </p>
+     * 
+     * @param description
+     *          the compile job description
+     * @param batchUnits
+     *          the compilation units of the batch
+     */
+    public BatchCompilerRequestor(CompileJobDescription description, Set<ICompilationUnit> batchUnits) {
+      super(description.isCollectDependencyInfos(), hasAdditionalDestinationFolder(description));
+      this._batchUnits = batchUnits;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void acceptResult(CompilationResult result) {
+      if (this._batchUnits.contains(result.getCompilationUnit())) {
+        super.acceptResult(result);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Compiles the compilation units of a single batch. The compilation units of other batches that are referenced by the
+   * batch are only used for their declarations: their type bindings are built, and the members and constants the batch
+   * uses are resolved on demand, but they are not processed. Otherwise each batch would compile the method bodies of
+   * the referenced compilation units, and in turn all compilation units referenced by them, which is most of the project
+   * if its types are densely connected.
+   * </p>
+   */
+  private static class BatchCompiler extends Compiler {
+
+    /** the compilation units of the batch */
+    private Set<ICompilationUnit> _batchUnits;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link BatchCompiler}.
+     * </p>
+     * 
+     * @param batchUnits
+     *          the compilation units of the batch
+     */
+    public BatchCompiler(INameEnvironment environment, IErrorHandlingPolicy policy, CompilerOptions options,
+        ICompilerRequestor requestor, IProblemFactory problemFactory, Set<ICompilationUnit> batchUnits) {
+      super(environment, policy, options, requestor, problemFactory);
+      this._batchUnits = batchUnits;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process(CompilationUnitDeclaration unit, int i) {
+      if (this._batchUnits.contains(unit.compilationResult.getCompilationUnit())) {
+        super.process(unit, i);
+      } else {
+        FOREIGN_UNITS.increment();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Creates the daemon threads that compile the batches.
+   * </p>
+   */
+  private static class CompilerThreadFactory implements ThreadFactory {
+
+    /** the number of created threads */
+    private AtomicInteger _count = new AtomicInteger();
+
+    /**
+     * {@inheritDoc}
+     */
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable);
+      thread.setName("A4E-EcjCompiler-" + this._count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
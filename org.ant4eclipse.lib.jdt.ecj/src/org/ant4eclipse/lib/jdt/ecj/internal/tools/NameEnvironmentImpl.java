@@ -11,11 +11,19 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.ecj.internal.tools;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.ClassName;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.metrics.Counter;
+import org.ant4eclipse.lib.core.metrics.Metrics;
+import org.ant4eclipse.lib.core.metrics.Timer;
 import org.ant4eclipse.lib.jdt.ecj.ClassFile;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.CompoundName;
 import org.ant4eclipse.lib.jdt.ecj.SourceFile;
 import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
@@ -24,6 +32,10 @@ import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
  * <p>
  * Adapter class to utilize class file loaders in the eclipse java compiler.
  * </p>
+ * <p>
+ * A {@link NameEnvironmentImpl} is thread-safe, so it can be shared by compilers that run concurrently (see
+ * {@link EcjAdapterImpl}).
+ * </p>
  * 
  * @author Gerd Wuetherich (gerd@gerd-wuetherich.de)
  * @author Nils Hartmann (nils@nilshartmann.net)
@@ -41,8 +53,35 @@ public class NameEnvironmentImpl implements INameEnvironment {
     DEBUG_TYPE_NOT_FOUND = "true".equals(System.getProperty("ant4eclipse.debug.nameenv.missingtypes"));
   }
 
+  /** marks a type that could not be found in the type cache */
+  private static final Object        NOT_FOUND    = new Object();
+
+  /** the latency of type lookups that had to be delegated to the class file loader */
+  private static final Timer         FIND_TYPE    = Metrics.timer("ecj.findType");
+
+  /** the number of type lookups that have been answered from the type cache */
+  private static final Counter       CACHED_TYPES = Metrics.counter("ecj.findType.cached");
+
   /** used to find binary type as requested by the compiler */
-  private ClassFileLoader _classFileLoader;
+  private ClassFileLoader            _classFileLoader;
+
+  /** caches the (positive and negative) answers to type lookups */
+  private Map<CompoundName, Object>  _typeCache;
+
+  /** caches the answers to package lookups */
+  private Map<CompoundName, Boolean> _packageCache;
+
+  /** the number of lookups that have been answered from the caches */
+  private AtomicInteger              _cachedLookups;
+
+  /** the number of lookups that had to be delegated to the class file loader */
+  private AtomicInteger              _delegatedLookups;
+
+  /** reusable lookup keys for type names (one per thread, as several compilers may query the name environment) */
+  private ThreadLocal<CompoundName>  _typeProbe;
+
+  /** reusable lookup keys for package names (one per thread) */
+  private ThreadLocal<CompoundName>  _packageProbe;
 
   /**
    * <p>
@@ -55,6 +94,12 @@ public class NameEnvironmentImpl implements INameEnvironment {
   public NameEnvironmentImpl(ClassFileLoader classFileLoader) {
     Assure.notNull("classFileLoader", classFileLoader);
     this._classFileLoader = classFileLoader;
+    this._typeCache = new ConcurrentHashMap<CompoundName, Object>();
+    this._packageCache = new ConcurrentHashMap<CompoundName, Boolean>();
+    this._cachedLookups = new AtomicInteger();
+    this._delegatedLookups = new AtomicInteger();
+    this._typeProbe = new ProbeThreadLocal();
+    this._packageProbe = new ProbeThreadLocal();
 
     if (DEBUG_ALL || DEBUG_TYPE_NOT_FOUND) {
       A4ELogging.info("NameEnvironment tracing enabled.");
@@ -66,7 +111,22 @@ public class NameEnvironmentImpl implements INameEnvironment {
    * @see org.eclipse.jdt.internal.compiler.env.INameEnvironment#cleanup()
    */
   public void cleanup() {
-    // nothing to do here...
+    A4ELogging.debug("NameEnvironment: %d lookups answered from cache, %d lookups delegated to class file loader.",
+        Integer.valueOf(this._cachedLookups.get()), Integer.valueOf(this._delegatedLookups.get()));
+    this._typeCache.clear();
+    this._packageCache.clear();
+  }
+
+  /**
+   * <p>
+   * Returns the number of lookups that have been answered from the cache, e.g. that didn't need to probe the class
+   * file loaders.
+   * </p>
+   * 
+   * @return the number of lookups that have been answered from the cache.
+   */
+  public int getCachedLookups() {
+    return this._cachedLookups.get();
   }
 
   /**
@@ -74,17 +134,27 @@ public class NameEnvironmentImpl implements INameEnvironment {
    */
   public NameEnvironmentAnswer findType(char[][] compoundTypeName) {
 
-    // convert char array to string(buffer)
-    StringBuffer buffer = new StringBuffer();
-    for (int i = 0; i < compoundTypeName.length; i++) {
-      buffer.append(new String(compoundTypeName[i]));
-      if (i < compoundTypeName.length - 1) {
-        buffer.append(".");
-      }
+    int packageLength = compoundTypeName.length - 1;
+    char[] typeName = compoundTypeName[packageLength];
+
+    // ask the cache first
+    CompoundName key = this._typeProbe.get().set(compoundTypeName, packageLength, typeName);
+    Object cached = this._typeCache.get(key);
+    if (cached != null) {
+      this._cachedLookups.incrementAndGet();
+      CACHED_TYPES.increment();
+      return cached == NOT_FOUND ? null : (NameEnvironmentAnswer) cached;
     }
 
     // find class
-    NameEnvironmentAnswer answer = findClass(buffer.toString());
+    NameEnvironmentAnswer answer;
+    long start = FIND_TYPE.start();
+    try {
+      answer = findClass(this._packageProbe.get().set(compoundTypeName, packageLength, null), typeName);
+    } finally {
+      FIND_TYPE.stop(start);
+    }
+    cacheType(key, answer);
     return answer;
 
   }
@@ -94,15 +164,26 @@ public class NameEnvironmentImpl implements INameEnvironment {
    */
   public NameEnvironmentAnswer findType(char[] typeName, char[][] packageName) {
 
-    StringBuffer result = new StringBuffer();
-    if (packageName != null) {
-      for (char[] element : packageName) {
-        result.append(new String(element)).append(".");
-      }
+    int packageLength = packageName == null ? 0 : packageName.length;
+
+    // ask the cache first
+    CompoundName key = this._typeProbe.get().set(packageName, packageLength, typeName);
+    Object cached = this._typeCache.get(key);
+    if (cached != null) {
+      this._cachedLookups.incrementAndGet();
+      CACHED_TYPES.increment();
+      return cached == NOT_FOUND ? null : (NameEnvironmentAnswer) cached;
     }
-    result.append(new String(typeName));
 
-    return findClass(result.toString());
+    NameEnvironmentAnswer answer;
+    long start = FIND_TYPE.start();
+    try {
+      answer = findClass(this._packageProbe.get().set(packageName, packageLength, null), typeName);
+    } finally {
+      FIND_TYPE.stop(start);
+    }
+    cacheType(key, answer);
+    return answer;
   }
 
   /**
@@ -117,26 +198,45 @@ public class NameEnvironmentImpl implements INameEnvironment {
    */
   public boolean isPackage(char[][] parentPackageName, char[] packageName) {
 
-    String qualifiedPackageName = toJavaName(parentPackageName);
-    if (qualifiedPackageName.length() > 0) {
-      qualifiedPackageName += "." + new String(packageName);
-    } else {
-      qualifiedPackageName = new String(packageName);
+    // ask the cache first
+    CompoundName key = this._packageProbe.get().set(parentPackageName, parentPackageName == null ? 0
+        : parentPackageName.length, packageName);
+    Boolean cached = this._packageCache.get(key);
+    if (cached != null) {
+      this._cachedLookups.incrementAndGet();
+      return cached.booleanValue();
     }
+    this._delegatedLookups.incrementAndGet();
 
-    boolean packageFound = this._classFileLoader.hasPackage(qualifiedPackageName);
+    boolean packageFound = this._classFileLoader.hasPackage(key);
+    this._packageCache.put(key.copy(), Boolean.valueOf(packageFound));
 
     if (DEBUG_ALL) {
       if (packageFound) {
-        A4ELogging.info("Package '%s' found...", qualifiedPackageName);
+        A4ELogging.info("Package '%s' found...", key);
       } else {
-        A4ELogging.info("Package '%s' not found...", qualifiedPackageName);
+        A4ELogging.info("Package '%s' not found...", key);
       }
     }
 
     return packageFound;
   }
 
+  /**
+   * <p>
+   * Stores the answer to a type lookup in the type cache.
+   * </p>
+   * 
+   * @param key
+   *          the name of the type (a lookup key that is copied before it's stored)
+   * @param answer
+   *          the answer, may be <code>null</code>
+   */
+  private void cacheType(CompoundName key, NameEnvironmentAnswer answer) {
+    this._delegatedLookups.incrementAndGet();
+    this._typeCache.put(key.copy(), answer == null ? NOT_FOUND : answer);
+  }
+
   /**
    * @param className
    * @return
@@ -146,6 +246,58 @@ public class NameEnvironmentImpl implements INameEnvironment {
     return findClass(ClassName.fromQualifiedClassName(className));
   }
 
+  /**
+   * <p>
+   * Returns a {@link NameEnvironmentAnswer} for the class with the given name. In contrast to
+   * {@link #findClass(ClassName)} no objects are created if the class can't be found.
+   * </p>
+   * 
+   * @param packageName
+   *          the name of the package that contains the class
+   * @param typeName
+   *          the simple name of the class
+   * @return a {@link NameEnvironmentAnswer} or <code>null</code>.
+   */
+  protected NameEnvironmentAnswer findClass(CompoundName packageName, char[] typeName) {
+
+    // load class file from class file loader
+    ClassFile classFile = this._classFileLoader.loadClass(packageName, typeName);
+
+    // return new NameEnvironmentAnswer if classFile was found
+    if (classFile != null) {
+
+      if (DEBUG_ALL) {
+        A4ELogging.info("Loading class '%s' from '%s'.", packageName.asQualifiedName(typeName), classFile
+            .getLibraryLocation());
+      }
+
+      return new NameEnvironmentAnswer(classFile.getBinaryType(), (classFile.hasAccessRestriction() ? classFile
+          .getAccessRestriction() : null));
+    }
+
+    // load source file from class file loader
+    // TODO: AccessRestictions for source files!!
+    SourceFile sourceFile = this._classFileLoader.loadSource(packageName, typeName);
+
+    // load source file from class file loader
+    if (sourceFile != null) {
+
+      if (DEBUG_ALL) {
+        A4ELogging.info("Loading class '%s' as source from '%s'.", packageName.asQualifiedName(typeName), sourceFile
+            .getSourceFile().getAbsolutePath());
+      }
+
+      // TODO: AccessRestictions for source files!!
+      return new NameEnvironmentAnswer(new CompilationUnitImpl(sourceFile), null);
+    }
+
+    // else return null
+    if (DEBUG_TYPE_NOT_FOUND) {
+      A4ELogging.info("Could not load class '%s'.", packageName.asQualifiedName(typeName));
+    }
+    return null;
+  }
+
   /**
    * <p>
    * Returns a {@link NameEnvironmentAnswer} for the class that is represented by the given {@link ClassName} instance.
@@ -197,24 +349,17 @@ public class NameEnvironmentImpl implements INameEnvironment {
 
   /**
    * <p>
-   * Converts the given char array to a java name (e.g. "net.sf.ant4eclipse").
+   * Provides a reusable lookup key for each thread.
    * </p>
-   * 
-   * @param array
-   *          the array to convert.
-   * @return the
    */
-  private static String toJavaName(char[][] array) {
-    StringBuffer result = new StringBuffer();
-
-    if (array != null) {
-      for (int i = 0; i < array.length; i++) {
-        result.append(new String(array[i]));
-        if (i < array.length - 1) {
-          result.append(".");
-        }
-      }
+  private static final class ProbeThreadLocal extends ThreadLocal<CompoundName> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected CompoundName initialValue() {
+      return new CompoundName();
     }
-    return result.toString();
   }
 }
@@ -0,0 +1,236 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.ClassSignature;
+import org.eclipse.jdt.internal.compiler.env.EnumConstantSignature;
+import org.eclipse.jdt.internal.compiler.env.IBinaryAnnotation;
+import org.eclipse.jdt.internal.compiler.env.IBinaryElementValuePair;
+import org.eclipse.jdt.internal.compiler.env.IBinaryField;
+import org.eclipse.jdt.internal.compiler.env.IBinaryMethod;
+import org.eclipse.jdt.internal.compiler.env.IBinaryNestedType;
+import org.eclipse.jdt.internal.compiler.impl.Constant;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Computes the structural hash of a class file. The structural hash covers everything that might affect the
+ * compilation of other types: the modifiers, the super types and the signatures of all non-private fields, methods and
+ * member types as well as the values of constants and the annotations (including their values) of the type, its
+ * members and their parameters and the default values of annotation elements. Method bodies and private members are
+ * ignored, so the hash doesn't change if only the implementation of a type has been modified.
+ * </p>
+ * <p>
+ * The eclipse compiler doesn't report the standard annotations (e.g. <code>@Retention</code> or
+ * <code>@Deprecated</code>) as annotations but as tag bits, so the tag bits are part of the hash as well.
+ * </p>
+ *
+ * @author agent
+ */
+public class StructuralHash {
+
+  /**
+   * <p>
+   * Returns the structural hash of the given class file or <code>null</code> if the class file describes a local or
+   * anonymous type (which can't be referenced from other source files).
+   * </p>
+   *
+   * @param classFileName
+   *          the name of the class file (e.g. <code>java/util/Map$Entry</code>)
+   * @param bytes
+   *          the content of the class file
+   * @return the structural hash or <code>null</code>.
+   */
+  public static String compute(String classFileName, byte[] bytes) {
+
+    ClassFileReader reader = null;
+    try {
+      reader = new ClassFileReader(bytes, classFileName.toCharArray(), true);
+    } catch (ClassFormatException ex) {
+      // can't happen for class files that have been produced by the compiler. use a unique hash, so the type is
+      // always considered to be changed
+      A4ELogging.debug("Could not read class file '%s': %s", classFileName, ex.toString());
+      return CacheDirectory.hash(bytes);
+    }
+
+    if (reader.isAnonymous() || reader.isLocal()) {
+      return null;
+    }
+
+    StringBuilder builder = new StringBuilder();
+    builder.append(reader.getModifiers()).append(' ');
+    builder.append(reader.getTagBits()).append(' ');
+    append(builder, reader.getName());
+    append(builder, reader.getSuperclassName());
+    append(builder, reader.getInterfaceNames());
+    append(builder, reader.getGenericSignature());
+    append(builder, reader.getEnclosingTypeName());
+
+    append(builder, reader.getAnnotations());
+    builder.append('\n');
+
+    // the order of the members doesn't matter
+    List<String> members = new ArrayList<String>();
+
+    IBinaryField[] fields = reader.getFields();
+    if (fields != null) {
+      for (IBinaryField field : fields) {
+        if ((field.getModifiers() & ClassFileConstants.AccPrivate) == 0) {
+          StringBuilder member = new StringBuilder("F ");
+          member.append(field.getModifiers()).append(' ');
+          member.append(field.getTagBits()).append(' ');
+          append(member, field.getName());
+          append(member, field.getTypeName());
+          append(member, field.getGenericSignature());
+          Constant constant = field.getConstant();
+          if ((constant != null) && (constant != Constant.NotAConstant)) {
+            member.append(constant.toString());
+          }
+          append(member, field.getAnnotations());
+          members.add(member.toString());
+        }
+      }
+    }
+
+    IBinaryMethod[] methods = reader.getMethods();
+    if (methods != null) {
+      for (IBinaryMethod method : methods) {
+        if (((method.getModifiers() & ClassFileConstants.AccPrivate) == 0) && !method.isClinit()) {
+          StringBuilder member = new StringBuilder("M ");
+          member.append(method.getModifiers()).append(' ');
+          member.append(method.getTagBits()).append(' ');
+          append(member, method.getSelector());
+          append(member, method.getMethodDescriptor());
+          append(member, method.getGenericSignature());
+          append(member, method.getExceptionTypeNames());
+          append(member, method.getAnnotations());
+          for (int i = 0; i < method.getAnnotatedParametersCount(); i++) {
+            member.append('P').append(i);
+            append(member, method.getParameterAnnotations(i));
+          }
+          Object defaultValue = method.getDefaultValue();
+          if (defaultValue != null) {
+            member.append("default=");
+            appendValue(member, defaultValue);
+          }
+          members.add(member.toString());
+        }
+      }
+    }
+
+    IBinaryNestedType[] memberTypes = reader.getMemberTypes();
+    if (memberTypes != null) {
+      for (IBinaryNestedType memberType : memberTypes) {
+        if ((memberType.getModifiers() & ClassFileConstants.AccPrivate) == 0) {
+          StringBuilder member = new StringBuilder("T ");
+          member.append(memberType.getModifiers()).append(' ');
+          append(member, memberType.getName());
+          members.add(member.toString());
+        }
+      }
+    }
+
+    Collections.sort(members);
+    for (String member : members) {
+      builder.append(member).append('\n');
+    }
+
+    return CacheDirectory.hash(builder.toString());
+  }
+
+  /**
+   * <p>
+   * Appends the given name followed by a separator.
+   * </p>
+   */
+  private static void append(StringBuilder builder, char[] name) {
+    if (name != null) {
+      builder.append(name);
+    }
+    builder.append(' ');
+  }
+
+  /**
+   * <p>
+   * Appends the given annotations (including their values) followed by a separator.
+   * </p>
+   */
+  private static void append(StringBuilder builder, IBinaryAnnotation[] annotations) {
+    if (annotations != null) {
+      for (IBinaryAnnotation annotation : annotations) {
+        appendValue(builder, annotation);
+      }
+    }
+    builder.append(' ');
+  }
+
+  /**
+   * <p>
+   * Appends the given annotation element value. The value is either a {@link Constant}, a {@link ClassSignature}, an
+   * {@link EnumConstantSignature}, an {@link IBinaryAnnotation} or an array of these.
+   * </p>
+   */
+  private static void appendValue(StringBuilder builder, Object value) {
+    if (value instanceof IBinaryAnnotation) {
+      IBinaryAnnotation annotation = (IBinaryAnnotation) value;
+      builder.append('@').append(annotation.getTypeName()).append('(');
+      IBinaryElementValuePair[] pairs = annotation.getElementValuePairs();
+      if (pairs != null) {
+        for (IBinaryElementValuePair pair : pairs) {
+          builder.append(pair.getName()).append('=');
+          appendValue(builder, pair.getValue());
+          builder.append(',');
+        }
+      }
+      builder.append(')');
+    } else if (value instanceof Object[]) {
+      builder.append('{');
+      for (Object element : (Object[]) value) {
+        appendValue(builder, element);
+        builder.append(',');
+      }
+      builder.append('}');
+    } else if (value instanceof Constant) {
+      Constant constant = (Constant) value;
+      builder.append(constant.typeID()).append(':').append(constant.stringValue());
+    } else if (value instanceof ClassSignature) {
+      builder.append(((ClassSignature) value).getTypeName()).append(".class");
+    } else if (value instanceof EnumConstantSignature) {
+      EnumConstantSignature signature = (EnumConstantSignature) value;
+      builder.append(signature.getTypeName()).append('.').append(signature.getEnumConstantName());
+    } else {
+      builder.append(value);
+    }
+  }
+
+  /**
+   * <p>
+   * Appends the given names followed by a separator.
+   * </p>
+   */
+  private static void append(StringBuilder builder, char[][] names) {
+    if (names != null) {
+      for (char[] name : names) {
+        builder.append(name).append(',');
+      }
+    }
+    builder.append(' ');
+  }
+}
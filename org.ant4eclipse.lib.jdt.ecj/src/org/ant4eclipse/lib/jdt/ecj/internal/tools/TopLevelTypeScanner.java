@@ -0,0 +1,90 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import org.eclipse.jdt.core.compiler.InvalidInputException;
+import org.eclipse.jdt.internal.compiler.parser.Scanner;
+import org.eclipse.jdt.internal.compiler.parser.TerminalTokens;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Finds the names of the top-level types that are declared in a source file, i.e. its main type as well as its
+ * secondary types. The source is only tokenized, not parsed: each <code>class</code>, <code>interface</code>,
+ * <code>enum</code> or <code>@interface</code> keyword outside of any braces and parentheses starts the declaration of a
+ * top-level type.
+ * </p>
+ *
+ * @author agent
+ */
+public class TopLevelTypeScanner {
+
+  /**
+   * <p>
+   * Returns the names of the top-level types that are declared in the given source. If the source can't be tokenized,
+   * the names of the types that are declared before the invalid input are returned.
+   * </p>
+   *
+   * @param source
+   *          the content of the source file
+   * @param sourceLevel
+   *          the source level (see <code>CompilerOptions.sourceLevel</code>), as <code>enum</code> is a keyword
+   *          since java 5 only
+   * @return the names of the top-level types (in the order of their declaration).
+   */
+  public static List<char[]> getTopLevelTypeNames(char[] source, long sourceLevel) {
+    List<char[]> result = new ArrayList<char[]>();
+    Scanner scanner = new Scanner(false, false, false, sourceLevel, null, null, true);
+    scanner.setSource(source);
+
+    int braces = 0;
+    int parentheses = 0;
+    int previousToken = TerminalTokens.TokenNameEOF;
+    boolean typeDeclaration = false;
+    try {
+      for (int token = scanner.getNextToken(); token != TerminalTokens.TokenNameEOF; token = scanner.getNextToken()) {
+        if (typeDeclaration && (token == TerminalTokens.TokenNameIdentifier)) {
+          result.add(scanner.getCurrentIdentifierSource());
+        }
+        typeDeclaration = false;
+        switch (token) {
+        case TerminalTokens.TokenNameLBRACE:
+          braces++;
+          break;
+        case TerminalTokens.TokenNameRBRACE:
+          braces--;
+          break;
+        case TerminalTokens.TokenNameLPAREN:
+          parentheses++;
+          break;
+        case TerminalTokens.TokenNameRPAREN:
+          parentheses--;
+          break;
+        case TerminalTokens.TokenNameclass:
+        case TerminalTokens.TokenNameinterface:
+        case TerminalTokens.TokenNameenum:
+          // class literals (e.g. in the annotations of a type) are preceded by a dot
+          typeDeclaration = (braces == 0) && (parentheses == 0) && (previousToken != TerminalTokens.TokenNameDOT);
+          break;
+        default:
+          break;
+        }
+        previousToken = token;
+      }
+    } catch (InvalidInputException ex) {
+      // the compiler will report the invalid input
+    }
+    return result;
+  }
+}
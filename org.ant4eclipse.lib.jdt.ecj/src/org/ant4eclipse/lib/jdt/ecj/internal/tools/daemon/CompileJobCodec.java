@@ -0,0 +1,427 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon;
+
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.DefaultCompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.DependencyInfo;
+import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileFactory;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.CompileJobResultImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClasspathClassFileLoaderImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.CompoundClassFileLoaderImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.FilteringClassFileLoader;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblem;
+import org.eclipse.jdt.internal.compiler.problem.ProblemSeverities;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Reads and writes {@link CompileJobDescription CompileJobDescriptions} and {@link CompileJobResult
+ * CompileJobResults}, so they can be transferred between the ant process and the compiler daemon.
+ * </p>
+ * <p>
+ * The class file loaders of a description are transferred by the parameters they have been created with, so the
+ * compiler daemon can look them up in its (warm) class file loader cache. Only the class file loaders created by the
+ * {@link ClassFileLoaderFactory} are supported.
+ * </p>
+ * <p>
+ * All counts are checked before anything is allocated, so a corrupt or malicious request can't exhaust the memory of
+ * the compiler daemon. Files are always transferred by their absolute path as the compiler daemon has its own working
+ * directory.
+ * </p>
+ *
+ * @author agent
+ */
+public class CompileJobCodec {
+
+  /** the version of the protocol */
+  public static final int   VERSION   = 2;
+
+  /** requests the compilation of a compile job */
+  public static final byte  COMPILE   = 1;
+
+  /** requests the shutdown of the compiler daemon */
+  public static final byte  SHUTDOWN  = 2;
+
+  /** the request has been processed successfully */
+  public static final byte  OK        = 0;
+
+  /** the request couldn't be processed */
+  public static final byte  ERROR     = 1;
+
+  /** marks a {@link ClasspathClassFileLoaderImpl} */
+  private static final byte CLASSPATH = 1;
+
+  /** marks a {@link CompoundClassFileLoaderImpl} */
+  private static final byte COMPOUND  = 2;
+
+  /** marks a {@link FilteringClassFileLoader} */
+  private static final byte FILTERING = 3;
+
+  /** the maximum number of elements that is accepted for a single count */
+  private static final int  MAX_COUNT = 1000000;
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given class file loader can be transferred to the compiler daemon.
+   * </p>
+   *
+   * @param classFileLoader
+   *          the class file loader
+   * @return <code>true</code> if the given class file loader can be transferred to the compiler daemon.
+   */
+  public static boolean isSupported(ClassFileLoader classFileLoader) {
+    if (classFileLoader instanceof ClasspathClassFileLoaderImpl) {
+      return classFileLoader.getClass() == ClasspathClassFileLoaderImpl.class;
+    } else if (classFileLoader instanceof CompoundClassFileLoaderImpl) {
+      for (ClassFileLoader child : ((CompoundClassFileLoaderImpl) classFileLoader).getClassFileLoaders()) {
+        if (!isSupported(child)) {
+          return false;
+        }
+      }
+      return true;
+    } else if (classFileLoader instanceof FilteringClassFileLoader) {
+      return isSupported(((FilteringClassFileLoader) classFileLoader).getClassFileLoader());
+    }
+    return false;
+  }
+
+  /**
+   * <p>
+   * Writes the given description.
+   * </p>
+   *
+   * @param output
+   *          the output
+   * @param description
+   *          the description. The class file loader must be {@link #isSupported(ClassFileLoader) supported}.
+   * @throws IOException
+   */
+  public static void writeDescription(DataOutput output, CompileJobDescription description) throws IOException {
+    writeClassFileLoader(output, description.getClassFileLoader());
+
+    Map<String, String> compilerOptions = description.getCompilerOptions();
+    output.writeInt(compilerOptions.size());
+    for (Map.Entry<String, String> entry : compilerOptions.entrySet()) {
+      output.writeUTF(entry.getKey());
+      output.writeUTF(entry.getValue());
+    }
+
+    SourceFile[] sourceFiles = description.getSourceFiles();
+    output.writeInt(sourceFiles.length);
+    for (SourceFile sourceFile : sourceFiles) {
+      writeFile(output, sourceFile.getSourceFolder());
+      output.writeUTF(sourceFile.getSourceFileName());
+      writeFile(output, sourceFile.getDestinationFolder());
+      writeOptionalString(output, sourceFile.getEncoding());
+    }
+
+    output.writeBoolean(description.isCollectDependencyInfos());
+    File additionalDestinationFolder = description.getAdditionalDestinationFolder();
+    output.writeBoolean(additionalDestinationFolder != null);
+    if (additionalDestinationFolder != null) {
+      writeFile(output, additionalDestinationFolder);
+    }
+  }
+
+  /**
+   * <p>
+   * Reads a description that has been written using {@link #writeDescription(DataOutput, CompileJobDescription)}.
+   * </p>
+   *
+   * @param input
+   *          the input
+   * @return the description
+   * @throws IOException
+   */
+  public static DefaultCompileJobDescription readDescription(DataInput input) throws IOException {
+    DefaultCompileJobDescription result = new DefaultCompileJobDescription();
+    result.setClassFileLoader(readClassFileLoader(input));
+
+    Map<String, String> compilerOptions = new HashMap<String, String>();
+    int count = readCount(input);
+    for (int i = 0; i < count; i++) {
+      compilerOptions.put(input.readUTF(), input.readUTF());
+    }
+    result.setCompilerOptions(compilerOptions);
+
+    SourceFile[] sourceFiles = new SourceFile[readCount(input)];
+    for (int i = 0; i < sourceFiles.length; i++) {
+      File sourceFolder = readFile(input);
+      String sourceFileName = input.readUTF();
+      File destinationFolder = readFile(input);
+      String encoding = readOptionalString(input);
+      sourceFiles[i] = encoding == null ? SourceFileFactory.createSourceFile(sourceFolder, sourceFileName,
+          destinationFolder) : SourceFileFactory.createSourceFile(sourceFolder, sourceFileName, destinationFolder,
+          encoding);
+    }
+    result.setSourceFiles(sourceFiles);
+
+    result.setCollectDependencyInfos(input.readBoolean());
+    if (input.readBoolean()) {
+      result.setAdditionalDestinationFolder(readFile(input));
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Writes the given result.
+   * </p>
+   *
+   * @param output
+   *          the output
+   * @param result
+   *          the result
+   * @throws IOException
+   */
+  public static void writeResult(DataOutput output, CompileJobResult result) throws IOException {
+    output.writeBoolean(result.succeeded());
+
+    CategorizedProblem[] problems = result.getCategorizedProblems();
+    output.writeInt(problems.length);
+    for (CategorizedProblem problem : problems) {
+      char[] originatingFileName = problem.getOriginatingFileName();
+      writeOptionalString(output, originatingFileName == null ? null : String.valueOf(originatingFileName));
+      writeOptionalString(output, problem.getMessage());
+      output.writeInt(problem.getID());
+      String[] arguments = problem.getArguments();
+      output.writeInt(arguments == null ? 0 : arguments.length);
+      for (int i = 0; (arguments != null) && (i < arguments.length); i++) {
+        writeOptionalString(output, arguments[i]);
+      }
+      output.writeInt(problem.isError() ? ProblemSeverities.Error : ProblemSeverities.Warning);
+      output.writeInt(problem.getSourceStart());
+      output.writeInt(problem.getSourceEnd());
+      output.writeInt(problem.getSourceLineNumber());
+      output.writeInt(problem instanceof DefaultProblem ? ((DefaultProblem) problem).getSourceColumnNumber() : 0);
+    }
+
+    Map<String, File> compiledClassFiles = result.getCompiledClassFiles();
+    output.writeInt(compiledClassFiles.size());
+    for (Map.Entry<String, File> entry : compiledClassFiles.entrySet()) {
+      output.writeUTF(entry.getKey());
+      writeFile(output, entry.getValue());
+    }
+
+    Map<File, DependencyInfo> dependencyInfos = result.getDependencyInfos();
+    output.writeInt(dependencyInfos.size());
+    for (Map.Entry<File, DependencyInfo> entry : dependencyInfos.entrySet()) {
+      writeFile(output, entry.getKey());
+      DependencyInfo dependencyInfo = entry.getValue();
+      writeNames(output, dependencyInfo.getQualifiedReferences());
+      writeNames(output, dependencyInfo.getSimpleNameReferences());
+      writeNames(output, dependencyInfo.getClassFileNames());
+      writeHashes(output, dependencyInfo.getStructuralHashes());
+    }
+  }
+
+  /**
+   * <p>
+   * Reads a result that has been written using {@link #writeResult(DataOutput, CompileJobResult)}.
+   * </p>
+   *
+   * @param input
+   *          the input
+   * @return the result
+   * @throws IOException
+   */
+  public static CompileJobResult readResult(DataInput input) throws IOException {
+    CompileJobResultImpl result = new CompileJobResultImpl();
+    result.setSucceeded(input.readBoolean());
+
+    CategorizedProblem[] problems = new CategorizedProblem[readCount(input)];
+    for (int i = 0; i < problems.length; i++) {
+      String originatingFileName = readOptionalString(input);
+      String message = readOptionalString(input);
+      int id = input.readInt();
+      String[] arguments = new String[readCount(input)];
+      for (int j = 0; j < arguments.length; j++) {
+        arguments[j] = readOptionalString(input);
+      }
+      problems[i] = new DefaultProblem(originatingFileName == null ? null : originatingFileName.toCharArray(),
+          message, id, arguments, input.readInt(), input.readInt(), input.readInt(), input.readInt(), input.readInt());
+    }
+    result.setCategorizedProblems(problems);
+
+    Map<String, File> compiledClassFiles = new HashMap<String, File>();
+    int count = readCount(input);
+    for (int i = 0; i < count; i++) {
+      compiledClassFiles.put(input.readUTF(), readFile(input));
+    }
+    result.setCompiledClassFiles(compiledClassFiles);
+
+    Map<File, DependencyInfo> dependencyInfos = new HashMap<File, DependencyInfo>();
+    count = readCount(input);
+    for (int i = 0; i < count; i++) {
+      File sourceFile = readFile(input);
+      dependencyInfos.put(sourceFile, new DependencyInfo(readNames(input), readNames(input), readNames(input),
+          readHashes(input)));
+    }
+    result.setDependencyInfos(dependencyInfos);
+    return result;
+  }
+
+  /**
+   * <p>
+   * Writes the given class file loader.
+   * </p>
+   */
+  private static void writeClassFileLoader(DataOutput output, ClassFileLoader classFileLoader) throws IOException {
+    if (classFileLoader instanceof ClasspathClassFileLoaderImpl) {
+      ClasspathClassFileLoaderImpl classpathClassFileLoader = (ClasspathClassFileLoaderImpl) classFileLoader;
+      output.writeByte(CLASSPATH);
+      writeFile(output, classpathClassFileLoader.getLocation());
+      output.writeByte(classpathClassFileLoader.getType());
+      writeFiles(output, classpathClassFileLoader.getClasspath());
+      writeFiles(output, classpathClassFileLoader.getSourcepathEntries());
+    } else if (classFileLoader instanceof CompoundClassFileLoaderImpl) {
+      ClassFileLoader[] classFileLoaders = ((CompoundClassFileLoaderImpl) classFileLoader).getClassFileLoaders();
+      output.writeByte(COMPOUND);
+      output.writeInt(classFileLoaders.length);
+      for (ClassFileLoader child : classFileLoaders) {
+        writeClassFileLoader(output, child);
+      }
+    } else if (classFileLoader instanceof FilteringClassFileLoader) {
+      FilteringClassFileLoader filteringClassFileLoader = (FilteringClassFileLoader) classFileLoader;
+      output.writeByte(FILTERING);
+      output.writeUTF(filteringClassFileLoader.getFilter());
+      writeClassFileLoader(output, filteringClassFileLoader.getClassFileLoader());
+    } else {
+      throw new IOException("Unsupported class file loader: " + classFileLoader);
+    }
+  }
+
+  /**
+   * <p>
+   * Reads a class file loader. The class file loaders are created using the {@link ClassFileLoaderFactory}, so cached
+   * class file loaders are reused.
+   * </p>
+   */
+  private static ClassFileLoader readClassFileLoader(DataInput input) throws IOException {
+    byte kind = input.readByte();
+    switch (kind) {
+    case CLASSPATH:
+      File location = readFile(input);
+      byte type = input.readByte();
+      File[] classpathEntries = readFiles(input);
+      File[] sourcepathEntries = readFiles(input);
+      return ClassFileLoaderFactory.createClasspathClassFileLoader(location, type, classpathEntries,
+          sourcepathEntries);
+    case COMPOUND:
+      ClassFileLoader[] classFileLoaders = new ClassFileLoader[readCount(input)];
+      for (int i = 0; i < classFileLoaders.length; i++) {
+        classFileLoaders[i] = readClassFileLoader(input);
+      }
+      return ClassFileLoaderFactory.createCompoundClassFileLoader(classFileLoaders);
+    case FILTERING:
+      String filter = input.readUTF();
+      return ClassFileLoaderFactory.createFilteringClassFileLoader(readClassFileLoader(input), filter);
+    default:
+      throw new IOException("Unknown class file loader kind: " + kind);
+    }
+  }
+
+  private static void writeFile(DataOutput output, File file) throws IOException {
+    output.writeUTF(file.getAbsolutePath());
+  }
+
+  private static File readFile(DataInput input) throws IOException {
+    return new File(input.readUTF());
+  }
+
+  private static void writeFiles(DataOutput output, File[] files) throws IOException {
+    output.writeInt(files.length);
+    for (File file : files) {
+      writeFile(output, file);
+    }
+  }
+
+  private static File[] readFiles(DataInput input) throws IOException {
+    File[] result = new File[readCount(input)];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = readFile(input);
+    }
+    return result;
+  }
+
+  private static void writeNames(DataOutput output, Set<String> names) throws IOException {
+    output.writeInt(names.size());
+    for (String name : names) {
+      output.writeUTF(name);
+    }
+  }
+
+  private static Set<String> readNames(DataInput input) throws IOException {
+    int count = readCount(input);
+    Set<String> result = new HashSet<String>(count * 2);
+    for (int i = 0; i < count; i++) {
+      result.add(input.readUTF());
+    }
+    return result;
+  }
+
+  private static void writeHashes(DataOutput output, Map<String, String> hashes) throws IOException {
+    output.writeInt(hashes.size());
+    for (Map.Entry<String, String> entry : hashes.entrySet()) {
+      output.writeUTF(entry.getKey());
+      output.writeUTF(entry.getValue());
+    }
+  }
+
+  private static Map<String, String> readHashes(DataInput input) throws IOException {
+    int count = readCount(input);
+    Map<String, String> result = new HashMap<String, String>(count * 2);
+    for (int i = 0; i < count; i++) {
+      result.put(input.readUTF(), input.readUTF());
+    }
+    return result;
+  }
+
+  private static void writeOptionalString(DataOutput output, String value) throws IOException {
+    output.writeBoolean(value != null);
+    if (value != null) {
+      output.writeUTF(value);
+    }
+  }
+
+  private static String readOptionalString(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readUTF() : null;
+  }
+
+  /**
+   * <p>
+   * Reads a count and makes sure that it is within the accepted range. The length of a string is limited by
+   * {@link DataInput#readUTF()} itself.
+   * </p>
+   */
+  private static int readCount(DataInput input) throws IOException {
+    int result = input.readInt();
+    if ((result < 0) || (result > MAX_COUNT)) {
+      throw new IOException("Invalid count " + result);
+    }
+    return result;
+  }
+}
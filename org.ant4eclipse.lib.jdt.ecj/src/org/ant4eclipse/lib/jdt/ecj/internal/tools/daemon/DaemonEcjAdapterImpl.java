@@ -0,0 +1,122 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.CompilerDaemon;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * <p>
+ * {@link EcjAdapter} that delegates the compilation to a {@link CompilerDaemon} running on the local machine. If the
+ * compiler daemon can't be reached (or the compile job can't be transferred), the compilation is performed by the
+ * given fallback adapter. The same applies if the compiler daemon doesn't answer within the timeout specified by the
+ * system property <code>ant4eclipse.compilerDaemonTimeout</code> (in milliseconds, default: 10 minutes).
+ * </p>
+ *
+ * @author agent
+ */
+public class DaemonEcjAdapterImpl implements EcjAdapter {
+
+  /** the name of the system property that specifies the timeout (in milliseconds) for a compilation */
+  public static final String TIMEOUT_PROPERTY_NAME = "ant4eclipse.compilerDaemonTimeout";
+
+  /** the default timeout (in milliseconds) for a compilation */
+  public static final int    DEFAULT_TIMEOUT       = 600000;
+
+  /** the timeout for connecting to the compiler daemon */
+  private static final int   CONNECT_TIMEOUT       = 1000;
+
+  /** the port of the compiler daemon */
+  private int                _port;
+
+  /** the adapter that is used if the compiler daemon can't be used */
+  private EcjAdapter         _fallback;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link DaemonEcjAdapterImpl}.
+   * </p>
+   *
+   * @param port
+   *          the port of the compiler daemon
+   * @param fallback
+   *          the adapter that is used if the compiler daemon can't be used. Not <code>null</code>.
+   */
+  public DaemonEcjAdapterImpl(int port, EcjAdapter fallback) {
+    Assure.notNull("fallback", fallback);
+
+    this._port = port;
+    this._fallback = fallback;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public CompileJobResult compile(CompileJobDescription description) {
+    Assure.notNull("description", description);
+
+    if (!CompileJobCodec.isSupported(description.getClassFileLoader())) {
+      A4ELogging.debug("The class file loader can't be transferred to the compiler daemon, compiling locally.");
+      return this._fallback.compile(description);
+    }
+
+    Socket socket = new Socket();
+    try {
+      String secret = CompilerDaemon.readSecret(this._port);
+      socket.connect(new InetSocketAddress(InetAddress.getByName(null), this._port), CONNECT_TIMEOUT);
+
+      // a SocketTimeoutException leads to a local compilation
+      socket.setSoTimeout(Integer.getInteger(TIMEOUT_PROPERTY_NAME, DEFAULT_TIMEOUT).intValue());
+
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      output.writeInt(CompileJobCodec.VERSION);
+      output.writeUTF(secret);
+      output.writeByte(CompileJobCodec.COMPILE);
+      CompileJobCodec.writeDescription(output, description);
+      output.flush();
+
+      DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      if (input.readByte() != CompileJobCodec.OK) {
+        A4ELogging.warn("The compiler daemon on port %d failed (%s), compiling locally.", Integer.valueOf(this._port),
+            input.readUTF());
+        return this._fallback.compile(description);
+      }
+      A4ELogging.debug("Compiled %d source files using the compiler daemon on port %d.", Integer
+          .valueOf(description.getSourceFiles().length), Integer.valueOf(this._port));
+      return CompileJobCodec.readResult(input);
+
+    } catch (IOException ex) {
+      A4ELogging.warn("Could not use the compiler daemon on port %d (%s), compiling locally.", Integer
+          .valueOf(this._port), ex.toString());
+      return this._fallback.compile(description);
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException ex) {
+        // nothing to do here...
+      }
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.eclipse.jdt.internal.compiler.env.IBinaryType;
+
+/**
+ * <p>
+ * Caches the parsed binary types of a single jar file, so a long running process (e.g. the compiler daemon) doesn't
+ * have to parse the same class files for every compilation. The binary types are fully initialized when they are
+ * read, so they can be shared between compilations that run concurrently.
+ * </p>
+ * <p>
+ * The binary types are held by soft references, so they are released if memory is getting low.
+ * </p>
+ *
+ * @author agent
+ */
+public class BinaryTypeCache {
+
+  /** the binary types, keyed by the name of the jar entry */
+  private Map<String, SoftReference<IBinaryType>> _binaryTypes;
+
+  /** the jar file */
+  private File                                    _jarFile;
+
+  /** the length of the jar file when this cache has been created */
+  private long                                    _length;
+
+  /** the modification time of the jar file when this cache has been created */
+  private long                                    _lastModified;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link BinaryTypeCache}.
+   * </p>
+   *
+   * @param jarFile
+   *          the jar file whose binary types are cached
+   */
+  public BinaryTypeCache(File jarFile) {
+    Assure.notNull("jarFile", jarFile);
+
+    this._binaryTypes = new ConcurrentHashMap<String, SoftReference<IBinaryType>>();
+    this._jarFile = jarFile;
+    this._length = jarFile.length();
+    this._lastModified = jarFile.lastModified();
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the length and the modification time of the jar file haven't changed since this cache
+   * has been created.
+   * </p>
+   *
+   * @return <code>true</code> if the jar file hasn't been modified.
+   */
+  public boolean isUpToDate() {
+    return (this._jarFile.length() == this._length) && (this._jarFile.lastModified() == this._lastModified);
+  }
+
+  /**
+   * <p>
+   * Returns the cached binary type for the given jar entry or <code>null</code> if the binary type hasn't been cached
+   * (or has been released).
+   * </p>
+   *
+   * @param entryName
+   *          the name of the jar entry (e.g. <code>java/lang/Object.class</code>)
+   * @return the cached binary type or <code>null</code>.
+   */
+  public IBinaryType getBinaryType(String entryName) {
+    SoftReference<IBinaryType> reference = this._binaryTypes.get(entryName);
+    return reference == null ? null : reference.get();
+  }
+
+  /**
+   * <p>
+   * Stores the given binary type.
+   * </p>
+   *
+   * @param entryName
+   *          the name of the jar entry (e.g. <code>java/lang/Object.class</code>)
+   * @param binaryType
+   *          the fully initialized binary type
+   */
+  public void storeBinaryType(String entryName, IBinaryType binaryType) {
+    Assure.notNull("entryName", entryName);
+    Assure.notNull("binaryType", binaryType);
+
+    this._binaryTypes.put(entryName, new SoftReference<IBinaryType>(binaryType));
+  }
+
+  /**
+   * <p>
+   * Returns the number of cached binary types (including the ones that have been released).
+   * </p>
+   *
+   * @return the number of cached binary types.
+   */
+  public int size() {
+    return this._binaryTypes.size();
+  }
+}
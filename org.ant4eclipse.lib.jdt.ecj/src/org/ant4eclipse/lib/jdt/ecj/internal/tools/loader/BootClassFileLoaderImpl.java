@@ -0,0 +1,129 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+
+/**
+ * <p>
+ * {@link ClassFileLoader} for a single library of a java runtime (e.g. <code>rt.jar</code>). The names of all class
+ * files contained in the library are indexed eagerly when the class file loader is created, so that requests for
+ * classes that don't exist in the library are answered without accessing the jar file.
+ * </p>
+ * <p>
+ * Instances of this class are immutable once they have been created and can therefore be shared by all compilations
+ * (see {@link ClassFileLoaderCache#getBootClassFileLoader(Object)}).
+ * </p>
+ *
+ * @author agent
+ */
+public class BootClassFileLoaderImpl extends ClasspathClassFileLoaderImpl {
+
+  /** the names of all class files in the library, <code>null</code> if the library is a directory */
+  private Set<String> _classFileNames;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link BootClassFileLoaderImpl}.
+   * </p>
+   *
+   * @param library
+   *          the library (a jar file or a directory)
+   * @param type
+   *          the type of the library
+   */
+  public BootClassFileLoaderImpl(File library, byte type) {
+    Assure.notNull("library", library);
+
+    setLocation(library);
+    setType(type);
+
+    // index the class files before the package providers are created
+    if (library.isFile()) {
+      this._classFileNames = readClassFileNames(library);
+    }
+
+    // initialize
+    initialize(new File[] { library }, new File[] {});
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected PackageProvider newPackageProvider() {
+    return new IndexedPackageProvider();
+  }
+
+  /**
+   * <p>
+   * Returns the names of all class files contained in the given jar file or <code>null</code> if the jar file can't be
+   * read. In the latter case the jar file will be searched for each requested class.
+   * </p>
+   *
+   * @param jarFile
+   *          the jar file
+   * @return the names of all class files contained in the given jar file or <code>null</code>.
+   */
+  private static Set<String> readClassFileNames(File jarFile) {
+    JarFilePool jarFilePool = ClassFileLoaderCache.getInstance().getJarFilePool();
+    try {
+      JarFile jar = jarFilePool.acquire(jarFile);
+      try {
+        Set<String> result = new HashSet<String>();
+        for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+          String name = entries.nextElement().getName();
+          if (name.endsWith(".class")) {
+            result.add(name);
+          }
+        }
+        return result;
+      } finally {
+        jarFilePool.release(jar);
+      }
+    } catch (IOException e) {
+      A4ELogging.debug("Could not index jar file '%s': %s", jarFile, e.toString());
+      return null;
+    }
+  }
+
+  /**
+   * <p>
+   * {@link PackageProvider} that only searches the library for class files that are contained in the index.
+   * </p>
+   */
+  private class IndexedPackageProvider extends PackageProvider {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ClassFile loadClassFile(String classFileName) {
+      Set<String> classFileNames = BootClassFileLoaderImpl.this._classFileNames;
+      if ((classFileNames != null) && !classFileNames.contains(classFileName)) {
+        return null;
+      }
+      return super.loadClassFile(classFileName);
+    }
+  }
+}
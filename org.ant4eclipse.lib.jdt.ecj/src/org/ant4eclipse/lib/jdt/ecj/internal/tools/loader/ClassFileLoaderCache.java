@@ -1,8 +1,14 @@
 package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.ant4eclipse.lib.core.Lifecycle;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
@@ -11,6 +17,14 @@ import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
 
 /**
  * <p>
+ * Caches class file loaders and the resources (open and memory mapped jar files, parsed binary types) shared between
+ * them. The cache is thread-safe, so it can be used by projects that are compiled concurrently.
+ * </p>
+ * <p>
+ * Memory mapped jar files and cached binary types are checked against the length and the modification time of their
+ * jar file on each lookup and are replaced if the jar file has been modified. A long running process (e.g. the
+ * compiler daemon) has to call {@link #invalidateModifiedEntries()} before each compilation, so class file loaders
+ * that refer to jar files that have been modified in the meantime are discarded as well.
  * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
@@ -28,18 +42,52 @@ public class ClassFileLoaderCache implements Lifecycle {
    */
   private static final boolean         TRACE_CACHE  = Boolean.getBoolean("ant4eclipse.traceClassFileLoaderCache");
 
+  /**
+   * System-Property that enables reading class files from memory mapped jar files
+   */
+  public static final String           MAP_JARS_PROPERTY_NAME    = "ant4eclipse.mapJarFiles";
+
+  /**
+   * System-Property that enables caching of parsed binary types
+   */
+  public static final String           CACHE_TYPES_PROPERTY_NAME = "ant4eclipse.cacheBinaryTypes";
+
   /** the class file loader map */
   private Map<Object, ClassFileLoader> _classFileLoaderMap;
 
+  /** the shared boot class file loaders (which are cached regardless of the system property) */
+  private Map<Object, ClassFileLoader> _bootClassFileLoaderMap;
+
   /**
    * Hit counter
    */
-  private int                          _hits        = 0;
+  private AtomicInteger                _hits        = new AtomicInteger();
 
   /**
    * Miss counter
    */
-  private int                          _missed      = 0;
+  private AtomicInteger                _missed      = new AtomicInteger();
+
+  /** the pool of open jar files shared by all class file loaders */
+  private JarFilePool                  _jarFilePool;
+
+  /** indicates whether or not class files are read from memory mapped jar files */
+  private boolean                      _mapJarFiles;
+
+  /** indicates whether or not parsed binary types are cached */
+  private boolean                      _cacheBinaryTypes;
+
+  /** the memory mapped jar files */
+  private Map<String, MappedJarFile>   _mappedJarFiles;
+
+  /** the stamps of the jar files that couldn't be mapped */
+  private Map<String, String>          _unmappableJarFiles;
+
+  /** the caches for the parsed binary types, keyed by the path of the jar file */
+  private Map<String, BinaryTypeCache> _binaryTypeCaches;
+
+  /** the stamps (size and modification time) of the jar files that are referenced by this cache */
+  private Map<String, String>          _stamps;
 
   /** - */
   private boolean                      _initialized;
@@ -51,6 +99,14 @@ public class ClassFileLoaderCache implements Lifecycle {
    */
   public ClassFileLoaderCache() {
     this._classFileLoaderMap = new ConcurrentHashMap<Object, ClassFileLoader>();
+    this._bootClassFileLoaderMap = new ConcurrentHashMap<Object, ClassFileLoader>();
+    this._jarFilePool = new JarFilePool();
+    this._mapJarFiles = Boolean.getBoolean(MAP_JARS_PROPERTY_NAME);
+    this._cacheBinaryTypes = Boolean.getBoolean(CACHE_TYPES_PROPERTY_NAME);
+    this._mappedJarFiles = new ConcurrentHashMap<String, MappedJarFile>();
+    this._unmappableJarFiles = new ConcurrentHashMap<String, String>();
+    this._binaryTypeCaches = new ConcurrentHashMap<String, BinaryTypeCache>();
+    this._stamps = new ConcurrentHashMap<String, String>();
   }
 
   /**
@@ -73,6 +129,202 @@ public class ClassFileLoaderCache implements Lifecycle {
   public void dispose() {
     this._initialized = false;
     dump();
+    this._jarFilePool.close();
+    this._bootClassFileLoaderMap.clear();
+    this._mappedJarFiles.clear();
+    this._unmappableJarFiles.clear();
+    this._binaryTypeCaches.clear();
+    this._stamps.clear();
+  }
+
+  /**
+   * <p>
+   * Returns the pool of open jar files that is shared by all class file loaders.
+   * </p>
+   * 
+   * @return the pool of open jar files.
+   */
+  public JarFilePool getJarFilePool() {
+    return this._jarFilePool;
+  }
+
+  /**
+   * <p>
+   * Returns the memory mapped representation of the given jar file. Returns <code>null</code> if memory mapping has
+   * not been enabled (using the system property <code>ant4eclipse.mapJarFiles</code>) or if the jar file can't be
+   * mapped. In the latter case the jar file has to be read using the {@link #getJarFilePool() jar file pool}. If the
+   * jar file has been modified since it has been mapped, it is mapped again.
+   * </p>
+   * 
+   * @param jarFile
+   *          the jar file
+   * @return the memory mapped jar file or <code>null</code>.
+   */
+  public MappedJarFile getMappedJarFile(File jarFile) {
+    if (!this._mapJarFiles) {
+      return null;
+    }
+    String path = jarFile.getAbsolutePath();
+    MappedJarFile mappedJarFile = this._mappedJarFiles.get(path);
+    if (mappedJarFile != null) {
+      if (mappedJarFile.isUpToDate()) {
+        return mappedJarFile;
+      }
+    } else if (getStamp(jarFile).equals(this._unmappableJarFiles.get(path))) {
+      // don't try to map a jar file again unless it has been modified
+      return null;
+    }
+    synchronized (this._mappedJarFiles) {
+      mappedJarFile = this._mappedJarFiles.get(path);
+      if (mappedJarFile != null) {
+        if (mappedJarFile.isUpToDate()) {
+          return mappedJarFile;
+        }
+        A4ELogging.debug("Jar file '%s' has been modified, mapping it again.", path);
+        this._mappedJarFiles.remove(path);
+      }
+
+      String stamp = getStamp(jarFile);
+      if (stamp.equals(this._unmappableJarFiles.get(path))) {
+        return null;
+      }
+      try {
+        recordStamp(jarFile);
+        mappedJarFile = new MappedJarFile(jarFile);
+        this._mappedJarFiles.put(path, mappedJarFile);
+        this._unmappableJarFiles.remove(path);
+        return mappedJarFile;
+      } catch (IOException e) {
+        A4ELogging.debug("Could not map jar file '%s': %s", path, e.toString());
+        this._unmappableJarFiles.put(path, stamp);
+        return null;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the cache for the parsed binary types of the given jar file. Returns <code>null</code> if caching of binary
+   * types has not been enabled (using the system property <code>ant4eclipse.cacheBinaryTypes</code>). If the jar file
+   * has been modified since the cache has been created, a new (empty) cache is returned.
+   * </p>
+   * 
+   * @param jarFile
+   *          the jar file
+   * @return the cache for the parsed binary types of the given jar file or <code>null</code>.
+   */
+  public BinaryTypeCache getBinaryTypeCache(File jarFile) {
+    if (!this._cacheBinaryTypes) {
+      return null;
+    }
+    String path = jarFile.getAbsolutePath();
+    BinaryTypeCache binaryTypeCache = this._binaryTypeCaches.get(path);
+    if ((binaryTypeCache == null) || !binaryTypeCache.isUpToDate()) {
+      synchronized (this._binaryTypeCaches) {
+        binaryTypeCache = this._binaryTypeCaches.get(path);
+        if ((binaryTypeCache == null) || !binaryTypeCache.isUpToDate()) {
+          if (binaryTypeCache != null) {
+            A4ELogging.debug("Jar file '%s' has been modified, discarding its binary types.", path);
+          }
+          recordStamp(jarFile);
+          binaryTypeCache = new BinaryTypeCache(jarFile);
+          this._binaryTypeCaches.put(path, binaryTypeCache);
+        }
+      }
+    }
+    return binaryTypeCache;
+  }
+
+  /**
+   * <p>
+   * Discards all entries that refer to jar files that have been modified (or removed) since they have been added to
+   * this cache. Class file loaders for directories are discarded as well, as the content of a directory (e.g. the
+   * output folder of a project) may change at any time.
+   * </p>
+   */
+  public void invalidateModifiedEntries() {
+
+    // collect the modified jar files
+    Set<String> modifiedJarFiles = new HashSet<String>();
+    for (Iterator<Map.Entry<String, String>> iterator = this._stamps.entrySet().iterator(); iterator.hasNext();) {
+      Map.Entry<String, String> entry = iterator.next();
+      File jarFile = new File(entry.getKey());
+      if (!entry.getValue().equals(getStamp(jarFile))) {
+        A4ELogging.debug("Jar file '%s' has been modified.", jarFile);
+        iterator.remove();
+        modifiedJarFiles.add(entry.getKey());
+        this._binaryTypeCaches.remove(entry.getKey());
+        this._mappedJarFiles.remove(entry.getKey());
+        this._unmappableJarFiles.remove(entry.getKey());
+        this._jarFilePool.invalidate(jarFile);
+      }
+    }
+
+    // discard the class file loaders that refer to directories or modified jar files
+    for (Iterator<ClassFileLoader> iterator = this._classFileLoaderMap.values().iterator(); iterator.hasNext();) {
+      for (File file : iterator.next().getClasspath()) {
+        if (file.isDirectory() || modifiedJarFiles.contains(file.getAbsolutePath())) {
+          iterator.remove();
+          break;
+        }
+      }
+    }
+
+    // discard the boot class file loaders that refer to modified jar files
+    for (Iterator<ClassFileLoader> iterator = this._bootClassFileLoaderMap.values().iterator(); iterator.hasNext();) {
+      for (File file : iterator.next().getClasspath()) {
+        if (modifiedJarFiles.contains(file.getAbsolutePath())) {
+          iterator.remove();
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the shared boot class file loader that has been stored for the given key or <code>null</code> if no such
+   * class file loader exists. In contrast to other class file loaders, boot class file loaders are always cached, as
+   * they are immutable and the same (huge) libraries of a java runtime are used by most compilations.
+   * </p>
+   * 
+   * @param key
+   *          the key (which identifies the boot class path and the access restrictions)
+   * @return the shared boot class file loader or <code>null</code>.
+   */
+  public ClassFileLoader getBootClassFileLoader(Object key) {
+    return this._bootClassFileLoaderMap.get(key);
+  }
+
+  /**
+   * <p>
+   * Stores the given boot class file loader. If another thread has stored a boot class file loader for the same key in
+   * the meantime, the class file loader of the other thread is kept and returned.
+   * </p>
+   * 
+   * @param key
+   *          the key (which identifies the boot class path and the access restrictions)
+   * @param classFileLoader
+   *          the boot class file loader
+   * @return the shared boot class file loader.
+   */
+  public ClassFileLoader storeBootClassFileLoader(Object key, ClassFileLoader classFileLoader) {
+    synchronized (this._bootClassFileLoaderMap) {
+      ClassFileLoader existing = this._bootClassFileLoaderMap.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      for (File file : classFileLoader.getClasspath()) {
+        if (file.isFile()) {
+          recordStamp(file);
+        }
+      }
+      this._bootClassFileLoaderMap.put(key, classFileLoader);
+    }
+    if (TRACE_CACHE) {
+      A4ELogging.debug("Store boot ClassFileLoader in cache for: '" + key + "' -> " + classFileLoader);
+    }
+    return classFileLoader;
   }
 
   /**
@@ -81,26 +333,41 @@ public class ClassFileLoaderCache implements Lifecycle {
    */
   public void clear() {
     this._classFileLoaderMap.clear();
-    this._hits = 0;
-    this._missed = 0;
+    this._hits.set(0);
+    this._missed.set(0);
 
   }
 
   /**
    * <p>
+   * Stores the given class file loader. If another thread has stored a class file loader for the same key in the
+   * meantime, the class file loader of the other thread is kept and returned.
    * </p>
    * 
    * @param key
    * @param classFileLoader
+   * @return the cached class file loader (or the given one if caching has been disabled).
    */
-  public void storeClassFileLoader(Object key, ClassFileLoader classFileLoader) {
+  public ClassFileLoader storeClassFileLoader(Object key, ClassFileLoader classFileLoader) {
     if (ENABLE_CACHE) {
       if (TRACE_CACHE) {
         A4ELogging.debug("Store ClassFileLoader in cache for: '" + key + "' -> " + classFileLoader);
         A4ELogging.debug("  Packages: " + Arrays.asList(classFileLoader.getAllPackages()));
       }
-      this._classFileLoaderMap.put(key, classFileLoader);
+      synchronized (this._classFileLoaderMap) {
+        ClassFileLoader existing = this._classFileLoaderMap.get(key);
+        if (existing != null) {
+          return existing;
+        }
+        for (File file : classFileLoader.getClasspath()) {
+          if (file.isFile()) {
+            recordStamp(file);
+          }
+        }
+        this._classFileLoaderMap.put(key, classFileLoader);
+      }
     }
+    return classFileLoader;
   }
 
   /**
@@ -113,12 +380,12 @@ public class ClassFileLoaderCache implements Lifecycle {
   public ClassFileLoader getClassFileLoader(Object key) {
     ClassFileLoader classFileLoader = this._classFileLoaderMap.get(key);
     if (classFileLoader != null) {
-      this._hits++;
+      this._hits.incrementAndGet();
       if (ENABLE_CACHE && TRACE_CACHE) {
         A4ELogging.debug("Got ClassFileLoader from cache for: " + key);
       }
     } else {
-      this._missed++;
+      this._missed.incrementAndGet();
       if (ENABLE_CACHE && TRACE_CACHE) {
         A4ELogging.debug("Missed ClassFileLoader in cache for: " + key);
       }
@@ -143,8 +410,8 @@ public class ClassFileLoaderCache implements Lifecycle {
   public void dump() {
 
     if (!ENABLE_CACHE) {
-      A4ELogging.info("ClassFileLoaderCache has been disabled. Anyway there have been " + (this._missed + this._hits)
-          + " calls to the cache.");
+      A4ELogging.info("ClassFileLoaderCache has been disabled. Anyway there have been "
+          + (this._missed.get() + this._hits.get()) + " calls to the cache.");
     } else {
       A4ELogging.info("ClassFileLoaderCache contains " + this._classFileLoaderMap.size() + " entries.");
       A4ELogging.info("There has been " + this._hits + " hits and " + this._missed + " misses");
@@ -153,6 +420,36 @@ public class ClassFileLoaderCache implements Lifecycle {
         A4ELogging.info("  Packages: " + Arrays.asList(entry.getValue().getAllPackages()));
       }
     }
+
+    this._jarFilePool.dump();
+  }
+
+  /**
+   * <p>
+   * Records the current stamp of the given jar file unless a stamp has already been recorded.
+   * </p>
+   * 
+   * @param jarFile
+   *          the jar file
+   */
+  private void recordStamp(File jarFile) {
+    String path = jarFile.getAbsolutePath();
+    if (!this._stamps.containsKey(path)) {
+      this._stamps.put(path, getStamp(jarFile));
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the stamp of the given jar file, which consists of its size and modification time.
+   * </p>
+   * 
+   * @param jarFile
+   *          the jar file
+   * @return the stamp of the given jar file.
+   */
+  private static String getStamp(File jarFile) {
+    return jarFile.length() + ":" + jarFile.lastModified();
   }
 
   public static ClassFileLoaderCache getInstance() {
@@ -0,0 +1,46 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import org.ant4eclipse.lib.core.metrics.Counter;
+import org.ant4eclipse.lib.core.metrics.Metrics;
+
+/**
+ * <p>
+ * The metrics that are shared by the {@link org.ant4eclipse.lib.jdt.ecj.ClassFile} implementations.
+ * </p>
+ *
+ * @author agent
+ */
+class ClassFileMetrics {
+
+  /** the number of class files that have been read */
+  static final Counter CLASS_FILES_READ = Metrics.counter("ecj.classFile.read");
+
+  /** the number of bytes that have been read from class files */
+  static final Counter BYTES_READ       = Metrics.counter("ecj.classFile.bytesRead");
+
+  /**
+   * <p>
+   * Records that the given class file content has been read.
+   * </p>
+   *
+   * @param content
+   *          the content of the class file
+   * @return the given content.
+   */
+  static byte[] read(byte[] content) {
+    CLASS_FILES_READ.increment();
+    BYTES_READ.add(content.length);
+    return content;
+  }
+}
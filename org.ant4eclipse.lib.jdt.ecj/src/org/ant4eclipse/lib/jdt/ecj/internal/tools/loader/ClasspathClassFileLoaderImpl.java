@@ -12,24 +12,19 @@
 package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.StringTokenizer;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.ClassName;
-import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.jdt.ecj.ClassFile;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
-import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
+import org.ant4eclipse.lib.jdt.ecj.CompoundName;
 import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.ReferableSourceFileImpl;
 
@@ -56,7 +51,10 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
   private byte                         _type;
 
   /** maps packages to package providers */
-  private Map<String, PackageProvider> _allPackages;
+  private Map<CompoundName, PackageProvider> _allPackages;
+
+  /** provides access to the shared jar files */
+  private ClassFileLoaderCache         _classFileLoaderCache;
 
   /**
    * <p>
@@ -131,6 +129,13 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
    * {@inheritDoc}
    */
   public boolean hasPackage(String packageName) {
+    return this._allPackages.containsKey(CompoundName.fromQualifiedName(packageName));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean hasPackage(CompoundName packageName) {
     return this._allPackages.containsKey(packageName);
   }
 
@@ -138,8 +143,12 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
    * {@inheritDoc}
    */
   public String[] getAllPackages() {
-    Set<String> keys = this._allPackages.keySet();
-    return keys.toArray(new String[0]);
+    String[] result = new String[this._allPackages.size()];
+    int i = 0;
+    for (CompoundName packageName : this._allPackages.keySet()) {
+      result[i++] = packageName.toString();
+    }
+    return result;
   }
 
   /**
@@ -170,7 +179,7 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
    * 
    * @return
    */
-  protected File getLocation() {
+  public File getLocation() {
     return this._location;
   }
 
@@ -180,7 +189,7 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
    * 
    * @return
    */
-  protected byte getType() {
+  public byte getType() {
     return this._type;
   }
 
@@ -202,6 +211,17 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
     return getClasspathEntries();
   }
 
+  /**
+   * <p>
+   * Returns all source path entries of this {@link ClassFileLoader}.
+   * </p>
+   * 
+   * @return all source path entries of this {@link ClassFileLoader}.
+   */
+  public File[] getSourcepathEntries() {
+    return this._sourcepathEntries;
+  }
+
   /**
    * <p>
    * Initializes this class file loader.
@@ -229,15 +249,18 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
     this._sourcepathEntries = sourcepathEntries;
 
     // create allPackages hash map
-    this._allPackages = new HashMap<String, PackageProvider>();
+    this._allPackages = new HashMap<CompoundName, PackageProvider>();
+
+    // jar files are opened through the shared cache
+    this._classFileLoaderCache = ClassFileLoaderCache.getInstance();
+
+    // the package index reuses package lists computed in previous runs
+    PackageIndex packageIndex = PackageIndex.getInstance();
 
     // add all existing packages to the hash map
     for (File file : this._classpathEntries) {
-      if (file.isDirectory()) {
-        String[] allPackages = getAllPackagesFromDirectory(file);
-        addAllPackagesFromClassPathEntry(allPackages, file);
-      } else if (file.isFile()) {
-        String[] allPackages = getAllPackagesFromJar(file);
+      if (file.isDirectory() || file.isFile()) {
+        String[] allPackages = packageIndex.getAllPackages(file);
         addAllPackagesFromClassPathEntry(allPackages, file);
       }
     }
@@ -245,7 +268,7 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
     // add all existing packages to the hash map
     for (File file : this._sourcepathEntries) {
       if (file.isDirectory()) {
-        String[] allPackages = getAllPackagesFromDirectory(file);
+        String[] allPackages = packageIndex.getAllPackages(file);
         addAllPackagesFromSourcePathEntry(allPackages, file);
       }
       // we do not support source in jars or zips
@@ -276,6 +299,20 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
    * @return
    */
   protected final PackageProvider getPackageProvider(String packageName) {
+    return this._allPackages.get(CompoundName.fromQualifiedName(packageName));
+  }
+
+  /**
+   * <p>
+   * Returns the {@link PackageProvider} for the given package or <code>null</code> if this class file loader doesn't
+   * contain the package.
+   * </p>
+   * 
+   * @param packageName
+   *          the name of the package
+   * @return the {@link PackageProvider} for the given package or <code>null</code>.
+   */
+  protected final PackageProvider getPackageProvider(CompoundName packageName) {
     return this._allPackages.get(packageName);
   }
 
@@ -286,14 +323,13 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
   private void addAllPackagesFromClassPathEntry(String[] allPackages, File classPathEntry) {
 
     for (String aPackage : allPackages) {
-      if (this._allPackages.containsKey(aPackage)) {
-        PackageProvider provider = this._allPackages.get(aPackage);
-        provider.addClasspathEntry(classPathEntry);
-      } else {
-        PackageProvider provider = newPackageProvider();
-        provider.addClasspathEntry(classPathEntry);
-        this._allPackages.put(aPackage, provider);
+      CompoundName packageName = CompoundName.fromQualifiedName(aPackage);
+      PackageProvider provider = this._allPackages.get(packageName);
+      if (provider == null) {
+        provider = newPackageProvider();
+        this._allPackages.put(packageName, provider);
       }
+      provider.addClasspathEntry(classPathEntry);
     }
   }
 
@@ -307,187 +343,66 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
   private void addAllPackagesFromSourcePathEntry(String[] allPackages, File sourcePathEntry) {
 
     for (String aPackage : allPackages) {
-      if (this._allPackages.containsKey(aPackage)) {
-        PackageProvider provider = this._allPackages.get(aPackage);
-        provider.addSourcepathEntry(sourcePathEntry);
-      } else {
-        PackageProvider provider = newPackageProvider();
-        provider.addSourcepathEntry(sourcePathEntry);
-        this._allPackages.put(aPackage, provider);
+      CompoundName packageName = CompoundName.fromQualifiedName(aPackage);
+      PackageProvider provider = this._allPackages.get(packageName);
+      if (provider == null) {
+        provider = newPackageProvider();
+        this._allPackages.put(packageName, provider);
       }
+      provider.addSourcepathEntry(sourcePathEntry);
     }
   }
 
   /**
-   * <p>
-   * Returns all the names of the packages that are contained in the specified jar file. The package list contains the
-   * packages that contain classes as well as all parent packages of those.
-   * </p>
-   * 
-   * @param jar
-   * @return
-   * @throws IOException
-   */
-  private String[] getAllPackagesFromJar(File jar) {
-    Assure.isFile("jar", jar);
-
-    // prepare result...
-    List<String> result = new LinkedList<String>();
-
-    // create the jarFile wrapper...
-    JarFile jarFile = null;
-
-    try {
-      jarFile = new JarFile(jar);
-    } catch (IOException e) {
-      throw new Ant4EclipseException(EcjExceptionCodes.COULD_NOT_CREATE_JAR_FILE_FROM_FILE_EXCEPTION,
-          jar.getAbsolutePath());
-    }
-
-    // Iterate over entries...
-    Enumeration<?> enumeration = jarFile.entries();
-    while (enumeration.hasMoreElements()) {
-      JarEntry jarEntry = (JarEntry) enumeration.nextElement();
-
-      // add package for each found directory...
-      String directoryName = null;
-
-      // if the jar entry is a directory, the directory name is the name of the jar entry...
-      if (jarEntry.isDirectory()) {
-        directoryName = jarEntry.getName();
-      }
-      // otherwise the directory name has to be computed
-      else {
-        int splitIndex = jarEntry.getName().lastIndexOf('/');
-        if (splitIndex != -1) {
-          directoryName = jarEntry.getName().substring(0, splitIndex);
-        }
-      }
-
-      // directoryName can be null if a top level entry is processed
-      if (directoryName != null) {
-        // convert path to package name
-        String packageName = directoryName.replace('/', '.');
-        packageName = packageName.endsWith(".") ? packageName.substring(0, packageName.length() - 1) : packageName;
-
-        // at package with all the parent packages (!) to the result list
-        String[] packages = allPackages(packageName);
-        for (int i = 0; i < packages.length; i++) {
-          if (!result.contains(packages[i])) {
-            result.add(packages[i]);
-          }
-        }
-      }
-    }
-
-    // return result...
-    return result.toArray(new String[0]);
-
-  }
-
-  /**
-   * <p>
-   * Returns all package names (including parent package names) for the specified package.
-   * </p>
-   * <p>
-   * <b>Example:</b><br/>
-   * Given the package name <code>net.sf.ant4eclipse.tools</code> this method will return {"net", "net.sf",
-   * "net.sf.ant4eclipse", "net.sf.ant4eclipse.tools"}.
-   * </p>
-   * 
-   * @param packageName
-   *          the name of the package.
-   * @return all package names (including parent package names) for the specified package.
+   * {@inheritDoc}
    */
-  private String[] allPackages(String packageName) {
-
-    // split the package name
-    StringTokenizer tokenizer = new StringTokenizer(packageName, ".");
-
-    // declare result
-    String[] result = new String[tokenizer.countTokens()];
+  public ClassFile loadClass(ClassName className) {
 
-    // compute result
-    for (int i = 0; i < result.length; i++) {
-      if (i == 0) {
-        result[i] = tokenizer.nextToken();
-      } else {
-        result[i] = result[i - 1] + "." + tokenizer.nextToken();
-      }
+    PackageProvider packageProvider = getPackageProvider(className.getPackageName());
+    if (packageProvider == null) {
+      return null;
     }
 
-    // return result
-    return result;
+    return packageProvider.loadClassFile(className);
   }
 
   /**
-   * @param directory
-   * @return
+   * {@inheritDoc}
    */
-  private String[] getAllPackagesFromDirectory(File directory) {
-
-    List<String> result = new LinkedList<String>();
-
-    File[] children = directory.listFiles(new FileFilter() {
-      public boolean accept(File pathname) {
-        return pathname.isDirectory();
-      }
-    });
+  public ClassFile loadClass(CompoundName packageName, char[] typeName) {
 
-    if (children != null) {
-      for (File element : children) {
-        getAllPackagesFromDirectory(null, element, result);
-      }
+    PackageProvider packageProvider = getPackageProvider(packageName);
+    if (packageProvider == null) {
+      return null;
     }
 
-    return result.toArray(new String[0]);
-  }
-
-  /**
-   * @param prefix
-   * @param directory
-   * @param result
-   */
-  private void getAllPackagesFromDirectory(String prefix, File directory, List<String> result) {
-
-    String newPrefix = prefix == null ? "" : prefix + ".";
-
-    result.add(newPrefix + directory.getName());
-
-    File[] children = directory.listFiles(new FileFilter() {
-      public boolean accept(File pathname) {
-        return pathname.isDirectory();
-      }
-    });
-
-    if (children != null) {
-      for (File element : children) {
-        getAllPackagesFromDirectory(newPrefix + directory.getName(), element, result);
-      }
-    }
+    return packageProvider.loadClassFile(packageName.asClassFileName(typeName));
   }
 
   /**
    * {@inheritDoc}
    */
-  public ClassFile loadClass(ClassName className) {
+  public ReferableSourceFile loadSource(ClassName className) {
 
-    if (!hasPackage(className.getPackageName())) {
+    PackageProvider packageProvider = getPackageProvider(className.getPackageName());
+    if (packageProvider == null) {
       return null;
     }
 
-    return getPackageProvider(className.getPackageName()).loadClassFile(className);
+    return packageProvider.loadSourceFile(className);
   }
 
   /**
    * {@inheritDoc}
    */
-  public ReferableSourceFile loadSource(ClassName className) {
-    if (!hasPackage(className.getPackageName())) {
+  public ReferableSourceFile loadSource(CompoundName packageName, char[] typeName) {
+
+    PackageProvider packageProvider = getPackageProvider(packageName);
+    if (packageProvider == null) {
       return null;
     }
 
-    return getPackageProvider(className.getPackageName()).loadSourceFile(className);
+    return packageProvider.loadSourceFile(ClassName.fromQualifiedClassName(packageName.asQualifiedName(typeName)));
   }
 
   /**
@@ -572,12 +487,25 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
      * @return
      */
     public ClassFile loadClassFile(ClassName className) {
+      return loadClassFile(className.asClassFileName());
+    }
+
+    /**
+     * <p>
+     * Loads the class file with the given name from the class path entries of this {@link PackageProvider}.
+     * </p>
+     * 
+     * @param classFileName
+     *          the name of the class file (e.g. <code>java/lang/Object.class</code>)
+     * @return the class file or <code>null</code>.
+     */
+    public ClassFile loadClassFile(String classFileName) {
 
       for (File file : this._classpathEntries) {
         File classpathEntry = file;
 
         if (classpathEntry.isDirectory()) {
-          File result = new File(classpathEntry, className.asClassFileName());
+          File result = new File(classpathEntry, classFileName);
 
           if (result.exists()) {
 
@@ -591,14 +519,32 @@ public class ClasspathClassFileLoaderImpl implements ClassFileLoader {
             }
           }
         } else {
+          // read from the memory mapped jar file if possible
+          MappedJarFile mappedJarFile = ClasspathClassFileLoaderImpl.this._classFileLoaderCache
+              .getMappedJarFile(classpathEntry);
+          if (mappedJarFile != null) {
+            if (mappedJarFile.hasEntry(classFileName)) {
+              return new MappedJarClassFileImpl(classFileName, mappedJarFile, classpathEntry
+                  .getAbsolutePath(), ClasspathClassFileLoaderImpl.this._type,
+                  ClasspathClassFileLoaderImpl.this._classFileLoaderCache.getBinaryTypeCache(classpathEntry));
+            }
+            continue;
+          }
+
           try {
-            JarFile jarFile = new JarFile(classpathEntry);
+            JarFilePool jarFilePool = ClasspathClassFileLoaderImpl.this._classFileLoaderCache.getJarFilePool();
+            JarFile jarFile = jarFilePool.acquire(classpathEntry);
 
-            JarEntry entry = jarFile.getJarEntry(className.asClassFileName());
+            try {
+              JarEntry entry = jarFile.getJarEntry(classFileName);
 
-            if ((entry != null)) {
-              return new JarClassFileImpl(className.asClassFileName(), jarFile, classpathEntry.getAbsolutePath(),
-                  ClasspathClassFileLoaderImpl.this._type);
+              if ((entry != null)) {
+                return new JarClassFileImpl(classFileName, classpathEntry, jarFilePool, classpathEntry
+                    .getAbsolutePath(), ClasspathClassFileLoaderImpl.this._type,
+                    ClasspathClassFileLoaderImpl.this._classFileLoaderCache.getBinaryTypeCache(classpathEntry));
+              }
+            } finally {
+              jarFilePool.release(jarFile);
             }
           } catch (IOException e) {
             // nothing to do here...
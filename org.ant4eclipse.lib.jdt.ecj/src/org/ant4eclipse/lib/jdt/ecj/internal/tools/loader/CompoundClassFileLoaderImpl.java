@@ -16,32 +16,42 @@ import org.ant4eclipse.lib.core.ClassName;
 import org.ant4eclipse.lib.core.util.Utilities;
 import org.ant4eclipse.lib.jdt.ecj.ClassFile;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.CompoundName;
 import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class CompoundClassFileLoaderImpl implements ClassFileLoader {
 
-  private ClassFileLoader[]                  _classFileLoaders;
+  private ClassFileLoader[]                   _classFileLoaders;
 
-  /** maps packages to a package provider that contains a list of one or more class path entries */
-  private Map<String, List<ClassFileLoader>> _allPackages;
+  /** maps packages to the class file loaders that provide the package */
+  private Map<CompoundName, ClassFileLoader[]> _allPackages;
 
   public CompoundClassFileLoaderImpl(ClassFileLoader[] classFileLoaders) {
     Assure.notNull("classFileLoaders", classFileLoaders);
 
     this._classFileLoaders = classFileLoaders;
 
-    this._allPackages = new HashMap<String, List<ClassFileLoader>>();
-
     initialise();
   }
 
+  /**
+   * <p>
+   * Returns the class file loaders contained in this compound class file loader.
+   * </p>
+   * 
+   * @return the class file loaders contained in this compound class file loader.
+   */
+  public ClassFileLoader[] getClassFileLoaders() {
+    return this._classFileLoaders;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -70,13 +80,25 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
    * {@inheritDoc}
    */
   public String[] getAllPackages() {
-    return this._allPackages.keySet().toArray(new String[0]);
+    String[] result = new String[this._allPackages.size()];
+    int i = 0;
+    for (CompoundName packageName : this._allPackages.keySet()) {
+      result[i++] = packageName.toString();
+    }
+    return result;
   }
 
   /**
    * {@inheritDoc}
    */
   public boolean hasPackage(String packageName) {
+    return this._allPackages.containsKey(CompoundName.fromQualifiedName(packageName));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean hasPackage(CompoundName packageName) {
     return this._allPackages.containsKey(packageName);
   }
 
@@ -86,10 +108,11 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
   public ClassFile loadClass(ClassName className) {
 
     // get the class file loader list
-    List<ClassFileLoader> classFileLoaderList = this._allPackages.get(className.getPackageName());
+    ClassFileLoader[] classFileLoaders = this._allPackages.get(CompoundName.fromQualifiedName(className
+        .getPackageName()));
 
     // return if class file loader list is null
-    if (classFileLoaderList == null) {
+    if (classFileLoaders == null) {
       return null;
     }
 
@@ -97,7 +120,7 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
     ClassFile result = null;
 
     // try to find the class file...
-    for (ClassFileLoader classFileLoader : classFileLoaderList) {
+    for (ClassFileLoader classFileLoader : classFileLoaders) {
 
       // try to load class file...
       ClassFile classFile = classFileLoader.loadClass(className);
@@ -128,13 +151,14 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
     // TODO: Access restrictions for source files!!
 
     // if the package name is not in the map of all packages, return immediately
-    List<ClassFileLoader> classFileLoaderList = this._allPackages.get(className.getPackageName());
-    if (classFileLoaderList == null) {
+    ClassFileLoader[] classFileLoaders = this._allPackages.get(CompoundName.fromQualifiedName(className
+        .getPackageName()));
+    if (classFileLoaders == null) {
       return null;
     }
 
     // search for the source file
-    for (ClassFileLoader classFileLoader : classFileLoaderList) {
+    for (ClassFileLoader classFileLoader : classFileLoaders) {
       ReferableSourceFile sourceFile = classFileLoader.loadSource(className);
       if (sourceFile != null) {
         return sourceFile;
@@ -145,6 +169,69 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
     return null;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public ClassFile loadClass(CompoundName packageName, char[] typeName) {
+
+    // get the class file loaders that provide the package
+    ClassFileLoader[] classFileLoaders = this._allPackages.get(packageName);
+
+    // return if no class file loader provides the package
+    if (classFileLoaders == null) {
+      return null;
+    }
+
+    // declare the result
+    ClassFile result = null;
+
+    // try to find the class file...
+    for (ClassFileLoader classFileLoader : classFileLoaders) {
+
+      // try to load class file...
+      ClassFile classFile = classFileLoader.loadClass(packageName, typeName);
+
+      // class file was found...
+      if (classFile != null) {
+
+        // if the class file has no access restrictions, return the class file...
+        if (!classFile.hasAccessRestriction()) {
+          return classFile;
+        }
+        // else set the class file a result, if result is null
+        else if (result == null) {
+          result = classFile;
+        }
+      }
+    }
+
+    // return the result
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ReferableSourceFile loadSource(CompoundName packageName, char[] typeName) {
+
+    // if the package name is not in the map of all packages, return immediately
+    ClassFileLoader[] classFileLoaders = this._allPackages.get(packageName);
+    if (classFileLoaders == null) {
+      return null;
+    }
+
+    // search for the source file
+    for (ClassFileLoader classFileLoader : classFileLoaders) {
+      ReferableSourceFile sourceFile = classFileLoader.loadSource(packageName, typeName);
+      if (sourceFile != null) {
+        return sourceFile;
+      }
+    }
+
+    // last resort: return null
+    return null;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -166,21 +253,30 @@ public class CompoundClassFileLoaderImpl implements ClassFileLoader {
 
   private void initialise() {
 
+    // collect the class file loaders for each package (in class path order)
+    Map<String, List<ClassFileLoader>> allPackages = new LinkedHashMap<String, List<ClassFileLoader>>();
+
     for (ClassFileLoader classFileLoader : this._classFileLoaders) {
       String[] packages = classFileLoader.getAllPackages();
 
       for (String aPackage : packages) {
-        if (this._allPackages.containsKey(aPackage)) {
-          List<ClassFileLoader> classFileLoaderList = this._allPackages.get(aPackage);
-          if (!classFileLoaderList.contains(classFileLoader)) {
-            classFileLoaderList.add(classFileLoader);
-          }
-        } else {
-          List<ClassFileLoader> classFileLoaderList = new LinkedList<ClassFileLoader>();
+        List<ClassFileLoader> classFileLoaderList = allPackages.get(aPackage);
+        if (classFileLoaderList == null) {
+          classFileLoaderList = new ArrayList<ClassFileLoader>(1);
+          allPackages.put(aPackage, classFileLoaderList);
+        }
+        if (!classFileLoaderList.contains(classFileLoader)) {
           classFileLoaderList.add(classFileLoader);
-          this._allPackages.put(aPackage, classFileLoaderList);
         }
       }
     }
+
+    // the lookup map is keyed by compound names, so the compiler can query it without creating strings
+    this._allPackages = new HashMap<CompoundName, ClassFileLoader[]>(allPackages.size() * 2);
+    for (Map.Entry<String, List<ClassFileLoader>> entry : allPackages.entrySet()) {
+      List<ClassFileLoader> classFileLoaderList = entry.getValue();
+      this._allPackages.put(CompoundName.fromQualifiedName(entry.getKey()), classFileLoaderList
+          .toArray(new ClassFileLoader[classFileLoaderList.size()]));
+    }
   }
 }
@@ -41,7 +41,7 @@ public class FileClassFileImpl extends DefaultReferableType implements ClassFile
 
   public byte[] getBytes() {
     try {
-      return Util.getFileByteContent(this._classfile);
+      return ClassFileMetrics.read(Util.getFileByteContent(this._classfile));
     } catch (Exception e) {
       throw new RuntimeException(e.getMessage(), e);
     }
@@ -52,7 +52,8 @@ public class FileClassFileImpl extends DefaultReferableType implements ClassFile
    */
   public final IBinaryType getBinaryType() {
     try {
-      return ClassFileReader.read(this._classfile, true);
+      return new ClassFileReader(ClassFileMetrics.read(Util.getFileByteContent(this._classfile)), this._classfile
+          .getAbsolutePath().toCharArray(), true);
     } catch (Exception e) {
       // return null if an exception occurs
       e.printStackTrace();
@@ -21,6 +21,7 @@ import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.ClassName;
 import org.ant4eclipse.lib.jdt.ecj.ClassFile;
 import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.CompoundName;
 import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
 import org.ant4eclipse.lib.jdt.ecj.ReferableType;
 import org.ant4eclipse.lib.jdt.ecj.internal.tools.DefaultReferableType;
@@ -72,6 +73,28 @@ public class FilteringClassFileLoader implements ClassFileLoader {
     init();
   }
 
+  /**
+   * <p>
+   * Returns the underlying class file loader.
+   * </p>
+   * 
+   * @return the underlying class file loader.
+   */
+  public ClassFileLoader getClassFileLoader() {
+    return this._classFileLoader;
+  }
+
+  /**
+   * <p>
+   * Returns the filter that defines the accessible classes.
+   * </p>
+   * 
+   * @return the filter.
+   */
+  public String getFilter() {
+    return this._filter;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -93,6 +116,13 @@ public class FilteringClassFileLoader implements ClassFileLoader {
     return this._classFileLoader.hasPackage(packageName);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public boolean hasPackage(CompoundName packageName) {
+    return this._classFileLoader.hasPackage(packageName);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -117,6 +147,35 @@ public class FilteringClassFileLoader implements ClassFileLoader {
     return result;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public ClassFile loadClass(CompoundName packageName, char[] typeName) {
+
+    ClassFile result = this._classFileLoader.loadClass(packageName, typeName);
+
+    // the class name is only needed to check the access restrictions of a loaded class
+    if (result != null) {
+      setAccessRestrictions(result, ClassName.fromQualifiedClassName(packageName.asQualifiedName(typeName)));
+    }
+
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public ReferableSourceFile loadSource(CompoundName packageName, char[] typeName) {
+
+    ReferableSourceFile result = this._classFileLoader.loadSource(packageName, typeName);
+
+    if (result != null) {
+      setAccessRestrictions(result, ClassName.fromQualifiedClassName(packageName.asQualifiedName(typeName)));
+    }
+
+    return result;
+  }
+
   /**
    * <p>
    * </p>
@@ -11,8 +11,10 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.zip.ZipFile;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
@@ -31,30 +33,48 @@ import org.eclipse.jdt.internal.compiler.util.Util;
  */
 public class JarClassFileImpl extends DefaultReferableType implements ClassFile {
 
-  /** the zip file */
-  private ZipFile _zipFile;
+  /** the jar file */
+  private File            _jarFile;
+
+  /** the pool that provides the open jar file */
+  private JarFilePool     _jarFilePool;
 
   /** the zip entry name */
-  private String  _zipEntryName;
+  private String          _zipEntryName;
+
+  /** the cache for the parsed binary types of the jar file, may be <code>null</code> */
+  private BinaryTypeCache _binaryTypeCache;
 
   /**
    * @param zipEntryName
-   * @param zipFile
+   * @param jarFile
+   * @param jarFilePool
+   * @param binaryTypeCache
+   *          the cache for the parsed binary types of the jar file, may be <code>null</code>
    */
-  public JarClassFileImpl(String zipEntryName, ZipFile zipFile, String libraryLocation, byte libraryType) {
+  public JarClassFileImpl(String zipEntryName, File jarFile, JarFilePool jarFilePool, String libraryLocation,
+      byte libraryType, BinaryTypeCache binaryTypeCache) {
 
     super(libraryLocation, libraryType);
 
     Assure.nonEmpty("zipEntryName", zipEntryName);
-    Assure.notNull("zipFile", zipFile);
+    Assure.notNull("jarFile", jarFile);
+    Assure.notNull("jarFilePool", jarFilePool);
 
     this._zipEntryName = zipEntryName;
-    this._zipFile = zipFile;
+    this._jarFile = jarFile;
+    this._jarFilePool = jarFilePool;
+    this._binaryTypeCache = binaryTypeCache;
   }
 
   public byte[] getBytes() {
     try {
-      return Util.getZipEntryByteContent(this._zipFile.getEntry(this._zipEntryName), this._zipFile);
+      JarFile jarFile = this._jarFilePool.acquire(this._jarFile);
+      try {
+        return ClassFileMetrics.read(Util.getZipEntryByteContent(jarFile.getEntry(this._zipEntryName), jarFile));
+      } finally {
+        this._jarFilePool.release(jarFile);
+      }
     } catch (Exception e) {
       throw new RuntimeException(e.getMessage(), e);
     }
@@ -64,17 +84,37 @@ public class JarClassFileImpl extends DefaultReferableType implements ClassFile
    * {@inheritDoc}
    */
   public final IBinaryType getBinaryType() {
+    if (this._binaryTypeCache != null) {
+      IBinaryType binaryType = this._binaryTypeCache.getBinaryType(this._zipEntryName);
+      if (binaryType != null) {
+        return binaryType;
+      }
+    }
     try {
-      return ClassFileReader.read(this._zipFile, this._zipEntryName, true);
+      JarFile jarFile = this._jarFilePool.acquire(this._jarFile);
+      try {
+        ZipEntry zipEntry = jarFile.getEntry(this._zipEntryName);
+        if (zipEntry == null) {
+          return null;
+        }
+        byte[] content = ClassFileMetrics.read(Util.getZipEntryByteContent(zipEntry, jarFile));
+        IBinaryType binaryType = new ClassFileReader(content, this._zipEntryName.toCharArray(), true);
+        if (this._binaryTypeCache != null) {
+          this._binaryTypeCache.storeBinaryType(this._zipEntryName, binaryType);
+        }
+        return binaryType;
+      } finally {
+        this._jarFilePool.release(jarFile);
+      }
     } catch (ClassFormatException e) {
       throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
-          this._zipFile.getName(), this._zipEntryName);
+          this._jarFile.getAbsolutePath(), this._zipEntryName);
     } catch (IOException e) {
       throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
-          this._zipFile.getName(), this._zipEntryName);
+          this._jarFile.getAbsolutePath(), this._zipEntryName);
     } catch (java.lang.SecurityException e) {
       throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
-          this._zipFile.getName(), this._zipEntryName);
+          this._jarFile.getAbsolutePath(), this._zipEntryName);
     }
   }
 
@@ -91,8 +131,8 @@ public class JarClassFileImpl extends DefaultReferableType implements ClassFile
     buffer.append(getLibraryType());
     buffer.append(" accessRestriction: ");
     buffer.append(getAccessRestriction());
-    buffer.append(" zipFile: ");
-    buffer.append(this._zipFile);
+    buffer.append(" jarFile: ");
+    buffer.append(this._jarFile);
     buffer.append(" zipEntryName: ");
     buffer.append(this._zipEntryName);
     buffer.append("]");
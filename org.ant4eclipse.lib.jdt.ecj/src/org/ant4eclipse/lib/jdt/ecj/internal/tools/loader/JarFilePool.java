@@ -0,0 +1,329 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+
+/**
+ * <p>
+ * A bounded pool of open {@link JarFile JarFiles}. Opening a {@link JarFile} means reading its central directory, so
+ * the pool keeps the most recently used jar files open and shares them between all class file loaders.
+ * </p>
+ * <p>
+ * Each {@link JarFile} returned by {@link #acquire(File)} must be handed back using {@link #release(JarFile)}. Jar
+ * files that are in use are never closed; if the pool is full, the least recently used idle jar files are closed.
+ * </p>
+ * <p>
+ * The length and the modification time of each jar file are recorded when it is opened. If a jar file has been
+ * modified on disk (e.g. because it has been rebuilt in a long running process), the next request opens it again.
+ * </p>
+ *
+ * @author agent
+ */
+public class JarFilePool {
+
+  /** System-Property that specifies the maximum number of open jar files */
+  public static final String       POOL_SIZE_PROPERTY = "ant4eclipse.jarFilePoolSize";
+
+  /** the default maximum number of open jar files */
+  public static final int          DEFAULT_POOL_SIZE  = 100;
+
+  /** the maximum number of idle jar files that are kept open */
+  private int                      _maxSize;
+
+  /** maps the path of a jar to the pooled jar file (in least recently used order) */
+  private Map<String, PooledJar>   _pooledJars;
+
+  /** maps open jar files to their pool entries */
+  private Map<JarFile, PooledJar>  _openJars;
+
+  /** hit counter */
+  private int                      _hits;
+
+  /** miss counter */
+  private int                      _missed;
+
+  /** eviction counter */
+  private int                      _evicted;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link JarFilePool} with the maximum size specified by the system property
+   * {@link #POOL_SIZE_PROPERTY}.
+   * </p>
+   */
+  public JarFilePool() {
+    this(Integer.getInteger(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE).intValue());
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link JarFilePool}.
+   * </p>
+   *
+   * @param maxSize
+   *          the maximum number of jar files that are kept open.
+   */
+  public JarFilePool(int maxSize) {
+    Assure.assertTrue(maxSize > 0, "maxSize must be greater than 0");
+    this._maxSize = maxSize;
+    this._pooledJars = new LinkedHashMap<String, PooledJar>(16, 0.75f, true);
+    this._openJars = new IdentityHashMap<JarFile, PooledJar>();
+  }
+
+  /**
+   * <p>
+   * Returns an open {@link JarFile} for the specified file. The returned jar file must be released using
+   * {@link #release(JarFile)}.
+   * </p>
+   *
+   * @param file
+   *          the jar file
+   * @return an open {@link JarFile} for the specified file.
+   * @throws IOException
+   *           if the jar file could not be opened
+   */
+  public synchronized JarFile acquire(File file) throws IOException {
+    Assure.notNull("file", file);
+
+    String path = file.getAbsolutePath();
+    PooledJar pooledJar = this._pooledJars.get(path);
+
+    if ((pooledJar != null) && !pooledJar.isUpToDate(file)) {
+      A4ELogging.debug("Jar file '%s' has been modified, opening it again.", path);
+      invalidate(file);
+      pooledJar = null;
+    }
+
+    if (pooledJar != null) {
+      this._hits++;
+      pooledJar._refCount++;
+    } else {
+      this._missed++;
+      // take the stamp before opening the jar, so a modification while opening is detected by the next request
+      long length = file.length();
+      long lastModified = file.lastModified();
+      pooledJar = new PooledJar(new JarFile(file), length, lastModified);
+      pooledJar._refCount++;
+      this._pooledJars.put(path, pooledJar);
+      this._openJars.put(pooledJar._jarFile, pooledJar);
+      evict();
+    }
+
+    return pooledJar._jarFile;
+  }
+
+  /**
+   * <p>
+   * Releases a {@link JarFile} that has been acquired using {@link #acquire(File)}.
+   * </p>
+   *
+   * @param jarFile
+   *          the jar file to release
+   */
+  public synchronized void release(JarFile jarFile) {
+    Assure.notNull("jarFile", jarFile);
+
+    PooledJar pooledJar = this._openJars.get(jarFile);
+    Assure.notNull("pooledJar", pooledJar);
+
+    pooledJar._refCount--;
+    if (pooledJar._refCount == 0) {
+      if (pooledJar._orphaned) {
+        // the pool has been closed while the jar was in use
+        close(pooledJar);
+      } else {
+        evict();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Closes all jar files. Jar files that are currently in use are closed as soon as they are released.
+   * </p>
+   */
+  public synchronized void close() {
+    for (PooledJar pooledJar : this._pooledJars.values()) {
+      if (pooledJar._refCount == 0) {
+        close(pooledJar);
+      } else {
+        pooledJar._orphaned = true;
+      }
+    }
+    this._pooledJars.clear();
+  }
+
+  /**
+   * <p>
+   * Closes the given jar file (e.g. because it has been modified). If the jar file is currently in use, it is closed as
+   * soon as it is released. The next request for the jar file opens it again.
+   * </p>
+   *
+   * @param file
+   *          the jar file
+   */
+  public synchronized void invalidate(File file) {
+    Assure.notNull("file", file);
+
+    PooledJar pooledJar = this._pooledJars.remove(file.getAbsolutePath());
+    if (pooledJar != null) {
+      if (pooledJar._refCount == 0) {
+        close(pooledJar);
+      } else {
+        pooledJar._orphaned = true;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the number of requests that have been served with an already open jar file.
+   * </p>
+   *
+   * @return the number of hits.
+   */
+  public synchronized int getHits() {
+    return this._hits;
+  }
+
+  /**
+   * <p>
+   * Returns the number of requests that required to open a jar file.
+   * </p>
+   *
+   * @return the number of misses.
+   */
+  public synchronized int getMissed() {
+    return this._missed;
+  }
+
+  /**
+   * <p>
+   * Returns the number of jar files that have been closed because the pool was full.
+   * </p>
+   *
+   * @return the number of evictions.
+   */
+  public synchronized int getEvicted() {
+    return this._evicted;
+  }
+
+  /**
+   * <p>
+   * Returns the number of currently open jar files.
+   * </p>
+   *
+   * @return the number of currently open jar files.
+   */
+  public synchronized int getOpenCount() {
+    return this._openJars.size();
+  }
+
+  /**
+   * <p>
+   * Dumps the hit statistics of this pool via A4ELogging.
+   * </p>
+   */
+  public synchronized void dump() {
+    A4ELogging.info("JarFilePool has " + this._openJars.size() + " open jar files (maximum " + this._maxSize + ").");
+    A4ELogging.info("There has been " + this._hits + " hits, " + this._missed + " misses and " + this._evicted
+        + " evictions");
+  }
+
+  /**
+   * <p>
+   * Closes the least recently used idle jar files until the pool doesn't exceed its maximum size.
+   * </p>
+   */
+  private void evict() {
+    Iterator<PooledJar> iterator = this._pooledJars.values().iterator();
+    while ((this._pooledJars.size() > this._maxSize) && iterator.hasNext()) {
+      PooledJar pooledJar = iterator.next();
+      if (pooledJar._refCount == 0) {
+        iterator.remove();
+        close(pooledJar);
+        this._evicted++;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Closes the given pooled jar.
+   * </p>
+   *
+   * @param pooledJar
+   *          the pooled jar
+   */
+  private void close(PooledJar pooledJar) {
+    this._openJars.remove(pooledJar._jarFile);
+    try {
+      pooledJar._jarFile.close();
+    } catch (IOException e) {
+      A4ELogging.debug("Could not close jar file '%s': %s", pooledJar._jarFile.getName(), e.toString());
+    }
+  }
+
+  /**
+   * <p>
+   * A pool entry.
+   * </p>
+   */
+  private static class PooledJar {
+
+    /** the open jar file */
+    private JarFile _jarFile;
+
+    /** the number of clients currently using the jar file */
+    private int     _refCount;
+
+    /** indicates that the pool has been closed while this jar has been in use */
+    private boolean _orphaned;
+
+    /** the length of the jar file when it has been opened */
+    private long    _length;
+
+    /** the modification time of the jar file when it has been opened */
+    private long    _lastModified;
+
+    /**
+     * @param jarFile
+     * @param length
+     * @param lastModified
+     */
+    public PooledJar(JarFile jarFile, long length, long lastModified) {
+      this._jarFile = jarFile;
+      this._length = length;
+      this._lastModified = lastModified;
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the given file still has the length and the modification time it had when it has
+     * been opened.
+     * </p>
+     */
+    private boolean isUpToDate(File file) {
+      return (file.length() == this._length) && (file.lastModified() == this._lastModified);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.IOException;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.DefaultReferableType;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.IBinaryType;
+
+/**
+ * <p>
+ * {@link ClassFile} implementation that reads the class file from a {@link MappedJarFile}.
+ * </p>
+ * 
+ * @author agent
+ */
+public class MappedJarClassFileImpl extends DefaultReferableType implements ClassFile {
+
+  /** the mapped jar file */
+  private MappedJarFile   _mappedJarFile;
+
+  /** the zip entry name */
+  private String          _zipEntryName;
+
+  /** the cache for the parsed binary types of the jar file, may be <code>null</code> */
+  private BinaryTypeCache _binaryTypeCache;
+
+  /**
+   * @param zipEntryName
+   * @param mappedJarFile
+   * @param libraryLocation
+   * @param libraryType
+   * @param binaryTypeCache
+   *          the cache for the parsed binary types of the jar file, may be <code>null</code>
+   */
+  public MappedJarClassFileImpl(String zipEntryName, MappedJarFile mappedJarFile, String libraryLocation,
+      byte libraryType, BinaryTypeCache binaryTypeCache) {
+
+    super(libraryLocation, libraryType);
+
+    Assure.nonEmpty("zipEntryName", zipEntryName);
+    Assure.notNull("mappedJarFile", mappedJarFile);
+
+    this._zipEntryName = zipEntryName;
+    this._mappedJarFile = mappedJarFile;
+    this._binaryTypeCache = binaryTypeCache;
+  }
+
+  public byte[] getBytes() {
+    try {
+      return ClassFileMetrics.read(this._mappedJarFile.getBytes(this._zipEntryName));
+    } catch (IOException e) {
+      throw new RuntimeException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public final IBinaryType getBinaryType() {
+    if (this._binaryTypeCache != null) {
+      IBinaryType binaryType = this._binaryTypeCache.getBinaryType(this._zipEntryName);
+      if (binaryType != null) {
+        return binaryType;
+      }
+    }
+    try {
+      IBinaryType binaryType = new ClassFileReader(ClassFileMetrics.read(this._mappedJarFile
+          .getBytes(this._zipEntryName)), this._zipEntryName.toCharArray(), true);
+      if (this._binaryTypeCache != null) {
+        this._binaryTypeCache.storeBinaryType(this._zipEntryName, binaryType);
+      }
+      return binaryType;
+    } catch (ClassFormatException e) {
+      throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
+          this._mappedJarFile.getFile().getAbsolutePath(), this._zipEntryName);
+    } catch (IOException e) {
+      throw new Ant4EclipseException(e, EcjExceptionCodes.UNABLE_TO_READ_BINARY_TYPE_FROM_JAR_EXCEPTION,
+          this._mappedJarFile.getFile().getAbsolutePath(), this._zipEntryName);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[MappedJarClassFileImpl:");
+    buffer.append(" bundleLocation: ");
+    buffer.append(getLibraryLocation());
+    buffer.append(" bundleType: ");
+    buffer.append(getLibraryType());
+    buffer.append(" accessRestriction: ");
+    buffer.append(getAccessRestriction());
+    buffer.append(" mappedJarFile: ");
+    buffer.append(this._mappedJarFile);
+    buffer.append(" zipEntryName: ");
+    buffer.append(this._zipEntryName);
+    buffer.append("]");
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,381 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.ant4eclipse.lib.core.Assure;
+
+/**
+ * <p>
+ * Read-only view of a jar file that is backed by a memory mapped buffer. The central directory of the jar file is
+ * parsed once when the {@link MappedJarFile} is created; afterwards the content of class file entries is sliced (or
+ * inflated) directly from the mapped buffer into an exactly sized byte array without any intermediate streams.
+ * </p>
+ * <p>
+ * Only class file entries are indexed. Jar files that can't be handled (e.g. ZIP64 archives or archives larger than
+ * 2GB) are rejected with an {@link IOException}, so callers can fall back to {@link java.util.jar.JarFile}. The same
+ * applies to truncated or corrupt archives: all offsets and sizes are checked against the size of the mapped buffer.
+ * </p>
+ *
+ * @author agent
+ */
+public class MappedJarFile {
+
+  /** signature of the end of central directory record */
+  private static final int                   END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+  /** signature of a central directory file header */
+  private static final int                   CENTRAL_DIRECTORY_SIGNATURE        = 0x02014b50;
+
+  /** signature of a local file header */
+  private static final int                   LOCAL_HEADER_SIGNATURE             = 0x04034b50;
+
+  /** the minimum size of the end of central directory record */
+  private static final int                   END_OF_CENTRAL_DIRECTORY_SIZE      = 22;
+
+  /** the size of a central directory file header (without name, extra field and comment) */
+  private static final int                   CENTRAL_DIRECTORY_HEADER_SIZE      = 46;
+
+  /** the size of a local file header (without name and extra field) */
+  private static final int                   LOCAL_HEADER_SIZE                  = 30;
+
+  /** the maximum compression ratio of the deflate algorithm */
+  private static final int                   MAX_DEFLATE_RATIO                  = 1032;
+
+  /** the maximum length of the zip file comment */
+  private static final int                   MAX_COMMENT_LENGTH                 = 0xffff;
+
+  /** compression method 'stored' */
+  private static final int                   METHOD_STORED                      = 0;
+
+  /** compression method 'deflated' */
+  private static final int                   METHOD_DEFLATED                    = 8;
+
+  /** the inflater is reused by each thread */
+  private static final ThreadLocal<Inflater> INFLATER                           = new ThreadLocal<Inflater>();
+
+  /** the buffer for compressed data is reused by each thread */
+  private static final ThreadLocal<byte[]>   INPUT_BUFFER                       = new ThreadLocal<byte[]>();
+
+  /** the jar file */
+  private File                               _file;
+
+  /** the length of the jar file when it has been mapped */
+  private long                               _length;
+
+  /** the modification time of the jar file when it has been mapped */
+  private long                               _lastModified;
+
+  /** the mapped content of the jar file */
+  private ByteBuffer                         _buffer;
+
+  /** the class file entries of the jar file */
+  private Map<String, Entry>                 _entries;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link MappedJarFile}.
+   * </p>
+   *
+   * @param file
+   *          the jar file
+   * @throws IOException
+   *           if the jar file could not be mapped or has an unsupported format
+   */
+  public MappedJarFile(File file) throws IOException {
+    Assure.isFile("file", file);
+
+    this._file = file;
+
+    // take the stamp before mapping the jar, so a modification while mapping is detected by the next lookup
+    this._length = file.length();
+    this._lastModified = file.lastModified();
+
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Jar file '" + file + "' is too large to be mapped.");
+      }
+      // the mapping stays valid after the channel has been closed
+      this._buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      this._buffer.order(ByteOrder.LITTLE_ENDIAN);
+    } finally {
+      randomAccessFile.close();
+    }
+
+    this._entries = readCentralDirectory();
+  }
+
+  /**
+   * <p>
+   * Returns the jar file.
+   * </p>
+   *
+   * @return the jar file.
+   */
+  public File getFile() {
+    return this._file;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the length and the modification time of the jar file haven't changed since it has
+   * been mapped.
+   * </p>
+   *
+   * @return <code>true</code> if the jar file hasn't been modified.
+   */
+  public boolean isUpToDate() {
+    return (this._file.length() == this._length) && (this._file.lastModified() == this._lastModified);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the jar file contains a class file entry with the given name.
+   * </p>
+   *
+   * @param entryName
+   *          the name of the entry (e.g. <code>java/lang/Object.class</code>)
+   * @return <code>true</code> if the jar file contains a class file entry with the given name.
+   */
+  public boolean hasEntry(String entryName) {
+    return this._entries.containsKey(entryName);
+  }
+
+  /**
+   * <p>
+   * Returns the (uncompressed) content of the class file entry with the given name or <code>null</code> if no such
+   * entry exists.
+   * </p>
+   *
+   * @param entryName
+   *          the name of the entry (e.g. <code>java/lang/Object.class</code>)
+   * @return the content of the entry or <code>null</code>.
+   * @throws IOException
+   *           if the entry could not be read
+   */
+  public byte[] getBytes(String entryName) throws IOException {
+    Entry entry = this._entries.get(entryName);
+    if (entry == null) {
+      return null;
+    }
+
+    // every reader works on its own view of the shared mapping
+    ByteBuffer buffer = this._buffer.duplicate();
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    int offset = entry._localHeaderOffset;
+    if (buffer.getInt(offset) != LOCAL_HEADER_SIGNATURE) {
+      throw new IOException("Invalid local header for entry '" + entryName + "' in '" + this._file + "'.");
+    }
+    int dataOffset = offset + LOCAL_HEADER_SIZE + (buffer.getShort(offset + 26) & 0xffff)
+        + (buffer.getShort(offset + 28) & 0xffff);
+    checkBounds(dataOffset, entry._method == METHOD_STORED ? entry._size : entry._compressedSize, buffer.limit());
+    buffer.position(dataOffset);
+
+    byte[] result = new byte[entry._size];
+    if (entry._method == METHOD_STORED) {
+      buffer.get(result);
+    } else {
+      // the inflater requires an additional dummy byte when using the 'nowrap' option
+      byte[] input = INPUT_BUFFER.get();
+      if ((input == null) || (input.length < entry._compressedSize + 1)) {
+        input = new byte[Math.max(entry._compressedSize + 1, 8192)];
+        INPUT_BUFFER.set(input);
+      }
+      buffer.get(input, 0, entry._compressedSize);
+      input[entry._compressedSize] = 0;
+      Inflater inflater = INFLATER.get();
+      if (inflater == null) {
+        inflater = new Inflater(true);
+        INFLATER.set(inflater);
+      }
+      inflater.reset();
+      inflater.setInput(input, 0, entry._compressedSize + 1);
+      try {
+        int length = 0;
+        while (length < result.length) {
+          int inflated = inflater.inflate(result, length, result.length - length);
+          if ((inflated == 0) && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          length += inflated;
+        }
+        if (length != result.length) {
+          throw new IOException("Unexpected size of entry '" + entryName + "' in '" + this._file + "'.");
+        }
+      } catch (DataFormatException ex) {
+        throw new IOException("Invalid compressed data for entry '" + entryName + "' in '" + this._file + "': "
+            + ex.getMessage());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Parses the central directory of the jar file.
+   * </p>
+   *
+   * @return the class file entries of the jar file.
+   * @throws IOException
+   *           if the jar file has an unsupported format
+   */
+  private Map<String, Entry> readCentralDirectory() throws IOException {
+
+    ByteBuffer buffer = this._buffer;
+    int limit = buffer.limit();
+    if (limit < END_OF_CENTRAL_DIRECTORY_SIZE) {
+      throw new IOException("Jar file '" + this._file + "' is truncated.");
+    }
+
+    // search the end of central directory record (it's followed by a comment of variable length)
+    int endOfCentralDirectory = -1;
+    int lowest = Math.max(0, limit - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_LENGTH);
+    for (int i = limit - END_OF_CENTRAL_DIRECTORY_SIZE; i >= lowest; i--) {
+      if (buffer.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        endOfCentralDirectory = i;
+        break;
+      }
+    }
+    if (endOfCentralDirectory == -1) {
+      throw new IOException("No central directory found in '" + this._file + "'.");
+    }
+
+    int count = buffer.getShort(endOfCentralDirectory + 10) & 0xffff;
+    long centralDirectoryOffset = buffer.getInt(endOfCentralDirectory + 16) & 0xffffffffL;
+    if ((count == 0xffff) || (centralDirectoryOffset == 0xffffffffL) || (centralDirectoryOffset >= limit)) {
+      throw new IOException("Unsupported zip format (ZIP64) in '" + this._file + "'.");
+    }
+
+    Map<String, Entry> result = new HashMap<String, Entry>();
+    int offset = (int) centralDirectoryOffset;
+    for (int i = 0; i < count; i++) {
+      checkBounds(offset, CENTRAL_DIRECTORY_HEADER_SIZE, limit);
+      if (buffer.getInt(offset) != CENTRAL_DIRECTORY_SIGNATURE) {
+        throw new IOException("Invalid central directory in '" + this._file + "'.");
+      }
+      int method = buffer.getShort(offset + 10) & 0xffff;
+      long compressedSize = buffer.getInt(offset + 20) & 0xffffffffL;
+      long size = buffer.getInt(offset + 24) & 0xffffffffL;
+      int nameLength = buffer.getShort(offset + 28) & 0xffff;
+      int extraLength = buffer.getShort(offset + 30) & 0xffff;
+      int commentLength = buffer.getShort(offset + 32) & 0xffff;
+      long localHeaderOffset = buffer.getInt(offset + 42) & 0xffffffffL;
+
+      checkBounds(offset + CENTRAL_DIRECTORY_HEADER_SIZE, nameLength, limit);
+      String name = readName(buffer, offset + CENTRAL_DIRECTORY_HEADER_SIZE, nameLength);
+      if (name.endsWith(".class")) {
+        if (((method != METHOD_STORED) && (method != METHOD_DEFLATED)) || (size > Integer.MAX_VALUE)
+            || (compressedSize > Integer.MAX_VALUE)) {
+          throw new IOException("Unsupported entry '" + name + "' in '" + this._file + "'.");
+        }
+        // the size of the entry is used to allocate the result, so it must be plausible
+        if ((localHeaderOffset > limit - LOCAL_HEADER_SIZE) || ((method == METHOD_STORED) && (size > limit))
+            || (compressedSize > limit) || (size > compressedSize * MAX_DEFLATE_RATIO + 64)) {
+          throw new IOException("Invalid entry '" + name + "' in '" + this._file + "'.");
+        }
+        result.put(name, new Entry(method, (int) compressedSize, (int) size, (int) localHeaderOffset));
+      }
+
+      offset += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Makes sure that the given range lies within the mapped buffer.
+   * </p>
+   *
+   * @throws IOException
+   *           if the range exceeds the buffer (i.e. the jar file is truncated or corrupt)
+   */
+  private void checkBounds(int offset, long length, int limit) throws IOException {
+    if ((offset < 0) || (length < 0) || (offset + length > limit)) {
+      throw new IOException("Jar file '" + this._file + "' is truncated or corrupt.");
+    }
+  }
+
+  /**
+   * <p>
+   * Reads an entry name from the central directory.
+   * </p>
+   */
+  private String readName(ByteBuffer buffer, int offset, int length) throws UnsupportedEncodingException {
+    byte[] name = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.get(name);
+    return new String(name, "UTF-8");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("[MappedJarFile:");
+    buffer.append(" file: ");
+    buffer.append(this._file);
+    buffer.append(" entries: ");
+    buffer.append(this._entries.size());
+    buffer.append("]");
+    return buffer.toString();
+  }
+
+  /**
+   * <p>
+   * A class file entry of the central directory.
+   * </p>
+   */
+  private static class Entry {
+
+    /** the compression method */
+    private int _method;
+
+    /** the compressed size */
+    private int _compressedSize;
+
+    /** the uncompressed size */
+    private int _size;
+
+    /** the offset of the local file header */
+    private int _localHeaderOffset;
+
+    /**
+     * @param method
+     * @param compressedSize
+     * @param size
+     * @param localHeaderOffset
+     */
+    public Entry(int method, int compressedSize, int size, int localHeaderOffset) {
+      this._method = method;
+      this._compressedSize = compressedSize;
+      this._size = size;
+      this._localHeaderOffset = localHeaderOffset;
+    }
+  }
+}
@@ -0,0 +1,435 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.Lifecycle;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.metrics.Counter;
+import org.ant4eclipse.lib.core.metrics.Metrics;
+import org.ant4eclipse.lib.core.metrics.Timer;
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.EcjExceptionCodes;
+
+/**
+ * <p>
+ * Computes the names of all packages contained in a class path entry (a jar file or a directory). If a persistent
+ * cache directory has been configured (see {@link CacheDirectory}), the computed package lists are stored on disk and
+ * reused by subsequent ant4eclipse runs as long as the class path entry hasn't changed.
+ * </p>
+ * <p>
+ * A jar file is considered unchanged if its size and its modification time haven't changed. A directory is considered
+ * unchanged if none of its (sub-)directories has been modified, as adding or removing a child changes the
+ * modification time of the parent directory.
+ * </p>
+ *
+ * @author agent
+ */
+public class PackageIndex implements Lifecycle {
+
+  /** the name of the cache area */
+  private static final String  AREA       = "packageindex";
+
+  /** the version of the index file format */
+  private static final int     VERSION    = 1;
+
+  /** the maximum number of entries an index file may contain (larger counts denote a corrupt file) */
+  private static final int     MAX_COUNT  = 1000000;
+
+  /** the time spent to compute package lists that couldn't be read from the persistent index */
+  private static final Timer   BUILD      = Metrics.timer("ecj.packageIndex.build");
+
+  /** the number of package lists that have been read from the persistent index */
+  private static final Counter PERSISTENT = Metrics.counter("ecj.packageIndex.persistentHits");
+
+  /** hit counter */
+  private AtomicInteger        _hits      = new AtomicInteger();
+
+  /** miss counter */
+  private AtomicInteger        _missed    = new AtomicInteger();
+
+  /** - */
+  private boolean              _initialized;
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isInitialized() {
+    return this._initialized;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void initialize() {
+    this._initialized = true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void dispose() {
+    this._initialized = false;
+    if (CacheDirectory.isEnabled()) {
+      A4ELogging.debug("PackageIndex: %d hits and %d misses.", Integer.valueOf(this._hits.get()), Integer
+          .valueOf(this._missed.get()));
+    }
+  }
+
+  /**
+   * <p>
+   * Returns all the names of the packages that are contained in the specified class path entry. The package list
+   * contains the packages that contain classes as well as all parent packages of those.
+   * </p>
+   *
+   * @param classpathEntry
+   *          the class path entry (a jar file or a directory). Not <code>null</code>.
+   * @return all the names of the packages that are contained in the specified class path entry.
+   */
+  public String[] getAllPackages(File classpathEntry) {
+    Assure.notNull("classpathEntry", classpathEntry);
+
+    File indexFile = CacheDirectory.getCacheFile(AREA, classpathEntry.getAbsolutePath());
+
+    // try to read the package list from the persistent index
+    if ((indexFile != null) && indexFile.isFile()) {
+      String[] result = readIndex(indexFile, classpathEntry);
+      if (result != null) {
+        this._hits.incrementAndGet();
+        PERSISTENT.increment();
+        return result;
+      }
+    }
+    this._missed.incrementAndGet();
+
+    // compute the package list
+    long start = BUILD.start();
+    Map<String, Long> stamps = new LinkedHashMap<String, Long>();
+    String[] result;
+    try {
+      result = classpathEntry.isDirectory() ? getAllPackagesFromDirectory(classpathEntry, stamps)
+          : getAllPackagesFromJar(classpathEntry);
+    } finally {
+      BUILD.stop(start);
+    }
+
+    // store it for subsequent runs
+    if (indexFile != null) {
+      writeIndex(indexFile, classpathEntry, stamps, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * <p>
+   * Reads the package list from the given index file. Returns <code>null</code> if the index file is outdated or can't
+   * be read.
+   * </p>
+   *
+   * @param indexFile
+   *          the index file
+   * @param classpathEntry
+   *          the class path entry the index has been created for
+   * @return the package list or <code>null</code>.
+   */
+  private String[] readIndex(File indexFile, File classpathEntry) {
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+      if ((input.readInt() != VERSION) || !classpathEntry.getAbsolutePath().equals(input.readUTF())) {
+        return null;
+      }
+      boolean directory = input.readBoolean();
+      if (directory != classpathEntry.isDirectory()) {
+        return null;
+      }
+      if (directory) {
+        int count = readCount(input);
+        for (int i = 0; i < count; i++) {
+          File child = new File(classpathEntry, input.readUTF());
+          if (child.lastModified() != input.readLong()) {
+            return null;
+          }
+        }
+      } else {
+        if ((classpathEntry.length() != input.readLong()) || (classpathEntry.lastModified() != input.readLong())) {
+          return null;
+        }
+      }
+      String[] result = new String[readCount(input)];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = input.readUTF();
+      }
+      return result;
+    } catch (IOException ex) {
+      A4ELogging.debug("Could not read package index '%s' for '%s': %s", indexFile, classpathEntry, ex.toString());
+      return null;
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+
+  /**
+   * <p>
+   * Reads a count from the given index file and makes sure that it is within the allowed bounds, so a corrupt index
+   * file can't cause huge allocations.
+   * </p>
+   */
+  private static int readCount(DataInputStream input) throws IOException {
+    int result = input.readInt();
+    if ((result < 0) || (result > MAX_COUNT)) {
+      throw new IOException("Invalid count " + result);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Writes the package list to the given index file.
+   * </p>
+   *
+   * @param indexFile
+   *          the index file
+   * @param classpathEntry
+   *          the class path entry
+   * @param stamps
+   *          the modification times of all directories (only used if the class path entry is a directory)
+   * @param packages
+   *          the package list
+   */
+  private void writeIndex(File indexFile, File classpathEntry, Map<String, Long> stamps, String[] packages) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeInt(VERSION);
+      output.writeUTF(classpathEntry.getAbsolutePath());
+      boolean directory = classpathEntry.isDirectory();
+      output.writeBoolean(directory);
+      if (directory) {
+        output.writeInt(stamps.size());
+        for (Map.Entry<String, Long> stamp : stamps.entrySet()) {
+          output.writeUTF(stamp.getKey());
+          output.writeLong(stamp.getValue().longValue());
+        }
+      } else {
+        output.writeLong(classpathEntry.length());
+        output.writeLong(classpathEntry.lastModified());
+      }
+      output.writeInt(packages.length);
+      for (String aPackage : packages) {
+        output.writeUTF(aPackage);
+      }
+      output.close();
+      CacheDirectory.writeAtomically(indexFile, bytes.toByteArray());
+    } catch (IOException ex) {
+      // can't happen as we're writing to memory
+      A4ELogging.debug("Could not write package index for '%s': %s", classpathEntry, ex.toString());
+    }
+  }
+
+  /**
+   * <p>
+   * Returns all the names of the packages that are contained in the specified jar file. The package list contains the
+   * packages that contain classes as well as all parent packages of those.
+   * </p>
+   *
+   * @param jar
+   * @return
+   */
+  private String[] getAllPackagesFromJar(File jar) {
+    Assure.isFile("jar", jar);
+
+    // prepare result...
+    Set<String> result = new LinkedHashSet<String>();
+
+    // create the jarFile wrapper...
+    JarFile jarFile = null;
+
+    try {
+      jarFile = new JarFile(jar);
+    } catch (IOException e) {
+      throw new Ant4EclipseException(EcjExceptionCodes.COULD_NOT_CREATE_JAR_FILE_FROM_FILE_EXCEPTION,
+          jar.getAbsolutePath());
+    }
+
+    try {
+      // Iterate over entries...
+      Enumeration<?> enumeration = jarFile.entries();
+      while (enumeration.hasMoreElements()) {
+        JarEntry jarEntry = (JarEntry) enumeration.nextElement();
+
+        // add package for each found directory...
+        String directoryName = null;
+
+        // if the jar entry is a directory, the directory name is the name of the jar entry...
+        if (jarEntry.isDirectory()) {
+          directoryName = jarEntry.getName();
+        }
+        // otherwise the directory name has to be computed
+        else {
+          int splitIndex = jarEntry.getName().lastIndexOf('/');
+          if (splitIndex != -1) {
+            directoryName = jarEntry.getName().substring(0, splitIndex);
+          }
+        }
+
+        // directoryName can be null if a top level entry is processed
+        if (directoryName != null) {
+          // convert path to package name
+          String packageName = directoryName.replace('/', '.');
+          packageName = packageName.endsWith(".") ? packageName.substring(0, packageName.length() - 1) : packageName;
+
+          // at package with all the parent packages (!) to the result list
+          addAllPackages(packageName, result);
+        }
+      }
+    } finally {
+      try {
+        jarFile.close();
+      } catch (IOException e) {
+        // nothing to do here...
+      }
+    }
+
+    // return result...
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * <p>
+   * Adds all package names (including parent package names) for the specified package to the given set.
+   * </p>
+   * <p>
+   * <b>Example:</b><br/>
+   * Given the package name <code>net.sf.ant4eclipse.tools</code> this method will add {"net", "net.sf",
+   * "net.sf.ant4eclipse", "net.sf.ant4eclipse.tools"}.
+   * </p>
+   *
+   * @param packageName
+   *          the name of the package.
+   * @param result
+   *          the set of package names
+   */
+  private void addAllPackages(String packageName, Set<String> result) {
+    // most entries are in a package that has been added before
+    if (result.contains(packageName)) {
+      return;
+    }
+    int index = packageName.indexOf('.');
+    while (index != -1) {
+      result.add(packageName.substring(0, index));
+      index = packageName.indexOf('.', index + 1);
+    }
+    if (packageName.length() > 0) {
+      result.add(packageName);
+    }
+  }
+
+  /**
+   * @param directory
+   * @param stamps
+   *          receives the modification times of the directory and all its sub directories
+   * @return
+   */
+  private String[] getAllPackagesFromDirectory(File directory, Map<String, Long> stamps) {
+
+    Set<String> result = new LinkedHashSet<String>();
+
+    stamps.put("", Long.valueOf(directory.lastModified()));
+
+    File[] children = directory.listFiles(DirectoryFilter.INSTANCE);
+
+    if (children != null) {
+      for (File element : children) {
+        getAllPackagesFromDirectory(null, null, element, result, stamps);
+      }
+    }
+
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * @param prefix
+   * @param pathPrefix
+   * @param directory
+   * @param result
+   * @param stamps
+   */
+  private void getAllPackagesFromDirectory(String prefix, String pathPrefix, File directory, Set<String> result,
+      Map<String, Long> stamps) {
+
+    String packageName = prefix == null ? directory.getName() : prefix + "." + directory.getName();
+    String path = pathPrefix == null ? directory.getName() : pathPrefix + "/" + directory.getName();
+
+    result.add(packageName);
+    stamps.put(path, Long.valueOf(directory.lastModified()));
+
+    File[] children = directory.listFiles(DirectoryFilter.INSTANCE);
+
+    if (children != null) {
+      for (File element : children) {
+        getAllPackagesFromDirectory(packageName, path, element, result, stamps);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the {@link PackageIndex} instance.
+   * </p>
+   *
+   * @return the {@link PackageIndex} instance.
+   */
+  public static PackageIndex getInstance() {
+    return ServiceRegistryAccess.instance().getService(PackageIndex.class);
+  }
+
+  /**
+   * <p>
+   * {@link FileFilter} that accepts directories only.
+   * </p>
+   */
+  private static class DirectoryFilter implements FileFilter {
+
+    /** the instance */
+    private static final DirectoryFilter INSTANCE = new DirectoryFilter();
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean accept(File pathname) {
+      return pathname.isDirectory();
+    }
+  }
+}
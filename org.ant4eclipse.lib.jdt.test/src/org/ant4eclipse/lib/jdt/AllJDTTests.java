@@ -11,12 +11,34 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt;
 
+import org.ant4eclipse.lib.jdt.ecj.CompilerDaemonTest;
+import org.ant4eclipse.lib.jdt.ecj.CompoundNameTest;
+import org.ant4eclipse.lib.jdt.ecj.DependencyDatabaseTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.ClassFileWriterTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.EcjAdapterImplTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.NameEnvironmentImplTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.StructuralHashTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.TopLevelTypeScannerTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon.CompileJobCodecTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.BootClassFileLoaderImplTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClassFileLoaderCacheTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.JarFilePoolTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.MappedJarFileTest;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.PackageIndexTest;
+import org.ant4eclipse.lib.jdt.internal.model.jre.JavaRuntimeLoaderTest;
 import org.ant4eclipse.lib.jdt.internal.model.userlibrary.UserLibrariesFileParserImplTest;
+import org.ant4eclipse.lib.jdt.internal.tools.container.JdtResolverCacheTest;
 import org.ant4eclipse.lib.jdt.tools.BuildOrderResolverTest;
+import org.ant4eclipse.lib.jdt.tools.JdtResolverTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses( { BuildOrderResolverTest.class, UserLibrariesFileParserImplTest.class })
+@Suite.SuiteClasses( { BootClassFileLoaderImplTest.class, BuildOrderResolverTest.class, ClassFileLoaderCacheTest.class,
+    ClassFileWriterTest.class, CompileJobCodecTest.class, CompilerDaemonTest.class, CompoundNameTest.class,
+    DependencyDatabaseTest.class, EcjAdapterImplTest.class, JarFilePoolTest.class, JavaRuntimeLoaderTest.class,
+    JdtResolverCacheTest.class, JdtResolverTest.class, MappedJarFileTest.class, NameEnvironmentImplTest.class,
+    PackageIndexTest.class, StructuralHashTest.class, TopLevelTypeScannerTest.class,
+    UserLibrariesFileParserImplTest.class })
 public class AllJDTTests {
 } /* ENDCLASS */
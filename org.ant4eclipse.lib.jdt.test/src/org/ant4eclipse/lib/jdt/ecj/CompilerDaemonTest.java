@@ -0,0 +1,113 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon.CompileJobCodec;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+public class CompilerDaemonTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private File          _secretFile;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    this._secretFile = new File(this._testDirectory.getRootDir(), "daemon/compilerDaemon.secret");
+    System.setProperty(CompilerDaemon.SECRET_FILE_PROPERTY_NAME, this._secretFile.getAbsolutePath());
+  }
+
+  @Override
+  public void dispose() {
+    System.getProperties().remove(CompilerDaemon.SECRET_FILE_PROPERTY_NAME);
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void secret() throws Exception {
+    int port = findFreePort();
+    final CompilerDaemon daemon = new CompilerDaemon(port);
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          daemon.run();
+        } catch (IOException ex) {
+          ex.printStackTrace();
+        }
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+    try {
+      for (int i = 0; (i < 100) && !this._secretFile.isFile(); i++) {
+        Thread.sleep(50);
+      }
+      Assert.assertTrue(this._secretFile.isFile());
+
+      // requests without the secret are rejected...
+      Assert.assertEquals("Invalid secret", sendShutdown(port, "wrong"));
+      Assert.assertEquals("Invalid secret", sendShutdown(port, ""));
+      Assert.assertTrue(thread.isAlive());
+
+      // ...requests with the secret are processed
+      Assert.assertNull(sendShutdown(port, CompilerDaemon.readSecret(port)));
+      thread.join(10000);
+      Assert.assertFalse(thread.isAlive());
+      Assert.assertFalse(this._secretFile.exists());
+    } finally {
+      daemon.stop();
+    }
+  }
+
+  /**
+   * Sends a shutdown request and returns the error message or <code>null</code> if the request has been accepted.
+   */
+  private static String sendShutdown(int port, String secret) throws IOException {
+    Socket socket = new Socket(InetAddress.getByName(null), port);
+    try {
+      DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+      output.writeInt(CompileJobCodec.VERSION);
+      output.writeUTF(secret);
+      output.writeByte(CompileJobCodec.SHUTDOWN);
+      output.flush();
+      DataInputStream input = new DataInputStream(socket.getInputStream());
+      return input.readByte() == CompileJobCodec.OK ? null : input.readUTF();
+    } finally {
+      socket.close();
+    }
+  }
+
+  private static int findFreePort() throws IOException {
+    ServerSocket serverSocket = new ServerSocket(0);
+    try {
+      return serverSocket.getLocalPort();
+    } finally {
+      serverSocket.close();
+    }
+  }
+
+} /* ENDCLASS */
@@ -0,0 +1,91 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class CompoundNameTest {
+
+  @Test
+  public void equalsAndHashCode() {
+    CompoundName qualified = CompoundName.fromQualifiedName("java.lang.Object");
+
+    // the same name split in different ways
+    CompoundName[] names = new CompoundName[] {
+        new CompoundName(names("java", "lang", "Object"), 3, null),
+        new CompoundName(names("java", "lang"), 2, "Object".toCharArray()),
+        new CompoundName(names("java", "lang", "Object", "unused"), 2, "Object".toCharArray()),
+        new CompoundName(names("java", "lang", "Object", "unused"), 3, null),
+        new CompoundName().set(names("java", "lang", "String"), 2, "Object".toCharArray()), qualified.copy() };
+    for (CompoundName name : names) {
+      Assert.assertEquals(name.toString(), qualified, name);
+      Assert.assertEquals(name.toString(), name, qualified);
+      Assert.assertEquals(name.toString(), qualified.hashCode(), name.hashCode());
+      Assert.assertEquals("java.lang.Object", name.toString());
+    }
+
+    // a name can be looked up with a key that is split in another way
+    Map<CompoundName, String> map = new HashMap<CompoundName, String>();
+    map.put(qualified, "value");
+    Assert.assertEquals("value", map.get(new CompoundName(names("java", "lang"), 2, "Object".toCharArray())));
+
+    // different names
+    assertNotEqual(qualified, CompoundName.fromQualifiedName("java.lang"));
+    assertNotEqual(qualified, CompoundName.fromQualifiedName("java.lang.Object.Inner"));
+    assertNotEqual(qualified, new CompoundName(names("java", "lang"), 2, "String".toCharArray()));
+    assertNotEqual(CompoundName.fromQualifiedName("ab.c"), CompoundName.fromQualifiedName("a.bc"));
+    assertNotEqual(CompoundName.fromQualifiedName(""), CompoundName.fromQualifiedName("a"));
+    Assert.assertEquals(new CompoundName(), CompoundName.fromQualifiedName(""));
+    Assert.assertEquals(new CompoundName(), new CompoundName(null, 0, null));
+  }
+
+  @Test
+  public void copyIsIndependent() {
+    char[][] segments = names("java", "lang");
+    char[] last = "Object".toCharArray();
+    CompoundName probe = new CompoundName(segments, 2, last);
+    CompoundName copy = probe.copy();
+    int hashCode = copy.hashCode();
+
+    // modify the arrays the name has been built from
+    segments[0][0] = 'x';
+    segments[1] = "util".toCharArray();
+    last[0] = 'X';
+    Assert.assertEquals("java.lang.Object", copy.toString());
+    Assert.assertEquals(hashCode, copy.hashCode());
+    Assert.assertEquals(CompoundName.fromQualifiedName("java.lang.Object"), copy);
+
+    // reuse the lookup key
+    probe.set(names("java", "util"), 2, "List".toCharArray());
+    Assert.assertEquals("java.lang.Object", copy.toString());
+    Assert.assertEquals(CompoundName.fromQualifiedName("java.lang.Object"), copy);
+    Assert.assertFalse(copy.equals(probe));
+  }
+
+  private static void assertNotEqual(CompoundName name1, CompoundName name2) {
+    Assert.assertFalse(name1 + " / " + name2, name1.equals(name2));
+    Assert.assertFalse(name1 + " / " + name2, name2.equals(name1));
+  }
+
+  private static char[][] names(String... names) {
+    char[][] result = new char[names.length][];
+    for (int i = 0; i < names.length; i++) {
+      result[i] = names[i].toCharArray();
+    }
+    return result;
+  }
+
+} /* ENDCLASS */
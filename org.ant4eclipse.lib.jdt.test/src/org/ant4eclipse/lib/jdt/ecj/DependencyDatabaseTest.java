@@ -0,0 +1,197 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj;
+
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class DependencyDatabaseTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private File          _outputFolder;
+
+  private File          _sourceA;
+
+  private File          _sourceB;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    System.setProperty(CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME, new File(this._testDirectory.getRootDir(),
+        "cache").getAbsolutePath());
+    this._outputFolder = this._testDirectory.createSubDirectory("bin");
+    this._testDirectory.createSubDirectory("src");
+    this._sourceA = this._testDirectory.createFile("src/A.java", "class A { }");
+    this._sourceB = this._testDirectory.createFile("src/B.java", "class B extends A { }");
+  }
+
+  @Override
+  public void dispose() {
+    System.getProperties().remove(CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME);
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void persistence() {
+    DependencyDatabase database = DependencyDatabase.load(this._outputFolder);
+    Assert.assertTrue(database.isEmpty());
+    Assert.assertTrue(database.isModified(this._sourceA));
+    Assert.assertEquals(asSet("A"), compile(database, this._sourceA, "A", "1"));
+    Assert.assertEquals(asSet("B"), compile(database, this._sourceB, "B", "1", "A"));
+    Assert.assertFalse(database.isModified(this._sourceA));
+    database.setCompilationEnvironment(new File[0], Collections.<String, String> emptyMap());
+    database.save();
+
+    DependencyDatabase loaded = DependencyDatabase.load(this._outputFolder);
+    Assert.assertEquals(2, loaded.getSourceFiles().size());
+    Assert.assertFalse(loaded.isModified(this._sourceA));
+    Assert.assertFalse(loaded.isModified(this._sourceB));
+    Assert.assertTrue(loaded.hasCompilerOptions(Collections.<String, String> emptyMap()));
+    Assert.assertEquals(new HashSet<String>(), loaded.getChangedClasspathTypes(new File[0]));
+    Assert.assertEquals(asFiles(this._sourceB), loaded.getDependents(asSet("A")));
+
+    // a structural change is reported, an unchanged hash isn't
+    Assert.assertEquals(asSet(), compile(loaded, this._sourceA, "A", "1"));
+    Assert.assertEquals(asSet("A"), compile(loaded, this._sourceA, "A", "2"));
+  }
+
+  @Test
+  public void missingClassFile() {
+    DependencyDatabase database = DependencyDatabase.load(this._outputFolder);
+    compile(database, this._sourceA, "A", "1");
+    Assert.assertFalse(database.isModified(this._sourceA));
+
+    // e.g. the output folder has been cleaned
+    Assert.assertTrue(new File(this._outputFolder, "A.class").delete());
+    Assert.assertTrue(database.isModified(this._sourceA));
+  }
+
+  @Test
+  public void markModified() {
+    DependencyDatabase database = DependencyDatabase.load(this._outputFolder);
+    compile(database, this._sourceA, "A", "1");
+    database.markModified(this._sourceA);
+    Assert.assertTrue(database.isModified(this._sourceA));
+    database.save();
+    Assert.assertTrue(DependencyDatabase.load(this._outputFolder).isModified(this._sourceA));
+
+    // the class files are still known, so obsolete ones are deleted
+    compile(database, this._sourceA, "A2", "1");
+    Assert.assertFalse(new File(this._outputFolder, "A.class").exists());
+  }
+
+  @Test
+  public void removeDeletesClassFilesFromBothFolders() {
+    File destinationFolder = this._testDirectory.createSubDirectory("classes");
+    DependencyDatabase database = DependencyDatabase.load(this._outputFolder);
+    Utilities.writeFile(new File(destinationFolder, "A.class"), new byte[] { 1 });
+    Utilities.writeFile(new File(this._outputFolder, "A.class"), new byte[] { 1 });
+    database.update(this._sourceA, destinationFolder, dependencyInfo("A", "1"));
+    Assert.assertFalse(database.isModified(this._sourceA));
+
+    Assert.assertEquals(asSet("A"), database.remove(this._sourceA));
+    Assert.assertFalse(new File(destinationFolder, "A.class").exists());
+    Assert.assertFalse(new File(this._outputFolder, "A.class").exists());
+  }
+
+  @Test
+  public void classpathDatabase() {
+    File otherFolder = this._testDirectory.createSubDirectory("other");
+    DependencyDatabase other = DependencyDatabase.load(otherFolder);
+    compile(other, this._testDirectory.createFile("src/C.java", "class C { }"), otherFolder, "C", "1");
+    other.save();
+
+    DependencyDatabase database = DependencyDatabase.load(this._outputFolder);
+    compile(database, this._sourceA, "A", "1", "C");
+    database.setCompilationEnvironment(new File[] { otherFolder }, Collections.<String, String> emptyMap());
+    database.save();
+
+    database = DependencyDatabase.load(this._outputFolder);
+    Assert.assertEquals(new HashSet<String>(), database.getChangedClasspathTypes(new File[] { otherFolder }));
+
+    // a changed type is reported by the other database
+    other = DependencyDatabase.load(otherFolder);
+    compile(other, new File(this._testDirectory.getRootDir(), "src/C.java"), otherFolder, "C", "2");
+    other.save();
+    Assert.assertEquals(asSet("C"), database.getChangedClasspathTypes(new File[] { otherFolder }));
+
+    // the other database isn't used anymore if its output folder has been modified behind its back
+    File classFile = new File(otherFolder, "C.class");
+    Utilities.writeFile(classFile, new byte[] { 1, 2, 3 });
+    Assert.assertNull(database.getChangedClasspathTypes(new File[] { otherFolder }));
+  }
+
+  @Test
+  public void corruptDatabase() {
+    DependencyDatabase database = DependencyDatabase.load(this._outputFolder);
+    compile(database, this._sourceA, "A", "1");
+    database.save();
+
+    File databaseFile = CacheDirectory.getCacheFile("dependencies", Utilities.getCanonicalFile(this._outputFolder)
+        .getPath());
+    byte[] content = JUnitUtilities.loadFile(databaseFile);
+    for (int i = content.length / 2; i < content.length; i++) {
+      content[i] = (byte) 0xff;
+    }
+    Utilities.writeFile(databaseFile, content);
+    Assert.assertTrue(DependencyDatabase.load(this._outputFolder).isEmpty());
+  }
+
+  /**
+   * Simulates the compilation of the given source file that produces a single type.
+   */
+  private Set<String> compile(DependencyDatabase database, File sourceFile, String typeName, String hash,
+      String... references) {
+    return compile(database, sourceFile, this._outputFolder, typeName, hash, references);
+  }
+
+  private Set<String> compile(DependencyDatabase database, File sourceFile, File destinationFolder, String typeName,
+      String hash, String... references) {
+    Utilities.writeFile(new File(destinationFolder, typeName + ".class"), hash.getBytes());
+    return database.update(sourceFile, destinationFolder, dependencyInfo(typeName, hash, references));
+  }
+
+  private static DependencyInfo dependencyInfo(String typeName, String hash, String... references) {
+    Map<String, String> hashes = new HashMap<String, String>();
+    hashes.put(typeName, hash);
+    return new DependencyInfo(new HashSet<String>(), asSet(references), asSet(typeName + ".class"), hashes);
+  }
+
+  private static Set<String> asSet(String... values) {
+    return new HashSet<String>(Arrays.asList(values));
+  }
+
+  private static Set<File> asFiles(File... files) {
+    Set<File> result = new HashSet<File>();
+    for (File file : files) {
+      result.add(file.getAbsoluteFile());
+    }
+    return result;
+  }
+
+} /* ENDCLASS */
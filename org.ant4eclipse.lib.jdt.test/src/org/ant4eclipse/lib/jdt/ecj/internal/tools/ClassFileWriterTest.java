@@ -0,0 +1,135 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class ClassFileWriterTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+  }
+
+  @Override
+  public void dispose() {
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void skipIdenticalContent() {
+    File classFile = new File(this._testDirectory.getRootDir(), "bin/a/A.class");
+    ClassFileWriter classFileWriter = new ClassFileWriter(true);
+    classFileWriter.write("a/A.class", bytes("content"), classFile);
+    Assert.assertTrue(classFileWriter.finish().isEmpty());
+    Assert.assertEquals(classFile, classFileWriter.getWrittenClassFiles().get("a/A.class"));
+    Assert.assertEquals("content", new String(classFileWriter.getContents().get("a/A.class")));
+    long lastModified = classFile.lastModified() - 10000;
+    Assert.assertTrue(classFile.setLastModified(lastModified));
+
+    // the unchanged class file isn't written again, but it's reported as written
+    classFileWriter = new ClassFileWriter();
+    classFileWriter.write("a/A.class", bytes("content"), classFile);
+    Assert.assertTrue(classFileWriter.finish().isEmpty());
+    Assert.assertEquals(lastModified, classFile.lastModified());
+    Assert.assertEquals(classFile, classFileWriter.getWrittenClassFiles().get("a/A.class"));
+    Assert.assertTrue(classFileWriter.getContents().isEmpty());
+
+    // a class file with another content of the same length is written
+    classFileWriter = new ClassFileWriter();
+    classFileWriter.write("a/A.class", bytes("CONTENT"), classFile);
+    Assert.assertTrue(classFileWriter.finish().isEmpty());
+    Assert.assertFalse(lastModified == classFile.lastModified());
+    Assert.assertEquals("CONTENT", new String(JUnitUtilities.loadFile(classFile)));
+  }
+
+  @Test
+  public void writeFailures() {
+    this._testDirectory.createSubDirectory("bin");
+    this._testDirectory.createFile("bin/a", "a file instead of a directory");
+    File missingDirectory = new File(this._testDirectory.getRootDir(), "bin/a/A.class");
+    File directory = this._testDirectory.createSubDirectory("bin/b/B.class");
+    File classFile = new File(this._testDirectory.getRootDir(), "bin/c/C.class");
+
+    ClassFileWriter classFileWriter = new ClassFileWriter(true);
+    classFileWriter.write("a/A.class", bytes("A"), missingDirectory);
+    classFileWriter.write("b/B.class", bytes("B"), directory);
+    classFileWriter.write("c/C.class", bytes("C"), classFile);
+    List<String> failures = classFileWriter.finish();
+
+    Assert.assertEquals(2, failures.size());
+    Assert.assertTrue(failures.containsAll(Arrays.asList(missingDirectory.getPath(), directory.getPath())));
+    Assert.assertEquals(1, classFileWriter.getWrittenClassFiles().size());
+    Assert.assertEquals(classFile, classFileWriter.getWrittenClassFiles().get("c/C.class"));
+    Assert.assertEquals(1, classFileWriter.getContents().size());
+    Assert.assertTrue(classFile.isFile());
+  }
+
+  @Test
+  public void backpressure() throws InterruptedException {
+    ThreadPoolExecutor executor = ClassFileWriter.getExecutor();
+    Assert.assertNotNull(executor);
+
+    // occupy all worker threads and fill the queue
+    final CountDownLatch started = new CountDownLatch(executor.getMaximumPoolSize());
+    final CountDownLatch release = new CountDownLatch(1);
+    Runnable blocker = new Runnable() {
+      public void run() {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    try {
+      for (int i = 0; i < executor.getMaximumPoolSize(); i++) {
+        executor.execute(blocker);
+      }
+      Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+      while (executor.getQueue().remainingCapacity() > 0) {
+        executor.execute(blocker);
+      }
+
+      // the class file is written on the calling thread
+      File classFile = new File(this._testDirectory.getRootDir(), "bin/a/A.class");
+      ClassFileWriter classFileWriter = new ClassFileWriter();
+      classFileWriter.write("a/A.class", bytes("content"), classFile);
+      Assert.assertTrue(classFile.isFile());
+      Assert.assertEquals(classFile, classFileWriter.getWrittenClassFiles().get("a/A.class"));
+      Assert.assertTrue(classFileWriter.finish().isEmpty());
+    } finally {
+      release.countDown();
+    }
+  }
+
+  private static byte[] bytes(String content) {
+    return content.getBytes();
+  }
+
+} /* ENDCLASS */
@@ -0,0 +1,256 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import org.ant4eclipse.lib.core.util.StringMap;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.DefaultCompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.DependencyInfo;
+import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileFactory;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiles a project whose source files reference each other across packages with a single compiler and in concurrent
+ * batches and compares the results.
+ */
+public class EcjAdapterImplTest extends ConfigurableAnt4EclipseTestCase {
+
+  /** the number of packages of the test project */
+  private static final int PACKAGES          = 4;
+
+  /** the number of classes per package */
+  private static final int CLASSES_PER_PACKAGE = 6;
+
+  private TestDirectory    _testDirectory;
+
+  private File             _sourceFolder;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    this._sourceFolder = this._testDirectory.createSubDirectory("src");
+  }
+
+  @Override
+  public void dispose() {
+    System.getProperties().remove(EcjAdapterImpl.COMPILE_THREADS_PROPERTY_NAME);
+    System.getProperties().remove(EcjAdapterImpl.MINIMUM_BATCH_SIZE_PROPERTY_NAME);
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void batchesProduceSameResults() {
+    List<String> sourceFileNames = createSources(-1);
+
+    CompileJobResult sequential = compile("sequential", sourceFileNames, 1);
+    CompileJobResult batched = compile("batched", sourceFileNames, PACKAGES);
+
+    Assert.assertTrue(sequential.succeeded());
+    Assert.assertTrue(batched.succeeded());
+    assertSameResults(sequential, batched);
+
+    // the unused locals and private fields are reported as warnings
+    Assert.assertEquals(2 * PACKAGES * CLASSES_PER_PACKAGE, sequential.getCategorizedProblems().length);
+  }
+
+  @Test
+  public void failingBatch() {
+    // a class of the third batch contains an error
+    List<String> sourceFileNames = createSources(2 * CLASSES_PER_PACKAGE + 1);
+
+    CompileJobResult sequential = compile("sequential", sourceFileNames, 1);
+    CompileJobResult batched = compile("batched", sourceFileNames, PACKAGES);
+
+    Assert.assertFalse(sequential.succeeded());
+    Assert.assertFalse(batched.succeeded());
+    assertSameResults(sequential, batched);
+
+    int errors = 0;
+    for (CategorizedProblem problem : batched.getCategorizedProblems()) {
+      if (problem.isError()) {
+        errors++;
+      }
+    }
+    Assert.assertEquals(1, errors);
+  }
+
+  @Test
+  public void secondaryTypes() {
+    // the secondary types of the first source file are used by the last one, which is compiled by another batch
+    this._testDirectory.createSubDirectory("src/q");
+    List<String> sourceFileNames = new ArrayList<String>();
+    for (int i = 0; i < 8; i++) {
+      StringBuilder source = new StringBuilder();
+      source.append("package q;\n");
+      source.append("public class Q").append(i).append(" {\n");
+      if (i == 7) {
+        source.append("  public int use() { return Helper.value() + Color.RED.ordinal(); }\n");
+      }
+      source.append("}\n");
+      if (i == 0) {
+        source.append("class Helper { static int value() { return 1; } }\n");
+        source.append("enum Color { RED }\n");
+      }
+      String fileName = "q/Q" + i + ".java";
+      this._testDirectory.createFile("src/" + fileName, source.toString());
+      sourceFileNames.add(fileName);
+    }
+
+    CompileJobResult sequential = compile("sequential", sourceFileNames, 1);
+    CompileJobResult batched = compile("batched", sourceFileNames, 2);
+
+    Assert.assertTrue(sequential.succeeded());
+    Assert.assertTrue(batched.succeeded());
+    assertSameResults(sequential, batched);
+  }
+
+  @Test
+  public void additionalDestinationFolder() {
+    List<String> sourceFileNames = createSources(-1);
+    File destinationFolder = this._testDirectory.createSubDirectory("destdir");
+
+    for (int threads : new int[] { 1, PACKAGES }) {
+      CompileJobResult result = compile("output" + threads, sourceFileNames, threads, destinationFolder);
+      Assert.assertTrue(result.succeeded());
+      Assert.assertEquals(PACKAGES * CLASSES_PER_PACKAGE * 3, result.getCompiledClassFiles().size());
+      for (Map.Entry<String, File> entry : result.getCompiledClassFiles().entrySet()) {
+        File copy = new File(destinationFolder, entry.getKey());
+        Assert.assertTrue(entry.getKey(), Arrays.equals(JUnitUtilities.loadFile(entry.getValue()), JUnitUtilities
+            .loadFile(copy)));
+      }
+    }
+
+    // nothing is written to the additional destination folder if the compilation fails
+    File failedDestinationFolder = this._testDirectory.createSubDirectory("faileddestdir");
+    CompileJobResult result = compile("failed", createSources(1), PACKAGES, failedDestinationFolder);
+    Assert.assertFalse(result.succeeded());
+    Assert.assertEquals(0, failedDestinationFolder.list().length);
+  }
+
+  private void assertSameResults(CompileJobResult expected, CompileJobResult actual) {
+    Assert.assertEquals(problems(expected), problems(actual));
+
+    Map<String, File> expectedClassFiles = new TreeMap<String, File>(expected.getCompiledClassFiles());
+    Map<String, File> actualClassFiles = new TreeMap<String, File>(actual.getCompiledClassFiles());
+    Assert.assertEquals(expectedClassFiles.keySet(), actualClassFiles.keySet());
+    for (Map.Entry<String, File> entry : expectedClassFiles.entrySet()) {
+      Assert.assertTrue(entry.getKey(), Arrays.equals(JUnitUtilities.loadFile(entry.getValue()), JUnitUtilities
+          .loadFile(actualClassFiles.get(entry.getKey()))));
+    }
+
+    Assert.assertEquals(expected.getDependencyInfos().keySet(), actual.getDependencyInfos().keySet());
+    for (Map.Entry<File, DependencyInfo> entry : expected.getDependencyInfos().entrySet()) {
+      DependencyInfo dependencyInfo = actual.getDependencyInfos().get(entry.getKey());
+      Assert.assertEquals(entry.getValue().getQualifiedReferences(), dependencyInfo.getQualifiedReferences());
+      Assert.assertEquals(entry.getValue().getSimpleNameReferences(), dependencyInfo.getSimpleNameReferences());
+      Assert.assertEquals(entry.getValue().getStructuralHashes(), dependencyInfo.getStructuralHashes());
+    }
+  }
+
+  private static List<String> problems(CompileJobResult result) {
+    List<String> problems = new ArrayList<String>();
+    for (CategorizedProblem problem : result.getCategorizedProblems()) {
+      problems.add(new String(problem.getOriginatingFileName()) + ":" + problem.getSourceLineNumber() + ":"
+          + problem.isError() + ":" + problem.getMessage());
+    }
+    return problems;
+  }
+
+  /**
+   * Creates the source files. Each class references the next class (in another package for the last class of a
+   * package) in its signature and in a method body, uses a constant of another class and contains an anonymous and a
+   * member class.
+   */
+  private List<String> createSources(int errorClass) {
+    int count = PACKAGES * CLASSES_PER_PACKAGE;
+    List<String> result = new ArrayList<String>();
+    for (int i = 0; i < PACKAGES; i++) {
+      this._testDirectory.createSubDirectory("src/p" + i);
+    }
+    for (int i = 0; i < count; i++) {
+      String next = className((i + 1) % count);
+      String other = className((i * 7 + 3) % count);
+      StringBuilder source = new StringBuilder();
+      source.append("package p").append(i / CLASSES_PER_PACKAGE).append(";\n");
+      source.append("public class C").append(i).append(" implements Comparable<C").append(i).append("> {\n");
+      source.append("  public static final int CONST = ").append(i).append(";\n");
+      source.append("  public static final String NAME = \"C").append(i).append("\";\n");
+      source.append("  public ").append(next).append(" next;\n");
+      source.append("  private Runnable runnable = new Runnable() { public void run() { } };\n");
+      source.append("  public static class Inner { public ").append(other).append(".Inner other; }\n");
+      source.append("  public int chain(int value) {\n");
+      source.append("    int unused = 0;\n");
+      if (i == errorClass) {
+        source.append("    String error = value;\n");
+      }
+      source.append("    switch (value) { case ").append(other).append(".CONST: return 1; }\n");
+      source.append("    return new ").append(next).append("().chain(value) + ").append(other).append(
+          ".NAME.length();\n");
+      source.append("  }\n");
+      source.append("  public int compareTo(C").append(i).append(" other) { return 0; }\n");
+      source.append("}\n");
+      String fileName = className(i).replace('.', '/') + ".java";
+      this._testDirectory.createFile("src/" + fileName, source.toString());
+      result.add(fileName);
+    }
+    return result;
+  }
+
+  private static String className(int index) {
+    return "p" + (index / CLASSES_PER_PACKAGE) + ".C" + index;
+  }
+
+  private CompileJobResult compile(String outputFolderName, List<String> sourceFileNames, int threads) {
+    return compile(outputFolderName, sourceFileNames, threads, null);
+  }
+
+  private CompileJobResult compile(String outputFolderName, List<String> sourceFileNames, int threads,
+      File additionalDestinationFolder) {
+    File outputFolder = this._testDirectory.createSubDirectory(outputFolderName);
+    SourceFile[] sourceFiles = new SourceFile[sourceFileNames.size()];
+    for (int i = 0; i < sourceFiles.length; i++) {
+      sourceFiles[i] = SourceFileFactory.createSourceFile(this._sourceFolder, sourceFileNames.get(i), outputFolder);
+    }
+
+    StringMap compilerOptions = new StringMap();
+    compilerOptions.put("org.eclipse.jdt.core.compiler.source", "1.5");
+    compilerOptions.put("org.eclipse.jdt.core.compiler.compliance", "1.5");
+    compilerOptions.put("org.eclipse.jdt.core.compiler.codegen.targetPlatform", "1.5");
+
+    DefaultCompileJobDescription description = new DefaultCompileJobDescription(ClassFileLoaderFactory
+        .createBootClassFileLoader(new File[] { new File(System.getProperty("java.home"), "lib/rt.jar") }, null),
+        compilerOptions, sourceFiles);
+    description.setCollectDependencyInfos(true);
+    description.setAdditionalDestinationFolder(additionalDestinationFolder);
+
+    System.setProperty(EcjAdapterImpl.COMPILE_THREADS_PROPERTY_NAME, String.valueOf(threads));
+    System.setProperty(EcjAdapterImpl.MINIMUM_BATCH_SIZE_PROPERTY_NAME, "2");
+    return new EcjAdapterImpl().compile(description);
+  }
+
+} /* ENDCLASS */
@@ -0,0 +1,220 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import org.ant4eclipse.lib.core.ClassName;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.CompoundName;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.lib.jdt.ecj.ReferableSourceFile;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.FileClassFileImpl;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class NameEnvironmentImplTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory       _testDirectory;
+
+  private CountingLoader      _classFileLoader;
+
+  private NameEnvironmentImpl _nameEnvironment;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    File classFile = new File(this._testDirectory.getRootDir(), "A.class");
+    Utilities.writeFile(classFile, loadOwnClassFile());
+    this._classFileLoader = new CountingLoader(classFile);
+    this._nameEnvironment = new NameEnvironmentImpl(this._classFileLoader);
+  }
+
+  @Override
+  public void dispose() {
+    this._nameEnvironment.cleanup();
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void negativeTypeCache() {
+    // a miss is delegated to the class file loader (binary types first, then sources)
+    Assert.assertNull(this._nameEnvironment.findType(names("a", "Missing")));
+    Assert.assertEquals(1, this._classFileLoader._loadClass);
+    Assert.assertEquals(1, this._classFileLoader._loadSource);
+    Assert.assertEquals(0, this._nameEnvironment.getCachedLookups());
+
+    // the negative answer is cached, whichever findType variant is used
+    Assert.assertNull(this._nameEnvironment.findType(names("a", "Missing")));
+    Assert.assertNull(this._nameEnvironment.findType("Missing".toCharArray(), names("a")));
+    Assert.assertEquals(1, this._classFileLoader._loadClass);
+    Assert.assertEquals(1, this._classFileLoader._loadSource);
+    Assert.assertEquals(2, this._nameEnvironment.getCachedLookups());
+
+    // another missing type in the same package isn't answered from the cache
+    Assert.assertNull(this._nameEnvironment.findType("Other".toCharArray(), names("a")));
+    Assert.assertEquals(2, this._classFileLoader._loadClass);
+    Assert.assertEquals(2, this._nameEnvironment.getCachedLookups());
+
+    // a type of the default package
+    Assert.assertNull(this._nameEnvironment.findType("Missing".toCharArray(), null));
+    Assert.assertNull(this._nameEnvironment.findType(names("Missing")));
+    Assert.assertEquals(3, this._classFileLoader._loadClass);
+    Assert.assertEquals(3, this._nameEnvironment.getCachedLookups());
+  }
+
+  @Test
+  public void positiveTypeCache() {
+    NameEnvironmentAnswer answer = this._nameEnvironment.findType(names("a", "A"));
+    Assert.assertNotNull(answer);
+    Assert.assertTrue(answer.isBinaryType());
+    Assert.assertEquals(1, this._classFileLoader._loadClass);
+    Assert.assertEquals(0, this._classFileLoader._loadSource);
+
+    Assert.assertSame(answer, this._nameEnvironment.findType(names("a", "A")));
+    Assert.assertSame(answer, this._nameEnvironment.findType("A".toCharArray(), names("a")));
+    Assert.assertEquals(1, this._classFileLoader._loadClass);
+    Assert.assertEquals(2, this._nameEnvironment.getCachedLookups());
+
+    // the caches are cleared on cleanup
+    this._nameEnvironment.cleanup();
+    Assert.assertNotSame(answer, this._nameEnvironment.findType(names("a", "A")));
+    Assert.assertEquals(2, this._classFileLoader._loadClass);
+  }
+
+  @Test
+  public void packageCache() {
+    Assert.assertTrue(this._nameEnvironment.isPackage(null, "a".toCharArray()));
+    Assert.assertTrue(this._nameEnvironment.isPackage(names("a"), "b".toCharArray()));
+    Assert.assertFalse(this._nameEnvironment.isPackage(names("a"), "c".toCharArray()));
+    Assert.assertEquals(3, this._classFileLoader._hasPackage);
+
+    // both positive and negative answers are cached
+    Assert.assertTrue(this._nameEnvironment.isPackage(null, "a".toCharArray()));
+    Assert.assertTrue(this._nameEnvironment.isPackage(new char[0][], "a".toCharArray()));
+    Assert.assertTrue(this._nameEnvironment.isPackage(names("a"), "b".toCharArray()));
+    Assert.assertFalse(this._nameEnvironment.isPackage(names("a"), "c".toCharArray()));
+    Assert.assertEquals(3, this._classFileLoader._hasPackage);
+    Assert.assertEquals(4, this._nameEnvironment.getCachedLookups());
+  }
+
+  @Test
+  public void packageAndTypeCacheAreSeparate() {
+    // a known package doesn't answer type lookups and vice versa
+    Assert.assertTrue(this._nameEnvironment.isPackage(null, "a".toCharArray()));
+    Assert.assertNotNull(this._nameEnvironment.findType(names("a", "A")));
+    Assert.assertEquals(1, this._classFileLoader._loadClass);
+    Assert.assertFalse(this._nameEnvironment.isPackage(names("a"), "A".toCharArray()));
+    Assert.assertEquals(2, this._classFileLoader._hasPackage);
+
+    // a package name isn't a type name
+    Assert.assertNull(this._nameEnvironment.findType(names("a", "b")));
+    Assert.assertEquals(2, this._classFileLoader._loadClass);
+    Assert.assertTrue(this._nameEnvironment.isPackage(names("a"), "b".toCharArray()));
+    Assert.assertEquals(3, this._classFileLoader._hasPackage);
+    Assert.assertEquals(0, this._nameEnvironment.getCachedLookups());
+  }
+
+  private static char[][] names(String... names) {
+    char[][] result = new char[names.length][];
+    for (int i = 0; i < names.length; i++) {
+      result[i] = names[i].toCharArray();
+    }
+    return result;
+  }
+
+  private byte[] loadOwnClassFile() {
+    InputStream input = getClass().getResourceAsStream(getClass().getSimpleName() + ".class");
+    try {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      Utilities.copy(input, output, new byte[1024]);
+      return output.toByteArray();
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+
+  /**
+   * A class file loader that knows the packages 'a' and 'a.b' and the class 'a.A'. It counts the lookups.
+   */
+  private static class CountingLoader implements ClassFileLoader {
+
+    private File _classFile;
+
+    private int  _hasPackage;
+
+    private int  _loadClass;
+
+    private int  _loadSource;
+
+    public CountingLoader(File classFile) {
+      this._classFile = classFile;
+    }
+
+    public String[] getAllPackages() {
+      return new String[] { "a", "a.b" };
+    }
+
+    public boolean hasPackage(String packageName) {
+      this._hasPackage++;
+      return "a".equals(packageName) || "a.b".equals(packageName);
+    }
+
+    public boolean hasPackage(CompoundName packageName) {
+      return hasPackage(packageName.toString());
+    }
+
+    public ClassFile loadClass(ClassName className) {
+      return loadClass(className.getPackageName(), className.getClassName());
+    }
+
+    public ClassFile loadClass(CompoundName packageName, char[] typeName) {
+      return loadClass(packageName.toString(), new String(typeName));
+    }
+
+    private ClassFile loadClass(String packageName, String typeName) {
+      this._loadClass++;
+      if ("a".equals(packageName) && "A".equals(typeName)) {
+        return new FileClassFileImpl(this._classFile, "test", EcjAdapter.LIBRARY);
+      }
+      return null;
+    }
+
+    public ReferableSourceFile loadSource(ClassName className) {
+      this._loadSource++;
+      return null;
+    }
+
+    public ReferableSourceFile loadSource(CompoundName packageName, char[] typeName) {
+      this._loadSource++;
+      return null;
+    }
+
+    public File[] getClasspath() {
+      return new File[0];
+    }
+  }
+
+} /* ENDCLASS */
@@ -0,0 +1,108 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.jdt.core.compiler.batch.BatchCompiler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+public class StructuralHashTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private int           _compilations;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+  }
+
+  @Override
+  public void dispose() {
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void implementationChanges() {
+    String hash = hash("A", "public class A { public int m() { return 1; } private int _p; }");
+    Assert.assertEquals(hash, hash("A", "public class A { public int m() { return 2; } private String _p; }"));
+    Assert.assertFalse(hash.equals(hash("A", "public class A { public long m() { return 1; } private int _p; }")));
+    Assert.assertFalse(hash.equals(hash("A", "public class A { public int m() { return 1; } int _p; }")));
+  }
+
+  @Test
+  public void constants() {
+    String hash = hash("A", "public class A { public static final int C = 1; }");
+    Assert.assertFalse(hash.equals(hash("A", "public class A { public static final int C = 2; }")));
+  }
+
+  @Test
+  public void annotationValues() {
+    String annotation = "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.CLASS) "
+        + "@interface Ann { String value(); }";
+    String hash = hash("A", "@Ann(\"a\") public class A { }", "Ann", annotation);
+    Assert.assertFalse(hash.equals(hash("A", "@Ann(\"b\") public class A { }", "Ann", annotation)));
+  }
+
+  @Test
+  public void memberAndParameterAnnotations() {
+    String annotation = "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) "
+        + "@interface Ann { }";
+    String hash = hash("A", "public class A { public int f; public void m(int p) { } }", "Ann", annotation);
+    Assert.assertFalse(hash.equals(hash("A", "public class A { @Ann public int f; public void m(int p) { } }", "Ann",
+        annotation)));
+    Assert.assertFalse(hash.equals(hash("A", "public class A { public int f; @Ann public void m(int p) { } }", "Ann",
+        annotation)));
+    Assert.assertFalse(hash.equals(hash("A", "public class A { public int f; public void m(@Ann int p) { } }", "Ann",
+        annotation)));
+  }
+
+  @Test
+  public void annotationDefaultsAndRetention() {
+    String hash = hash("Ann", "public @interface Ann { int value() default 1; }");
+    Assert.assertFalse(hash.equals(hash("Ann", "public @interface Ann { int value() default 2; }")));
+    Assert.assertFalse(hash.equals(hash("Ann",
+        "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) "
+            + "public @interface Ann { int value() default 1; }")));
+  }
+
+  /**
+   * Compiles the given sources (name/content pairs) and returns the structural hash of the first type.
+   */
+  private String hash(String... sources) {
+    this._compilations++;
+    File sourceDir = this._testDirectory.createSubDirectory("src" + this._compilations);
+    File classesDir = this._testDirectory.createSubDirectory("classes" + this._compilations);
+    StringBuilder commandLine = new StringBuilder("-1.5 -nowarn -d \"");
+    commandLine.append(classesDir.getAbsolutePath()).append('"');
+    for (int i = 0; i < sources.length; i += 2) {
+      File sourceFile = new File(sourceDir, sources[i] + ".java");
+      Utilities.writeFile(sourceFile, sources[i + 1].getBytes());
+      commandLine.append(" \"").append(sourceFile.getAbsolutePath()).append('"');
+    }
+    StringWriter errors = new StringWriter();
+    Assert.assertTrue(errors.toString(), BatchCompiler.compile(commandLine.toString(), new PrintWriter(errors),
+        new PrintWriter(errors), null));
+    return StructuralHash.compute(sources[0], JUnitUtilities.loadFile(new File(classesDir, sources[0] + ".class")));
+  }
+
+} /* ENDCLASS */
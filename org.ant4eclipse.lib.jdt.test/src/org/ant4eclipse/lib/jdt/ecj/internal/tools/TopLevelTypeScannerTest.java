@@ -0,0 +1,62 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools;
+
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TopLevelTypeScannerTest {
+
+  @Test
+  public void topLevelTypes() {
+    String source = "package p;\n" //
+        + "import java.util.List;\n" //
+        + "@SuppressWarnings(value = { \"unused\" }) @Deprecated\n" //
+        + "public class Main<T extends List<?>> { class Member { } interface MemberInterface { }\n" //
+        + "  Object o = new Object() { class Local { } }; Class<?> c = String.class; enum MemberEnum { A }\n" //
+        + "}\n" //
+        + "/* class Comment */ // interface LineComment\n" //
+        + "interface Secondary { String S = \"class Literal\"; }\n" //
+        + "@Target(Main.class) enum SecondaryEnum { A { class ConstantBody { } }, B }\n" //
+        + "@interface SecondaryAnnotation { Class<?> value() default Main.class; }\n";
+    Assert.assertEquals(Arrays.asList("Main", "Secondary", "SecondaryEnum", "SecondaryAnnotation"), scan(source,
+        ClassFileConstants.JDK1_5));
+  }
+
+  @Test
+  public void enumBeforeJava5() {
+    // 'enum' is an identifier before java 5
+    Assert.assertEquals(Arrays.asList("Main"), scan("class Main { int enum; } enum E { }",
+        ClassFileConstants.JDK1_4));
+  }
+
+  @Test
+  public void invalidInput() {
+    // the types before the invalid input are found
+    Assert.assertEquals(Arrays.asList("Main", "Broken"), scan(
+        "class Main { } class Broken { String s = \"unterminated }\n class Missing { }", ClassFileConstants.JDK1_5));
+  }
+
+  private static List<String> scan(String source, long sourceLevel) {
+    List<String> result = new ArrayList<String>();
+    for (char[] typeName : TopLevelTypeScanner.getTopLevelTypeNames(source.toCharArray(), sourceLevel)) {
+      result.add(new String(typeName));
+    }
+    return result;
+  }
+
+} /* ENDCLASS */
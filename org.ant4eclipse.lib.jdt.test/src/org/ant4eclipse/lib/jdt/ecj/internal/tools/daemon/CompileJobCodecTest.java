@@ -0,0 +1,193 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.daemon;
+
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoader;
+import org.ant4eclipse.lib.jdt.ecj.ClassFileLoaderFactory;
+import org.ant4eclipse.lib.jdt.ecj.CompileJobResult;
+import org.ant4eclipse.lib.jdt.ecj.DefaultCompileJobDescription;
+import org.ant4eclipse.lib.jdt.ecj.DependencyInfo;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.lib.jdt.ecj.SourceFile;
+import org.ant4eclipse.lib.jdt.ecj.SourceFileFactory;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.CompileJobResultImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.ClasspathClassFileLoaderImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.CompoundClassFileLoaderImpl;
+import org.ant4eclipse.lib.jdt.ecj.internal.tools.loader.FilteringClassFileLoader;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblem;
+import org.eclipse.jdt.internal.compiler.problem.ProblemSeverities;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+public class CompileJobCodecTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private File          _classes;
+
+  private File          _src;
+
+  private File          _bin;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    this._classes = this._testDirectory.createSubDirectory("classes");
+    this._src = this._testDirectory.createSubDirectory("src");
+    this._bin = this._testDirectory.createSubDirectory("bin");
+  }
+
+  @Override
+  public void dispose() {
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void description() throws IOException {
+    ClassFileLoader classpathLoader = ClassFileLoaderFactory.createClasspathClassFileLoader(this._classes,
+        EcjAdapter.PROJECT);
+    ClassFileLoader classFileLoader = ClassFileLoaderFactory.createCompoundClassFileLoader(new ClassFileLoader[] {
+        classpathLoader, ClassFileLoaderFactory.createFilteringClassFileLoader(classpathLoader, "+a/**;-**") });
+    Assert.assertTrue(CompileJobCodec.isSupported(classFileLoader));
+
+    DefaultCompileJobDescription description = new DefaultCompileJobDescription();
+    description.setClassFileLoader(classFileLoader);
+    description.setCompilerOptions(Collections.singletonMap("org.eclipse.jdt.core.compiler.source", "1.5"));
+    description.setSourceFiles(new SourceFile[] {
+        SourceFileFactory.createSourceFile(this._src, "a/A.java", this._bin, "UTF-8"),
+        createSourceFileWithoutEncoding() });
+    description.setCollectDependencyInfos(true);
+    description.setAdditionalDestinationFolder(new File("destdir"));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CompileJobCodec.writeDescription(new DataOutputStream(bytes), description);
+    DefaultCompileJobDescription decoded = CompileJobCodec.readDescription(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())));
+
+    Assert.assertEquals(description.getCompilerOptions(), decoded.getCompilerOptions());
+    Assert.assertTrue(decoded.isCollectDependencyInfos());
+    // relative files are transferred as absolute files
+    Assert.assertEquals(new File("destdir").getAbsoluteFile(), decoded.getAdditionalDestinationFolder());
+
+    SourceFile[] sourceFiles = decoded.getSourceFiles();
+    Assert.assertEquals(2, sourceFiles.length);
+    Assert.assertEquals(this._src, sourceFiles[0].getSourceFolder());
+    Assert.assertEquals("a/A.java", sourceFiles[0].getSourceFileName());
+    Assert.assertEquals(this._bin, sourceFiles[0].getDestinationFolder());
+    Assert.assertEquals("UTF-8", sourceFiles[0].getEncoding());
+    // a source file without an encoding uses the default encoding of the compiler daemon
+    Assert.assertEquals("B.java", sourceFiles[1].getSourceFileName());
+    Assert.assertEquals(System.getProperty("file.encoding"), sourceFiles[1].getEncoding());
+
+    ClassFileLoader[] children = ((CompoundClassFileLoaderImpl) decoded.getClassFileLoader()).getClassFileLoaders();
+    Assert.assertEquals(2, children.length);
+    Assert.assertEquals(this._classes.getAbsoluteFile(), ((ClasspathClassFileLoaderImpl) children[0]).getLocation());
+    Assert.assertEquals("+a/**;-**", ((FilteringClassFileLoader) children[1]).getFilter());
+  }
+
+  @Test
+  public void result() throws IOException {
+    CompileJobResultImpl result = new CompileJobResultImpl();
+    result.setSucceeded(false);
+    result.setCategorizedProblems(new CategorizedProblem[] {
+        new DefaultProblem("A.java".toCharArray(), "a problem", 42, new String[] { "x", null },
+            ProblemSeverities.Error, 10, 20, 3, 5),
+        new DefaultProblem(null, null, 43, null, ProblemSeverities.Warning, 0, 0, 0, 0) });
+    result.setCompiledClassFiles(Collections.singletonMap("a/A.class", new File(this._classes, "a/A.class")));
+    Map<String, String> hashes = new HashMap<String, String>();
+    hashes.put("a/A", "hash");
+    result.setDependencyInfos(Collections.singletonMap(new File("A.java").getAbsoluteFile(), new DependencyInfo(
+        new HashSet<String>(Arrays.asList("java.lang")), new HashSet<String>(Arrays.asList("String")),
+        new HashSet<String>(Arrays.asList("a/A.class")), hashes)));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CompileJobCodec.writeResult(new DataOutputStream(bytes), result);
+    CompileJobResult decoded = CompileJobCodec.readResult(new DataInputStream(new ByteArrayInputStream(bytes
+        .toByteArray())));
+
+    Assert.assertFalse(decoded.succeeded());
+    CategorizedProblem[] problems = decoded.getCategorizedProblems();
+    Assert.assertEquals(2, problems.length);
+    Assert.assertEquals("A.java", String.valueOf(problems[0].getOriginatingFileName()));
+    Assert.assertEquals("a problem", problems[0].getMessage());
+    Assert.assertEquals(42, problems[0].getID());
+    Assert.assertEquals(Arrays.asList("x", null), Arrays.asList(problems[0].getArguments()));
+    Assert.assertTrue(problems[0].isError());
+    Assert.assertEquals(3, problems[0].getSourceLineNumber());
+    Assert.assertNull(problems[1].getOriginatingFileName());
+    Assert.assertTrue(problems[1].isWarning());
+
+    Assert.assertEquals(result.getCompiledClassFiles(), decoded.getCompiledClassFiles());
+    DependencyInfo dependencyInfo = decoded.getDependencyInfos().get(new File("A.java").getAbsoluteFile());
+    Assert.assertEquals(hashes, dependencyInfo.getStructuralHashes());
+    Assert.assertTrue(dependencyInfo.references("java/lang/String"));
+  }
+
+  @Test
+  public void invalidCounts() {
+    for (int count : new int[] { -1, Integer.MAX_VALUE }) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      try {
+        output.writeBoolean(true);
+        output.writeInt(count);
+        CompileJobCodec.readResult(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.fail("Expected an IOException for the count " + count);
+      } catch (IOException ex) {
+        // expected
+      }
+    }
+  }
+
+  private SourceFile createSourceFileWithoutEncoding() {
+    return new SourceFile() {
+
+      public File getSourceFolder() {
+        return CompileJobCodecTest.this._src;
+      }
+
+      public String getSourceFileName() {
+        return "B.java";
+      }
+
+      public File getSourceFile() {
+        return new File(getSourceFolder(), getSourceFileName());
+      }
+
+      public File getDestinationFolder() {
+        return CompileJobCodecTest.this._bin;
+      }
+
+      public String getEncoding() {
+        return null;
+      }
+    };
+  }
+
+} /* ENDCLASS */
@@ -0,0 +1,90 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import org.ant4eclipse.lib.core.ClassName;
+import org.ant4eclipse.lib.jdt.ecj.ClassFile;
+import org.ant4eclipse.lib.jdt.ecj.EcjAdapter;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class BootClassFileLoaderImplTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory           _testDirectory;
+
+  private File                    _jar;
+
+  private BootClassFileLoaderImpl _classFileLoader;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    this._jar = JUnitUtilities.createJarFile(new File(this._testDirectory.getRootDir(), "rt.jar"), null,
+        "a/A.class", "the content of class A", "a/b/B.class", "the content of class B", "a/readme.txt", "not a class");
+    this._classFileLoader = new BootClassFileLoaderImpl(this._jar, EcjAdapter.LIBRARY);
+  }
+
+  @Override
+  public void dispose() {
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void presentClasses() throws Exception {
+    ClassFile classFile = this._classFileLoader.loadClass(ClassName.fromQualifiedClassName("a.A"));
+    Assert.assertNotNull(classFile);
+    Assert.assertEquals("the content of class A", new String(classFile.getBytes(), "UTF-8"));
+    classFile = this._classFileLoader.loadClass(ClassName.fromQualifiedClassName("a.b.B"));
+    Assert.assertNotNull(classFile);
+    Assert.assertEquals("the content of class B", new String(classFile.getBytes(), "UTF-8"));
+  }
+
+  @Test
+  public void missingClasses() {
+    // a missing class in an existing package
+    Assert.assertNull(this._classFileLoader.loadClass(ClassName.fromQualifiedClassName("a.Missing")));
+
+    // a class that is in another package
+    Assert.assertNull(this._classFileLoader.loadClass(ClassName.fromQualifiedClassName("a.B")));
+
+    // an entry that isn't a class file
+    Assert.assertNull(this._classFileLoader.loadClass(ClassName.fromQualifiedClassName("a.readme")));
+
+    // a missing package
+    Assert.assertNull(this._classFileLoader.loadClass(ClassName.fromQualifiedClassName("c.C")));
+  }
+
+  @Test
+  public void eagerIndex() {
+    // the class files are indexed when the class file loader is created, so later additions to the jar aren't seen
+    JUnitUtilities.createJarFile(this._jar, null, "a/A.class", "the content of class A", "a/C.class",
+        "the content of class C");
+    this._jar.setLastModified(this._jar.lastModified() + 10000);
+    Assert.assertNull(this._classFileLoader.loadClass(ClassName.fromQualifiedClassName("a.C")));
+  }
+
+  @Test
+  public void packages() {
+    Assert.assertTrue(this._classFileLoader.hasPackage("a"));
+    Assert.assertTrue(this._classFileLoader.hasPackage("a.b"));
+    Assert.assertFalse(this._classFileLoader.hasPackage("b"));
+    Assert.assertFalse(this._classFileLoader.hasPackage("a.c"));
+  }
+
+} /* ENDCLASS */
@@ -0,0 +1,115 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+
+public class ClassFileLoaderCacheTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory        _testDirectory;
+
+  private File                 _jar;
+
+  private ClassFileLoaderCache _classFileLoaderCache;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    this._jar = new File(this._testDirectory.getRootDir(), "test.jar");
+    System.setProperty(ClassFileLoaderCache.MAP_JARS_PROPERTY_NAME, "true");
+    System.setProperty(ClassFileLoaderCache.CACHE_TYPES_PROPERTY_NAME, "true");
+    this._classFileLoaderCache = new ClassFileLoaderCache();
+  }
+
+  @Override
+  public void dispose() {
+    this._classFileLoaderCache.dispose();
+    System.getProperties().remove(ClassFileLoaderCache.MAP_JARS_PROPERTY_NAME);
+    System.getProperties().remove(ClassFileLoaderCache.CACHE_TYPES_PROPERTY_NAME);
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void rewrittenJarIsMappedAgain() throws Exception {
+    JUnitUtilities.createJarFile(this._jar, null, "a/A.class", "the content of class A");
+    MappedJarFile mappedJarFile = this._classFileLoaderCache.getMappedJarFile(this._jar);
+    Assert.assertTrue(mappedJarFile.hasEntry("a/A.class"));
+    Assert.assertSame(mappedJarFile, this._classFileLoaderCache.getMappedJarFile(this._jar));
+
+    // the jar file is rewritten
+    rewrite("a/A.class", "the new content of class A", "b/B.class", "the content of class B");
+    mappedJarFile = this._classFileLoaderCache.getMappedJarFile(this._jar);
+    Assert.assertTrue(mappedJarFile.hasEntry("b/B.class"));
+    Assert.assertEquals("the new content of class A", new String(mappedJarFile.getBytes("a/A.class"), "UTF-8"));
+    Assert.assertEquals("the content of class B", new String(mappedJarFile.getBytes("b/B.class"), "UTF-8"));
+  }
+
+  @Test
+  public void unmappableJarIsMappedAfterRewrite() throws Exception {
+    Utilities.writeFile(this._jar, new byte[] { 'P', 'K', 5, 6 });
+    Assert.assertNull(this._classFileLoaderCache.getMappedJarFile(this._jar));
+    Assert.assertNull(this._classFileLoaderCache.getMappedJarFile(this._jar));
+
+    rewrite("a/A.class", "the content of class A");
+    MappedJarFile mappedJarFile = this._classFileLoaderCache.getMappedJarFile(this._jar);
+    Assert.assertNotNull(mappedJarFile);
+    Assert.assertTrue(mappedJarFile.hasEntry("a/A.class"));
+  }
+
+  @Test
+  public void rewrittenJarDiscardsBinaryTypes() throws Exception {
+    JUnitUtilities.createJarFile(this._jar, null, "a/A.class", "the content of class A");
+    BinaryTypeCache binaryTypeCache = this._classFileLoaderCache.getBinaryTypeCache(this._jar);
+    binaryTypeCache.storeBinaryType("a/A.class", new ClassFileReader(loadOwnClassFile(), "A.class".toCharArray()));
+    Assert.assertSame(binaryTypeCache, this._classFileLoaderCache.getBinaryTypeCache(this._jar));
+    Assert.assertNotNull(binaryTypeCache.getBinaryType("a/A.class"));
+
+    rewrite("a/A.class", "the new content of class A");
+    binaryTypeCache = this._classFileLoaderCache.getBinaryTypeCache(this._jar);
+    Assert.assertNull(binaryTypeCache.getBinaryType("a/A.class"));
+    Assert.assertSame(binaryTypeCache, this._classFileLoaderCache.getBinaryTypeCache(this._jar));
+  }
+
+  /**
+   * Rewrites the jar file with the given entries. The jar file gets another modification time, as the time stamp of
+   * the file system might be too coarse to detect the modification otherwise.
+   */
+  private void rewrite(String... entries) {
+    long lastModified = this._jar.lastModified();
+    JUnitUtilities.createJarFile(this._jar, null, entries);
+    Assert.assertTrue(this._jar.setLastModified(lastModified + 2000));
+  }
+
+  private byte[] loadOwnClassFile() throws Exception {
+    InputStream input = getClass().getResourceAsStream(getClass().getSimpleName() + ".class");
+    try {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      Utilities.copy(input, output, new byte[1024]);
+      return output.toByteArray();
+    } finally {
+      input.close();
+    }
+  }
+
+} /* ENDCLASS */
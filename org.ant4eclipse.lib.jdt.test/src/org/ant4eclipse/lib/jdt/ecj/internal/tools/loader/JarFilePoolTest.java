@@ -0,0 +1,111 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.jar.JarFile;
+
+public class JarFilePoolTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private File          _jar1;
+
+  private File          _jar2;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    this._jar1 = JUnitUtilities.createJarFile(new File(this._testDirectory.getRootDir(), "jar1.jar"), null,
+        "a/A.class", "a");
+    this._jar2 = JUnitUtilities.createJarFile(new File(this._testDirectory.getRootDir(), "jar2.jar"), null,
+        "b/B.class", "b");
+  }
+
+  @Override
+  public void dispose() {
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void sharedJarFiles() throws IOException {
+    JarFilePool pool = new JarFilePool(10);
+    JarFile first = pool.acquire(this._jar1);
+    JarFile second = pool.acquire(this._jar1);
+    Assert.assertSame(first, second);
+    Assert.assertEquals(1, pool.getMissed());
+    Assert.assertEquals(1, pool.getHits());
+    pool.release(first);
+    pool.release(second);
+    Assert.assertEquals(1, pool.getOpenCount());
+    pool.close();
+    Assert.assertEquals(0, pool.getOpenCount());
+  }
+
+  @Test
+  public void eviction() throws IOException {
+    JarFilePool pool = new JarFilePool(1);
+    JarFile jar1 = pool.acquire(this._jar1);
+    JarFile jar2 = pool.acquire(this._jar2);
+
+    // jar files that are in use are never closed
+    Assert.assertEquals(2, pool.getOpenCount());
+    Assert.assertNotNull(jar1.getEntry("a/A.class"));
+
+    pool.release(jar1);
+    Assert.assertEquals(1, pool.getOpenCount());
+    Assert.assertEquals(1, pool.getEvicted());
+    pool.release(jar2);
+    pool.close();
+  }
+
+  @Test
+  public void closeWhileInUse() throws IOException {
+    JarFilePool pool = new JarFilePool(10);
+    JarFile jar = pool.acquire(this._jar1);
+    pool.close();
+    Assert.assertNotNull(jar.getEntry("a/A.class"));
+    Assert.assertEquals(1, pool.getOpenCount());
+    pool.release(jar);
+    Assert.assertEquals(0, pool.getOpenCount());
+  }
+
+  @Test
+  public void modifiedJarFile() throws IOException {
+    JarFilePool pool = new JarFilePool(10);
+    JarFile jar = pool.acquire(this._jar1);
+    pool.release(jar);
+
+    // rebuild the jar file on disk
+    JUnitUtilities.createJarFile(this._jar1, null, "c/C.class", "a modified class");
+    this._jar1.setLastModified(this._jar1.lastModified() + 10000);
+
+    JarFile modified = pool.acquire(this._jar1);
+    Assert.assertNotSame(jar, modified);
+    Assert.assertNotNull(modified.getEntry("c/C.class"));
+    Assert.assertNull(modified.getEntry("a/A.class"));
+    Assert.assertEquals(2, pool.getMissed());
+    Assert.assertEquals(1, pool.getOpenCount());
+    pool.release(modified);
+    pool.close();
+  }
+
+} /* ENDCLASS */
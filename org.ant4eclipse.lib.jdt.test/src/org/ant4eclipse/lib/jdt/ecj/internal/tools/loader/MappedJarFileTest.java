@@ -0,0 +1,153 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class MappedJarFileTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private File          _jar;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    this._jar = JUnitUtilities.createJarFile(new File(this._testDirectory.getRootDir(), "test.jar"), null,
+        "a/A.class", "the content of class A", "a/B.class", "", "a/resource.txt", "not a class file");
+  }
+
+  @Override
+  public void dispose() {
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void readEntries() throws IOException {
+    MappedJarFile mappedJarFile = new MappedJarFile(this._jar);
+    Assert.assertTrue(mappedJarFile.hasEntry("a/A.class"));
+    Assert.assertTrue(mappedJarFile.hasEntry("a/B.class"));
+    Assert.assertFalse(mappedJarFile.hasEntry("a/resource.txt"));
+    Assert.assertEquals("the content of class A", new String(mappedJarFile.getBytes("a/A.class"), "UTF-8"));
+    Assert.assertEquals(0, mappedJarFile.getBytes("a/B.class").length);
+    Assert.assertNull(mappedJarFile.getBytes("a/C.class"));
+  }
+
+  @Test
+  public void tooSmall() {
+    assertInvalid(new byte[] { 'P', 'K', 5, 6 });
+  }
+
+  @Test
+  public void truncated() {
+    byte[] content = JUnitUtilities.loadFile(this._jar);
+    for (int length = 0; length < content.length; length += 7) {
+      byte[] truncated = new byte[length];
+      System.arraycopy(content, 0, truncated, 0, length);
+      assertInvalid(truncated);
+    }
+  }
+
+  @Test
+  public void corruptCentralDirectoryOffset() {
+    byte[] content = JUnitUtilities.loadFile(this._jar);
+    int endOfCentralDirectory = findEndOfCentralDirectory(content);
+
+    // let the central directory start shortly before the end of the file
+    writeInt(content, endOfCentralDirectory + 16, content.length - 10);
+    assertInvalid(content);
+  }
+
+  @Test
+  public void corruptEntryCount() {
+    byte[] content = JUnitUtilities.loadFile(this._jar);
+    int endOfCentralDirectory = findEndOfCentralDirectory(content);
+
+    // claim more entries than the central directory contains
+    content[endOfCentralDirectory + 10] = (byte) 0xf0;
+    content[endOfCentralDirectory + 11] = (byte) 0x00;
+    assertInvalid(content);
+  }
+
+  @Test
+  public void corruptEntrySize() {
+    byte[] content = JUnitUtilities.loadFile(this._jar);
+
+    // the uncompressed size of the class file entry
+    writeInt(content, findCentralDirectoryEntry(content, "a/A.class") + 24, Integer.MAX_VALUE);
+    assertInvalid(content);
+  }
+
+  private void assertInvalid(byte[] content) {
+    File file = new File(this._testDirectory.getRootDir(), "corrupt.jar");
+    Utilities.writeFile(file, content);
+    try {
+      MappedJarFile mappedJarFile = new MappedJarFile(file);
+      // the central directory might be intact, but the entries must not be readable
+      mappedJarFile.getBytes("a/A.class");
+      mappedJarFile.getBytes("a/B.class");
+      Assert.fail("Expected an IOException for a jar file with " + content.length + " bytes.");
+    } catch (IOException ex) {
+      // expected
+    }
+  }
+
+  private static int findEndOfCentralDirectory(byte[] content) {
+    for (int i = content.length - 22; i >= 0; i--) {
+      if (readInt(content, i) == 0x06054b50) {
+        return i;
+      }
+    }
+    Assert.fail("No end of central directory record found.");
+    return -1;
+  }
+
+  private static int findCentralDirectoryEntry(byte[] content, String name) {
+    int offset = readInt(content, findEndOfCentralDirectory(content) + 16);
+    while (readInt(content, offset) == 0x02014b50) {
+      int nameLength = readShort(content, offset + 28);
+      if (name.equals(new String(content, offset + 46, nameLength))) {
+        return offset;
+      }
+      offset += 46 + nameLength + readShort(content, offset + 30) + readShort(content, offset + 32);
+    }
+    Assert.fail("No central directory entry found for '" + name + "'.");
+    return -1;
+  }
+
+  private static int readShort(byte[] content, int offset) {
+    return (content[offset] & 0xff) | ((content[offset + 1] & 0xff) << 8);
+  }
+
+  private static int readInt(byte[] content, int offset) {
+    return (content[offset] & 0xff) | ((content[offset + 1] & 0xff) << 8) | ((content[offset + 2] & 0xff) << 16)
+        | ((content[offset + 3] & 0xff) << 24);
+  }
+
+  private static void writeInt(byte[] content, int offset, int value) {
+    content[offset] = (byte) value;
+    content[offset + 1] = (byte) (value >> 8);
+    content[offset + 2] = (byte) (value >> 16);
+    content[offset + 3] = (byte) (value >> 24);
+  }
+
+} /* ENDCLASS */
@@ -0,0 +1,107 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.ecj.internal.tools.loader;
+
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class PackageIndexTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    System.setProperty(CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME, new File(this._testDirectory.getRootDir(),
+        "cache").getAbsolutePath());
+  }
+
+  @Override
+  public void dispose() {
+    System.getProperties().remove(CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME);
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void jarFile() {
+    File jar = JUnitUtilities.createJarFile(new File(this._testDirectory.getRootDir(), "test.jar"), null,
+        "a/b/C.class", "c", "d/", "E.class", "e");
+
+    Assert.assertEquals(asSet("META-INF", "a", "a.b", "d"), asSet(new PackageIndex().getAllPackages(jar)));
+    Assert.assertTrue(CacheDirectory.getCacheFile("packageindex", jar.getAbsolutePath()).isFile());
+
+    // read from the persistent index
+    Assert.assertEquals(asSet("META-INF", "a", "a.b", "d"), asSet(new PackageIndex().getAllPackages(jar)));
+
+    // a modified jar file is indexed again
+    JUnitUtilities.createJarFile(jar, null, "x/y/Z.class", "some other content");
+    jar.setLastModified(jar.lastModified() - 10000);
+    Assert.assertEquals(asSet("META-INF", "x", "x.y"), asSet(new PackageIndex().getAllPackages(jar)));
+  }
+
+  @Test
+  public void directory() {
+    this._testDirectory.createSubDirectory("classes/a/b");
+    this._testDirectory.createFile("classes/a/b/C.class", "c");
+    File classes = new File(this._testDirectory.getRootDir(), "classes");
+
+    Assert.assertEquals(asSet("a", "a.b"), asSet(new PackageIndex().getAllPackages(classes)));
+    Assert.assertEquals(asSet("a", "a.b"), asSet(new PackageIndex().getAllPackages(classes)));
+
+    // adding a directory changes the modification time of its parent
+    File d = new File(classes, "a/d");
+    Assert.assertTrue(d.mkdir());
+    new File(classes, "a").setLastModified(System.currentTimeMillis() + 10000);
+    Assert.assertEquals(asSet("a", "a.b", "a.d"), asSet(new PackageIndex().getAllPackages(classes)));
+  }
+
+  @Test
+  public void corruptIndex() throws IOException {
+    File jar = JUnitUtilities.createJarFile(new File(this._testDirectory.getRootDir(), "test.jar"), null,
+        "a/B.class", "b");
+    new PackageIndex().getAllPackages(jar);
+
+    // an index file with a huge package count must be ignored instead of causing an OutOfMemoryError
+    File indexFile = CacheDirectory.getCacheFile("packageindex", jar.getAbsolutePath());
+    DataOutputStream output = new DataOutputStream(new FileOutputStream(indexFile));
+    try {
+      output.writeInt(1);
+      output.writeUTF(jar.getAbsolutePath());
+      output.writeBoolean(false);
+      output.writeLong(jar.length());
+      output.writeLong(jar.lastModified());
+      output.writeInt(Integer.MAX_VALUE);
+    } finally {
+      output.close();
+    }
+    Assert.assertEquals(asSet("META-INF", "a"), asSet(new PackageIndex().getAllPackages(jar)));
+  }
+
+  private static Set<String> asSet(String... values) {
+    return new HashSet<String>(Arrays.asList(values));
+  }
+
+} /* ENDCLASS */
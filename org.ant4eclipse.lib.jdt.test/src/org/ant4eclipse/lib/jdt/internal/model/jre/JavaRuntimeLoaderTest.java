@@ -0,0 +1,141 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.internal.model.jre;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.model.jre.JavaRuntime;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The java runtimes of these tests are fake java runtimes: their java executable is a shell script that writes a
+ * detection result and records each of its executions in the file <code>detections</code>.
+ */
+public class JavaRuntimeLoaderTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private File          _location;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+
+    // the detection results are kept for the lifetime of the vm, so each test uses its own java runtime
+    this._location = this._testDirectory.createSubDirectory("jre" + System.nanoTime());
+  }
+
+  @Override
+  public void dispose() {
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void changedReleaseFile() {
+    createJavaRuntime();
+    load();
+    load();
+    Assert.assertEquals(1, getDetectionCount());
+
+    File release = new File(this._location, "release");
+    long lastModified = release.lastModified();
+    Utilities.writeFile(release, "JAVA_VERSION=\"1.6.0_21\"", Utilities.ENCODING);
+    Assert.assertTrue(release.setLastModified(lastModified + 2000));
+    load();
+    Assert.assertEquals(2, getDetectionCount());
+  }
+
+  @Test
+  public void changedJavaExecutable() {
+    createJavaRuntime();
+    load();
+    Assert.assertEquals(1, getDetectionCount());
+
+    File java = new File(this._location, "bin/java");
+    long lastModified = java.lastModified();
+    createJavaExecutable("# a new build of the java executable\n");
+    Assert.assertTrue(java.setLastModified(lastModified + 2000));
+    load();
+    load();
+    Assert.assertEquals(2, getDetectionCount());
+  }
+
+  @Test
+  public void concurrentDetection() throws Exception {
+    createJavaRuntime();
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<JavaRuntime>> futures = new ArrayList<Future<JavaRuntime>>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executorService.submit(new Callable<JavaRuntime>() {
+          public JavaRuntime call() throws Exception {
+            start.await();
+            return load();
+          }
+        }));
+      }
+      JavaRuntimeLoader.detectJavaRuntimeInBackground(this._location);
+      start.countDown();
+      for (Future<JavaRuntime> future : futures) {
+        Assert.assertEquals("1.6.0_20", future.get().getJavaVersion().toString());
+      }
+    } finally {
+      executorService.shutdown();
+    }
+    Assert.assertEquals(1, getDetectionCount());
+  }
+
+  private JavaRuntime load() {
+    return JavaRuntimeLoader.loadJavaRuntime("jre", this._location, null, null, null);
+  }
+
+  /**
+   * Creates the fake java runtime. Its java executable needs a shell, so the tests are skipped on windows.
+   */
+  private void createJavaRuntime() {
+    Assume.assumeTrue(File.separatorChar == '/');
+    Utilities.writeFile(new File(this._location, "release"), "JAVA_VERSION=\"1.6.0_20\"", Utilities.ENCODING);
+    createJavaExecutable("");
+  }
+
+  private void createJavaExecutable(String comment) {
+    File bin = new File(this._location, "bin");
+    bin.mkdirs();
+    File java = new File(bin, "java");
+    Utilities.writeFile(java, "#!/bin/sh\n" + comment + "echo detection >> \"" + this._location.getPath()
+        + "/detections\"\nsleep 1\nfor last; do :; done\n"
+        + "printf '%s' '1.6.0_20||||1.6|Java Platform API Specification' > \"$last\"\n", Utilities.ENCODING);
+    Assert.assertTrue(java.setExecutable(true));
+  }
+
+  private int getDetectionCount() {
+    File detections = new File(this._location, "detections");
+    return detections.isFile() ? new String(JUnitUtilities.loadFile(detections)).split("\n").length : 0;
+  }
+
+} /* ENDCLASS */
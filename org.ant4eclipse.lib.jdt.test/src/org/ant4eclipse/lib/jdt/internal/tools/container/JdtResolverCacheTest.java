@@ -0,0 +1,168 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.internal.tools.container;
+
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.lib.jdt.tools.JdtResolver;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspath;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.DefaultEclipseWorkspaceDefinition;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceRegistry;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JdtProjectBuilder;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class JdtResolverCacheTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private File          _workspaceDir;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    this._workspaceDir = this._testDirectory.createSubDirectory("workspace");
+    System.setProperty(CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME, new File(this._testDirectory.getRootDir(),
+        "cache").getAbsolutePath());
+
+    // the in-memory caches are shared between the tests
+    clearMemoryCache(null);
+
+    createReferencedProject("a.jar");
+    new JdtProjectBuilder("root").withSrcClasspathEntry("src", false).withClasspathEntry(
+        "<classpathentry kind='src' path='/referenced'/>").withOutputClasspathEntry("bin").createIn(this._workspaceDir);
+  }
+
+  @Override
+  public void dispose() {
+    System.getProperties().remove(CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME);
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void changedReferencedProject() {
+    Workspace workspace = registerWorkspace();
+    EclipseProject root = workspace.getProject("root");
+    String key = JdtResolverCache.getCacheKey(root, false, false, null);
+
+    ResolvedClasspath classpath = resolve(root);
+    assertContains(classpath, "a.jar");
+    Assert.assertSame(classpath, resolve(root));
+    Assert.assertTrue(CacheDirectory.getCacheFile("jdtClasspaths", key).isFile());
+
+    // the referenced project is modified, the root project is unchanged
+    createReferencedProject("a.jar", "b.jar");
+    workspace = registerWorkspace();
+    root = workspace.getProject("root");
+    Assert.assertEquals(key, JdtResolverCache.getCacheKey(root, false, false, null));
+
+    // the persistent entry is outdated
+    Assert.assertNull(JdtResolverCache.getInstance().getResolvedClasspath(key, workspace));
+
+    classpath = resolve(root);
+    assertContains(classpath, "a.jar");
+    assertContains(classpath, "b.jar");
+  }
+
+  @Test
+  public void unchangedReferencedProject() {
+    Workspace workspace = registerWorkspace();
+    EclipseProject root = workspace.getProject("root");
+    String key = JdtResolverCache.getCacheKey(root, false, false, null);
+    ResolvedClasspath classpath = resolve(root);
+
+    // the in-memory cache is cleared, the class path is read from the cache directory
+    clearMemoryCache(workspace);
+    ResolvedClasspath cached = JdtResolverCache.getInstance().getResolvedClasspath(key, workspace);
+    Assert.assertNotNull(cached);
+    Assert.assertNotSame(classpath, cached);
+    Assert.assertEquals(Arrays.asList(classpath.getClasspathFiles()), Arrays.asList(cached.getClasspathFiles()));
+  }
+
+  @Test
+  public void corruptCacheFile() throws IOException {
+    Workspace workspace = registerWorkspace();
+    EclipseProject root = workspace.getProject("root");
+    String key = JdtResolverCache.getCacheKey(root, false, false, null);
+    File cacheFile = CacheDirectory.getCacheFile("jdtClasspaths", key);
+
+    for (int count : new int[] { -1, Integer.MAX_VALUE }) {
+      DataOutputStream output = new DataOutputStream(new FileOutputStream(cacheFile));
+      try {
+        output.writeInt(1);
+        output.writeUTF(key);
+        output.writeInt(count);
+      } finally {
+        output.close();
+      }
+      Assert.assertNull(JdtResolverCache.getInstance().getResolvedClasspath(key, workspace));
+    }
+
+    // a truncated file
+    new FileOutputStream(cacheFile).close();
+    Assert.assertNull(JdtResolverCache.getInstance().getResolvedClasspath(key, workspace));
+
+    assertContains(resolve(root), "a.jar");
+  }
+
+  private void createReferencedProject(String... libraries) {
+    JdtProjectBuilder builder = new JdtProjectBuilder("referenced");
+    builder.withSrcClasspathEntry("src", false);
+    for (String library : libraries) {
+      builder.withClasspathEntry(String.format("<classpathentry kind='lib' path='%s' exported='true'/>", library));
+    }
+    File projectDir = builder.withOutputClasspathEntry("bin").createIn(this._workspaceDir);
+    for (String library : libraries) {
+      this._testDirectory.createFile("workspace/referenced/" + library, "");
+    }
+    Assert.assertTrue(projectDir.isDirectory());
+  }
+
+  private static void clearMemoryCache(Workspace workspace) {
+    new JdtResolverCache().workspaceChanged("test", workspace, Collections.<EclipseProject> emptyList(), Collections
+        .<EclipseProject> emptyList());
+  }
+
+  private Workspace registerWorkspace() {
+    WorkspaceRegistry workspaceRegistry = ServiceRegistryAccess.instance().getService(WorkspaceRegistry.class);
+    return workspaceRegistry.registerWorkspace("test", new DefaultEclipseWorkspaceDefinition(this._workspaceDir));
+  }
+
+  private static ResolvedClasspath resolve(EclipseProject project) {
+    return JdtResolver.resolveProjectClasspath(project, false, false, null);
+  }
+
+  private static void assertContains(ResolvedClasspath classpath, String fileName) {
+    List<File> files = Arrays.asList(classpath.getClasspathFiles());
+    for (File file : files) {
+      if (file.getName().equals(fileName)) {
+        return;
+      }
+    }
+    Assert.fail(fileName + " not in " + files);
+  }
+
+} /* ENDCLASS */
@@ -0,0 +1,135 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.tools;
+
+import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.jdt.internal.tools.container.JdtResolverCache;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.DefaultEclipseWorkspaceDefinition;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceRegistry;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JdtProjectBuilder;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class JdtResolverTest extends ConfigurableAnt4EclipseTestCase {
+
+  private static final String[] PROJECTS = { "mid", "top", "app" };
+
+  private TestDirectory         _testWorkspace;
+
+  private Workspace             _workspace;
+
+  @Override
+  public void setup() {
+    super.setup();
+
+    this._testWorkspace = new TestDirectory();
+
+    // base <- mid <- top <- app, with exported and non-exported libraries and projects
+    createProject("base", "<classpathentry kind='lib' path='base.jar' exported='true'/>");
+    createProject("mid", "<classpathentry kind='lib' path='mid.jar'/>",
+        "<classpathentry kind='src' path='/base' exported='true'/>",
+        "<classpathentry kind='lib' path='mid-exported.jar' exported='true'/>");
+    createProject("top", "<classpathentry kind='src' path='/mid' exported='true'/>",
+        "<classpathentry kind='lib' path='top.jar' exported='true'/>",
+        "<classpathentry kind='src' path='/base'/>");
+    createProject("app", "<classpathentry kind='lib' path='app.jar'/>",
+        "<classpathentry kind='src' path='/top'/>", "<classpathentry kind='src' path='/base'/>");
+
+    WorkspaceRegistry workspaceRegistry = ServiceRegistryAccess.instance().getService(WorkspaceRegistry.class);
+    this._workspace = workspaceRegistry.registerWorkspace(this._testWorkspace.getRootDir().getAbsolutePath(),
+        new DefaultEclipseWorkspaceDefinition(this._testWorkspace.getRootDir()));
+  }
+
+  @Override
+  public void dispose() {
+    clearCache();
+    this._testWorkspace.dispose();
+
+    super.dispose();
+  }
+
+  @Test
+  public void replayedProjects() {
+
+    // resolve every project without any previously recorded referenced projects
+    List<List<File>> expected = new ArrayList<List<File>>();
+    for (String name : PROJECTS) {
+      clearCache();
+      expected.add(files(JdtResolver.resolveProjectClasspath(this._workspace.getProject(name), false, false, null)));
+    }
+    Assert.assertEquals(Arrays.asList("app/bin", "app/app.jar", "top/bin", "mid/bin", "base/bin", "base/base.jar",
+        "mid/mid-exported.jar", "top/top.jar"), names(expected.get(2)));
+
+    // resolve all projects at once, 'top' and 'app' replay the referenced projects recorded before
+    clearCache();
+    List<EclipseProject> projects = new ArrayList<EclipseProject>();
+    for (String name : PROJECTS) {
+      projects.add(this._workspace.getProject(name));
+    }
+    List<ResolvedClasspath> classpaths = JdtResolver.resolveProjectClasspaths(projects, false, false, null);
+    Assert.assertTrue(JdtResolverCache.getInstance().getResolvedProjectCache(this._workspace, false, false, null)
+        .size() > 0);
+    for (int i = 0; i < PROJECTS.length; i++) {
+      Assert.assertEquals(PROJECTS[i], expected.get(i), files(classpaths.get(i)));
+    }
+
+    // resolve the projects one by one (as the ant tasks do) in reverse order
+    clearCache();
+    for (int i = PROJECTS.length - 1; i >= 0; i--) {
+      Assert.assertEquals(PROJECTS[i], expected.get(i), files(JdtResolver.resolveProjectClasspath(this._workspace
+          .getProject(PROJECTS[i]), false, false, null)));
+    }
+  }
+
+  private void createProject(String name, String... classpathEntries) {
+    JdtProjectBuilder builder = new JdtProjectBuilder(name);
+    builder.withSrcClasspathEntry("src", false);
+    for (String classpathEntry : classpathEntries) {
+      builder.withClasspathEntry(classpathEntry);
+    }
+    builder.withOutputClasspathEntry("bin").createIn(this._testWorkspace.getRootDir());
+    for (String classpathEntry : classpathEntries) {
+      if (classpathEntry.contains(".jar")) {
+        String library = classpathEntry.substring(classpathEntry.indexOf("path='") + 6, classpathEntry.indexOf(".jar"));
+        this._testWorkspace.createFile(name + "/" + library + ".jar", "");
+      }
+    }
+  }
+
+  private void clearCache() {
+    new JdtResolverCache().workspaceChanged("test", this._workspace, Collections.<EclipseProject> emptyList(),
+        Collections.<EclipseProject> emptyList());
+  }
+
+  private static List<String> names(List<File> files) {
+    List<String> result = new ArrayList<String>();
+    for (File file : files) {
+      result.add(file.getParentFile().getName() + "/" + file.getName());
+    }
+    return result;
+  }
+
+  private static List<File> files(ResolvedClasspath classpath) {
+    return Arrays.asList(classpath.getClasspathFiles());
+  }
+
+} /* ENDCLASS */
@@ -11,25 +11,62 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.internal.model.jre;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.data.Version;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.metrics.Counter;
+import org.ant4eclipse.lib.core.metrics.Metrics;
 import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.CacheDirectory;
 import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.JdtExceptionCode;
 import org.ant4eclipse.lib.jdt.internal.model.jre.support.LibraryDetector;
 import org.ant4eclipse.lib.jdt.model.jre.JavaProfile;
 import org.ant4eclipse.lib.jdt.model.jre.JavaRuntime;
 import org.ant4eclipse.lib.jdt.model.jre.JavaRuntimeRegistry;
 
+/**
+ * <p>
+ * Loads java runtimes. The libraries and the version of a java runtime are detected by executing the
+ * {@link LibraryDetector} with the java runtime. As forking a JVM is expensive, the detection results are cached in
+ * memory and - if a cache directory has been configured (see {@link CacheDirectory}) - on disk. A cached result is used
+ * as long as the location of the java runtime, its <code>release</code> file and its java executable are unchanged.
+ * </p>
+ * <p>
+ * The detection can be started in background (see {@link #detectJavaRuntimeInBackground(File)}), so several java
+ * runtimes can be detected in parallel. The number of threads used for the background detection can be specified with
+ * the system property <code>ant4eclipse.jreDetectionThreads</code>.
+ * </p>
+ */
 public class JavaRuntimeLoader {
+
   /**  */
   private static final String JAVA_SPECIFICATION_NAME         = "java.specification.name";
 
@@ -48,6 +85,33 @@ public class JavaRuntimeLoader {
   /**  */
   private static String       JAVASE                          = "JavaSE-";                   //$NON-NLS-1$
 
+  /** the name of the system property that specifies the number of threads used for the background detection */
+  public static final String                                     DETECTION_THREADS_PROPERTY_NAME = "ant4eclipse.jreDetectionThreads";
+
+  /** the name of the area in the cache directory */
+  private static final String                                    AREA                            = "jreDetection";
+
+  /** the version of the persistent format */
+  private static final int                                       VERSION                         = 1;
+
+  /** the files of a java runtime that are part of its fingerprint */
+  private static final String[]                                  FINGERPRINT_FILES               = new String[] {
+      "release", "bin/java", "bin/java.exe", "jre/bin/java", "jre/bin/java.exe" };
+
+  /** the number of JVMs that have been forked to detect a java runtime */
+  private static final Counter                                   DETECTIONS                      = Metrics
+                                                                                                     .counter("jdt.jreDetection.forked");
+
+  /** the number of detection results that have been read from the cache directory */
+  private static final Counter                                   PERSISTENT_HITS                 = Metrics
+                                                                                                     .counter("jdt.jreDetection.persistentHits");
+
+  /** the (pending) detection results, keyed by the fingerprint of the java runtime */
+  private static final ConcurrentMap<String, FutureTask<String>> _detectionResults               = new ConcurrentHashMap<String, FutureTask<String>>();
+
+  /** the executor for the background detection (created on demand) */
+  private static ExecutorService                                 _detectionExecutor;
+
   /**
    * @param id
    * @param location
@@ -60,28 +124,7 @@ public class JavaRuntimeLoader {
     Assure.nonEmpty("id", id);
     Assure.isDirectory("location", location);
 
-    String outfileName = System.getProperty("java.io.tmpdir") + File.separatorChar + "ant4eclipse_jdk_props_"
-        + Math.round(Math.random() * 1000000000);
-    // System.out.println(outfileName);
-
-    JavaExecuter javaLauncher = JavaExecuter.createWithA4eClasspath(location);
-    javaLauncher.setMainClass(LibraryDetector.class.getName());
-    javaLauncher.setArgs(new String[] { outfileName });
-
-    javaLauncher.execute();
-
-    // TODO
-    StringBuffer contents = new StringBuffer();
-    try {
-      File file = new File(outfileName);
-      contents = Utilities.readTextContent(file, Utilities.ENCODING, false);
-      file.deleteOnExit();
-    } catch (Throwable e) {
-      e.printStackTrace();
-    }
-
-    String result = contents.toString();
-    // System.out.println(result);
+    String result = getDetectionResult(location);
     String[] values = result.split("\\|");
     Version javaVersion = Version.newStandardVersion(values[0]);
     String sunbootclasspath = values[1];
@@ -117,6 +160,221 @@ public class JavaRuntimeLoader {
     return javaRuntime;
   }
 
+  /**
+   * <p>
+   * Starts the detection of the given java runtime in background, unless the detection result is already available. A
+   * subsequent call of {@link #loadJavaRuntime(String, File, String, String, List)} for this java runtime waits for the
+   * result.
+   * </p>
+   * 
+   * @param location
+   *          the location of the java runtime
+   */
+  public static void detectJavaRuntimeInBackground(File location) {
+    Assure.isDirectory("location", location);
+
+    FutureTask<String> task = newDetectionTask(location);
+    if (task != null) {
+      getDetectionExecutor().execute(task);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the detection result for the given java runtime. If the java runtime hasn't been detected yet, the
+   * detection is executed on the calling thread.
+   * </p>
+   * 
+   * @param location
+   *          the location of the java runtime
+   * @return the detection result
+   */
+  private static String getDetectionResult(File location) {
+    FutureTask<String> task = newDetectionTask(location);
+    if (task != null) {
+      task.run();
+    } else {
+      task = _detectionResults.get(getFingerprint(location));
+      if (task == null) {
+        // the result has been removed concurrently (after a failure)
+        return getDetectionResult(location);
+      }
+    }
+    try {
+      return task.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new Ant4EclipseException(ex, JdtExceptionCode.JAVA_LAUNCHER_EXECUTION_EXCEPTION, location);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      if (ex.getCause() instanceof Error) {
+        throw (Error) ex.getCause();
+      }
+      throw new Ant4EclipseException(ex.getCause(), JdtExceptionCode.JAVA_LAUNCHER_EXECUTION_EXCEPTION, location);
+    }
+  }
+
+  /**
+   * <p>
+   * Registers a new detection task for the given java runtime and returns it. Returns <code>null</code> if a detection
+   * task for this java runtime (in its current state) has already been registered.
+   * </p>
+   * 
+   * @param location
+   *          the location of the java runtime
+   * @return the new detection task (not started yet) or <code>null</code>.
+   */
+  private static FutureTask<String> newDetectionTask(final File location) {
+    final String fingerprint = getFingerprint(location);
+    if (_detectionResults.containsKey(fingerprint)) {
+      return null;
+    }
+    FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+      public String call() {
+        try {
+          return detectJavaRuntime(location, fingerprint);
+        } catch (RuntimeException ex) {
+          // allow a retry
+          _detectionResults.remove(fingerprint);
+          throw ex;
+        }
+      }
+    });
+    return _detectionResults.putIfAbsent(fingerprint, task) == null ? task : null;
+  }
+
+  /**
+   * <p>
+   * Detects the given java runtime, either by reading the detection result from the cache directory or by executing
+   * the {@link LibraryDetector}.
+   * </p>
+   * 
+   * @param location
+   *          the location of the java runtime
+   * @param fingerprint
+   *          the fingerprint of the java runtime
+   * @return the detection result
+   */
+  private static String detectJavaRuntime(File location, String fingerprint) {
+    File cacheFile = CacheDirectory.getCacheFile(AREA, CacheDirectory.hash(fingerprint));
+    String result = readDetectionResult(cacheFile, fingerprint);
+    if (result != null) {
+      A4ELogging.debug("Using cached detection result for JRE '%s'.", location);
+      PERSISTENT_HITS.increment();
+      return result;
+    }
+
+    File outfile;
+    try {
+      outfile = File.createTempFile("ant4eclipse_jdk_props_", null);
+    } catch (IOException ex) {
+      throw new Ant4EclipseException(ex, JdtExceptionCode.JAVA_LAUNCHER_EXECUTION_EXCEPTION, location);
+    }
+    try {
+      JavaExecuter javaLauncher = JavaExecuter.createWithA4eClasspath(location);
+      javaLauncher.setMainClass(LibraryDetector.class.getName());
+      javaLauncher.setArgs(new String[] { outfile.getAbsolutePath() });
+      javaLauncher.execute();
+      DETECTIONS.increment();
+      result = Utilities.readTextContent(outfile, Utilities.ENCODING, false).toString();
+    } finally {
+      outfile.delete();
+    }
+
+    writeDetectionResult(cacheFile, fingerprint, result);
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the fingerprint of the given java runtime: its location and the sizes and modification times of its
+   * <code>release</code> file and its java executables.
+   * </p>
+   * 
+   * @param location
+   *          the location of the java runtime
+   * @return the fingerprint of the given java runtime
+   */
+  private static String getFingerprint(File location) {
+    StringBuilder builder = new StringBuilder(Utilities.getCanonicalFile(location).getPath());
+    for (String name : FINGERPRINT_FILES) {
+      File file = new File(location, name);
+      if (file.isFile()) {
+        builder.append('|').append(name).append('|').append(file.length()).append('|').append(file.lastModified());
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * <p>
+   * Reads the detection result from the given cache file.
+   * </p>
+   * 
+   * @return the detection result or <code>null</code> if the cache file doesn't exist or belongs to another state of
+   *         the java runtime.
+   */
+  private static String readDetectionResult(File cacheFile, String fingerprint) {
+    if ((cacheFile == null) || !cacheFile.isFile()) {
+      return null;
+    }
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+      if ((input.readInt() != VERSION) || !fingerprint.equals(input.readUTF())) {
+        return null;
+      }
+      return input.readUTF();
+    } catch (IOException ex) {
+      A4ELogging.debug("Could not read cached detection result '%s': %s", cacheFile, ex.toString());
+      return null;
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the detection result to the given cache file (if any).
+   * </p>
+   */
+  private static void writeDetectionResult(File cacheFile, String fingerprint, String result) {
+    if (cacheFile == null) {
+      return;
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeInt(VERSION);
+      output.writeUTF(fingerprint);
+      output.writeUTF(result);
+      output.close();
+      CacheDirectory.writeAtomically(cacheFile, bytes.toByteArray());
+    } catch (IOException ex) {
+      // can't happen as we're writing to memory
+      A4ELogging.debug("Could not write cached detection result '%s': %s", cacheFile, ex.toString());
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the executor for the background detection.
+   * </p>
+   * 
+   * @return the executor for the background detection.
+   */
+  private static synchronized ExecutorService getDetectionExecutor() {
+    if (_detectionExecutor == null) {
+      int threadCount = Math.max(1, Integer.getInteger(DETECTION_THREADS_PROPERTY_NAME,
+          Math.min(4, Runtime.getRuntime().availableProcessors())).intValue());
+      _detectionExecutor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(), new DetectionThreadFactory());
+    }
+    return _detectionExecutor;
+  }
+
   private static void addFiles(String path, boolean addChildrenIfDirectory, List<File> list) {
 
     String[] fileNames = path.split(File.pathSeparator);
@@ -211,4 +469,25 @@ public class JavaRuntimeLoader {
     }
     return list.toArray(new String[list.size()]);
   }
+
+  /**
+   * <p>
+   * Creates the daemon threads for the background detection.
+   * </p>
+   */
+  private static class DetectionThreadFactory implements ThreadFactory {
+
+    /** the number of created threads */
+    private AtomicInteger _count = new AtomicInteger();
+
+    /**
+     * {@inheritDoc}
+     */
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable);
+      thread.setName("A4E-JreDetection-" + this._count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
 }
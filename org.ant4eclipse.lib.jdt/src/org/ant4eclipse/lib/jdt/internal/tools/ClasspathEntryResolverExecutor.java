@@ -16,15 +16,19 @@ import org.ant4eclipse.lib.core.Lifecycle;
 import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
 import org.ant4eclipse.lib.jdt.JdtExceptionCode;
+import org.ant4eclipse.lib.jdt.internal.tools.ResolvedProjectCache.ResolvedProject;
 import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.ClasspathEntryResolver;
 import org.ant4eclipse.lib.jdt.model.ClasspathEntry;
 import org.ant4eclipse.lib.jdt.model.project.JavaProjectRole;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry;
 import org.ant4eclipse.lib.jdt.tools.container.ClasspathResolverContext;
 import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 
 import java.util.EmptyStackException;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.Stack;
 
 /**
@@ -38,6 +42,11 @@ import java.util.Stack;
  * plug-in projects that are referenced through the 'org.eclipse.pde.core.requiredPlugins' container</li>
  * </ul>
  * </p>
+ * <p>
+ * If a {@link ResolvedProjectCache} has been set, the results of resolving referenced projects are recorded in this
+ * cache. Subsequent resolutions (e.g. of other root projects) replay the recorded results instead of resolving the
+ * class path entries of these projects again.
+ * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
@@ -46,12 +55,27 @@ public class ClasspathEntryResolverExecutor {
   /** stack of 'current projects' */
   private Stack<EclipseProject>    _currentProject;
 
+  /** the names of the 'current projects' */
+  private Set<String>              _currentProjectNames;
+
   /** list with all projects that are (transitively) resolved */
   private List<EclipseProject>     _resolvedProjects;
 
+  /** the names of all projects that are (transitively) resolved */
+  private Set<String>              _resolvedProjectNames;
+
   /** list with all projects that references. These projects are not transitively resolved */
   private List<EclipseProject>     _referencedProjects;
 
+  /** the names of all projects that are referenced */
+  private Set<String>              _referencedProjectNames;
+
+  /** the cache with the results of referenced projects (might be null) */
+  private ResolvedProjectCache     _resolvedProjectCache;
+
+  /** stack of the recorded results of the 'current projects' (contains null if a project isn't recorded) */
+  private Stack<ResolvedProject>   _recordedProjects;
+
   /** array that contains all resolvers for raw class path entries * */
   private ClasspathEntryResolver[] _entryResolvers;
 
@@ -72,11 +96,29 @@ public class ClasspathEntryResolverExecutor {
 
     // initialize the executor attributes
     this._resolvedProjects = new LinkedList<EclipseProject>();
+    this._resolvedProjectNames = new HashSet<String>();
     this._referencedProjects = new LinkedList<EclipseProject>();
+    this._referencedProjectNames = new HashSet<String>();
     this._currentProject = new Stack<EclipseProject>();
+    this._currentProjectNames = new HashSet<String>();
+    this._recordedProjects = new Stack<ResolvedProject>();
     this._failOnNonHandledEntry = failOnNonHandledEntry;
   }
 
+  /**
+   * <p>
+   * Sets the cache that is used to record and replay the results of referenced projects. The cache must only be shared
+   * between executors that resolve projects of the same workspace with the same settings (e.g. relative or runtime
+   * class paths, class path container arguments).
+   * </p>
+   * 
+   * @param resolvedProjectCache
+   *          the cache (might be <code>null</code>)
+   */
+  public void setResolvedProjectCache(ResolvedProjectCache resolvedProjectCache) {
+    this._resolvedProjectCache = resolvedProjectCache;
+  }
+
   /**
    * <p>
    * Returns the current project or <code>null</code> if no current project is set.
@@ -122,7 +164,7 @@ public class ClasspathEntryResolverExecutor {
 
     // add all referenced projects
     for (EclipseProject eclipseProject : this._referencedProjects) {
-      if (!result.contains(eclipseProject)) {
+      if (!this._resolvedProjectNames.contains(eclipseProject.getSpecifiedName())) {
         result.add(eclipseProject);
       }
     }
@@ -148,8 +190,12 @@ public class ClasspathEntryResolverExecutor {
 
     // Initialize the ProjectClasspathResolver instance
     this._resolvedProjects.clear();
+    this._resolvedProjectNames.clear();
     this._currentProject.clear();
+    this._currentProjectNames.clear();
     this._referencedProjects.clear();
+    this._referencedProjectNames.clear();
+    this._recordedProjects.clear();
 
     // set the entry resolvers
     this._entryResolvers = classpathEntryResolvers;
@@ -186,12 +232,41 @@ public class ClasspathEntryResolverExecutor {
   public final void addReferencedProject(EclipseProject project) {
     Assure.notNull("project", project);
 
+    // record the referenced project
+    record(ResolvedProject.REFERENCED_PROJECT, project);
+
     // adds the referenced project
-    if (!this._referencedProjects.contains(project)) {
+    if (this._referencedProjectNames.add(project.getSpecifiedName())) {
       this._referencedProjects.add(project);
     }
   }
 
+  /**
+   * <p>
+   * Records the given class path entry for the current project, so it can be replayed if the project is resolved
+   * again. This method must be called for every class path entry that is added to the resolver context.
+   * </p>
+   * 
+   * @param entry
+   *          the class path entry
+   */
+  public final void recordClasspathEntry(ResolvedClasspathEntry entry) {
+    record(ResolvedProject.CLASSPATH_ENTRY, entry);
+  }
+
+  /**
+   * <p>
+   * Records the given boot class path entry for the current project, so it can be replayed if the project is resolved
+   * again. This method must be called for every boot class path entry that is set at the resolver context.
+   * </p>
+   * 
+   * @param entry
+   *          the boot class path entry
+   */
+  public final void recordBootClasspathEntry(ResolvedClasspathEntry entry) {
+    record(ResolvedProject.BOOT_CLASSPATH_ENTRY, entry);
+  }
+
   /**
    * <p>
    * Adds a referenced project. The project will (transitively) resolved.
@@ -203,8 +278,11 @@ public class ClasspathEntryResolverExecutor {
   public final void resolveReferencedProject(EclipseProject project) {
     Assure.notNull("project", project);
 
+    // record the reference (the checks below are repeated if the reference is replayed)
+    record(ResolvedProject.RESOLVED_PROJECT, project);
+
     // detect circular dependencies
-    if (this._currentProject.contains(project)) {
+    if (this._currentProjectNames.contains(project.getSpecifiedName())) {
       // TODO it should be configurable if the task fails on circular
       // dependencies
       // TODO detect which projects reference each other
@@ -213,27 +291,96 @@ public class ClasspathEntryResolverExecutor {
     }
 
     // return if project already has been resolved
-    if (this._resolvedProjects.contains(project)) {
+    if (!this._resolvedProjectNames.add(project.getSpecifiedName())) {
       return;
     }
 
     // add project to the list of all resolved projects
     this._resolvedProjects.add(project);
 
+    // the result of the root project depends on the root project, so only referenced projects are cached
+    boolean cacheable = (this._resolvedProjectCache != null) && !this._currentProject.isEmpty();
+
     // push the project to the stack
     this._currentProject.push(project);
+    this._currentProjectNames.add(project.getSpecifiedName());
+
+    ResolvedProject resolvedProject = cacheable ? this._resolvedProjectCache.getResolvedProject(project) : null;
+    if (resolvedProject != null) {
 
-    // assert raw class path entries
-    // TODO: NLS
-    Assure.assertTrue(project.getRole(JavaProjectRole.class).hasRawClasspathEntries(), String.format(
-        "The JDT project '%s' (%s) doesn't contain any class path entries.", project.getFolderName(), project
-            .getFolder().getAbsolutePath()));
+      // replay the cached result (without recording it again)
+      this._recordedProjects.push(null);
+      replay(resolvedProject);
+      this._recordedProjects.pop();
 
-    // resolve the class path entries for this project
-    resolveClasspathEntries(project.getRole(JavaProjectRole.class).getRawClasspathEntries());
+    } else {
+
+      // assert raw class path entries
+      // TODO: NLS
+      Assure.assertTrue(project.getRole(JavaProjectRole.class).hasRawClasspathEntries(), String.format(
+          "The JDT project '%s' (%s) doesn't contain any class path entries.", project.getFolderName(), project
+              .getFolder().getAbsolutePath()));
+
+      // resolve the class path entries for this project
+      this._recordedProjects.push(cacheable ? new ResolvedProject() : null);
+      resolveClasspathEntries(project.getRole(JavaProjectRole.class).getRawClasspathEntries());
+      resolvedProject = this._recordedProjects.pop();
+
+      // cache the result
+      if (resolvedProject != null) {
+        this._resolvedProjectCache.storeResolvedProject(project, resolvedProject);
+      }
+    }
 
     // pop the project from the stack
     this._currentProject.pop();
+    this._currentProjectNames.remove(project.getSpecifiedName());
+  }
+
+  /**
+   * <p>
+   * Records the given element for the current project (if the current project is recorded).
+   * </p>
+   * 
+   * @param kind
+   *          the kind of the element
+   * @param element
+   *          the element
+   */
+  private void record(int kind, Object element) {
+    if (!this._recordedProjects.isEmpty()) {
+      ResolvedProject resolvedProject = this._recordedProjects.peek();
+      if (resolvedProject != null) {
+        resolvedProject.add(kind, element);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Replays the recorded result of the current project.
+   * </p>
+   * 
+   * @param resolvedProject
+   *          the recorded result
+   */
+  private void replay(ResolvedProject resolvedProject) {
+    for (int i = 0; i < resolvedProject.size(); i++) {
+      Object element = resolvedProject.getElement(i);
+      switch (resolvedProject.getKind(i)) {
+      case ResolvedProject.CLASSPATH_ENTRY:
+        this._resolverContext.addClasspathEntry((ResolvedClasspathEntry) element);
+        break;
+      case ResolvedProject.BOOT_CLASSPATH_ENTRY:
+        this._resolverContext.setBootClasspathEntry((ResolvedClasspathEntry) element);
+        break;
+      case ResolvedProject.REFERENCED_PROJECT:
+        addReferencedProject((EclipseProject) element);
+        break;
+      default:
+        resolveReferencedProject((EclipseProject) element);
+      }
+    }
   }
 
   /**
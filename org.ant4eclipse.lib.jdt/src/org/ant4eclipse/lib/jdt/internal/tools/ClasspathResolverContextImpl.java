@@ -124,6 +124,7 @@ public class ClasspathResolverContextImpl implements ClasspathResolverContext {
    * {@inheritDoc}
    */
   public void setBootClasspathEntry(ResolvedClasspathEntry resolvedClasspathEntry) {
+    this._executor.recordBootClasspathEntry(resolvedClasspathEntry);
     if (this._resolvedClasspath != null) {
       this._resolvedClasspath.addBootClasspathEntry(resolvedClasspathEntry);
     }
@@ -133,6 +134,7 @@ public class ClasspathResolverContextImpl implements ClasspathResolverContext {
    * {@inheritDoc}
    */
   public void addClasspathEntry(ResolvedClasspathEntry resolvedClasspathEntry) {
+    this._executor.recordClasspathEntry(resolvedClasspathEntry);
     if (this._resolvedClasspath != null) {
       this._resolvedClasspath.addClasspathEntry(resolvedClasspathEntry);
     }
@@ -12,8 +12,11 @@
 package org.ant4eclipse.lib.jdt.internal.tools;
 
 import java.io.File;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspath;
@@ -31,6 +34,9 @@ public final class ResolvedClasspathImpl implements ResolvedClasspath {
   /** the list with all the resolved path entries */
   private List<ResolvedClasspathEntry> _classpath;
 
+  /** the set with all the resolved path entries (used to detect duplicates) */
+  private Set<ResolvedClasspathEntry>  _classpathEntries;
+
   /** the boot class path. Might be null * */
   private ResolvedClasspathEntry       _bootclasspath;
 
@@ -41,6 +47,7 @@ public final class ResolvedClasspathImpl implements ResolvedClasspath {
    */
   public ResolvedClasspathImpl() {
     this._classpath = new LinkedList<ResolvedClasspathEntry>();
+    this._classpathEntries = new HashSet<ResolvedClasspathEntry>();
   }
 
   /**
@@ -91,7 +98,7 @@ public final class ResolvedClasspathImpl implements ResolvedClasspath {
    */
   public final void addClasspathEntry(ResolvedClasspathEntry resolvedClasspathEntry) {
     Assure.notNull("resolvedClasspathEntry", resolvedClasspathEntry);
-    if (!this._classpath.contains(resolvedClasspathEntry)) {
+    if (this._classpathEntries.add(resolvedClasspathEntry)) {
       this._classpath.add(resolvedClasspathEntry);
     }
   }
@@ -124,16 +131,14 @@ public final class ResolvedClasspathImpl implements ResolvedClasspath {
   private File[] resolveClasspathToFiles(List<ResolvedClasspathEntry> classpath) {
 
     // create result
-    List<File> result = new LinkedList<File>();
+    Set<File> result = new LinkedHashSet<File>();
 
     // add all files
     for (Object element : classpath) {
       ResolvedClasspathEntry resolvedClasspathEntry = (ResolvedClasspathEntry) element;
       File[] files = resolvedClasspathEntry.getClassPathEntries();
       for (int i = 0; i < files.length; i++) {
-        if (!result.contains(files[i])) {
-          result.add(files[i]);
-        }
+        result.add(files[i]);
       }
     }
 
@@ -0,0 +1,178 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.jdt.internal.tools;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Caches the results of resolving the class path entries of single projects that are referenced by other projects
+ * (i.e. that are not the root project of a resolution). The result of a referenced project doesn't depend on the root
+ * project, so it can be shared between the resolutions of all projects of a workspace that are resolved with the same
+ * settings. A cached project is replayed by the {@link ClasspathEntryResolverExecutor} instead of resolving its class
+ * path entries again.
+ * </p>
+ * <p>
+ * The cached results refer to the projects of a single workspace. A {@link ResolvedProjectCache} must be discarded if
+ * this workspace changes.
+ * </p>
+ *
+ * @author agent
+ */
+public final class ResolvedProjectCache {
+
+  /** the resolved projects, keyed by the project name */
+  private Map<String, ResolvedProject> _resolvedProjects;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ResolvedProjectCache}.
+   * </p>
+   */
+  public ResolvedProjectCache() {
+    this._resolvedProjects = new Hashtable<String, ResolvedProject>();
+  }
+
+  /**
+   * <p>
+   * Returns the cached result for the given project or <code>null</code> if the project hasn't been resolved yet.
+   * </p>
+   *
+   * @param project
+   *          the project
+   * @return the cached result for the given project or <code>null</code>.
+   */
+  ResolvedProject getResolvedProject(EclipseProject project) {
+    return this._resolvedProjects.get(project.getSpecifiedName());
+  }
+
+  /**
+   * <p>
+   * Stores the result for the given project.
+   * </p>
+   *
+   * @param project
+   *          the project
+   * @param resolvedProject
+   *          the result of resolving the class path entries of the project
+   */
+  void storeResolvedProject(EclipseProject project, ResolvedProject resolvedProject) {
+    Assure.notNull("resolvedProject", resolvedProject);
+    this._resolvedProjects.put(project.getSpecifiedName(), resolvedProject);
+  }
+
+  /**
+   * <p>
+   * Returns the number of cached projects.
+   * </p>
+   *
+   * @return the number of cached projects.
+   */
+  public int size() {
+    return this._resolvedProjects.size();
+  }
+
+  /**
+   * <p>
+   * The recorded result of resolving the class path entries of a single project: the class path entries, the
+   * referenced projects and the projects that have been resolved transitively in the order they have been reported.
+   * </p>
+   */
+  static final class ResolvedProject {
+
+    /** the kind of a class path entry */
+    static final int     CLASSPATH_ENTRY      = 0;
+
+    /** the kind of a boot class path entry */
+    static final int     BOOT_CLASSPATH_ENTRY = 1;
+
+    /** the kind of a referenced project (that is not resolved transitively) */
+    static final int     REFERENCED_PROJECT   = 2;
+
+    /** the kind of a project that is resolved transitively */
+    static final int     RESOLVED_PROJECT     = 3;
+
+    /** the kinds of the recorded elements */
+    private List<Integer> _kinds;
+
+    /** the recorded elements */
+    private List<Object>  _elements;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link ResolvedProject}.
+     * </p>
+     */
+    ResolvedProject() {
+      this._kinds = new ArrayList<Integer>();
+      this._elements = new ArrayList<Object>();
+    }
+
+    /**
+     * <p>
+     * Records the given element.
+     * </p>
+     *
+     * @param kind
+     *          the kind of the element
+     * @param element
+     *          the element
+     */
+    void add(int kind, Object element) {
+      this._kinds.add(Integer.valueOf(kind));
+      this._elements.add(element);
+    }
+
+    /**
+     * <p>
+     * Returns the number of recorded elements.
+     * </p>
+     *
+     * @return the number of recorded elements.
+     */
+    int size() {
+      return this._elements.size();
+    }
+
+    /**
+     * <p>
+     * Returns the kind of the element with the given index.
+     * </p>
+     *
+     * @param index
+     *          the index
+     * @return the kind of the element with the given index.
+     */
+    int getKind(int index) {
+      return this._kinds.get(index).intValue();
+    }
+
+    /**
+     * <p>
+     * Returns the element with the given index.
+     * </p>
+     *
+     * @param index
+     *          the index
+     * @return the element with the given index.
+     */
+    Object getElement(int index) {
+      return this._elements.get(index);
+    }
+  }
+}
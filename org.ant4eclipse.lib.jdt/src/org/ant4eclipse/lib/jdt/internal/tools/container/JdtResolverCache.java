@@ -1,66 +1,596 @@
 package org.ant4eclipse.lib.jdt.internal.tools.container;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.metrics.Counter;
+import org.ant4eclipse.lib.core.metrics.Metrics;
 import org.ant4eclipse.lib.core.service.ServiceRegistryAccess;
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.jdt.internal.tools.ResolvedClasspathImpl;
+import org.ant4eclipse.lib.jdt.internal.tools.ResolvedProjectCache;
+import org.ant4eclipse.lib.jdt.model.ContainerTypes;
+import org.ant4eclipse.lib.jdt.model.jre.JavaRuntime;
+import org.ant4eclipse.lib.jdt.model.jre.JavaRuntimeRegistry;
+import org.ant4eclipse.lib.jdt.model.project.JavaProjectRole;
+import org.ant4eclipse.lib.jdt.model.project.RawClasspathEntry;
 import org.ant4eclipse.lib.jdt.tools.ResolvedClasspath;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry;
+import org.ant4eclipse.lib.jdt.tools.ResolvedClasspathEntry.AccessRestrictions;
+import org.ant4eclipse.lib.jdt.tools.classpathelements.ClassPathContainer;
+import org.ant4eclipse.lib.jdt.tools.classpathelements.ClassPathElement;
+import org.ant4eclipse.lib.jdt.tools.classpathelements.ClassPathElementsRegistry;
+import org.ant4eclipse.lib.jdt.tools.classpathelements.ClassPathVariable;
+import org.ant4eclipse.lib.jdt.tools.container.JdtClasspathContainerArgument;
 import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceListener;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceRegistry;
 
 /**
  * <p>
+ * Caches resolved class paths. A resolved class path is stored under a key that is computed from everything the
+ * resolution of the root project depends on: the class path entries of the root project, the class path container
+ * arguments, the registered class path variables and containers and the selected JRE. Additionally the fingerprints
+ * of all projects that have been visited while the class path has been resolved are recorded, so a cached class path
+ * is only used as long as none of the referenced projects has changed.
  * </p>
- * 
+ * <p>
+ * If a cache directory has been configured (see {@link CacheDirectory}), the resolved class paths are stored on disk as
+ * well, so subsequent builds can use them. Class paths of projects that use class path containers whose content can't
+ * be fingerprinted (e.g. the PDE container, which depends on the target platform) are only cached in memory.
+ * </p>
+ * <p>
+ * Additionally this cache holds the {@link ResolvedProjectCache}s that contain the results of the referenced projects,
+ * so they can be shared between the resolutions of different root projects.
+ * </p>
+ * <p>
+ * The in-memory caches are cleared whenever the projects of a registered workspace change. Watched workspaces are only
+ * refreshed between builds (see {@link WorkspaceRegistry#beginBuild()}), so the caches aren't cleared while a build
+ * uses them.
+ * </p>
+ *
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
-public class JdtResolverCache {
+public class JdtResolverCache implements WorkspaceListener {
+
+  /** the name of the area in the cache directory */
+  private static final String                            AREA                   = "jdtClasspaths";
+
+  /** the version of the persistent format */
+  private static final int                               VERSION                = 1;
+
+  /** the maximum number of elements that is accepted when reading a cached class path */
+  private static final int                               MAX_COUNT              = 1000000;
+
+  /** the number of class paths that have been taken from the cache */
+  private static final Counter                           HITS                   = Metrics
+                                                                                    .counter("jdt.classpathCache.hits");
+
+  /** the number of class paths that have been read from the cache directory */
+  private static final Counter                           PERSISTENT_HITS        = Metrics
+                                                                                    .counter("jdt.classpathCache.persistentHits");
 
   /** the class path cache */
-  private static final Map<String, ResolvedClasspath> _classpathCache = new Hashtable<String, ResolvedClasspath>();
+  private static final Map<String, CachedClasspath>      _classpathCache        = new Hashtable<String, CachedClasspath>();
+
+  /** the caches for the results of referenced projects, keyed by the resolution settings */
+  private static final Map<String, ResolvedProjectCache> _resolvedProjectCaches = new HashMap<String, ResolvedProjectCache>();
+
+  /** the workspace the cached results of referenced projects belong to */
+  private static Workspace                               _resolvedProjectsWorkspace;
+
+  /** indicates whether this cache has been registered with the workspace registry */
+  private volatile boolean                               _listening;
 
   /**
    * <p>
+   * Returns the cached class path for the given key or <code>null</code> if no class path has been cached or if one of
+   * the projects that have been visited while the class path has been resolved has changed.
    * </p>
-   * 
+   *
    * @param key
-   * @return
+   *          the key as returned by {@link #getCacheKey(EclipseProject, boolean, boolean, List)}
+   * @param workspace
+   *          the workspace that contains the referenced projects
+   * @return the cached class path or <code>null</code>.
    */
-  public ResolvedClasspath getResolvedClasspath(String key) {
-    return _classpathCache.get(key);
+  public ResolvedClasspath getResolvedClasspath(String key, Workspace workspace) {
+    CachedClasspath cachedClasspath = _classpathCache.get(key);
+    boolean persistent = false;
+    if (cachedClasspath == null) {
+      cachedClasspath = readCachedClasspath(key);
+      persistent = cachedClasspath != null;
+    }
+    if ((cachedClasspath == null)
+        || !cachedClasspath.getProjectsFingerprint().equals(
+            getProjectsFingerprint(workspace, cachedClasspath.getProjectNames()))) {
+      return null;
+    }
+    if (persistent) {
+      _classpathCache.put(key, cachedClasspath);
+      PERSISTENT_HITS.increment();
+    }
+    HITS.increment();
+    return cachedClasspath.getClasspath();
   }
 
   /**
    * <p>
+   * Stores the given class path.
    * </p>
-   * 
+   *
    * @param key
+   *          the key as returned by {@link #getCacheKey(EclipseProject, boolean, boolean, List)}
    * @param classpath
+   *          the resolved class path
+   * @param referencedProjects
+   *          the projects that have been visited while the class path has been resolved
+   */
+  public void storeResolvedClasspath(String key, ResolvedClasspath classpath, List<EclipseProject> referencedProjects) {
+    if (!this._listening) {
+      registerWorkspaceListener();
+    }
+
+    String[] projectNames = new String[referencedProjects.size()];
+    for (int i = 0; i < projectNames.length; i++) {
+      projectNames[i] = referencedProjects.get(i).getSpecifiedName();
+    }
+    CachedClasspath cachedClasspath = new CachedClasspath(classpath, projectNames, getProjectsFingerprint(
+        referencedProjects.isEmpty() ? null : referencedProjects.get(0).getWorkspace(), projectNames));
+    _classpathCache.put(key, cachedClasspath);
+
+    if (isPersistable(referencedProjects)) {
+      writeCachedClasspath(key, cachedClasspath);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void workspaceChanged(String id, Workspace workspace, List<EclipseProject> removedProjects,
+      List<EclipseProject> addedProjects) {
+    A4ELogging.debug("JdtResolverCache: workspace '%s' changed, clearing %d cached class paths.", id, Integer
+        .valueOf(_classpathCache.size()));
+    _classpathCache.clear();
+    synchronized (_resolvedProjectCaches) {
+      _resolvedProjectCaches.clear();
+      _resolvedProjectsWorkspace = null;
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the cache for the results of referenced projects that are resolved with the given settings.
+   * </p>
+   *
+   * @param workspace
+   *          the workspace that contains the projects
+   * @param resolveRelative
+   *          indicates if the class path is resolved relative to the workspace or not
+   * @param runtimeClasspath
+   *          indicates if the class path is a runtime class path or not
+   * @param classpathContainerArguments
+   *          the class path container arguments (may be <code>null</code>)
+   * @return the cache for the results of referenced projects.
+   */
+  public ResolvedProjectCache getResolvedProjectCache(Workspace workspace, boolean resolveRelative,
+      boolean runtimeClasspath, List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    if (!this._listening) {
+      registerWorkspaceListener();
+    }
+
+    StringBuilder builder = new StringBuilder();
+    appendSettings(builder, resolveRelative, runtimeClasspath, classpathContainerArguments);
+    String key = CacheDirectory.hash(builder.toString());
+
+    synchronized (_resolvedProjectCaches) {
+      // the cached results refer to the projects of a single workspace
+      if (_resolvedProjectsWorkspace != workspace) {
+        _resolvedProjectCaches.clear();
+        _resolvedProjectsWorkspace = workspace;
+      }
+      ResolvedProjectCache result = _resolvedProjectCaches.get(key);
+      if (result == null) {
+        result = new ResolvedProjectCache();
+        _resolvedProjectCaches.put(key, result);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * <p>
+   * Registers this cache with the workspace registry. This is deferred until the first class path is stored, as the
+   * workspace registry may not have been initialized when this cache is created.
+   * </p>
    */
-  public void storeResolvedClasspath(String key, ResolvedClasspath classpath) {
-    _classpathCache.put(key, classpath);
+  private synchronized void registerWorkspaceListener() {
+    if (!this._listening) {
+      ServiceRegistryAccess.instance().getService(WorkspaceRegistry.class).addWorkspaceListener(this);
+      this._listening = true;
+    }
   }
 
   /**
    * <p>
+   * Computes the key for the class path of the given project. The key is a hash of the fingerprint of the project, the
+   * given arguments, the registered class path variables and containers and the JRE that is selected by the JRE
+   * container of the project.
    * </p>
-   * 
+   *
    * @param project
+   *          the project
    * @param resolveRelative
+   *          indicates if the class path is resolved relative to the workspace or not
    * @param runtimeClasspath
-   * @return
+   *          indicates if the class path is a runtime class path or not
+   * @param classpathContainerArguments
+   *          the class path container arguments (may be <code>null</code>)
+   * @return the key
    */
-  public static String getCacheKey(EclipseProject project, boolean resolveRelative, boolean runtimeClasspath) {
-    // TODO include classpathContainerArguments in key
-    return project.getSpecifiedName() + "." + resolveRelative + "." + runtimeClasspath;
+  public static String getCacheKey(EclipseProject project, boolean resolveRelative, boolean runtimeClasspath,
+      List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    StringBuilder builder = new StringBuilder();
+    appendFingerprint(builder, project);
+    appendSettings(builder, resolveRelative, runtimeClasspath, classpathContainerArguments);
+
+    // the JRE is only resolved for the root project
+    if (project.hasRole(JavaProjectRole.class)) {
+      JavaRuntimeRegistry javaRuntimeRegistry = ServiceRegistryAccess.instance().getService(JavaRuntimeRegistry.class);
+      for (RawClasspathEntry entry : project.getRole(JavaProjectRole.class).getRawClasspathEntries(
+          RawClasspathEntry.CPE_CONTAINER)) {
+        if (entry.getPath().startsWith(ContainerTypes.JRE_CONTAINER)) {
+          appendJavaRuntime(builder, javaRuntimeRegistry, entry.getPath());
+        }
+      }
+    }
+
+    return CacheDirectory.hash(builder.toString());
   }
 
   /**
    * <p>
+   * Appends the settings of a resolution that don't depend on the root project: the given arguments and the registered
+   * class path variables and containers.
    * </p>
-   * 
+   */
+  private static void appendSettings(StringBuilder builder, boolean resolveRelative, boolean runtimeClasspath,
+      List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    builder.append(resolveRelative).append('|').append(runtimeClasspath).append('\n');
+
+    if (classpathContainerArguments != null) {
+      for (JdtClasspathContainerArgument argument : classpathContainerArguments) {
+        builder.append("argument|").append(argument.getKey()).append('|').append(argument.getValue()).append('\n');
+      }
+    }
+
+    ClassPathElementsRegistry registry = getClassPathElementsRegistry();
+    for (ClassPathVariable variable : sortByName(registry.getClasspathVariables())) {
+      builder.append("variable|").append(variable.getName()).append('|').append(variable.getPath()).append('\n');
+    }
+    for (ClassPathContainer container : sortByName(registry.getClasspathContainer())) {
+      builder.append("container|").append(container.getName());
+      for (File pathEntry : container.getPathEntries()) {
+        builder.append('|').append(pathEntry);
+      }
+      builder.append('\n');
+    }
+  }
+
+  /**
+   * <p>
+   * Appends the JRE that is selected for the given JRE container (see {@link JreContainerResolver}).
+   * </p>
+   */
+  private static void appendJavaRuntime(StringBuilder builder, JavaRuntimeRegistry javaRuntimeRegistry, String path) {
+    path = path.replace('%', ' ');
+    JavaRuntime javaRuntime = null;
+    String key = null;
+    if (path.startsWith(ContainerTypes.VMTYPE_PREFIX)) {
+      key = path.substring(ContainerTypes.VMTYPE_PREFIX.length());
+      if (javaRuntimeRegistry.hasJavaRuntime(key)) {
+        javaRuntime = javaRuntimeRegistry.getJavaRuntime(key);
+      }
+    }
+    if (javaRuntime == null) {
+      javaRuntime = javaRuntimeRegistry.getDefaultJavaRuntime();
+    }
+    builder.append("jre|").append(path).append('|').append(javaRuntime.getLocation());
+    for (File library : javaRuntime.getLibraries()) {
+      builder.append('|').append(library);
+    }
+    builder.append('|').append((key != null) && javaRuntimeRegistry.hasJavaProfile(key)).append('\n');
+  }
+
+  /**
+   * <p>
+   * Computes the fingerprint of the projects with the given names. A project that doesn't exist anymore results in a
+   * fingerprint that differs from any fingerprint computed while it existed.
+   * </p>
+   */
+  private static String getProjectsFingerprint(Workspace workspace, String[] projectNames) {
+    StringBuilder builder = new StringBuilder();
+    for (String projectName : projectNames) {
+      if ((workspace != null) && workspace.hasProject(projectName)) {
+        appendFingerprint(builder, workspace.getProject(projectName));
+      } else {
+        builder.append("missing|").append(projectName).append('\n');
+      }
+    }
+    return CacheDirectory.hash(builder.toString());
+  }
+
+  /**
+   * <p>
+   * Appends the fingerprint of the given project, i.e. its location and its (raw) class path entries.
+   * </p>
+   */
+  private static void appendFingerprint(StringBuilder builder, EclipseProject project) {
+    builder.append("project|").append(project.getSpecifiedName()).append('|').append(project.getFolder()).append('\n');
+    if (project.hasRole(JavaProjectRole.class)) {
+      JavaProjectRole javaProjectRole = project.getRole(JavaProjectRole.class);
+      builder.append("output|").append(javaProjectRole.getDefaultOutputFolder()).append('\n');
+      for (RawClasspathEntry entry : javaProjectRole.getRawClasspathEntries()) {
+        builder.append("entry|").append(entry.getEntryKind()).append('|').append(entry.getPath()).append('|').append(
+            entry.getOutputLocation()).append('|').append(entry.isExported()).append('|').append(entry.getIncludes())
+            .append('|').append(entry.getExcludes()).append('\n');
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the class path of the given projects only depends on data that is covered by the key
+   * and the project fingerprints, so it can be stored on disk.
+   * </p>
+   */
+  private static boolean isPersistable(List<EclipseProject> projects) {
+    if (!CacheDirectory.isEnabled()) {
+      return false;
+    }
+    ClassPathElementsRegistry registry = getClassPathElementsRegistry();
+    for (EclipseProject project : projects) {
+      if (!project.hasRole(JavaProjectRole.class)) {
+        return false;
+      }
+      for (RawClasspathEntry entry : project.getRole(JavaProjectRole.class).getRawClasspathEntries(
+          RawClasspathEntry.CPE_CONTAINER)) {
+        if (!entry.getPath().startsWith(ContainerTypes.JRE_CONTAINER)
+            && !registry.hasClassPathContainer(entry.getPath())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * <p>
+   * Reads the cached class path with the given key from the cache directory.
+   * </p>
+   *
+   * @return the cached class path or <code>null</code> if it doesn't exist or can't be read.
+   */
+  private static CachedClasspath readCachedClasspath(String key) {
+    File cacheFile = CacheDirectory.getCacheFile(AREA, key);
+    if ((cacheFile == null) || !cacheFile.isFile()) {
+      return null;
+    }
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+      if ((input.readInt() != VERSION) || !key.equals(input.readUTF())) {
+        return null;
+      }
+      String[] projectNames = new String[readCount(input)];
+      for (int i = 0; i < projectNames.length; i++) {
+        projectNames[i] = input.readUTF();
+      }
+      String projectsFingerprint = input.readUTF();
+      ResolvedClasspathImpl classpath = new ResolvedClasspathImpl();
+      int count = readCount(input);
+      for (int i = 0; i < count; i++) {
+        classpath.addClasspathEntry(readEntry(input));
+      }
+      if (input.readBoolean()) {
+        classpath.addBootClasspathEntry(readEntry(input));
+      }
+      return new CachedClasspath(classpath, projectNames, projectsFingerprint);
+    } catch (IOException ex) {
+      A4ELogging.debug("Could not read cached class path '%s': %s", cacheFile, ex.toString());
+      return null;
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the given class path to the cache directory.
+   * </p>
+   */
+  private static void writeCachedClasspath(String key, CachedClasspath cachedClasspath) {
+    File cacheFile = CacheDirectory.getCacheFile(AREA, key);
+    if (cacheFile == null) {
+      return;
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeInt(VERSION);
+      output.writeUTF(key);
+      output.writeInt(cachedClasspath.getProjectNames().length);
+      for (String projectName : cachedClasspath.getProjectNames()) {
+        output.writeUTF(projectName);
+      }
+      output.writeUTF(cachedClasspath.getProjectsFingerprint());
+      ResolvedClasspath classpath = cachedClasspath.getClasspath();
+      output.writeInt(classpath.getClasspath().length);
+      for (ResolvedClasspathEntry entry : classpath.getClasspath()) {
+        writeEntry(output, entry);
+      }
+      output.writeBoolean(classpath.hasBootClasspath());
+      if (classpath.hasBootClasspath()) {
+        writeEntry(output, classpath.getBootClasspath());
+      }
+      output.close();
+      CacheDirectory.writeAtomically(cacheFile, bytes.toByteArray());
+    } catch (IOException ex) {
+      // can't happen as we're writing to memory
+      A4ELogging.debug("Could not write cached class path '%s': %s", cacheFile, ex.toString());
+    }
+  }
+
+  private static void writeEntry(DataOutputStream output, ResolvedClasspathEntry entry) throws IOException {
+    writeFiles(output, entry.getClassPathEntries());
+    output.writeBoolean(entry.hasSourcePathEntries());
+    if (entry.hasSourcePathEntries()) {
+      writeFiles(output, entry.getSourcePathEntries());
+    }
+    output.writeBoolean(entry.hasAccessRestrictions());
+    if (entry.hasAccessRestrictions()) {
+      AccessRestrictions accessRestrictions = entry.getAccessRestrictions();
+      output.writeBoolean(accessRestrictions.isExcludeAll());
+      writeStrings(output, accessRestrictions.getPublicPackages());
+      writeStrings(output, accessRestrictions.getPrivatePackages());
+    }
+  }
+
+  private static ResolvedClasspathEntry readEntry(DataInputStream input) throws IOException {
+    File[] classPathEntries = readFiles(input);
+    File[] sourcePathEntries = input.readBoolean() ? readFiles(input) : null;
+    AccessRestrictions accessRestrictions = null;
+    if (input.readBoolean()) {
+      boolean excludeAll = input.readBoolean();
+      accessRestrictions = new AccessRestrictions(readStrings(input), readStrings(input), excludeAll);
+    }
+    return new ResolvedClasspathEntry(classPathEntries, accessRestrictions, sourcePathEntries);
+  }
+
+  private static void writeFiles(DataOutputStream output, File[] files) throws IOException {
+    output.writeInt(files.length);
+    for (File file : files) {
+      output.writeUTF(file.getPath());
+    }
+  }
+
+  private static File[] readFiles(DataInputStream input) throws IOException {
+    File[] result = new File[readCount(input)];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new File(input.readUTF());
+    }
+    return result;
+  }
+
+  private static void writeStrings(DataOutputStream output, Set<String> strings) throws IOException {
+    output.writeInt(strings.size());
+    for (String string : strings) {
+      output.writeUTF(string);
+    }
+  }
+
+  private static Set<String> readStrings(DataInputStream input) throws IOException {
+    int count = readCount(input);
+    Set<String> result = new LinkedHashSet<String>();
+    for (int i = 0; i < count; i++) {
+      result.add(input.readUTF());
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Reads a count and makes sure that it is within the accepted range, so a corrupt file can't cause huge allocations.
+   * </p>
+   */
+  private static int readCount(DataInputStream input) throws IOException {
+    int result = input.readInt();
+    if ((result < 0) || (result > MAX_COUNT)) {
+      throw new IOException("Invalid count " + result);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the given class path elements sorted by their names, so the computed keys don't depend on the order of the
+   * registration.
+   * </p>
+   */
+  private static <T extends ClassPathElement> List<T> sortByName(List<T> elements) {
+    List<T> result = new ArrayList<T>(elements);
+    Collections.sort(result, new Comparator<T>() {
+      public int compare(T o1, T o2) {
+        return o1.getName().compareTo(o2.getName());
+      }
+    });
+    return result;
+  }
+
+  private static ClassPathElementsRegistry getClassPathElementsRegistry() {
+    return ServiceRegistryAccess.instance().getService(ClassPathElementsRegistry.class);
+  }
+
+  /**
+   * <p>
+   * </p>
+   *
    * @return
    */
   public static JdtResolverCache getInstance() {
     return ServiceRegistryAccess.instance().getService(JdtResolverCache.class);
   }
+
+  /**
+   * <p>
+   * A cached class path together with the projects that have been visited while it has been resolved.
+   * </p>
+   */
+  private static final class CachedClasspath {
+
+    /** the class path */
+    private final ResolvedClasspath _classpath;
+
+    /** the names of the visited projects */
+    private final String[]          _projectNames;
+
+    /** the fingerprint of the visited projects */
+    private final String            _projectsFingerprint;
+
+    public CachedClasspath(ResolvedClasspath classpath, String[] projectNames, String projectsFingerprint) {
+      this._classpath = classpath;
+      this._projectNames = projectNames;
+      this._projectsFingerprint = projectsFingerprint;
+    }
+
+    public ResolvedClasspath getClasspath() {
+      return this._classpath;
+    }
+
+    public String[] getProjectNames() {
+      return this._projectNames;
+    }
+
+    public String getProjectsFingerprint() {
+      return this._projectsFingerprint;
+    }
+  }
 }
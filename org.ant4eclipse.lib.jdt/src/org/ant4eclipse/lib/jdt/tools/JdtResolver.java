@@ -11,13 +11,17 @@
  **********************************************************************/
 package org.ant4eclipse.lib.jdt.tools;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.ant4eclipse.lib.core.Assure;
-import org.ant4eclipse.lib.core.util.PerformanceLogging;
+import org.ant4eclipse.lib.core.metrics.Metrics;
+import org.ant4eclipse.lib.core.metrics.Timer;
 import org.ant4eclipse.lib.jdt.internal.tools.ClasspathEntryResolverExecutor;
 import org.ant4eclipse.lib.jdt.internal.tools.ClasspathResolverContextImpl;
 import org.ant4eclipse.lib.jdt.internal.tools.ResolvedClasspathImpl;
+import org.ant4eclipse.lib.jdt.internal.tools.ResolvedProjectCache;
 import org.ant4eclipse.lib.jdt.internal.tools.ResolverJob;
 import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.ClasspathEntryResolver;
 import org.ant4eclipse.lib.jdt.internal.tools.classpathentry.ContainerClasspathEntryResolver;
@@ -32,15 +36,20 @@ import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 
 /**
  * <p>
- * Helper class. Use this class to resolve the class path of a given eclipse project.
+ * Helper class. Use this class to resolve the class path of a given eclipse project (or the class paths of several
+ * eclipse projects).
  * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
 public class JdtResolver {
 
-  /** system property that enables the Jdt resolver cache */
-  private static final boolean ENABLE_CACHE = Boolean.getBoolean("ant4eclipse.enableJdtResolverCache");
+  /** system property that disables the Jdt resolver cache (if set to <code>false</code>) */
+  private static final boolean ENABLE_CACHE      = !"false".equalsIgnoreCase(System
+                                                     .getProperty("ant4eclipse.enableJdtResolverCache"));
+
+  /** the time spent to resolve project class paths */
+  private static final Timer   RESOLVE_CLASSPATH = Metrics.timer("jdt.resolveProjectClasspath");
 
   /**
    * <p>
@@ -59,66 +68,108 @@ public class JdtResolver {
    */
   public static final ResolvedClasspath resolveProjectClasspath(EclipseProject project, boolean resolveRelative,
       boolean isRuntimeClasspath, List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    Assure.notNull("project", project);
 
-    //
-    if (ENABLE_CACHE) {
+    return resolveProjectClasspaths(Collections.singletonList(project), resolveRelative, isRuntimeClasspath,
+        classpathContainerArguments).get(0);
+  }
+
+  /**
+   * <p>
+   * Resolves the class paths of the given eclipse projects. The results of projects that are referenced by several
+   * projects are shared, so each referenced project is only resolved once.
+   * </p>
+   * 
+   * @param projects
+   *          the eclipse projects that should be resolved
+   * @param resolveRelative
+   *          indicates if the class paths should be resolved relative to the workspace or not.
+   * @param isRuntimeClasspath
+   *          indicates if the class paths are runtime class paths or not
+   * @param classpathContainerArguments
+   *          an optional list with class path container arguments
+   * @return the resolved class paths in the order of the given projects
+   */
+  public static final List<ResolvedClasspath> resolveProjectClasspaths(List<EclipseProject> projects,
+      boolean resolveRelative, boolean isRuntimeClasspath,
+      List<JdtClasspathContainerArgument> classpathContainerArguments) {
+    Assure.notNull("projects", projects);
+
+    List<ResolvedClasspath> result = new ArrayList<ResolvedClasspath>(projects.size());
+
+    // create the ClasspathEntryResolverExecutor and the ClasspathEntryResolvers once for all projects
+    ClasspathEntryResolverExecutor executor = new ClasspathEntryResolverExecutor(true);
+    ClasspathEntryResolver[] resolvers = new ClasspathEntryResolver[] { new VariableClasspathEntryResolver(),
+        new ContainerClasspathEntryResolver(), new SourceClasspathEntryResolver(), new ProjectClasspathEntryResolver(),
+        new LibraryClasspathEntryResolver(), new OutputClasspathEntryResolver() };
 
-      // determine the key for the cached classpath
-      String cacheKey = JdtResolverCache.getCacheKey(project, resolveRelative, isRuntimeClasspath);
+    // without the cache the results of referenced projects are only shared between the given projects
+    ResolvedProjectCache resolvedProjectCache = ENABLE_CACHE ? null : new ResolvedProjectCache();
 
-      // try to get ResolvedClasspath from the cache
-      ResolvedClasspath resolvedClasspath = JdtResolverCache.getInstance().getResolvedClasspath(cacheKey);
+    for (EclipseProject project : projects) {
+      Assure.notNull("project", project);
 
-      if (resolvedClasspath == null) {
+      if (ENABLE_CACHE) {
 
-        // Classpath has not been resolved yet -> resolve it now
-        resolvedClasspath = doResolveProjectClasspath(project, resolveRelative, isRuntimeClasspath,
+        // determine the key for the cached classpath
+        String cacheKey = JdtResolverCache.getCacheKey(project, resolveRelative, isRuntimeClasspath,
             classpathContainerArguments);
 
-        // add the resolved classpath to the cache
-        JdtResolverCache.getInstance().storeResolvedClasspath(cacheKey, resolvedClasspath);
-      }
+        // try to get ResolvedClasspath from the cache
+        ResolvedClasspath resolvedClasspath = JdtResolverCache.getInstance().getResolvedClasspath(cacheKey,
+            project.getWorkspace());
+
+        if (resolvedClasspath == null) {
+
+          // Classpath has not been resolved yet -> resolve it now (sharing the results of referenced projects with
+          // previous resolutions)
+          executor.setResolvedProjectCache(JdtResolverCache.getInstance().getResolvedProjectCache(
+              project.getWorkspace(), resolveRelative, isRuntimeClasspath, classpathContainerArguments));
+          resolvedClasspath = doResolveProjectClasspath(executor, resolvers, project, resolveRelative,
+              isRuntimeClasspath, classpathContainerArguments);
 
-      // return the classpath
-      return resolvedClasspath;
+          // add the resolved classpath to the cache (together with all projects it depends on)
+          JdtResolverCache.getInstance().storeResolvedClasspath(cacheKey, resolvedClasspath,
+              executor.getReferencedProjects());
+        }
 
-    } else {
+        result.add(resolvedClasspath);
 
-      // cache is disabled, always re-resolve classpath
-      return doResolveProjectClasspath(project, resolveRelative, isRuntimeClasspath, classpathContainerArguments);
+      } else {
+
+        // cache is disabled, always re-resolve classpath
+        executor.setResolvedProjectCache(resolvedProjectCache);
+        result.add(doResolveProjectClasspath(executor, resolvers, project, resolveRelative, isRuntimeClasspath,
+            classpathContainerArguments));
+      }
     }
+
+    // return the classpaths
+    return result;
   }
 
   /**
    * <p>
    * </p>
    * 
+   * @param executor
+   * @param resolvers
    * @param project
    * @param resolveRelative
    * @param isRuntimeClasspath
    * @param classpathContainerArguments
    * @return
    */
-  private static final ResolvedClasspath doResolveProjectClasspath(EclipseProject project, boolean resolveRelative,
-      boolean isRuntimeClasspath, List<JdtClasspathContainerArgument> classpathContainerArguments) {
+  private static final ResolvedClasspath doResolveProjectClasspath(ClasspathEntryResolverExecutor executor,
+      ClasspathEntryResolver[] resolvers, EclipseProject project, boolean resolveRelative, boolean isRuntimeClasspath,
+      List<JdtClasspathContainerArgument> classpathContainerArguments) {
 
-    Assure.notNull("project", project);
-
-    // Start performance logging
-    PerformanceLogging.start(JdtResolver.class, "doResolveProjectClasspath");
+    long start = RESOLVE_CLASSPATH.start();
 
     // create a ResolverJob
     ResolverJob job = new ResolverJob(project, project.getWorkspace(), resolveRelative, isRuntimeClasspath,
         classpathContainerArguments);
 
-    // create the ClasspathEntryResolverExecutor
-    ClasspathEntryResolverExecutor executor = new ClasspathEntryResolverExecutor(true);
-
-    // create the ClasspathEntryResolvers
-    ClasspathEntryResolver[] resolvers = new ClasspathEntryResolver[] { new VariableClasspathEntryResolver(),
-        new ContainerClasspathEntryResolver(), new SourceClasspathEntryResolver(), new ProjectClasspathEntryResolver(),
-        new LibraryClasspathEntryResolver(), new OutputClasspathEntryResolver() };
-
     // create the result object
     ResolvedClasspathImpl resolvedClasspath = new ResolvedClasspathImpl();
 
@@ -126,8 +177,7 @@ public class JdtResolver {
     executor.resolve(job.getRootProject(), resolvers,
         new ClasspathResolverContextImpl(executor, job, resolvedClasspath));
 
-    // stop performance logging
-    PerformanceLogging.stop(JdtResolver.class, "doResolveProjectClasspath");
+    RESOLVE_CLASSPATH.stop(start);
 
     // return the ResolvedClasspath
     return resolvedClasspath;
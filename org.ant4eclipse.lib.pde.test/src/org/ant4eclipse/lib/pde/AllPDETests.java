@@ -11,14 +11,20 @@
  **********************************************************************/
 package org.ant4eclipse.lib.pde;
 
+import org.ant4eclipse.lib.pde.internal.tools.AbstractBundleAndFeatureSetTest;
+import org.ant4eclipse.lib.pde.internal.tools.BinaryBundleAndFeatureSetTest;
+import org.ant4eclipse.lib.pde.internal.tools.ResolvedStateCacheTest;
+import org.ant4eclipse.lib.pde.internal.tools.TargetPlatformIndexTest;
 import org.ant4eclipse.lib.pde.model.buildproperties.BuildPropertiesParserTest;
 import org.ant4eclipse.lib.pde.model.launcher.SelectedLaunchConfigurationBundleParserTest;
 import org.ant4eclipse.lib.pde.model.launcher.SimpleConfiguratorBundlesTest;
+import org.ant4eclipse.lib.pde.model.pluginproject.PluginProjectRoleIdentifierTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ SelectedLaunchConfigurationBundleParserTest.class, SimpleConfiguratorBundlesTest.class,
-    BuildPropertiesParserTest.class })
+    BuildPropertiesParserTest.class, AbstractBundleAndFeatureSetTest.class, ResolvedStateCacheTest.class,
+    TargetPlatformIndexTest.class, PluginProjectRoleIdentifierTest.class, BinaryBundleAndFeatureSetTest.class })
 public class AllPDETests {
 } /* ENDCLASS */
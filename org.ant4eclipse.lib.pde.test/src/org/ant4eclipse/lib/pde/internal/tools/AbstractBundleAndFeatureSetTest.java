@@ -0,0 +1,135 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.pde.internal.tools;
+
+import org.ant4eclipse.lib.pde.internal.model.featureproject.FeatureManifestImpl;
+import org.ant4eclipse.lib.pde.tools.PdeBuildHelper;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.StateObjectFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.osgi.framework.Version;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AbstractBundleAndFeatureSetTest extends ConfigurableAnt4EclipseTestCase {
+
+  @Test
+  public void highestBundleVersion() {
+    BundleDescription a1 = bundle(1, "a", "1.0.0");
+    BundleDescription a3 = bundle(2, "a", "3.0.0");
+    BundleDescription a2 = bundle(3, "a", "2.0.0");
+    BundleDescription b1 = bundle(4, "b", "1.0.0");
+    BundleDescription b1Duplicate = bundle(5, "b", "1.0.0");
+    TestBundleAndFeatureSet bundleAndFeatureSet = new TestBundleAndFeatureSet();
+    bundleAndFeatureSet._bundles.add(a1);
+    bundleAndFeatureSet._bundles.add(a3);
+    bundleAndFeatureSet._bundles.add(a2);
+    bundleAndFeatureSet._bundles.add(b1);
+    bundleAndFeatureSet._bundles.add(b1Duplicate);
+
+    // the highest version wins, the first one if the versions are equal
+    Assert.assertSame(a3, bundleAndFeatureSet.getBundleDescription("a"));
+    Assert.assertSame(b1, bundleAndFeatureSet.getBundleDescription("b"));
+    Assert.assertNull(bundleAndFeatureSet.getBundleDescription("c"));
+    Assert.assertTrue(bundleAndFeatureSet.containsBundle("a"));
+    Assert.assertFalse(bundleAndFeatureSet.containsBundle("c"));
+    Assert.assertEquals(5, bundleAndFeatureSet.getAllBundleDescriptions().size());
+
+    // the index is rebuilt on refresh
+    bundleAndFeatureSet._bundles.remove(a3);
+    bundleAndFeatureSet.refresh();
+    Assert.assertSame(a2, bundleAndFeatureSet.getBundleDescription("a"));
+  }
+
+  @Test
+  public void highestFeatureVersion() {
+    FeatureDescription f1 = feature("f", "1.0.0");
+    FeatureDescription f2 = feature("f", "2.0.0");
+    FeatureDescription f2Duplicate = feature("f", "2.0.0");
+    FeatureDescription g1 = feature("g", "1.0.0");
+    TestBundleAndFeatureSet bundleAndFeatureSet = new TestBundleAndFeatureSet();
+    bundleAndFeatureSet._features.add(f1);
+    bundleAndFeatureSet._features.add(f2);
+    bundleAndFeatureSet._features.add(f2Duplicate);
+    bundleAndFeatureSet._features.add(g1);
+
+    // the highest version wins, the first one if the versions are equal
+    Assert.assertSame(f2, bundleAndFeatureSet.getFeatureDescription("f"));
+    Assert.assertSame(g1, bundleAndFeatureSet.getFeatureDescription("g"));
+    Assert.assertNull(bundleAndFeatureSet.getFeatureDescription("h"));
+
+    // the first feature with the requested version
+    Assert.assertSame(f1, bundleAndFeatureSet.getFeatureDescription("f", new Version("1.0.0")));
+    Assert.assertSame(f2, bundleAndFeatureSet.getFeatureDescription("f", new Version("2.0.0")));
+    Assert.assertNull(bundleAndFeatureSet.getFeatureDescription("f", new Version("3.0.0")));
+  }
+
+  @Test
+  public void changedContextQualifier() {
+    FeatureDescription f1 = feature("f", "1.0.0.qualifier");
+    TestBundleAndFeatureSet bundleAndFeatureSet = new TestBundleAndFeatureSet();
+    bundleAndFeatureSet._features.add(f1);
+
+    String contextQualifier = PdeBuildHelper.CONTEXT_QUALIFIER;
+    try {
+      PdeBuildHelper.CONTEXT_QUALIFIER = "a";
+      Assert.assertSame(f1, bundleAndFeatureSet.getFeatureDescription("f", new Version("1.0.0.a")));
+
+      // the versions are resolved again with the new context qualifier
+      PdeBuildHelper.CONTEXT_QUALIFIER = "b";
+      Assert.assertNull(bundleAndFeatureSet.getFeatureDescription("f", new Version("1.0.0.a")));
+      Assert.assertSame(f1, bundleAndFeatureSet.getFeatureDescription("f", new Version("1.0.0.b")));
+    } finally {
+      PdeBuildHelper.CONTEXT_QUALIFIER = contextQualifier;
+    }
+  }
+
+  private static BundleDescription bundle(long id, String symbolicName, String version) {
+    return StateObjectFactory.defaultFactory.createBundleDescription(id, symbolicName, new Version(version), "/plugins/"
+        + symbolicName + "_" + id, null, null, null, null, false, true, true, null, null, null, null);
+  }
+
+  private static FeatureDescription feature(String id, String version) {
+    FeatureManifestImpl featureManifest = new FeatureManifestImpl();
+    featureManifest.setId(id);
+    featureManifest.setVersion(new Version(version));
+    return new FeatureDescription(id, featureManifest);
+  }
+
+  /**
+   * A bundle and feature set that contains the given bundles and features.
+   */
+  private static class TestBundleAndFeatureSet extends AbstractBundleAndFeatureSet {
+
+    private List<BundleDescription>  _bundles  = new ArrayList<BundleDescription>();
+
+    private List<FeatureDescription> _features = new ArrayList<FeatureDescription>();
+
+    public TestBundleAndFeatureSet() {
+      super("test");
+    }
+
+    @Override
+    protected void readBundlesAndFeatures() {
+      for (BundleDescription bundle : this._bundles) {
+        addBundleDescription(bundle);
+      }
+      for (FeatureDescription feature : this._features) {
+        addFeaturesDescription(feature);
+      }
+    }
+  }
+
+} /* ENDCLASS */
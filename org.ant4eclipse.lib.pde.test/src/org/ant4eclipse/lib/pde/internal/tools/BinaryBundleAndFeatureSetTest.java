@@ -0,0 +1,155 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.pde.internal.tools;
+
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.JUnitUtilities;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BinaryBundleAndFeatureSetTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private File          _location;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    this._location = this._testDirectory.createSubDirectory("target");
+    this._testDirectory.createSubDirectory("target/plugins");
+    this._testDirectory.createSubDirectory("target/features");
+  }
+
+  @Override
+  public void dispose() {
+    System.getProperties().remove(BinaryBundleAndFeatureSet.THREAD_COUNT_PROPERTY_NAME);
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void threadCountIndependence() {
+    for (int i = 0; i < 12; i++) {
+      createPluginDirectory("plugin" + i, manifest("org.example.plugin" + i));
+    }
+    for (int i = 0; i < 4; i++) {
+      JUnitUtilities.createJarFile(new File(this._location, "plugins/jar" + i + ".jar"), new String[] {
+          "Bundle-ManifestVersion", "2", "Bundle-SymbolicName", "org.example.jar" + i, "Bundle-Version", "1.0.0" },
+          "a/A.class", "the content of class A");
+    }
+    createPluginDirectory("system", manifest("org.example.system") + "Eclipse-SystemBundle: true\n");
+
+    // a directory that isn't a plugin
+    this._testDirectory.createSubDirectory("target/plugins/noplugin");
+
+    this._testDirectory.createSubDirectory("target/features/feature");
+    this._testDirectory.createFile("target/features/feature/feature.xml",
+        "<feature id=\"org.example.feature\" version=\"1.0.0\"></feature>");
+
+    // 17 bundles and the feature
+    List<String> sequential = read(1);
+    Assert.assertEquals(18, sequential.size());
+    Assert.assertEquals(sequential, read(4));
+    Assert.assertEquals(sequential, read(16));
+  }
+
+  @Test
+  public void brokenManifest() {
+    // bundle manifests with invalid versions (the first one in the order of the plugins is reported)
+    createPluginDirectory("broken1", manifest("org.example.broken1").replace("1.0.0", "1.0.0.invalid.version"));
+    createPluginDirectory("broken2", manifest("org.example.broken2").replace("1.0.0", "2.0.0.invalid.version"));
+    assertReportedAlike();
+  }
+
+  @Test
+  public void unreadableJar() {
+    Utilities.writeFile(new File(this._location, "plugins/broken.jar"), new byte[] { 'P', 'K', 5, 6 });
+    assertReportedAlike();
+  }
+
+  /**
+   * Asserts that the broken plugin is reported the same way whether the target platform is read sequentially or
+   * concurrently.
+   */
+  private void assertReportedAlike() {
+    for (int i = 0; i < 8; i++) {
+      createPluginDirectory("plugin" + i, manifest("org.example.plugin" + i));
+    }
+
+    RuntimeException sequential = readBroken(1);
+    RuntimeException concurrent = readBroken(4);
+    Assert.assertEquals(sequential.getClass(), concurrent.getClass());
+    Assert.assertEquals(sequential.getMessage(), concurrent.getMessage());
+    Assert.assertEquals(sequential.getCause().getClass(), concurrent.getCause().getClass());
+  }
+
+  /**
+   * Reads the target platform with the given number of threads and returns the symbolic name, the relative id and the
+   * location of each bundle (in the order of the bundles) and the ids of the features.
+   */
+  private List<String> read(int threads) {
+    BinaryBundleAndFeatureSet bundleAndFeatureSet = newBundleAndFeatureSet(threads);
+    bundleAndFeatureSet.initialize();
+
+    List<BundleDescription> bundleDescriptions = bundleAndFeatureSet.getAllBundleDescriptions();
+    long firstId = Long.MAX_VALUE;
+    for (BundleDescription bundleDescription : bundleDescriptions) {
+      if (bundleDescription.getBundleId() != 0) {
+        firstId = Math.min(firstId, bundleDescription.getBundleId());
+      }
+    }
+
+    List<String> result = new ArrayList<String>();
+    for (BundleDescription bundleDescription : bundleDescriptions) {
+      long id = bundleDescription.getBundleId();
+      result.add(bundleDescription.getSymbolicName() + ":" + (id == 0 ? 0 : id - firstId + 1) + ":"
+          + bundleDescription.getLocation());
+    }
+    result.add(bundleAndFeatureSet.getFeatureDescription("org.example.feature").getFeatureManifest().getId());
+    return result;
+  }
+
+  private RuntimeException readBroken(int threads) {
+    try {
+      newBundleAndFeatureSet(threads).initialize();
+    } catch (RuntimeException ex) {
+      return ex;
+    }
+    Assert.fail("Expected the broken plugins to be reported.");
+    return null;
+  }
+
+  private BinaryBundleAndFeatureSet newBundleAndFeatureSet(int threads) {
+    System.setProperty(BinaryBundleAndFeatureSet.THREAD_COUNT_PROPERTY_NAME, String.valueOf(threads));
+    return new BinaryBundleAndFeatureSet(this._location);
+  }
+
+  private void createPluginDirectory(String name, String manifest) {
+    this._testDirectory.createSubDirectory("target/plugins/" + name + "/META-INF");
+    this._testDirectory.createFile("target/plugins/" + name + "/META-INF/MANIFEST.MF", manifest);
+  }
+
+  private static String manifest(String symbolicName) {
+    return "Manifest-Version: 1.0\nBundle-ManifestVersion: 2\nBundle-SymbolicName: " + symbolicName
+        + "\nBundle-Version: 1.0.0\n";
+  }
+
+} /* ENDCLASS */
@@ -0,0 +1,109 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.pde.internal.tools;
+
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.lib.pde.internal.model.pluginproject.BundleDescriptionLoader;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.State;
+import org.eclipse.osgi.service.resolver.StateObjectFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class ResolvedStateCacheTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    System.setProperty(CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME, new File(this._testDirectory.getRootDir(),
+        "cache").getAbsolutePath());
+    createPlugin("a", "1.0.0", "Export-Package: a\n");
+    createPlugin("b", "1.0.0", "Import-Package: a,missing\n");
+  }
+
+  @Override
+  public void dispose() {
+    System.getProperties().remove(CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME);
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void getKey() {
+    Properties platformProperties = new Properties();
+    String key = ResolvedStateCache.getKey(parsePlugins(), platformProperties);
+    Assert.assertEquals(key, ResolvedStateCache.getKey(parsePlugins(), platformProperties));
+
+    // a changed bundle manifest
+    createPlugin("b", "1.0.1", "Import-Package: a,missing\n");
+    String changedKey = ResolvedStateCache.getKey(parsePlugins(), platformProperties);
+    Assert.assertFalse(key.equals(changedKey));
+
+    // changed platform properties
+    platformProperties.setProperty("osgi.os", "linux");
+    Assert.assertFalse(changedKey.equals(ResolvedStateCache.getKey(parsePlugins(), platformProperties)));
+  }
+
+  @Test
+  public void readState() {
+    Properties platformProperties = new Properties();
+    List<BundleDescription> bundleDescriptions = parsePlugins();
+    String key = ResolvedStateCache.getKey(bundleDescriptions, platformProperties);
+    Assert.assertNull(ResolvedStateCache.readState(key, bundleDescriptions, platformProperties));
+
+    State state = StateObjectFactory.defaultFactory.createState(true);
+    for (BundleDescription bundleDescription : bundleDescriptions) {
+      state.addBundle(StateObjectFactory.defaultFactory.createBundleDescription(bundleDescription));
+    }
+    state.setPlatformProperties(platformProperties);
+    state.resolve();
+    ResolvedStateCache.writeState(key, state);
+
+    // the unresolved bundle is resolved again, so its resolver errors are available
+    bundleDescriptions = parsePlugins();
+    State cached = ResolvedStateCache.readState(key, bundleDescriptions, platformProperties);
+    Assert.assertNotNull(cached);
+    Assert.assertEquals(2, cached.getBundles().length);
+    BundleDescription a = cached.getBundleByLocation(bundleDescriptions.get(0).getLocation());
+    BundleDescription b = cached.getBundleByLocation(bundleDescriptions.get(1).getLocation());
+    Assert.assertTrue(a.isResolved());
+    Assert.assertFalse(b.isResolved());
+    Assert.assertTrue(cached.getResolverErrors(b).length > 0);
+    Assert.assertSame(bundleDescriptions.get(1).getUserObject(), b.getUserObject());
+  }
+
+  private void createPlugin(String name, String version, String headers) {
+    this._testDirectory.createSubDirectory("plugins/" + name + "/META-INF");
+    this._testDirectory.createFile("plugins/" + name + "/META-INF/MANIFEST.MF",
+        "Manifest-Version: 1.0\nBundle-ManifestVersion: 2\nBundle-SymbolicName: " + name + "\nBundle-Version: "
+            + version + "\n" + headers);
+  }
+
+  private List<BundleDescription> parsePlugins() {
+    List<BundleDescription> result = new ArrayList<BundleDescription>();
+    for (String name : new String[] { "a", "b" }) {
+      result.add(BundleDescriptionLoader.parsePlugin(new File(this._testDirectory.getRootDir(), "plugins/" + name)));
+    }
+    return result;
+  }
+
+} /* ENDCLASS */
@@ -0,0 +1,159 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.pde.internal.tools;
+
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.Manifest;
+
+public class TargetPlatformIndexTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory _testDirectory;
+
+  private File          _location;
+
+  private File          _plugin;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testDirectory = new TestDirectory();
+    System.setProperty(CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME, new File(this._testDirectory.getRootDir(),
+        "cache").getAbsolutePath());
+    this._location = this._testDirectory.createSubDirectory("target");
+    this._plugin = this._testDirectory.createSubDirectory("target/plugin");
+    this._testDirectory.createSubDirectory("target/plugin/META-INF");
+    this._testDirectory.createFile("target/plugin/META-INF/MANIFEST.MF", manifest("1.0.0"));
+  }
+
+  @Override
+  public void dispose() {
+    System.getProperties().remove(CacheDirectory.CACHE_DIRECTORY_PROPERTY_NAME);
+    this._testDirectory.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void persistentIndex() {
+    Assert.assertEquals("1.0.0", getBundleVersion(new TargetPlatformIndex(this._location)));
+
+    // the manifest is modified, but its fingerprint is unchanged
+    File manifestFile = new File(this._plugin, "META-INF/MANIFEST.MF");
+    long lastModified = manifestFile.lastModified();
+    this._testDirectory.createFile("target/plugin/META-INF/MANIFEST.MF", manifest("2.0.0"));
+    Assert.assertTrue(manifestFile.setLastModified(lastModified));
+    Assert.assertEquals("1.0.0", getBundleVersion(new TargetPlatformIndex(this._location)));
+  }
+
+  @Test
+  public void damagedIndex() throws IOException {
+    File cacheFile = CacheDirectory.getCacheFile("targetPlatformIndex", this._location.getAbsolutePath());
+    String plugin = this._plugin.getAbsolutePath();
+    String location = this._location.getAbsolutePath();
+
+    // invalid bundle count, header count and header length
+    assertDamaged(cacheFile, header(location).writeInt(Integer.MAX_VALUE));
+    assertDamaged(cacheFile, header(location).writeInt(-2));
+    assertDamaged(cacheFile, header(location).writeInt(1).writeUTF(plugin).writeLong(0).writeLong(0)
+        .writeBoolean(true).writeInt(Integer.MAX_VALUE));
+    assertDamaged(cacheFile, header(location).writeInt(1).writeUTF(plugin).writeLong(0).writeLong(0)
+        .writeBoolean(true).writeInt(2).writeInt(Integer.MAX_VALUE));
+
+    // a feature with an invalid version
+    assertDamaged(cacheFile, header(location).writeInt(0).writeInt(1).writeUTF(location + "/feature").writeLong(0)
+        .writeLong(0).writeBoolean(true).writeString("feature").writeString("no version"));
+
+    // a truncated index
+    assertDamaged(cacheFile, header(location).writeInt(1).writeUTF(plugin));
+  }
+
+  private void assertDamaged(File cacheFile, Output output) throws IOException {
+    FileOutputStream outputStream = new FileOutputStream(cacheFile);
+    try {
+      outputStream.write(output.toByteArray());
+    } finally {
+      outputStream.close();
+    }
+
+    // the damaged index is ignored and replaced
+    Assert.assertEquals("1.0.0", getBundleVersion(new TargetPlatformIndex(this._location)));
+    Assert.assertEquals("1.0.0", getBundleVersion(new TargetPlatformIndex(this._location)));
+  }
+
+  private String getBundleVersion(TargetPlatformIndex index) {
+    index.beginUpdate();
+    Manifest manifest = index.getBundleManifest(this._plugin);
+    index.endUpdate();
+    return manifest.getMainAttributes().getValue("Bundle-Version");
+  }
+
+  private static String manifest(String version) {
+    return "Manifest-Version: 1.0\nBundle-ManifestVersion: 2\nBundle-SymbolicName: plugin\nBundle-Version: " + version
+        + "\n";
+  }
+
+  private static Output header(String location) throws IOException {
+    return new Output().writeInt(1).writeUTF(location);
+  }
+
+  /**
+   * Writes the content of an index file.
+   */
+  private static class Output {
+
+    private ByteArrayOutputStream _bytes  = new ByteArrayOutputStream();
+
+    private DataOutputStream      _output = new DataOutputStream(this._bytes);
+
+    public Output writeInt(int value) throws IOException {
+      this._output.writeInt(value);
+      return this;
+    }
+
+    public Output writeLong(long value) throws IOException {
+      this._output.writeLong(value);
+      return this;
+    }
+
+    public Output writeBoolean(boolean value) throws IOException {
+      this._output.writeBoolean(value);
+      return this;
+    }
+
+    public Output writeUTF(String value) throws IOException {
+      this._output.writeUTF(value);
+      return this;
+    }
+
+    public Output writeString(String value) throws IOException {
+      byte[] bytes = value.getBytes("UTF-8");
+      this._output.writeInt(bytes.length);
+      this._output.write(bytes);
+      return this;
+    }
+
+    public byte[] toByteArray() throws IOException {
+      this._output.flush();
+      return this._bytes.toByteArray();
+    }
+  }
+
+} /* ENDCLASS */
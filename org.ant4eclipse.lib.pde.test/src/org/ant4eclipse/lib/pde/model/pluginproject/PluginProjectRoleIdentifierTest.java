@@ -0,0 +1,112 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.pde.model.pluginproject;
+
+import org.ant4eclipse.lib.pde.internal.model.pluginproject.BundleDescriptionLoader;
+import org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry.WorkspaceRegistryImpl;
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.role.ProjectRole;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.DefaultEclipseWorkspaceDefinition;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceDefinition;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.EclipseProjectBuilder;
+import org.ant4eclipse.testframework.PdeProjectBuilder;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class PluginProjectRoleIdentifierTest extends ConfigurableAnt4EclipseTestCase {
+
+  /** the number of plugin projects of the test workspace */
+  private static final int    PLUGIN_PROJECTS = 8;
+
+  private TestDirectory       _testWorkspace;
+
+  private WorkspaceDefinition _definition;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testWorkspace = new TestDirectory();
+    for (int i = 0; i < PLUGIN_PROJECTS; i++) {
+      PdeProjectBuilder.getPreConfiguredPdeProjectBuilder("plugin" + i).createIn(this._testWorkspace.getRootDir());
+      if (i % 3 == 0) {
+        new EclipseProjectBuilder("simple" + i).createIn(this._testWorkspace.getRootDir());
+      }
+    }
+    this._definition = new DefaultEclipseWorkspaceDefinition(this._testWorkspace.getRootDir());
+  }
+
+  @Override
+  public void dispose() {
+    System.getProperties().remove(WorkspaceRegistryImpl.THREAD_COUNT_PROPERTY_NAME);
+    this._testWorkspace.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void bundleIdsDontDependOnThreadCount() {
+    List<String> sequential = register(1);
+    List<String> parallel = register(4);
+
+    Assert.assertEquals(sequential, parallel);
+    Assert.assertEquals(PLUGIN_PROJECTS + (PLUGIN_PROJECTS + 2) / 3, sequential.size());
+  }
+
+  /**
+   * Registers the test workspace with the given number of threads and describes its projects in the order of the
+   * project folders. The bundle ids are relative to the id of the first plugin project.
+   */
+  private List<String> register(int threadCount) {
+    System.setProperty(WorkspaceRegistryImpl.THREAD_COUNT_PROPERTY_NAME, String.valueOf(threadCount));
+    WorkspaceRegistryImpl registry = new WorkspaceRegistryImpl();
+    registry.initialize();
+    try {
+      Workspace workspace = registry.registerWorkspace("ws", this._definition);
+      List<String> result = new ArrayList<String>();
+      long firstBundleId = BundleDescriptionLoader.PROVISIONAL_BUNDLE_ID;
+      int pluginProjects = 0;
+      for (File projectFolder : this._definition.getProjectFolders()) {
+        EclipseProject project = workspace.getProject(projectFolder.getName());
+        Set<String> roles = new TreeSet<String>();
+        for (ProjectRole role : project.getRoles()) {
+          roles.add(role.getName());
+        }
+        String description = project.getSpecifiedName() + roles;
+        if (project.hasRole(PluginProjectRole.class)) {
+          BundleDescription bundleDescription = project.getRole(PluginProjectRole.class).getBundleDescription();
+          Assert.assertTrue(bundleDescription.getBundleId() > 0);
+          if (firstBundleId == BundleDescriptionLoader.PROVISIONAL_BUNDLE_ID) {
+            firstBundleId = bundleDescription.getBundleId();
+          }
+
+          // the ids are assigned in the order of the project folders
+          Assert.assertEquals(pluginProjects++, bundleDescription.getBundleId() - firstBundleId);
+          description += bundleDescription.getSymbolicName() + "@" + (bundleDescription.getBundleId() - firstBundleId);
+        }
+        result.add(description);
+      }
+      return result;
+    } finally {
+      registry.dispose();
+    }
+  }
+
+} /* ENDCLASS */
@@ -98,6 +98,10 @@ public class PdeExceptionCode extends ExceptionCode {
   @NLSMessage("The value '%s' for %s is not allowed.")
   public static PdeExceptionCode INVALID_CONFIGURATION_VALUE;
 
+  /** - */
+  @NLSMessage("Reading the target platform location '%s' has been interrupted.")
+  public static PdeExceptionCode TARGET_PLATFORM_READING_INTERRUPTED;
+
   static {
     NLS.initialize(PdeExceptionCode.class);
   }
@@ -17,6 +17,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -37,7 +38,10 @@ public class BundleDescriptionLoader {
 
   /** - */
   // TODO: ueberarbeiten..
-  private static long              COUNTER  = 1l;
+  private static AtomicLong        COUNTER  = new AtomicLong(1);
+
+  /** the id of a bundle description whose final id hasn't been assigned yet (see {@link #assignBundleId}) */
+  public static final long         PROVISIONAL_BUNDLE_ID = -1;
 
   /**
    * <p>
@@ -51,29 +55,93 @@ public class BundleDescriptionLoader {
    */
   public static BundleDescription loadFromPluginProject(EclipseProject project) throws FileNotFoundException,
       IOException, BundleException {
+    return loadFromPluginProject(project, false);
+  }
+
+  /**
+   * <p>
+   * Creates the {@link BundleDescription} of the given plugin project. If a provisional id is requested, the bundle
+   * description (unless it describes the system bundle) gets the id {@link #PROVISIONAL_BUNDLE_ID}, so the plugin
+   * projects of a workspace can be read concurrently and get their ids in a defined order afterwards (see
+   * {@link #assignBundleId(BundleDescription)}).
+   * </p>
+   * 
+   * @param project
+   *          the plugin project
+   * @param provisionalId
+   *          <code>true</code> if the bundle description should get a provisional id
+   * @return the {@link BundleDescription} of the given plugin project.
+   * @throws IOException
+   * @throws FileNotFoundException
+   * @throws BundleException
+   */
+  public static BundleDescription loadFromPluginProject(EclipseProject project, boolean provisionalId)
+      throws FileNotFoundException, IOException, BundleException {
     Assure.notNull("project", project);
 
     File manifestFile = project.getChild(Constants.OSGI_BUNDLE_MANIFEST);
     // TODO: handle projects with plugin.xml that may not have a MANIFEST-file
     Manifest manifest = new Manifest(new FileInputStream(manifestFile));
 
-    BundleDescription description = createBundleDescription(manifest, project.getFolder().getAbsolutePath(), project);
+    long bundleId = provisionalId && !isSystemBundle(manifest) ? PROVISIONAL_BUNDLE_ID : reserveBundleId(manifest);
+    BundleDescription description = createBundleDescription(manifest, project.getFolder().getAbsolutePath(), project,
+        bundleId);
     BundleSource.getBundleSource(description);
     return description;
   }
 
-  private static BundleDescription createBundleDescription(Manifest manifest, String path, Object source)
-      throws BundleException {
+  /**
+   * <p>
+   * Returns a bundle description with the next free id for the given bundle description if the latter has a
+   * {@link #PROVISIONAL_BUNDLE_ID provisional id}. The returned bundle description shares the {@link BundleSource} of
+   * the given one.
+   * </p>
+   * 
+   * @param description
+   *          the bundle description
+   * @return the given bundle description if it has a final id, a new bundle description otherwise.
+   * @throws BundleException
+   */
+  public static BundleDescription assignBundleId(BundleDescription description) throws BundleException {
+    Assure.notNull("description", description);
+    if (description.getBundleId() != PROVISIONAL_BUNDLE_ID) {
+      return description;
+    }
+
+    BundleSource bundleSource = BundleSource.getBundleSource(description);
+    Manifest manifest = bundleSource.getBundleManifest();
+    BundleDescription result = _factory.createBundleDescription(null, convertManifest(manifest), description
+        .getLocation(), reserveBundleId(manifest));
+    result.setUserObject(bundleSource);
+    return result;
+  }
 
-    long counter = isSystemBundle(manifest) ? 0 : COUNTER++;
+  private static BundleDescription createBundleDescription(Manifest manifest, String path, Object source,
+      long bundleId) throws BundleException {
 
     Properties manifestProperties = convertManifest(manifest);
-    BundleDescription bundleDescription = _factory.createBundleDescription(null, manifestProperties, path, counter);
+    BundleDescription bundleDescription = _factory.createBundleDescription(null, manifestProperties, path, bundleId);
 
     bundleDescription.setUserObject(new BundleSource(source, manifest));
     return bundleDescription;
   }
 
+  /**
+   * <p>
+   * Returns the id for the bundle with the given manifest. The system bundle always gets the id <code>0</code>, all
+   * other bundles get the next free id. Callers that create bundle descriptions concurrently must reserve the ids in a
+   * defined order to get deterministic ids.
+   * </p>
+   * 
+   * @param manifest
+   *          the bundle manifest
+   * @return the id for the bundle with the given manifest.
+   */
+  public static long reserveBundleId(Manifest manifest) {
+    Assure.notNull("manifest", manifest);
+    return isSystemBundle(manifest) ? 0 : COUNTER.getAndIncrement();
+  }
+
   private static boolean isSystemBundle(Manifest manifest) {
     String isSystemBundle = manifest.getMainAttributes().getValue("Eclipse-SystemBundle");
     return "true".equals(isSystemBundle);
@@ -107,15 +175,33 @@ public class BundleDescriptionLoader {
    * @throws FileParserException
    */
   public static BundleDescription parsePlugin(File file) {
+    Manifest manifest = readBundleManifest(file);
+    return manifest != null ? createBundleDescription(file, manifest, reserveBundleId(manifest)) : null;
+  }
+
+  /**
+   * <p>
+   * Reads the bundle manifest of the given plugin (which might be a jar-file or a directory). Returns
+   * <code>null</code> if the plugin doesn't contain a bundle manifest.
+   * </p>
+   * <p>
+   * This method doesn't modify any shared state, so the manifests of several plugins can be read concurrently.
+   * </p>
+   * 
+   * @param file
+   *          the plugin
+   * @return the bundle manifest of the plugin or <code>null</code>.
+   */
+  public static Manifest readBundleManifest(File file) {
     Assure.exists("file", file);
-    BundleDescription description = null;
+    Manifest manifest = null;
     try {
       if (file.isFile() && file.getName().endsWith(".jar")) {
-        description = parsePluginJarFile(file);
+        manifest = readPluginJarFileManifest(file);
       } else if (file.isDirectory()) {
-        description = parsePluginDirectory(file);
+        manifest = readPluginDirectoryManifest(file);
       }
-      if (description == null && A4ELogging.isDebuggingEnabled()) {
+      if (manifest == null && A4ELogging.isDebuggingEnabled()) {
         A4ELogging.debug(PdeExceptionCode.WARNING_FILE_DOES_NOT_CONTAIN_BUNDLE_MANIFEST_FILE.getMessage(),
             file.getAbsoluteFile());
       }
@@ -123,24 +209,51 @@ public class BundleDescriptionLoader {
       throw new RuntimeException(e.getMessage(), e);
     } catch (IOException e) {
       throw new RuntimeException(e.getMessage(), e);
+    }
+
+    return manifest;
+  }
+
+  /**
+   * <p>
+   * Creates the {@link BundleDescription} for the given plugin.
+   * </p>
+   * 
+   * @param file
+   *          the plugin (a jar-file or a directory)
+   * @param manifest
+   *          the bundle manifest of the plugin (see {@link #readBundleManifest(File)})
+   * @param bundleId
+   *          the id of the bundle (see {@link #reserveBundleId(Manifest)})
+   * @return the {@link BundleDescription} for the given plugin.
+   */
+  public static BundleDescription createBundleDescription(File file, Manifest manifest, long bundleId) {
+    Assure.notNull("file", file);
+    Assure.notNull("manifest", manifest);
+    try {
+      return createBundleDescription(manifest, file.getAbsolutePath(), file, bundleId);
     } catch (BundleException e) {
+      if (file.isFile()) {
+        throw new RuntimeException("Exception while parsing plugin jar '" + file.getName() + "'!", e);
+      }
       throw new RuntimeException(e.getMessage(), e);
     }
-
-    return description;
   }
 
-  private static BundleDescription parsePluginJarFile(File file) {
+  private static Manifest readPluginJarFileManifest(File file) {
     Assure.isFile("file", file);
 
     try {
       // create jar file
       JarFile jarFile = new JarFile(file);
-
-      // support for plugins based on the osgi bundle model
-      Manifest manifest = jarFile.getManifest();
-      if ((manifest != null) && isBundleManifest(manifest)) {
-        return createBundleDescription(manifest, file.getAbsolutePath(), file);
+      try {
+        // support for plugins based on the osgi bundle model
+        Manifest manifest = jarFile.getManifest();
+        if ((manifest != null) && isBundleManifest(manifest)) {
+          return manifest;
+        }
+      } finally {
+        jarFile.close();
       }
     } catch (Exception e) {
       throw new RuntimeException("Exception while parsing plugin jar '" + file.getName() + "'!", e);
@@ -154,28 +267,31 @@ public class BundleDescriptionLoader {
   }
 
   /**
-   * Returns the plugin descriptor for the given plugin directory.
+   * Returns the bundle manifest for the given plugin directory.
    * 
    * @param directory
    *          the plugin directory.
-   * @return the plugin descriptor for the given plugin directory.
-   * @throws FileParserException
+   * @return the bundle manifest for the given plugin directory.
    * @throws IOException
    * @throws FileNotFoundException
-   * @throws BundleException
    */
-  private static BundleDescription parsePluginDirectory(File directory) throws FileNotFoundException, IOException,
-      BundleException {
+  private static Manifest readPluginDirectoryManifest(File directory) throws FileNotFoundException, IOException {
 
     Assure.isDirectory("directory", directory);
 
     // support for plugins based on the osgi bundle model
     File bundleManifestFile = new File(directory, Constants.OSGI_BUNDLE_MANIFEST);
     if (bundleManifestFile.isFile()) {
-      Manifest manifest = new Manifest(new FileInputStream(bundleManifestFile));
+      Manifest manifest;
+      FileInputStream inputStream = new FileInputStream(bundleManifestFile);
+      try {
+        manifest = new Manifest(inputStream);
+      } finally {
+        inputStream.close();
+      }
 
       if (isBundleManifest(manifest)) {
-        return createBundleDescription(manifest, directory.getAbsolutePath(), directory);
+        return manifest;
       }
     }
 
@@ -43,12 +43,27 @@ public class FeatureDescriptionLoader {
    * @return the feature description
    */
   public static FeatureDescription parseFeature(File file) {
+    FeatureManifest featureManifest = readFeatureManifest(file);
+    return featureManifest != null ? new FeatureDescription(file, featureManifest) : null;
+  }
+
+  /**
+   * <p>
+   * Reads the feature manifest of the given feature file. If the file doesn't contain a feature manifest,
+   * <code>null</code> will be returned.
+   * </p>
+   * 
+   * @param file
+   *          the feature file
+   * @return the feature manifest
+   */
+  public static FeatureManifest readFeatureManifest(File file) {
     Assure.exists("file", file);
 
     if (file.isFile() && file.getName().endsWith(".jar")) {
-      return parseFeatureJarFile(file);
+      return readFeatureJarFile(file);
     } else if (file.isDirectory()) {
-      return parseFeatureDirectory(file);
+      return readFeatureDirectory(file);
     }
 
     if (A4ELogging.isDebuggingEnabled()) {
@@ -62,33 +77,35 @@ public class FeatureDescriptionLoader {
 
   /**
    * <p>
-   * Parses a {@link FeatureDescription} from a given feature jar file.
+   * Reads the {@link FeatureManifest} from a given feature jar file.
    * </p>
    * 
    * @param file
    *          the given feature jar file.
-   * @return the {@link FeatureDescription}
+   * @return the {@link FeatureManifest}
    */
-  private static FeatureDescription parseFeatureJarFile(File file) {
+  private static FeatureManifest readFeatureJarFile(File file) {
     Assure.isFile("file", file);
 
     try {
       // create jar file
       JarFile jarFile = new JarFile(file);
+      try {
 
-      // get the feature manifest
-      ZipEntry zipEntry = jarFile.getEntry(Constants.FEATURE_MANIFEST);
+        // get the feature manifest
+        ZipEntry zipEntry = jarFile.getEntry(Constants.FEATURE_MANIFEST);
 
-      // return null if no feature manifest
-      if (zipEntry == null) {
-        return null;
-      }
+        // return null if no feature manifest
+        if (zipEntry == null) {
+          return null;
+        }
 
-      // parse the feature manifest
-      FeatureManifest featureManifest = FeatureManifestParser.parseFeature(jarFile.getInputStream(zipEntry));
+        // parse the feature manifest
+        return FeatureManifestParser.parseFeature(jarFile.getInputStream(zipEntry));
 
-      // return the feature description
-      return new FeatureDescription(file, featureManifest);
+      } finally {
+        jarFile.close();
+      }
 
     } catch (Exception e) {
       // throw new RuntimeException();
@@ -99,16 +116,16 @@ public class FeatureDescriptionLoader {
 
   /**
    * <p>
-   * Parses the feature description for the given (feature) directory. The directory must contain a valid
+   * Reads the feature manifest for the given (feature) directory. The directory must contain a valid
    * <code>feature.xml</code> file, otherwise this method returns <code>null</code>.
    * </p>
    * 
    * @param directory
    *          the feature directory
-   * @return the {@link FeatureDescription} or <code>null</code>, if the directory doesn't contain a
+   * @return the {@link FeatureManifest} or <code>null</code>, if the directory doesn't contain a
    *         <code>feature.xml</code> file, the method returns <code>null</code>.
    */
-  private static FeatureDescription parseFeatureDirectory(File directory) {
+  private static FeatureManifest readFeatureDirectory(File directory) {
     Assure.isDirectory("directory", directory);
 
     try {
@@ -121,10 +138,12 @@ public class FeatureDescriptionLoader {
       }
 
       // parse the feature manifest
-      FeatureManifest featureManifest = FeatureManifestParser.parseFeature(new FileInputStream(featureManifestFile));
-
-      // return the feature description
-      return new FeatureDescription(directory, featureManifest);
+      FileInputStream inputStream = new FileInputStream(featureManifestFile);
+      try {
+        return FeatureManifestParser.parseFeature(inputStream);
+      } finally {
+        inputStream.close();
+      }
 
     } catch (Exception e) {
       // throw new RuntimeException(e.getMessage(), e);
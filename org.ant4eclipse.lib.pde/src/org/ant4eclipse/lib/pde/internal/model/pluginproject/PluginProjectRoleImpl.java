@@ -89,6 +89,19 @@ public class PluginProjectRoleImpl extends AbstractProjectRole implements Plugin
     return this._bundleDescription;
   }
 
+  /**
+   * <p>
+   * Replaces the bundle description (e.g. to assign the final bundle id).
+   * </p>
+   * 
+   * @param description
+   *          the bundle description. Not <code>null</code>.
+   */
+  public void setBundleDescription(BundleDescription description) {
+    Assure.notNull("description", description);
+    this._bundleDescription = description;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -11,9 +11,10 @@
  **********************************************************************/
 package org.ant4eclipse.lib.pde.internal.tools;
 
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.ant4eclipse.lib.core.Assure;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
@@ -27,6 +28,10 @@ import org.osgi.framework.Version;
  * <p>
  * Abstract base implementation for all {@link BundleAndFeatureSet BundleAndFeatureSets}.
  * </p>
+ * <p>
+ * The bundles and features are indexed by their symbolic names and ids when they are added, so the lookup methods
+ * don't need to iterate over all bundles and features.
+ * </p>
  * 
  * @author Nils Hartmann (nils@nilshartmann.net)
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
@@ -34,16 +39,22 @@ import org.osgi.framework.Version;
 public abstract class AbstractBundleAndFeatureSet implements BundleAndFeatureSet {
 
   /** the list that contains all the bundle descriptions */
-  private List<BundleDescription>  _bundleDescriptionList;
+  private List<BundleDescription>          _bundleDescriptionList;
 
   /** the list that contains all the feature descriptions */
-  private List<FeatureDescription> _featureDescriptionList;
+  private List<FeatureDescription>         _featureDescriptionList;
+
+  /** the bundle description with the highest version for each symbolic name */
+  private Map<String, BundleDescription>   _bundleDescriptionMap;
+
+  /** the feature descriptions for each feature id */
+  private Map<String, FeatureDescriptions> _featureDescriptionMap;
 
   /** indicates whether or not the platform is initialized */
-  private boolean                  _isInitialised = false;
+  private boolean                          _isInitialised = false;
 
   /** a description of this BundleAndFeatureSet */
-  private String                   _description;
+  private String                           _description;
 
   /**
    * <p>
@@ -64,6 +75,10 @@ public abstract class AbstractBundleAndFeatureSet implements BundleAndFeatureSet
 
     // create the feature description list
     this._featureDescriptionList = new LinkedList<FeatureDescription>();
+
+    // create the indices
+    this._bundleDescriptionMap = new HashMap<String, BundleDescription>();
+    this._featureDescriptionMap = new HashMap<String, FeatureDescriptions>();
   }
 
   /**
@@ -100,20 +115,9 @@ public abstract class AbstractBundleAndFeatureSet implements BundleAndFeatureSet
     // initialize if necessary
     initialize();
 
-    // iterate over feature list
-    for (FeatureDescription featureDescription : this._featureDescriptionList) {
-
-      // return if match
-      if (featureDescription.getFeatureManifest().getId().equals(featureId)
-          && PdeBuildHelper.resolveVersion(featureDescription.getFeatureManifest().getVersion(),
-              PdeBuildHelper.getResolvedContextQualifier()).equals(version)) {
-
-        return featureDescription;
-      }
-    }
-
-    // no Feature found -> return null
-    return null;
+    // return the (first) feature with the given (resolved) version
+    FeatureDescriptions featureDescriptions = this._featureDescriptionMap.get(featureId);
+    return featureDescriptions != null ? featureDescriptions.getFeatureDescription(version) : null;
   }
 
   /**
@@ -125,30 +129,9 @@ public abstract class AbstractBundleAndFeatureSet implements BundleAndFeatureSet
     // initialize if necessary
     initialize();
 
-    // result
-    FeatureDescription result = null;
-
-    // iterate over feature descriptions
-    for (FeatureDescription featureDescription : this._featureDescriptionList) {
-
-      // get the feature manifest
-      FeatureManifest featureManifest = featureDescription.getFeatureManifest();
-
-      // if match -> set as result
-      if (featureManifest.getId().equals(featureId)) {
-        if (result == null) {
-          result = featureDescription;
-        } else {
-          // the current feature description has a higher version, so use this one
-          if (result.getFeatureManifest().getVersion().compareTo(featureDescription.getFeatureManifest().getVersion()) < 0) {
-            result = featureDescription;
-          }
-        }
-      }
-    }
-
-    // return result
-    return result;
+    // return the feature with the highest version
+    FeatureDescriptions featureDescriptions = this._featureDescriptionMap.get(featureId);
+    return featureDescriptions != null ? featureDescriptions.getHighestVersion() : null;
   }
 
   /**
@@ -160,27 +143,8 @@ public abstract class AbstractBundleAndFeatureSet implements BundleAndFeatureSet
     // initialize if necessary
     initialize();
 
-    // result
-    BundleDescription result = null;
-
-    for (BundleDescription bundleDescription : this._bundleDescriptionList) {
-
-      // if match -> set as result
-      if (bundleDescription.getSymbolicName().equals(bundleid)) {
-        if (result == null) {
-          result = bundleDescription;
-        } else {
-          // the current feature description has a higher version, so use this one
-          if (result.getVersion().compareTo(bundleDescription.getVersion()) < 0) {
-            result = bundleDescription;
-          }
-        }
-      }
-    }
-
-    // return result
-    return result;
-
+    // return the bundle with the highest version
+    return this._bundleDescriptionMap.get(bundleid);
   }
 
   /**
@@ -203,19 +167,8 @@ public abstract class AbstractBundleAndFeatureSet implements BundleAndFeatureSet
     // initialize if necessary
     initialize();
 
-    Iterator<BundleDescription> iterator = this._bundleDescriptionList.iterator();
-
-    while (iterator.hasNext()) {
-      BundleDescription description = iterator.next();
-      if (symbolicName.equals(description.getSymbolicName())
-      /*
-       * TODO || "system.bundle".equals(symbolicName) && description.isSystemBundle()
-       */) {
-        return true;
-      }
-    }
-
-    return false;
+    // TODO || "system.bundle".equals(symbolicName) && description.isSystemBundle()
+    return this._bundleDescriptionMap.containsKey(symbolicName);
   }
 
   /**
@@ -229,6 +182,15 @@ public abstract class AbstractBundleAndFeatureSet implements BundleAndFeatureSet
   protected final void addBundleDescription(BundleDescription bundleDescription) {
     Assure.notNull("bundleDescription", bundleDescription);
     this._bundleDescriptionList.add(bundleDescription);
+
+    // index the bundle if it has the highest version so far (the first one wins if the versions are equal)
+    String symbolicName = bundleDescription.getSymbolicName();
+    if (symbolicName != null) {
+      BundleDescription current = this._bundleDescriptionMap.get(symbolicName);
+      if ((current == null) || (current.getVersion().compareTo(bundleDescription.getVersion()) < 0)) {
+        this._bundleDescriptionMap.put(symbolicName, bundleDescription);
+      }
+    }
   }
 
   /**
@@ -242,6 +204,17 @@ public abstract class AbstractBundleAndFeatureSet implements BundleAndFeatureSet
   protected final void addFeaturesDescription(FeatureDescription featureDescription) {
     Assure.notNull("featureDescription", featureDescription);
     this._featureDescriptionList.add(featureDescription);
+
+    // index the feature
+    String featureId = featureDescription.getFeatureManifest().getId();
+    if (featureId != null) {
+      FeatureDescriptions featureDescriptions = this._featureDescriptionMap.get(featureId);
+      if (featureDescriptions == null) {
+        featureDescriptions = new FeatureDescriptions();
+        this._featureDescriptionMap.put(featureId, featureDescriptions);
+      }
+      featureDescriptions.add(featureDescription);
+    }
   }
 
   /**
@@ -264,7 +237,11 @@ public abstract class AbstractBundleAndFeatureSet implements BundleAndFeatureSet
     this._bundleDescriptionList.clear();
 
     // clear list of features...
-    this._bundleDescriptionList.clear();
+    this._featureDescriptionList.clear();
+
+    // clear the indices...
+    this._bundleDescriptionMap.clear();
+    this._featureDescriptionMap.clear();
 
     // read all bundles and features...
     readBundlesAndFeatures();
@@ -278,4 +255,73 @@ public abstract class AbstractBundleAndFeatureSet implements BundleAndFeatureSet
         Long.valueOf(stopWatch.getElapsedTime()), Integer.valueOf(this._bundleDescriptionList.size()),
         Integer.valueOf(this._featureDescriptionList.size()));
   }
+
+  /**
+   * <p>
+   * The feature descriptions with the same feature id.
+   * </p>
+   */
+  private static final class FeatureDescriptions {
+
+    /** the feature descriptions in the order they have been added */
+    private List<FeatureDescription>         _featureDescriptions = new LinkedList<FeatureDescription>();
+
+    /** the feature description with the highest version (the first one if the versions are equal) */
+    private FeatureDescription               _highestVersion;
+
+    /** the first feature description for each resolved version, created on demand */
+    private Map<Version, FeatureDescription> _resolvedVersions;
+
+    /** the context qualifier the versions have been resolved with */
+    private String                           _contextQualifier;
+
+    /**
+     * <p>
+     * Adds the given feature description.
+     * </p>
+     */
+    private void add(FeatureDescription featureDescription) {
+      this._featureDescriptions.add(featureDescription);
+      if ((this._highestVersion == null)
+          || (this._highestVersion.getFeatureManifest().getVersion().compareTo(
+              featureDescription.getFeatureManifest().getVersion()) < 0)) {
+        this._highestVersion = featureDescription;
+      }
+      this._resolvedVersions = null;
+    }
+
+    /**
+     * <p>
+     * Returns the feature description with the highest version.
+     * </p>
+     */
+    private FeatureDescription getHighestVersion() {
+      return this._highestVersion;
+    }
+
+    /**
+     * <p>
+     * Returns the first feature description whose resolved version (see
+     * {@link PdeBuildHelper#resolveVersion(Version, String)}) equals the given version. The resolved versions are
+     * computed again if the context qualifier has been changed (see {@link PdeBuildHelper#CONTEXT_QUALIFIER}).
+     * </p>
+     */
+    private FeatureDescription getFeatureDescription(Version version) {
+      // the versions are resolved lazily, as the context qualifier is determined on first use
+      String contextQualifier = PdeBuildHelper.getResolvedContextQualifier();
+      if ((this._resolvedVersions == null) || !contextQualifier.equals(this._contextQualifier)) {
+        Map<Version, FeatureDescription> resolvedVersions = new HashMap<Version, FeatureDescription>();
+        for (FeatureDescription featureDescription : this._featureDescriptions) {
+          Version resolvedVersion = PdeBuildHelper.resolveVersion(featureDescription.getFeatureManifest().getVersion(),
+              contextQualifier);
+          if (!resolvedVersions.containsKey(resolvedVersion)) {
+            resolvedVersions.put(resolvedVersion, featureDescription);
+          }
+        }
+        this._resolvedVersions = resolvedVersions;
+        this._contextQualifier = contextQualifier;
+      }
+      return this._resolvedVersions.get(version);
+    }
+  }
 }
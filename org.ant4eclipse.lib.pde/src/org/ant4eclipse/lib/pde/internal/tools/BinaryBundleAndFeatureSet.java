@@ -12,19 +12,42 @@
 package org.ant4eclipse.lib.pde.internal.tools;
 
 import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.pde.PdeExceptionCode;
 import org.ant4eclipse.lib.pde.internal.model.pluginproject.BundleDescriptionLoader;
-import org.ant4eclipse.lib.pde.internal.model.pluginproject.FeatureDescriptionLoader;
+import org.ant4eclipse.lib.pde.model.featureproject.FeatureManifest;
 import org.ant4eclipse.lib.pde.model.link.LinkFile;
 import org.ant4eclipse.lib.pde.model.link.LinkFileFactory;
 import org.eclipse.osgi.service.resolver.BundleDescription;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Manifest;
 
 /**
  * <p>
  * A {@link BundleAndFeatureSet} implementation that represent an eclipse target platform containing binary bundles and
  * features.
  * </p>
+ * <p>
+ * The bundle manifests and the feature manifests are read concurrently (see {@link #THREAD_COUNT_PROPERTY_NAME}). The
+ * bundle ids are reserved in the order of the plugins and the bundles and features are added in this order as well, so
+ * the result doesn't depend on the number of threads.
+ * </p>
+ * <p>
+ * The manifests are taken from a {@link TargetPlatformIndex}, so only new or modified plugins and features are read
+ * when the set is refreshed (or when the index has been stored in the cache directory by a previous build).
+ * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  * @author Nils Hartmann (nils@nilshartmann.net)
@@ -35,10 +58,16 @@ public class BinaryBundleAndFeatureSet extends AbstractBundleAndFeatureSet {
   public static final String DEFAULT_PLUGIN_DIRECTORY  = "plugins";
 
   /** the constant that defines the default feature directory */
-  public static final String DEFAULT_FEATURE_DIRECTORY = "features";
+  public static final String DEFAULT_FEATURE_DIRECTORY  = "features";
+
+  /** the name of the system property that specifies the number of threads used to read the bundles and features */
+  public static final String THREAD_COUNT_PROPERTY_NAME = "ant4eclipse.targetPlatformReaderThreads";
 
   /** the location of the platform against which the workspace plug-ins will be compiled and tested */
-  private File               _targetPlatformLocation;
+  private File                _targetPlatformLocation;
+
+  /** the index of the bundle manifests and feature manifests of the target platform location */
+  private TargetPlatformIndex _index;
 
   /**
    * <p>
@@ -49,9 +78,25 @@ public class BinaryBundleAndFeatureSet extends AbstractBundleAndFeatureSet {
    *          the target platform location.
    */
   public BinaryBundleAndFeatureSet(File targetPlatformLocation) {
+    this(targetPlatformLocation, new TargetPlatformIndex(targetPlatformLocation));
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type BinaryBundleAndFeatureSet.
+   * </p>
+   * 
+   * @param targetPlatformLocation
+   *          the target platform location.
+   * @param index
+   *          the index of the target platform location.
+   */
+  public BinaryBundleAndFeatureSet(File targetPlatformLocation, TargetPlatformIndex index) {
     super("target platform location '" + targetPlatformLocation.getAbsolutePath() + "'");
     Assure.isDirectory("targetPlatformLocation", targetPlatformLocation);
+    Assure.notNull("index", index);
     this._targetPlatformLocation = targetPlatformLocation;
+    this._index = index;
   }
 
   /**
@@ -60,6 +105,88 @@ public class BinaryBundleAndFeatureSet extends AbstractBundleAndFeatureSet {
   @Override
   protected void readBundlesAndFeatures() {
 
+    // 1. collect the plugins and the features
+    final List<File> plugins = getPlugins();
+    final List<File> features = getFeatures();
+
+    int threadCount = Math.min(Math.max(1, Integer.getInteger(THREAD_COUNT_PROPERTY_NAME,
+        Math.min(4, Runtime.getRuntime().availableProcessors())).intValue()), plugins.size() + features.size());
+    ExecutorService executorService = null;
+    if (threadCount > 1) {
+      A4ELogging.debug("BinaryBundleAndFeatureSet.readBundlesAndFeatures: reading '%s' on %d threads.",
+          this._targetPlatformLocation, Integer.valueOf(threadCount));
+      executorService = Executors.newFixedThreadPool(threadCount, new ReaderThreadFactory());
+    }
+
+    final TargetPlatformIndex targetPlatformIndex = this._index;
+    targetPlatformIndex.beginUpdate();
+    try {
+
+      // 2. read the bundle manifests (only the new or modified ones are read from disk)
+      final List<Manifest> manifests = execute(executorService, plugins.size(), new IndexedTask<Manifest>() {
+        public Manifest execute(int index) {
+          return targetPlatformIndex.getBundleManifest(plugins.get(index));
+        }
+      });
+
+      // 3. reserve the bundle ids in the order of the plugins (the ids mustn't depend on the scheduling)
+      final long[] bundleIds = new long[manifests.size()];
+      for (int i = 0; i < bundleIds.length; i++) {
+        if (manifests.get(i) != null) {
+          bundleIds[i] = BundleDescriptionLoader.reserveBundleId(manifests.get(i));
+        }
+      }
+
+      // 4. create the bundle descriptions and parse the features
+      List<BundleDescription> bundleDescriptions = execute(executorService, plugins.size(),
+          new IndexedTask<BundleDescription>() {
+            public BundleDescription execute(int index) {
+              Manifest manifest = manifests.get(index);
+              return manifest != null ? BundleDescriptionLoader.createBundleDescription(plugins.get(index), manifest,
+                  bundleIds[index]) : null;
+            }
+          });
+      List<FeatureDescription> featureDescriptions = execute(executorService, features.size(),
+          new IndexedTask<FeatureDescription>() {
+            public FeatureDescription execute(int index) {
+              FeatureManifest featureManifest = targetPlatformIndex.getFeatureManifest(features.get(index));
+              return featureManifest != null ? new FeatureDescription(features.get(index), featureManifest) : null;
+            }
+          });
+
+      // all plugins and features have been looked up, so the index can be stored
+      targetPlatformIndex.endUpdate();
+
+      // 5. add the bundles and features in the order of the plugins and features
+      for (BundleDescription bundleDescription : bundleDescriptions) {
+        if (bundleDescription != null) {
+          addBundleDescription(bundleDescription);
+        }
+      }
+      for (FeatureDescription featureDescription : featureDescriptions) {
+        if (featureDescription != null) {
+          addFeaturesDescription(featureDescription);
+        }
+      }
+
+    } finally {
+      if (executorService != null) {
+        executorService.shutdown();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the plugins of the target platform location and of all linked directories.
+   * </p>
+   * 
+   * @return the plugins (jar files or directories).
+   */
+  private List<File> getPlugins() {
+
+    List<File> result = new ArrayList<File>();
+
     // 1. read plugin from target location
     // TODO: ERROR-HANDLING...
     File pluginsDirectory = new File(this._targetPlatformLocation, DEFAULT_PLUGIN_DIRECTORY);
@@ -67,13 +194,7 @@ public class BinaryBundleAndFeatureSet extends AbstractBundleAndFeatureSet {
       pluginsDirectory = this._targetPlatformLocation;
     }
     if ((pluginsDirectory != null) && pluginsDirectory.exists()) {
-      File[] plugins = pluginsDirectory.listFiles();
-      for (File plugin : plugins) {
-        BundleDescription bundleDescription = BundleDescriptionLoader.parsePlugin(plugin);
-        if (bundleDescription != null) {
-          addBundleDescription(bundleDescription);
-        }
-      }
+      result.addAll(Arrays.asList(pluginsDirectory.listFiles()));
     }
 
     // 2. read plugins from linked directories in target location
@@ -83,18 +204,26 @@ public class BinaryBundleAndFeatureSet extends AbstractBundleAndFeatureSet {
         if (file.isValidDestination()) {
           File pluginsDirectory1 = file.getPluginsDirectory();
           if ((pluginsDirectory1 != null) && pluginsDirectory1.exists()) {
-            File[] plugins = pluginsDirectory1.listFiles();
-            for (File plugin : plugins) {
-              BundleDescription bundleDescription = BundleDescriptionLoader.parsePlugin(plugin);
-              if (bundleDescription != null) {
-                addBundleDescription(bundleDescription);
-              }
-            }
+            result.addAll(Arrays.asList(pluginsDirectory1.listFiles()));
           }
         }
       }
     }
 
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the features of the target platform location and of all linked directories.
+   * </p>
+   * 
+   * @return the features (jar files or directories).
+   */
+  private List<File> getFeatures() {
+
+    List<File> result = new ArrayList<File>();
+
     // 1. read features from target location
     // TODO: ERROR-HANDLING...
 
@@ -107,7 +236,7 @@ public class BinaryBundleAndFeatureSet extends AbstractBundleAndFeatureSet {
     }
 
     //
-    readFeature(featuresDirectory);
+    addFeatures(featuresDirectory, result);
 
     // 2. read plugins from linked directories in target location
     if (this._targetPlatformLocation != null) {
@@ -117,30 +246,129 @@ public class BinaryBundleAndFeatureSet extends AbstractBundleAndFeatureSet {
       for (LinkFile linkFile : linkFiles) {
 
         if (linkFile.isValidDestination()) {
-          readFeature(linkFile.getFeaturesDirectory());
+          addFeatures(linkFile.getFeaturesDirectory(), result);
         }
       }
     }
+
+    return result;
   }
 
   /**
    * <p>
+   * Adds the content of the given feature directory to the given list.
    * </p>
    * 
    * @param directory
+   *          the feature directory (might be <code>null</code>)
+   * @param features
+   *          the list of features
    */
-  private void readFeature(File directory) {
+  private void addFeatures(File directory, List<File> features) {
 
     if (directory == null || !directory.exists()) {
       return;
     }
 
-    for (File feature : directory.listFiles()) {
-      FeatureDescription featureDescription = FeatureDescriptionLoader.parseFeature(feature);
+    features.addAll(Arrays.asList(directory.listFiles()));
+  }
+
+  /**
+   * <p>
+   * Executes the given task for all indices from <code>0</code> to <code>count - 1</code> and returns the results in
+   * the order of the indices. If no executor service is given, the task is executed on the current thread. If a task
+   * fails, the remaining tasks are cancelled and the failure of the first failed task (in the order of the indices) is
+   * rethrown.
+   * </p>
+   * 
+   * @param executorService
+   *          the executor service (might be <code>null</code>)
+   * @param count
+   *          the number of indices
+   * @param task
+   *          the task
+   * @return the results in the order of the indices
+   */
+  private <T> List<T> execute(ExecutorService executorService, int count, final IndexedTask<T> task) {
+
+    List<T> result = new ArrayList<T>(count);
+
+    if (executorService == null) {
+      for (int i = 0; i < count; i++) {
+        result.add(task.execute(i));
+      }
+      return result;
+    }
+
+    List<Future<T>> futures = new ArrayList<Future<T>>(count);
+    for (int i = 0; i < count; i++) {
+      final int index = i;
+      futures.add(executorService.submit(new Callable<T>() {
+        public T call() {
+          return task.execute(index);
+        }
+      }));
+    }
 
-      if (featureDescription != null) {
-        addFeaturesDescription(featureDescription);
+    for (Future<T> future : futures) {
+      try {
+        result.add(future.get());
+      } catch (ExecutionException ex) {
+        executorService.shutdownNow();
+        Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+      } catch (InterruptedException ex) {
+        executorService.shutdownNow();
+        Thread.currentThread().interrupt();
+        throw new Ant4EclipseException(ex, PdeExceptionCode.TARGET_PLATFORM_READING_INTERRUPTED,
+            this._targetPlatformLocation.getAbsolutePath());
       }
     }
+    return result;
+  }
+
+  /**
+   * <p>
+   * A task that is executed for a single index.
+   * </p>
+   */
+  private static interface IndexedTask<T> {
+
+    /**
+     * <p>
+     * Executes the task for the given index.
+     * </p>
+     * 
+     * @param index
+     *          the index
+     * @return the result for the given index (might be <code>null</code>)
+     */
+    T execute(int index);
+  }
+
+  /**
+   * <p>
+   * Creates the daemon threads that read the bundles and features.
+   * </p>
+   */
+  private static class ReaderThreadFactory implements ThreadFactory {
+
+    /** the number of created threads */
+    private AtomicInteger _count = new AtomicInteger();
+
+    /**
+     * {@inheritDoc}
+     */
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable);
+      thread.setName("A4E-TargetPlatformReader-" + this._count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
   }
 }
@@ -0,0 +1,287 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.pde.internal.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.Attributes;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.metrics.Counter;
+import org.ant4eclipse.lib.core.metrics.Metrics;
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.pde.model.pluginproject.BundleSource;
+import org.eclipse.osgi.internal.module.ResolverImpl;
+import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.eclipse.osgi.service.resolver.State;
+import org.eclipse.osgi.service.resolver.StateObjectFactory;
+
+/**
+ * <p>
+ * Stores resolved {@link State States} in the cache directory (see {@link CacheDirectory}), so a target platform whose
+ * bundles haven't changed doesn't need to be resolved again by subsequent builds. A state is keyed by a hash over the
+ * locations and the manifest headers of all bundles and the platform properties it has been resolved with.
+ * </p>
+ * <p>
+ * The states are written with {@link StateObjectFactory#writeState(State, File)}, which doesn't store the user objects
+ * of the bundle descriptions (the {@link BundleSource BundleSources}) and the resolver errors. The user objects are
+ * taken from the current bundle descriptions (matched by their location) when a state is read. The unresolved bundles
+ * are resolved again, so their resolver errors are available as well.
+ * </p>
+ *
+ * @author agent
+ */
+public class ResolvedStateCache {
+
+  /** the name of the area in the cache directory */
+  private static final String  AREA            = "resolvedStates";
+
+  /** the version of the key (must be incremented if the way a state is computed changes) */
+  private static final int     VERSION         = 1;
+
+  /** the number of states that have been read from the cache directory */
+  private static final Counter PERSISTENT_HITS = Metrics.counter("pde.resolvedStateCache.persistentHits");
+
+  /**
+   * <p>
+   * Returns the key for a state that contains the given bundles and is resolved with the given platform properties.
+   * </p>
+   *
+   * @param bundleDescriptions
+   *          the bundles (in the order they are added to the state)
+   * @param platformProperties
+   *          the platform properties
+   * @return the key for the state.
+   */
+  public static String getKey(List<BundleDescription> bundleDescriptions, Properties platformProperties) {
+    Assure.notNull("bundleDescriptions", bundleDescriptions);
+    Assure.notNull("platformProperties", platformProperties);
+
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      update(digest, String.valueOf(VERSION));
+
+      for (BundleDescription bundleDescription : bundleDescriptions) {
+        update(digest, bundleDescription.getLocation());
+        update(digest, bundleDescription.getBundleId() == 0 ? "system" : "bundle");
+        Attributes attributes = BundleSource.getBundleSource(bundleDescription).getBundleManifest()
+            .getMainAttributes();
+        List<String> names = new ArrayList<String>();
+        for (Object name : attributes.keySet()) {
+          names.add(name.toString());
+        }
+        Collections.sort(names);
+        for (String name : names) {
+          update(digest, name);
+          update(digest, attributes.getValue(name));
+        }
+      }
+
+      List<String> propertyNames = new ArrayList<String>();
+      for (Object name : platformProperties.keySet()) {
+        propertyNames.add(name.toString());
+      }
+      Collections.sort(propertyNames);
+      for (String name : propertyNames) {
+        update(digest, name);
+        update(digest, platformProperties.getProperty(name));
+      }
+
+      return CacheDirectory.hash(digest.digest());
+    } catch (NoSuchAlgorithmException ex) {
+      // MD5 is always supported
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * <p>
+   * Reads the state with the given key from the cache directory. The bundles of the state get the user objects of the
+   * given bundle descriptions and the unresolved bundles are resolved again. Returns <code>null</code> if no cache
+   * directory has been configured or if the state doesn't exist or can't be read.
+   * </p>
+   *
+   * @param key
+   *          the key of the state (see {@link #getKey(List, Properties)})
+   * @param bundleDescriptions
+   *          the bundle descriptions the key has been computed for
+   * @param platformProperties
+   *          the platform properties the key has been computed for
+   * @return the resolved state or <code>null</code>.
+   */
+  public static State readState(String key, List<BundleDescription> bundleDescriptions, Properties platformProperties) {
+    Assure.notNull("key", key);
+    Assure.notNull("platformProperties", platformProperties);
+
+    File stateDirectory = getStateDirectory(key);
+    if ((stateDirectory == null) || !stateDirectory.isDirectory()) {
+      return null;
+    }
+
+    try {
+      State state = StateObjectFactory.defaultFactory.readState(stateDirectory);
+      if ((state == null) || !attachUserObjects(state, bundleDescriptions)) {
+        A4ELogging.debug("Ignoring invalid resolved state '%s'.", stateDirectory);
+        return null;
+      }
+      resolveUnresolvedBundles(state, platformProperties);
+      PERSISTENT_HITS.increment();
+      A4ELogging.debug("Read resolved state '%s'.", stateDirectory);
+      return state;
+    } catch (IOException ex) {
+      A4ELogging.debug("Could not read resolved state '%s': %s", stateDirectory, ex.toString());
+      return null;
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the given (resolved) state with the given key to the cache directory. Nothing happens if no cache directory
+   * has been configured or if the state already exists. The state is written to a temporary directory first which is
+   * renamed afterwards, so concurrent readers never see partially written states.
+   * </p>
+   *
+   * @param key
+   *          the key of the state (see {@link #getKey(List, Properties)})
+   * @param state
+   *          the resolved state
+   */
+  public static void writeState(String key, State state) {
+    Assure.notNull("key", key);
+    Assure.notNull("state", state);
+
+    File stateDirectory = getStateDirectory(key);
+    if ((stateDirectory == null) || stateDirectory.isDirectory()) {
+      return;
+    }
+
+    File tempDirectory = null;
+    try {
+      tempDirectory = File.createTempFile(key, ".tmp", stateDirectory.getParentFile());
+      tempDirectory.delete();
+      Utilities.mkdirs(tempDirectory);
+      StateObjectFactory.defaultFactory.writeState(state, tempDirectory);
+      if (!tempDirectory.renameTo(stateDirectory)) {
+        // another process has written the state in the meantime
+        A4ELogging.debug("Could not write resolved state '%s'.", stateDirectory);
+      }
+    } catch (IOException ex) {
+      A4ELogging.debug("Could not write resolved state '%s': %s", stateDirectory, ex.toString());
+    } finally {
+      if ((tempDirectory != null) && tempDirectory.exists()) {
+        Utilities.delete(tempDirectory);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Sets the user objects of the bundles contained in the given state to the user objects of the bundle descriptions
+   * with the same location. Returns <code>false</code> if the state contains bundles that don't have a matching bundle
+   * description.
+   * </p>
+   *
+   * @param state
+   *          the state
+   * @param bundleDescriptions
+   *          the bundle descriptions that provide the user objects
+   * @return <code>true</code> if each bundle of the state has got a user object.
+   */
+  public static boolean attachUserObjects(State state, List<BundleDescription> bundleDescriptions) {
+    Assure.notNull("state", state);
+    Assure.notNull("bundleDescriptions", bundleDescriptions);
+
+    Map<String, BundleDescription> descriptionsByLocation = new HashMap<String, BundleDescription>();
+    for (BundleDescription bundleDescription : bundleDescriptions) {
+      descriptionsByLocation.put(bundleDescription.getLocation(), bundleDescription);
+    }
+
+    BundleDescription[] bundles = state.getBundles();
+    if (bundles.length != bundleDescriptions.size()) {
+      return false;
+    }
+    for (BundleDescription bundle : bundles) {
+      BundleDescription bundleDescription = descriptionsByLocation.get(bundle.getLocation());
+      if (bundleDescription == null) {
+        return false;
+      }
+      bundle.setUserObject(bundleDescription.getUserObject());
+    }
+    return true;
+  }
+
+  /**
+   * <p>
+   * Resolves the unresolved bundles of the given state again, as their resolver errors aren't stored. The bundles that
+   * are already resolved are kept as they are.
+   * </p>
+   */
+  private static void resolveUnresolvedBundles(State state, Properties platformProperties) {
+    List<BundleDescription> unresolvedBundles = new ArrayList<BundleDescription>();
+    for (BundleDescription bundle : state.getBundles()) {
+      if (!bundle.isResolved()) {
+        unresolvedBundles.add(bundle);
+      }
+    }
+    if (unresolvedBundles.isEmpty()) {
+      return;
+    }
+
+    // a state that has been read doesn't have a resolver (see StateObjectFactory#createState(boolean)). The resolver
+    // of a new state can't be moved to it, as a resolver is bound to its first state for good, and the public way to
+    // create a resolver (PlatformAdmin#createResolver()) requires a running framework. So the resolver is created the
+    // same way as StateObjectFactory#createState(boolean) does it.
+    state.setResolver(new ResolverImpl(null, false));
+    state.setPlatformProperties(platformProperties);
+    state.resolve(unresolvedBundles.toArray(new BundleDescription[unresolvedBundles.size()]));
+  }
+
+  /**
+   * <p>
+   * Returns the directory for the state with the given key or <code>null</code> if no cache directory has been
+   * configured.
+   * </p>
+   */
+  private static File getStateDirectory(String key) {
+    File cacheDir = CacheDirectory.getCacheDir(AREA);
+    return cacheDir != null ? new File(cacheDir, key) : null;
+  }
+
+  /**
+   * <p>
+   * Adds the given (possibly <code>null</code>) text to the given digest.
+   * </p>
+   */
+  private static void update(MessageDigest digest, String text) {
+    try {
+      if (text != null) {
+        digest.update(text.getBytes("UTF-8"));
+      }
+      // separate the texts, so "ab" + "c" differs from "a" + "bc"
+      digest.update((byte) 0);
+    } catch (UnsupportedEncodingException ex) {
+      // UTF-8 is always supported
+      throw new RuntimeException(ex);
+    }
+  }
+}
@@ -47,6 +47,10 @@ import org.osgi.framework.Version;
  * A target platform contains different plug-in sets. It defines the target against which plug-ins will be compiled and
  * tested.
  * </p>
+ * <p>
+ * The resolved state is reused as long as the bundles and the platform properties don't change. If a cache directory
+ * has been configured, it is also stored on disk and reused by subsequent builds (see {@link ResolvedStateCache}).
+ * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  * @author Nils Hartmann (nils@nilshartmann.net)
@@ -65,6 +69,9 @@ public final class TargetPlatformImpl implements TargetPlatform {
   /** the state object */
   private State                     _state;
 
+  /** the key of the state object (see {@link ResolvedStateCache#getKey(List, Properties)}) */
+  private String                    _stateKey;
+
   /** - */
   private File[]                    _targetplatformLocations;
 
@@ -584,10 +591,55 @@ public final class TargetPlatformImpl implements TargetPlatform {
     // TODO
     FrameworkProperties.setProperty("osgi.resolver.usesMode", "ignore");
 
+    List<BundleDescription> allBundleDescriptions = getAllBundleDescriptions(this._configuration.isPreferProjects());
+    Properties platformProperties = this._configuration.getConfigurationProperties();
+
+    // step 1: reuse the current state or a stored state if neither the bundles nor the properties have changed
+    String stateKey = ResolvedStateCache.getKey(allBundleDescriptions, platformProperties);
+    if (stateKey.equals(this._stateKey) && ResolvedStateCache.attachUserObjects(this._state, allBundleDescriptions)) {
+      A4ELogging.debug("Reusing the resolved state of the target platform.");
+      return this._state;
+    }
+    State state = ResolvedStateCache.readState(stateKey, allBundleDescriptions, platformProperties);
+    if (state == null) {
+      state = createState(allBundleDescriptions, platformProperties);
+      ResolvedStateCache.writeState(stateKey, state);
+    }
+    this._stateKey = stateKey;
+
+    // log errors if any
+    BundleDescription[] bundleDescriptions = state.getBundles();
+    // boolean allStatesResolved = true;
+
+    if (A4ELogging.isDebuggingEnabled()) {
+      for (BundleDescription description : bundleDescriptions) {
+        String resolverErrors = dumpResolverErrors(description, true);
+        if (resolverErrors != null && !resolverErrors.trim().equals("")) {
+          A4ELogging.debug(resolverErrors);
+        }
+      }
+    }
+    // return the state
+    return state;
+  }
+
+  /**
+   * <p>
+   * Creates a new state that contains copies of the given bundles and resolves it.
+   * </p>
+   * 
+   * @param allBundleDescriptions
+   *          the bundles
+   * @param platformProperties
+   *          the platform properties
+   * @return the resolved state
+   */
+  private State createState(List<BundleDescription> allBundleDescriptions, Properties platformProperties) {
+
     // step 1: create new state
     State state = StateObjectFactory.defaultFactory.createState(true);
 
-    for (BundleDescription bundleDescription : getAllBundleDescriptions(this._configuration.isPreferProjects())) {
+    for (BundleDescription bundleDescription : allBundleDescriptions) {
       BundleDescription copy = StateObjectFactory.defaultFactory.createBundleDescription(bundleDescription);
       copy.setUserObject(bundleDescription.getUserObject());
       if (!state.addBundle(copy)) {
@@ -600,7 +652,6 @@ public final class TargetPlatformImpl implements TargetPlatform {
     }
 
     // set the platform properties
-    Properties platformProperties = this._configuration.getConfigurationProperties();
     if (A4ELogging.isDebuggingEnabled()) {
       A4ELogging.debug(Utilities.toString("Initializing TargetPlatform with properties: ", platformProperties));
     }
@@ -609,19 +660,6 @@ public final class TargetPlatformImpl implements TargetPlatform {
     // resolve the state
     state.resolve();
 
-    // log errors if any
-    BundleDescription[] bundleDescriptions = state.getBundles();
-    // boolean allStatesResolved = true;
-
-    if (A4ELogging.isDebuggingEnabled()) {
-      for (BundleDescription description : bundleDescriptions) {
-        String resolverErrors = dumpResolverErrors(description, true);
-        if (resolverErrors != null && !resolverErrors.trim().equals("")) {
-          A4ELogging.debug(resolverErrors);
-        }
-      }
-    }
-    // return the state
     return state;
   }
 
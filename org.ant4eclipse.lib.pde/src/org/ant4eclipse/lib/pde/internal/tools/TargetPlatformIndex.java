@@ -0,0 +1,600 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.pde.internal.tools;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.core.metrics.Counter;
+import org.ant4eclipse.lib.core.metrics.Metrics;
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.lib.core.util.Utilities;
+import org.ant4eclipse.lib.pde.internal.model.featureproject.FeatureManifestImpl;
+import org.ant4eclipse.lib.pde.internal.model.pluginproject.BundleDescriptionLoader;
+import org.ant4eclipse.lib.pde.internal.model.pluginproject.FeatureDescriptionLoader;
+import org.ant4eclipse.lib.pde.model.featureproject.FeatureManifest;
+import org.ant4eclipse.lib.pde.model.featureproject.FeatureManifest.Includes;
+import org.ant4eclipse.lib.pde.model.featureproject.FeatureManifest.Plugin;
+import org.ant4eclipse.lib.pde.model.pluginproject.Constants;
+import org.osgi.framework.Version;
+
+/**
+ * <p>
+ * Index of the bundle manifests and feature manifests of a single target platform location. Each plugin and feature is
+ * stored with the size and the modification time of the file that has been read (the jar file or the manifest file of
+ * a directory), so a manifest is only read again if this file has changed.
+ * </p>
+ * <p>
+ * The index is kept in memory, so a {@link BinaryBundleAndFeatureSet} only reads new or modified plugins and features
+ * when it is refreshed. If a cache directory has been configured (see {@link CacheDirectory}), the index is stored on
+ * disk as well, so subsequent builds don't need to open the jar files of an unchanged target platform at all.
+ * </p>
+ * <p>
+ * The lookup methods can be called concurrently. An update of the index is started with {@link #beginUpdate()} and
+ * finished with {@link #endUpdate()}, which drops the entries of all plugins and features that haven't been looked up
+ * in between (i.e. that have been removed from the target platform location).
+ * </p>
+ *
+ * @author agent
+ */
+public class TargetPlatformIndex {
+
+  /** the name of the area in the cache directory */
+  private static final String   AREA             = "targetPlatformIndex";
+
+  /** the version of the persistent format */
+  private static final int      VERSION          = 1;
+
+  /** the maximum number of elements that is accepted when reading the index */
+  private static final int      MAX_COUNT        = 1000000;
+
+  /** the maximum length of a string that is accepted when reading the index */
+  private static final int      MAX_LENGTH       = 64 * 1024 * 1024;
+
+  /** the number of manifests that have been taken from the index */
+  private static final Counter  HITS             = Metrics.counter("pde.targetPlatformIndex.hits");
+
+  /** the number of manifests that have been read from the target platform location */
+  private static final Counter  READS            = Metrics.counter("pde.targetPlatformIndex.reads");
+
+  /** the target platform location */
+  private File                  _location;
+
+  /** the indexed bundle manifests, keyed by the absolute path of the plugin */
+  private Map<String, Entry>    _bundles;
+
+  /** the indexed feature manifests, keyed by the absolute path of the feature */
+  private Map<String, Entry>    _features;
+
+  /** the bundle manifests that have been looked up during the current update */
+  private Map<String, Entry>    _updatedBundles;
+
+  /** the feature manifests that have been looked up during the current update */
+  private Map<String, Entry>    _updatedFeatures;
+
+  /** indicates whether or not an entry has been read during the current update */
+  private volatile boolean      _modified;
+
+  /** indicates whether or not the index has been read from the cache directory */
+  private boolean               _loaded;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link TargetPlatformIndex}.
+   * </p>
+   *
+   * @param location
+   *          the target platform location
+   */
+  public TargetPlatformIndex(File location) {
+    Assure.notNull("location", location);
+
+    this._location = location;
+    this._bundles = new Hashtable<String, Entry>();
+    this._features = new Hashtable<String, Entry>();
+  }
+
+  /**
+   * <p>
+   * Starts an update of the index. The index is read from the cache directory if this hasn't been done before.
+   * </p>
+   */
+  public synchronized void beginUpdate() {
+    if (!this._loaded) {
+      this._loaded = true;
+      read();
+    }
+    this._updatedBundles = new Hashtable<String, Entry>();
+    this._updatedFeatures = new Hashtable<String, Entry>();
+    this._modified = false;
+  }
+
+  /**
+   * <p>
+   * Finishes an update of the index. The entries that haven't been looked up since {@link #beginUpdate()} are removed
+   * and the index is written to the cache directory if it has changed.
+   * </p>
+   */
+  public synchronized void endUpdate() {
+    Assure.notNull("updatedBundles", this._updatedBundles);
+
+    boolean modified = this._modified || (this._updatedBundles.size() != this._bundles.size())
+        || (this._updatedFeatures.size() != this._features.size());
+
+    this._bundles = this._updatedBundles;
+    this._features = this._updatedFeatures;
+    this._updatedBundles = null;
+    this._updatedFeatures = null;
+
+    if (modified) {
+      write();
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the bundle manifest of the given plugin (see {@link BundleDescriptionLoader#readBundleManifest(File)}).
+   * The manifest is only read if the plugin isn't indexed yet or if it has changed.
+   * </p>
+   *
+   * @param plugin
+   *          the plugin (a jar file or a directory)
+   * @return the bundle manifest of the given plugin or <code>null</code> if the plugin isn't a bundle.
+   */
+  public Manifest getBundleManifest(File plugin) {
+    Assure.notNull("plugin", plugin);
+
+    File fingerprintFile = plugin.isDirectory() ? new File(plugin, Constants.OSGI_BUNDLE_MANIFEST) : plugin;
+    Entry entry = lookup(this._bundles, plugin, fingerprintFile);
+    if (entry == null) {
+      // take the fingerprint first, so a concurrent modification is detected next time
+      long length = fingerprintFile.length();
+      long lastModified = fingerprintFile.lastModified();
+      Manifest manifest = BundleDescriptionLoader.readBundleManifest(plugin);
+      entry = new Entry(length, lastModified, manifest != null ? toHeaders(manifest) : null);
+      READS.increment();
+      this._modified = true;
+    }
+    this._updatedBundles.put(plugin.getAbsolutePath(), entry);
+    return entry.getValue() != null ? toManifest((String[]) entry.getValue()) : null;
+  }
+
+  /**
+   * <p>
+   * Returns the feature manifest of the given feature (see {@link FeatureDescriptionLoader#readFeatureManifest(File)}
+   * ). The manifest is only read if the feature isn't indexed yet or if it has changed.
+   * </p>
+   * <p>
+   * Each call returns a new {@link FeatureManifest} instance for the feature, as the plugin entries of a feature
+   * manifest are modified when the feature is resolved.
+   * </p>
+   *
+   * @param feature
+   *          the feature (a jar file or a directory)
+   * @return the feature manifest of the given feature or <code>null</code> if the feature doesn't contain a feature
+   *         manifest.
+   */
+  public FeatureManifest getFeatureManifest(File feature) {
+    Assure.notNull("feature", feature);
+
+    File fingerprintFile = feature.isDirectory() ? new File(feature, Constants.FEATURE_MANIFEST) : feature;
+    Entry entry = lookup(this._features, feature, fingerprintFile);
+    if (entry != null) {
+      this._updatedFeatures.put(feature.getAbsolutePath(), entry);
+      return entry.getValue() != null ? copy((FeatureManifest) entry.getValue()) : null;
+    }
+
+    // take the fingerprint first, so a concurrent modification is detected next time
+    long length = fingerprintFile.length();
+    long lastModified = fingerprintFile.lastModified();
+    FeatureManifest featureManifest = FeatureDescriptionLoader.readFeatureManifest(feature);
+    this._updatedFeatures.put(feature.getAbsolutePath(), new Entry(length, lastModified,
+        featureManifest != null ? copy(featureManifest) : null));
+    READS.increment();
+    this._modified = true;
+    return featureManifest;
+  }
+
+  /**
+   * <p>
+   * Returns the entry for the given file if it is indexed and if the fingerprint file hasn't changed.
+   * </p>
+   */
+  private Entry lookup(Map<String, Entry> entries, File file, File fingerprintFile) {
+    Entry entry = entries.get(file.getAbsolutePath());
+    if ((entry != null) && entry.matches(fingerprintFile)) {
+      HITS.increment();
+      return entry;
+    }
+    return null;
+  }
+
+  /**
+   * <p>
+   * Reads the index from the cache directory.
+   * </p>
+   */
+  private void read() {
+    File cacheFile = CacheDirectory.getCacheFile(AREA, this._location.getAbsolutePath());
+    if ((cacheFile == null) || !cacheFile.isFile()) {
+      return;
+    }
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+      if ((input.readInt() != VERSION) || !this._location.getAbsolutePath().equals(input.readUTF())) {
+        return;
+      }
+      Map<String, Entry> bundles = new Hashtable<String, Entry>();
+      for (int i = readCount(input); i > 0; i--) {
+        String path = input.readUTF();
+        long length = input.readLong();
+        long lastModified = input.readLong();
+        String[] headers = null;
+        if (input.readBoolean()) {
+          headers = new String[readCount(input)];
+          for (int j = 0; j < headers.length; j++) {
+            headers[j] = readString(input);
+          }
+        }
+        bundles.put(path, new Entry(length, lastModified, headers));
+      }
+      Map<String, Entry> features = new Hashtable<String, Entry>();
+      for (int i = readCount(input); i > 0; i--) {
+        String path = input.readUTF();
+        long length = input.readLong();
+        long lastModified = input.readLong();
+        features.put(path, new Entry(length, lastModified, input.readBoolean() ? readFeatureManifest(input) : null));
+      }
+      this._bundles = bundles;
+      this._features = features;
+      A4ELogging.debug("Read index of target platform location '%s' with %d bundles and %d features.",
+          this._location, Integer.valueOf(bundles.size()), Integer.valueOf(features.size()));
+    } catch (Exception ex) {
+      // a damaged index is ignored, the manifests are read from the target platform location again
+      A4ELogging.debug("Could not read index of target platform location '%s': %s", cacheFile, ex.toString());
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the index to the cache directory.
+   * </p>
+   */
+  private void write() {
+    File cacheFile = CacheDirectory.getCacheFile(AREA, this._location.getAbsolutePath());
+    if (cacheFile == null) {
+      return;
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeInt(VERSION);
+      output.writeUTF(this._location.getAbsolutePath());
+      output.writeInt(this._bundles.size());
+      for (Map.Entry<String, Entry> bundle : this._bundles.entrySet()) {
+        Entry entry = bundle.getValue();
+        output.writeUTF(bundle.getKey());
+        output.writeLong(entry.getLength());
+        output.writeLong(entry.getLastModified());
+        String[] headers = (String[]) entry.getValue();
+        output.writeBoolean(headers != null);
+        if (headers != null) {
+          output.writeInt(headers.length);
+          for (String header : headers) {
+            writeString(output, header);
+          }
+        }
+      }
+      output.writeInt(this._features.size());
+      for (Map.Entry<String, Entry> feature : this._features.entrySet()) {
+        Entry entry = feature.getValue();
+        output.writeUTF(feature.getKey());
+        output.writeLong(entry.getLength());
+        output.writeLong(entry.getLastModified());
+        output.writeBoolean(entry.getValue() != null);
+        if (entry.getValue() != null) {
+          writeFeatureManifest(output, (FeatureManifest) entry.getValue());
+        }
+      }
+      output.close();
+      CacheDirectory.writeAtomically(cacheFile, bytes.toByteArray());
+    } catch (IOException ex) {
+      // can't happen as we're writing to memory
+      A4ELogging.debug("Could not write index of target platform location '%s': %s", cacheFile, ex.toString());
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the main attributes of the given manifest as an array of alternating names and values.
+   * </p>
+   */
+  private static String[] toHeaders(Manifest manifest) {
+    Attributes attributes = manifest.getMainAttributes();
+    List<String> result = new ArrayList<String>();
+    for (Map.Entry<Object, Object> attribute : attributes.entrySet()) {
+      result.add(attribute.getKey().toString());
+      result.add((String) attribute.getValue());
+    }
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * <p>
+   * Creates a manifest with the given main attributes.
+   * </p>
+   */
+  private static Manifest toManifest(String[] headers) {
+    Manifest result = new Manifest();
+    Attributes attributes = result.getMainAttributes();
+    for (int i = 0; i < headers.length; i += 2) {
+      attributes.putValue(headers[i], headers[i + 1]);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns a copy of the given feature manifest (without the effective versions of the plugin entries).
+   * </p>
+   */
+  private static FeatureManifest copy(FeatureManifest featureManifest) {
+    FeatureManifestImpl result = new FeatureManifestImpl();
+    result.setId(featureManifest.getId());
+    result.setVersion(featureManifest.getVersion());
+    result.setLabel(featureManifest.getLabel());
+    result.setProviderName(featureManifest.getProviderName());
+    result.setImage(featureManifest.getImage());
+    result.setOperatingSystem(featureManifest.getOperatingSystem());
+    result.setMachineArchitecture(featureManifest.getMachineArchitecture());
+    result.setWindowingSystem(featureManifest.getWindowingSystem());
+    result.setLocale(featureManifest.getLocale());
+    result.setColocationAffinity(featureManifest.getColocationAffinity());
+    result.setPrimary(featureManifest.isPrimary());
+    result.setExclusive(featureManifest.isExclusive());
+    result.setPlugin(featureManifest.getPlugin());
+    result.setApplication(featureManifest.getApplication());
+    for (Plugin plugin : featureManifest.getPlugins()) {
+      FeatureManifestImpl.PluginImpl pluginCopy = new FeatureManifestImpl.PluginImpl();
+      pluginCopy.setId(plugin.getId());
+      pluginCopy.setVersion(plugin.getVersion());
+      pluginCopy.setFragment(plugin.isFragment());
+      pluginCopy.setOperatingSystem(plugin.getOperatingSystem());
+      pluginCopy.setMachineArchitecture(plugin.getMachineArchitecture());
+      pluginCopy.setWindowingSystem(plugin.getWindowingSystem());
+      pluginCopy.setLocale(plugin.getLocale());
+      pluginCopy.setDownloadSize(plugin.getDownloadSize());
+      pluginCopy.setInstallSize(plugin.getInstallSize());
+      pluginCopy.setUnpack(plugin.isUnpack());
+      result.addPlugin(pluginCopy);
+    }
+    for (Includes includes : featureManifest.getIncludes()) {
+      FeatureManifestImpl.IncludesImpl includesCopy = new FeatureManifestImpl.IncludesImpl();
+      includesCopy.setId(includes.getId());
+      includesCopy.setVersion(includes.getVersion());
+      includesCopy.setName(includes.getName());
+      includesCopy.setOptional(includes.isOptional());
+      includesCopy.setSearchLocation(includes.getSearchLocation());
+      includesCopy.setOperatingSystem(includes.getOperatingSystem());
+      includesCopy.setMachineArchitecture(includes.getMachineArchitecture());
+      includesCopy.setWindowingSystem(includes.getWindowingSystem());
+      includesCopy.setLocale(includes.getLocale());
+      result.addIncludes(includesCopy);
+    }
+    return result;
+  }
+
+  private static void writeFeatureManifest(DataOutputStream output, FeatureManifest featureManifest)
+      throws IOException {
+    writeString(output, featureManifest.getId());
+    writeVersion(output, featureManifest.getVersion());
+    writeString(output, featureManifest.getLabel());
+    writeString(output, featureManifest.getProviderName());
+    writeString(output, featureManifest.getImage());
+    writeString(output, featureManifest.getOperatingSystem());
+    writeString(output, featureManifest.getMachineArchitecture());
+    writeString(output, featureManifest.getWindowingSystem());
+    writeString(output, featureManifest.getLocale());
+    writeString(output, featureManifest.getColocationAffinity());
+    output.writeBoolean(featureManifest.isPrimary());
+    output.writeBoolean(featureManifest.isExclusive());
+    writeString(output, featureManifest.getPlugin());
+    writeString(output, featureManifest.getApplication());
+    output.writeInt(featureManifest.getPlugins().size());
+    for (Plugin plugin : featureManifest.getPlugins()) {
+      writeString(output, plugin.getId());
+      writeVersion(output, plugin.getVersion());
+      output.writeBoolean(plugin.isFragment());
+      writeString(output, plugin.getOperatingSystem());
+      writeString(output, plugin.getMachineArchitecture());
+      writeString(output, plugin.getWindowingSystem());
+      writeString(output, plugin.getLocale());
+      writeString(output, plugin.getDownloadSize());
+      writeString(output, plugin.getInstallSize());
+      output.writeBoolean(plugin.isUnpack());
+    }
+    output.writeInt(featureManifest.getIncludes().size());
+    for (Includes includes : featureManifest.getIncludes()) {
+      writeString(output, includes.getId());
+      writeVersion(output, includes.getVersion());
+      writeString(output, includes.getName());
+      output.writeBoolean(includes.isOptional());
+      writeString(output, includes.getSearchLocation());
+      writeString(output, includes.getOperatingSystem());
+      writeString(output, includes.getMachineArchitecture());
+      writeString(output, includes.getWindowingSystem());
+      writeString(output, includes.getLocale());
+    }
+  }
+
+  private static FeatureManifest readFeatureManifest(DataInputStream input) throws IOException {
+    FeatureManifestImpl result = new FeatureManifestImpl();
+    result.setId(readString(input));
+    result.setVersion(readVersion(input));
+    result.setLabel(readString(input));
+    result.setProviderName(readString(input));
+    result.setImage(readString(input));
+    result.setOperatingSystem(readString(input));
+    result.setMachineArchitecture(readString(input));
+    result.setWindowingSystem(readString(input));
+    result.setLocale(readString(input));
+    result.setColocationAffinity(readString(input));
+    result.setPrimary(input.readBoolean());
+    result.setExclusive(input.readBoolean());
+    result.setPlugin(readString(input));
+    result.setApplication(readString(input));
+    for (int i = readCount(input); i > 0; i--) {
+      FeatureManifestImpl.PluginImpl plugin = new FeatureManifestImpl.PluginImpl();
+      plugin.setId(readString(input));
+      plugin.setVersion(readVersion(input));
+      plugin.setFragment(input.readBoolean());
+      plugin.setOperatingSystem(readString(input));
+      plugin.setMachineArchitecture(readString(input));
+      plugin.setWindowingSystem(readString(input));
+      plugin.setLocale(readString(input));
+      plugin.setDownloadSize(readString(input));
+      plugin.setInstallSize(readString(input));
+      plugin.setUnpack(input.readBoolean());
+      result.addPlugin(plugin);
+    }
+    for (int i = readCount(input); i > 0; i--) {
+      FeatureManifestImpl.IncludesImpl includes = new FeatureManifestImpl.IncludesImpl();
+      includes.setId(readString(input));
+      includes.setVersion(readVersion(input));
+      includes.setName(readString(input));
+      includes.setOptional(input.readBoolean());
+      includes.setSearchLocation(readString(input));
+      includes.setOperatingSystem(readString(input));
+      includes.setMachineArchitecture(readString(input));
+      includes.setWindowingSystem(readString(input));
+      includes.setLocale(readString(input));
+      result.addIncludes(includes);
+    }
+    return result;
+  }
+
+  private static void writeVersion(DataOutputStream output, Version version) throws IOException {
+    writeString(output, version != null ? version.toString() : null);
+  }
+
+  private static Version readVersion(DataInputStream input) throws IOException {
+    String version = readString(input);
+    try {
+      return version != null ? new Version(version) : null;
+    } catch (IllegalArgumentException ex) {
+      throw new IOException("Invalid version " + version);
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the given (possibly <code>null</code>) string. In contrast to {@link DataOutputStream#writeUTF(String)}
+   * the length of the string isn't limited, as manifest headers (e.g. <code>Export-Package</code>) can be very long.
+   * </p>
+   */
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    if (value == null) {
+      output.writeInt(-1);
+    } else {
+      byte[] bytes = value.getBytes("UTF-8");
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) {
+      return null;
+    }
+    if (length > MAX_LENGTH) {
+      throw new IOException("Invalid length " + length);
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  private static int readCount(DataInputStream input) throws IOException {
+    int result = input.readInt();
+    if ((result < 0) || (result > MAX_COUNT)) {
+      throw new IOException("Invalid count " + result);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * An indexed manifest together with the fingerprint of the file it has been read from.
+   * </p>
+   */
+  private static final class Entry {
+
+    /** the length of the file */
+    private long   _length;
+
+    /** the modification time of the file */
+    private long   _lastModified;
+
+    /** the headers of a bundle manifest or a feature manifest (might be <code>null</code>) */
+    private Object _value;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link Entry}.
+     * </p>
+     */
+    private Entry(long length, long lastModified, Object value) {
+      this._length = length;
+      this._lastModified = lastModified;
+      this._value = value;
+    }
+
+    /**
+     * <p>
+     * Returns <code>true</code> if the given file hasn't changed since this entry has been created.
+     * </p>
+     */
+    private boolean matches(File file) {
+      return (this._length == file.length()) && (this._lastModified == file.lastModified());
+    }
+
+    private long getLength() {
+      return this._length;
+    }
+
+    private long getLastModified() {
+      return this._lastModified;
+    }
+
+    private Object getValue() {
+      return this._value;
+    }
+  }
+}
@@ -54,6 +54,9 @@ public class TargetPlatformRegistryImpl implements TargetPlatformRegistry {
   /** - */
   private Map<TargetPlatformKey, TargetPlatform> _targetPlatformMap          = new HashMap<TargetPlatformKey, TargetPlatform>();
 
+  /** the indices of the target platform locations (kept when the registry is cleared as they validate themselves) */
+  private Map<File, TargetPlatformIndex>         _targetPlatformIndexMap     = new HashMap<File, TargetPlatformIndex>();
+
   /**
    * {@inheritDoc}
    */
@@ -232,7 +235,12 @@ public class TargetPlatformRegistryImpl implements TargetPlatformRegistry {
   private BinaryBundleAndFeatureSet getBinaryPluginSet(File file) {
 
     if (!this._bundleAndFeatureSetMap.containsKey(file)) {
-      this._bundleAndFeatureSetMap.put(file, new BinaryBundleAndFeatureSet(file));
+      TargetPlatformIndex index = this._targetPlatformIndexMap.get(file);
+      if (index == null) {
+        index = new TargetPlatformIndex(file);
+        this._targetPlatformIndexMap.put(file, index);
+      }
+      this._bundleAndFeatureSetMap.put(file, new BinaryBundleAndFeatureSet(file, index));
     }
 
     return (BinaryBundleAndFeatureSet) this._bundleAndFeatureSetMap.get(file);
@@ -20,11 +20,18 @@ import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 import org.ant4eclipse.lib.platform.model.resource.role.ProjectRole;
 import org.ant4eclipse.lib.platform.model.resource.role.ProjectRoleIdentifier;
 import org.eclipse.osgi.service.resolver.BundleDescription;
+import org.osgi.framework.BundleException;
 
 /**
  * <p>
  * Identifier for plugin project roles.
  * </p>
+ * <p>
+ * As the roles of several projects may be created concurrently (see <code>WorkspaceRegistryImpl</code>), the bundle
+ * descriptions are created with a provisional id. The final ids are assigned in {@link #postProcess(EclipseProject)},
+ * which is called for the projects of a workspace one after another in the order of the project folders, so the ids
+ * don't depend on the number of threads that read the projects.
+ * </p>
  */
 public class PluginProjectRoleIdentifier implements ProjectRoleIdentifier {
 
@@ -44,7 +51,7 @@ public class PluginProjectRoleIdentifier implements ProjectRoleIdentifier {
 
     BundleDescription description;
     try {
-      description = BundleDescriptionLoader.loadFromPluginProject(project);
+      description = BundleDescriptionLoader.loadFromPluginProject(project, true);
     } catch (Exception e) {
       throw new RuntimeException(e.getMessage(), e);
     }
@@ -63,6 +70,13 @@ public class PluginProjectRoleIdentifier implements ProjectRoleIdentifier {
    * {@inheritDoc}
    */
   public void postProcess(EclipseProject project) {
+    PluginProjectRoleImpl pluginProjectRole = PluginProjectRoleImpl.getPluginProjectRole(project);
+    try {
+      pluginProjectRole.setBundleDescription(BundleDescriptionLoader.assignBundleId(pluginProjectRole
+          .getBundleDescription()));
+    } catch (BundleException e) {
+      throw new RuntimeException(e.getMessage(), e);
+    }
   }
 
 } /* ENDCLASS */
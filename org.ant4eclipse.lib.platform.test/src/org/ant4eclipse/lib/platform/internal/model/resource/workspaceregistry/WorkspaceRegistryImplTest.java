@@ -0,0 +1,166 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry;
+
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.DefaultEclipseWorkspaceDefinition;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceDefinition;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceListener;
+import org.ant4eclipse.testframework.ConfigurableAnt4EclipseTestCase;
+import org.ant4eclipse.testframework.EclipseProjectBuilder;
+import org.ant4eclipse.testframework.TestDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class WorkspaceRegistryImplTest extends ConfigurableAnt4EclipseTestCase {
+
+  private TestDirectory         _testWorkspace;
+
+  private WorkspaceRegistryImpl _registry;
+
+  private WorkspaceDefinition   _definition;
+
+  private List<String>          _events;
+
+  @Override
+  public void setup() {
+    super.setup();
+    this._testWorkspace = new TestDirectory();
+    new EclipseProjectBuilder("project1").createIn(this._testWorkspace.getRootDir());
+    new EclipseProjectBuilder("project2").createIn(this._testWorkspace.getRootDir());
+    this._definition = new DefaultEclipseWorkspaceDefinition(this._testWorkspace.getRootDir());
+
+    this._registry = new WorkspaceRegistryImpl();
+    this._registry.initialize();
+    this._events = new ArrayList<String>();
+    this._registry.addWorkspaceListener(new WorkspaceListener() {
+      public void workspaceChanged(String id, Workspace workspace, List<EclipseProject> removedProjects,
+          List<EclipseProject> addedProjects) {
+        WorkspaceRegistryImplTest.this._events.add(removedProjects.size() + "/" + addedProjects.size());
+      }
+    });
+  }
+
+  @Override
+  public void dispose() {
+    this._registry.dispose();
+    this._testWorkspace.dispose();
+    super.dispose();
+  }
+
+  @Test
+  public void modifiedProject() {
+    Workspace workspace = this._registry.registerWorkspace("ws", this._definition);
+    EclipseProject project1 = workspace.getProject("project1");
+    EclipseProject project2 = workspace.getProject("project2");
+
+    modifyProject("project2", "org.example.nature");
+    Assert.assertSame(workspace, this._registry.registerWorkspace("ws", this._definition));
+    Assert.assertSame(project1, workspace.getProject("project1"));
+    Assert.assertNotSame(project2, workspace.getProject("project2"));
+    Assert.assertTrue(workspace.getProject("project2").hasNature("org.example.nature"));
+    Assert.assertEquals(2, workspace.getAllProjects().length);
+    Assert.assertEquals("[0/2, 1/1]", this._events.toString());
+  }
+
+  @Test
+  public void unreadableProject() {
+    Workspace workspace = this._registry.registerWorkspace("ws", this._definition);
+    EclipseProject project2 = workspace.getProject("project2");
+
+    // the registered workspace keeps the previous projects if a modified project can't be read
+    this._testWorkspace.createFile("project2/.project", "<projectDescription><name>project2");
+    try {
+      this._registry.registerWorkspace("ws", this._definition);
+      Assert.fail("Expected the registration to fail.");
+    } catch (RuntimeException ex) {
+      // expected
+    }
+    Assert.assertTrue(this._registry.containsWorkspace("ws"));
+    Assert.assertSame(workspace, this._registry.getWorkspace("ws"));
+    Assert.assertSame(project2, workspace.getProject("project2"));
+    Assert.assertEquals(2, workspace.getAllProjects().length);
+    Assert.assertEquals("[0/2]", this._events.toString());
+  }
+
+  @Test
+  public void deferredWhileBuildIsRunning() {
+    Workspace workspace = this._registry.registerWorkspace("ws", this._definition);
+    EclipseProject project2 = workspace.getProject("project2");
+
+    this._registry.beginBuild();
+    modifyProject("project2", "org.example.nature");
+    Assert.assertTrue(this._registry.refreshWatchedWorkspace("ws", this._definition));
+    Assert.assertSame(project2, workspace.getProject("project2"));
+
+    this._registry.endBuild();
+    Assert.assertTrue(this._registry.refreshWatchedWorkspace("ws", this._definition));
+    Assert.assertNotSame(project2, workspace.getProject("project2"));
+    Assert.assertEquals("[0/2, 1/1]", this._events.toString());
+  }
+
+  @Test
+  public void onlyModifiedProjectsAreReadAgain() {
+    new EclipseProjectBuilder("project3").createIn(this._testWorkspace.getRootDir());
+    Workspace workspace = this._registry.registerWorkspace("ws", this._definition);
+    EclipseProject project1 = workspace.getProject("project1");
+    EclipseProject project2 = workspace.getProject("project2");
+    EclipseProject project3 = workspace.getProject("project3");
+
+    // nothing has changed
+    Assert.assertSame(workspace, this._registry.registerWorkspace("ws", this._definition));
+    Assert.assertSame(project1, workspace.getProject("project1"));
+    Assert.assertSame(project2, workspace.getProject("project2"));
+    Assert.assertSame(project3, workspace.getProject("project3"));
+
+    // a new settings file
+    this._testWorkspace.createSubDirectory("project3/.settings");
+    this._testWorkspace.createFile("project3/.settings/org.example.prefs", "key=value");
+    this._registry.registerWorkspace("ws", this._definition);
+    Assert.assertSame(project1, workspace.getProject("project1"));
+    Assert.assertSame(project2, workspace.getProject("project2"));
+    Assert.assertNotSame(project3, workspace.getProject("project3"));
+    Assert.assertEquals(3, workspace.getAllProjects().length);
+    Assert.assertEquals("[0/3, 1/1]", this._events.toString());
+  }
+
+  @Test
+  public void modificationWithinTimerResolution() {
+    new EclipseProjectBuilder("project2").withNature("org.example.natureA").createIn(this._testWorkspace.getRootDir());
+    Workspace workspace = this._registry.registerWorkspace("ws", this._definition);
+    EclipseProject project2 = workspace.getProject("project2");
+
+    // the file has the same size and modification time, so only its content tells the modification
+    File projectFile = new File(this._testWorkspace.getRootDir(), "project2/.project");
+    long lastModified = projectFile.lastModified();
+    new EclipseProjectBuilder("project2").withNature("org.example.natureB").createIn(this._testWorkspace.getRootDir());
+    Assert.assertTrue(projectFile.setLastModified(lastModified));
+
+    this._registry.registerWorkspace("ws", this._definition);
+    Assert.assertNotSame(project2, workspace.getProject("project2"));
+    Assert.assertTrue(workspace.getProject("project2").hasNature("org.example.natureB"));
+    Assert.assertEquals("[0/2, 1/1]", this._events.toString());
+  }
+
+  private void modifyProject(String name, String nature) {
+    File projectDirectory = new EclipseProjectBuilder(name).withNature(nature)
+        .createIn(this._testWorkspace.getRootDir());
+    File projectFile = new File(projectDirectory, ".project");
+    projectFile.setLastModified(projectFile.lastModified() + 10000);
+  }
+
+} /* ENDCLASS */
@@ -55,6 +55,9 @@ public class PlatformExceptionCode extends ExceptionCode {
   @NLSMessage("Unknown execution scope '%s'")
   public static PlatformExceptionCode UNKNOWN_EXECUTION_SCOPE;
 
+  @NLSMessage("The registration of the workspace '%s' has been interrupted.")
+  public static PlatformExceptionCode WORKSPACE_REGISTRATION_INTERRUPTED;
+
   @NLSMessage("Error while executing CVS '%s' command: '%s' ")
   public static TeamExceptionCode     ERROR_WHILE_EXECUTING_CVS_COMMAND;
 
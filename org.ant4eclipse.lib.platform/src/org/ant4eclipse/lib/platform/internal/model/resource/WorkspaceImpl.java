@@ -20,22 +20,26 @@ import org.ant4eclipse.lib.platform.model.resource.Workspace;
 import org.ant4eclipse.lib.platform.model.resource.role.ProjectRole;
 
 import java.util.Collection;
-import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <p>
  * Encapsulates the workspace that contains the eclipse projects.
  * </p>
+ * <p>
+ * Projects may be registered concurrently (e.g. by a parallel workspace registration). Modified projects are replaced
+ * atomically (see {@link #replaceEclipseProjects(List, List)}), so readers either see all previous or all new projects.
+ * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
 public final class WorkspaceImpl implements Workspace {
 
-  /** map with all the eclipse projects */
-  private Map<String, EclipseProject> _projects;
+  /** map with all the eclipse projects, replaced as a whole when projects are replaced */
+  private volatile ConcurrentMap<String, EclipseProject> _projects;
 
   /**
    * {@inheritDoc}
@@ -120,22 +124,53 @@ public final class WorkspaceImpl implements Workspace {
    * </p>
    */
   public WorkspaceImpl() {
-    this._projects = new Hashtable<String, EclipseProject>();
+    this._projects = new ConcurrentHashMap<String, EclipseProject>();
   }
 
-  public void registerEclipseProject(EclipseProject eclipseProject) {
+  public synchronized void registerEclipseProject(EclipseProject eclipseProject) {
     Assure.notNull("eclipseProject", eclipseProject);
 
     // we have to use the specified name here instead of the directory name
     String key = eclipseProject.getSpecifiedName();
 
-    if (this._projects.containsKey(key) && !eclipseProject.equals(this._projects.get(key))) {
+    EclipseProject existing = this._projects.putIfAbsent(key, eclipseProject);
+
+    if ((existing != null) && !eclipseProject.equals(existing)) {
 
-      throw new Ant4EclipseException(PlatformExceptionCode.PROJECT_WITH_SAME_SPECIFIED_NAME_ALREADY_EXISTS,
-          this._projects.get(key), eclipseProject);
+      throw new Ant4EclipseException(PlatformExceptionCode.PROJECT_WITH_SAME_SPECIFIED_NAME_ALREADY_EXISTS, existing,
+          eclipseProject);
     }
+  }
 
-    this._projects.put(key, eclipseProject);
+  /**
+   * <p>
+   * Removes the given projects from this workspace and adds the given projects in a single step. If one of the added
+   * projects can't be registered, this workspace is left unchanged.
+   * </p>
+   * 
+   * @param removedProjects
+   *          the projects to remove. Not <code>null</code>.
+   * @param addedProjects
+   *          the projects to add. Not <code>null</code>.
+   */
+  public synchronized void replaceEclipseProjects(List<EclipseProject> removedProjects,
+      List<EclipseProject> addedProjects) {
+    Assure.notNull("removedProjects", removedProjects);
+    Assure.notNull("addedProjects", addedProjects);
+
+    ConcurrentMap<String, EclipseProject> projects = new ConcurrentHashMap<String, EclipseProject>(this._projects);
+    for (EclipseProject eclipseProject : removedProjects) {
+      projects.remove(eclipseProject.getSpecifiedName(), eclipseProject);
+    }
+    for (EclipseProject eclipseProject : addedProjects) {
+      Assure.notNull("eclipseProject", eclipseProject);
+      EclipseProject existing = projects.putIfAbsent(eclipseProject.getSpecifiedName(), eclipseProject);
+      if ((existing != null) && !eclipseProject.equals(existing)) {
+        throw new Ant4EclipseException(PlatformExceptionCode.PROJECT_WITH_SAME_SPECIFIED_NAME_ALREADY_EXISTS, existing,
+            eclipseProject);
+      }
+    }
+    this._projects = projects;
   }
 
   /**
@@ -0,0 +1,241 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.util.CacheDirectory;
+import org.ant4eclipse.lib.core.util.Utilities;
+
+/**
+ * <p>
+ * A stamp for the metadata files of a project (e.g. <code>.project</code>, <code>.classpath</code>,
+ * <code>META-INF/MANIFEST.MF</code> or <code>build.properties</code>). The stamp changes whenever a metadata file is
+ * added, removed or modified, so a project only has to be read again if its stamp has changed.
+ * </p>
+ * <p>
+ * The stamp consists of the names, sizes and modification times of the metadata files, so checking it only requires
+ * to look at the file attributes. As a file may be modified again within the timer resolution of the file system
+ * without changing its modification time, the content of the metadata files is hashed as well if one of them has been
+ * modified shortly before the stamp was taken. Only in this (rare) case the metadata files are read to check the
+ * stamp.
+ * </p>
+ *
+ * @author agent
+ */
+final class ProjectMetadataStamp {
+
+  /** the metadata files in addition to the files in the project directory whose names start with a dot */
+  private static final String[] METADATA_FILES       = { "build.properties", "feature.xml", "plugin.xml",
+      "fragment.xml", "META-INF/MANIFEST.MF", "CVS/Repository", "CVS/Root", "CVS/Tag" };
+
+  /** the directories whose files are metadata files */
+  private static final String[] METADATA_DIRECTORIES = { ".settings" };
+
+  /** the modification times of files that have been modified within this interval (in ms) are not trusted */
+  private static final long     TIMER_RESOLUTION     = 2000;
+
+  /** the names, sizes and modification times of the metadata files */
+  private final String          _attributes;
+
+  /** the hash of the content of the metadata files, <code>null</code> if the modification times can be trusted */
+  private final String          _contentHash;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ProjectMetadataStamp}.
+   * </p>
+   */
+  private ProjectMetadataStamp(String attributes, String contentHash) {
+    this._attributes = attributes;
+    this._contentHash = contentHash;
+  }
+
+  /**
+   * <p>
+   * Computes the stamp for the metadata files of the given project directory.
+   * </p>
+   *
+   * @param projectDirectory
+   *          the project directory. Not <code>null</code>.
+   * @return the stamp. Not <code>null</code>.
+   */
+  static ProjectMetadataStamp compute(File projectDirectory) {
+    Assure.notNull("projectDirectory", projectDirectory);
+    return compute(projectDirectory, null);
+  }
+
+  /**
+   * <p>
+   * Checks whether the metadata files of the given project directory have been modified since this stamp was taken.
+   * </p>
+   *
+   * @param projectDirectory
+   *          the project directory. Not <code>null</code>.
+   * @return <code>null</code> if the metadata files have been modified, a stamp for the (unmodified) metadata files
+   *         otherwise. The latter is this stamp unless the content of the metadata files had to be hashed.
+   */
+  ProjectMetadataStamp check(File projectDirectory) {
+    Assure.notNull("projectDirectory", projectDirectory);
+    ProjectMetadataStamp current = compute(projectDirectory, this);
+    if (current == null) {
+      return null;
+    }
+    return this._contentHash == null ? this : current;
+  }
+
+  /**
+   * <p>
+   * Computes the stamp for the metadata files of the given project directory.
+   * </p>
+   *
+   * @param projectDirectory
+   *          the project directory
+   * @param previous
+   *          the previous stamp, may be <code>null</code>. If given, the content of the metadata files is hashed if
+   *          the previous stamp contains a content hash
+   * @return the stamp or <code>null</code> if the metadata files don't match the given previous stamp.
+   */
+  private static ProjectMetadataStamp compute(File projectDirectory, ProjectMetadataStamp previous) {
+    long now = System.currentTimeMillis();
+
+    String[] names = getMetadataFileNames(projectDirectory);
+    StringBuilder attributes = new StringBuilder();
+    boolean trusted = true;
+    for (String name : names) {
+      File file = new File(projectDirectory, name);
+      long lastModified = file.lastModified();
+      attributes.append(name).append('\0').append(file.length()).append('\0').append(lastModified).append('\n');
+      trusted &= lastModified < now - TIMER_RESOLUTION;
+    }
+
+    if ((previous != null) && !previous._attributes.equals(attributes.toString())) {
+      return null;
+    }
+    String contentHash = null;
+    if (!trusted || ((previous != null) && (previous._contentHash != null))) {
+      contentHash = hashContent(projectDirectory, names);
+      if ((previous != null) && (previous._contentHash != null) && !previous._contentHash.equals(contentHash)) {
+        return null;
+      }
+    }
+    return new ProjectMetadataStamp(attributes.toString(), trusted ? null : contentHash);
+  }
+
+  /**
+   * <p>
+   * Returns the (sorted) names of the metadata files of the given project directory that exist.
+   * </p>
+   *
+   * @param projectDirectory
+   *          the project directory
+   * @return the names of the metadata files (relative to the project directory).
+   */
+  private static String[] getMetadataFileNames(File projectDirectory) {
+    List<String> result = new ArrayList<String>();
+
+    String[] names = projectDirectory.list();
+    if (names != null) {
+      Arrays.sort(names);
+      for (String name : names) {
+        if (name.startsWith(".")) {
+          addIfFile(result, projectDirectory, name);
+        }
+      }
+    }
+    for (String name : METADATA_FILES) {
+      addIfFile(result, projectDirectory, name);
+    }
+    for (String directoryName : METADATA_DIRECTORIES) {
+      String[] children = new File(projectDirectory, directoryName).list();
+      if (children != null) {
+        Arrays.sort(children);
+        for (String child : children) {
+          addIfFile(result, projectDirectory, directoryName + "/" + child);
+        }
+      }
+    }
+
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * <p>
+   * Adds the given name to the given list if it denotes a file.
+   * </p>
+   */
+  private static void addIfFile(List<String> names, File directory, String name) {
+    if (new File(directory, name).isFile()) {
+      names.add(name);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns a hash for the names and the content of the given files.
+   * </p>
+   *
+   * @param directory
+   *          the directory
+   * @param names
+   *          the (relative) names of the files
+   * @return the hash. Not <code>null</code>.
+   */
+  private static String hashContent(File directory, String[] names) {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    for (String name : names) {
+      append(content, directory, name);
+    }
+    return CacheDirectory.hash(content.toByteArray());
+  }
+
+  /**
+   * <p>
+   * Appends the name and the content of the given file to the given stream.
+   * </p>
+   *
+   * @param content
+   *          the stream
+   * @param directory
+   *          the directory
+   * @param name
+   *          the (relative) name of the file
+   */
+  private static void append(ByteArrayOutputStream content, File directory, String name) {
+    byte[] buffer = new byte[4096];
+    InputStream input = null;
+    try {
+      content.write(name.getBytes("UTF-8"));
+      content.write(0);
+      input = new FileInputStream(new File(directory, name));
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        content.write(buffer, 0, read);
+      }
+      content.write(0);
+    } catch (IOException ex) {
+      // the project will be read again and the failure will be reported then
+      content.write(1);
+    } finally {
+      Utilities.close((Closeable) input);
+    }
+  }
+}
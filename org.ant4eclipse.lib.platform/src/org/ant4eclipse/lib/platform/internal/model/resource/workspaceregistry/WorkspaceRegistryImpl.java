@@ -13,27 +13,74 @@ package org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.ant4eclipse.lib.core.Assure;
+import org.ant4eclipse.lib.core.exception.Ant4EclipseException;
 import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.platform.PlatformExceptionCode;
 import org.ant4eclipse.lib.platform.internal.model.resource.WorkspaceImpl;
 import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 import org.ant4eclipse.lib.platform.model.resource.Workspace;
 import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceDefinition;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceListener;
 import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceRegistry;
 
 /**
  * <p>
  * Implementation of the {@link WorkspaceRegistry} interface.
  * </p>
+ * <p>
+ * If the system property {@link #THREAD_COUNT_PROPERTY_NAME} is set to a value greater than 1, the projects of a
+ * workspace are read (i.e. the project descriptions are parsed and the roles are applied) on the given number of
+ * threads. The post processing of the roles, that may access other projects, is performed afterwards on the calling
+ * thread in the order of the project folders, so role identifiers can assign ids (e.g. bundle ids) in a deterministic
+ * order there.
+ * </p>
+ * <p>
+ * If a workspace is registered again under the same id (or refreshed), only the projects whose metadata files (e.g.
+ * <code>.project</code>, <code>.classpath</code> or <code>META-INF/MANIFEST.MF</code>) have changed are read again
+ * (see {@link ProjectMetadataStamp}). The stamp of a project is taken when it is read (i.e. on the reader threads), so
+ * the first registration doesn't have to do any additional work.
+ * The other projects are kept, so the registered {@link Workspace} instance is updated in place. The modified projects
+ * are read before the workspace is touched and are swapped in atomically afterwards, so the workspace never lacks a
+ * project while it is updated. If a project can't be read, the registered workspace is left unchanged.
+ * </p>
+ * <p>
+ * If the system property {@link #WATCH_INTERVAL_PROPERTY_NAME} is set to a value greater than 0, a
+ * {@link WorkspaceWatcher} registers all registered workspaces again in the given interval. As only modified projects
+ * are read again, this is cheap if nothing has changed. Projects that are linked into a workspace through the location
+ * files in <code>.metadata/.plugins/org.eclipse.core.resources/.projects</code> are detected as well, as the
+ * {@link WorkspaceDefinition} is asked for the project folders every time. Watched workspaces are only refreshed while
+ * no build is running (see {@link #beginBuild()}), so a build never sees projects (or cached data computed from them)
+ * change.
+ * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
 public class WorkspaceRegistryImpl implements WorkspaceRegistry {
 
+  /** the name of the system property that specifies the number of threads used to read the projects */
+  public static final String                           THREAD_COUNT_PROPERTY_NAME =
+                                                           "ant4eclipse.workspaceRegistrationThreads";
+
+  /** the name of the system property that specifies the interval (in milliseconds) in which workspaces are watched */
+  public static final String                           WATCH_INTERVAL_PROPERTY_NAME =
+                                                           "ant4eclipse.workspaceWatchInterval";
+
   /** The factory used to build projects */
   private ProjectFactory                               _projectFactory;
 
@@ -43,6 +90,18 @@ public class WorkspaceRegistryImpl implements WorkspaceRegistry {
   /** the 'current' workspace */
   private Workspace                                    _current;
 
+  /** the listeners that are notified about changed workspaces */
+  private List<WorkspaceListener>                      _listeners;
+
+  /** the interval (in milliseconds) in which the workspaces are watched, 0 if the workspaces are not watched */
+  private int                                          _watchInterval;
+
+  /** the watcher, <code>null</code> if the workspaces are not watched (or no workspace has been registered yet) */
+  private WorkspaceWatcher                             _watcher;
+
+  /** the number of running builds, the watched workspaces are only refreshed if no build is running */
+  private int                                          _runningBuilds;
+
   public WorkspaceRegistryImpl() {
     super();
   }
@@ -89,10 +148,14 @@ public class WorkspaceRegistryImpl implements WorkspaceRegistry {
     return this._registry.containsKey(id);
   }
 
-  public void refreshWorkspace(String id) {
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized void refreshWorkspace(String id) {
     Assure.nonEmpty("id", id);
     if (!this._registry.containsKey(id)) {
       A4ELogging.warn("Attempt to refresh non-existing workspace with id '%s' ignored.", id);
+      return;
     }
 
     // Get original definition
@@ -105,12 +168,15 @@ public class WorkspaceRegistryImpl implements WorkspaceRegistry {
   /**
    * {@inheritDoc}
    */
-  public Workspace registerWorkspace(String id, WorkspaceDefinition workspaceDefinition) {
+  public synchronized Workspace registerWorkspace(String id, WorkspaceDefinition workspaceDefinition) {
     Assure.nonEmpty("id", id);
     Assure.notNull("workspaceDefinition", workspaceDefinition);
 
-    // create new workspace implementation
-    WorkspaceImpl workspace = new WorkspaceImpl();
+    // reuse the workspace implementation (and the unchanged projects) if the workspace has been registered before
+    WorkspaceDefinitionAndWorkspace previous = this._registry.get(id);
+    WorkspaceImpl workspace = previous != null ? previous.getWorkspace() : new WorkspaceImpl();
+    Map<File, ProjectAndStamp> previousProjects = previous != null ? previous.getProjects()
+        : new HashMap<File, ProjectAndStamp>();
 
     // retrieve all project folders from the workspace definition
     File[] projectFolders = workspaceDefinition.getProjectFolders();
@@ -120,40 +186,273 @@ public class WorkspaceRegistryImpl implements WorkspaceRegistry {
           Integer.valueOf(projectFolders.length));
     }
 
-    // read the projects and add them to the workspace
-    List<EclipseProject> projects = new ArrayList<EclipseProject>();
+    // determine the projects that have to be read (only the stamps of known projects have to be checked)
+    Map<File, ProjectAndStamp> projects = new LinkedHashMap<File, ProjectAndStamp>();
+    List<File> modifiedFolders = new ArrayList<File>();
     for (File projectFolder : projectFolders) {
-      EclipseProject eclipseProject = this._projectFactory.readProjectFromWorkspace(workspace, projectFolder);
-      projects.add(eclipseProject);
-      workspace.registerEclipseProject(eclipseProject);
+      ProjectAndStamp projectAndStamp = previousProjects.get(projectFolder);
+      ProjectMetadataStamp stamp = projectAndStamp != null ? projectAndStamp.getStamp().check(projectFolder) : null;
+      if (stamp != null) {
+        projects.put(projectFolder, new ProjectAndStamp(projectAndStamp.getProject(), stamp));
+      } else {
+        projects.put(projectFolder, null);
+        modifiedFolders.add(projectFolder);
+      }
+    }
+
+    // collect the projects that have been modified or that don't belong to the workspace anymore
+    List<EclipseProject> removedProjects = new ArrayList<EclipseProject>();
+    for (Map.Entry<File, ProjectAndStamp> entry : previousProjects.entrySet()) {
+      if (projects.get(entry.getKey()) == null) {
+        removedProjects.add(entry.getValue().getProject());
+      }
+    }
+
+    // read the projects before the workspace is modified (the workspace is left unchanged on failure)
+    File[] foldersToRead = modifiedFolders.toArray(new File[modifiedFolders.size()]);
+    int threadCount = Math.min(Integer.getInteger(THREAD_COUNT_PROPERTY_NAME, 1).intValue(), foldersToRead.length);
+    List<ProjectAndStamp> readProjectsAndStamps = threadCount > 1 ? readProjects(id, workspace, foldersToRead,
+        threadCount) : readProjects(workspace, foldersToRead);
+    List<EclipseProject> readProjects = new ArrayList<EclipseProject>();
+    for (int i = 0; i < foldersToRead.length; i++) {
+      projects.put(foldersToRead[i], readProjectsAndStamps.get(i));
+      readProjects.add(readProjectsAndStamps.get(i).getProject());
     }
 
-    for (EclipseProject project : projects) {
+    // swap the read projects in
+    workspace.replaceEclipseProjects(removedProjects, readProjects);
+
+    for (EclipseProject project : readProjects) {
       this._projectFactory.postProcessRoleSetup(project);
     }
 
+    if (previous != null) {
+      A4ELogging.debug("WorkspaceRegistry.registerWorkspace: %d of %d projects have been modified.", Integer
+          .valueOf(foldersToRead.length), Integer.valueOf(projectFolders.length));
+    }
+
     // add the workspace to the registry
-    this._registry.put(id, new WorkspaceDefinitionAndWorkspace(workspaceDefinition, workspace));
+    this._registry.put(id, new WorkspaceDefinitionAndWorkspace(workspaceDefinition, workspace, projects));
+
+    if (!removedProjects.isEmpty() || !readProjects.isEmpty()) {
+      fireWorkspaceChanged(id, workspace, removedProjects, readProjects);
+    }
+
+    // watch the workspace if requested
+    if (this._watchInterval > 0) {
+      if (this._watcher == null) {
+        this._watcher = new WorkspaceWatcher(this, this._watchInterval);
+      }
+      this._watcher.watch(id, workspaceDefinition);
+    }
 
     // return the workspace
     return workspace;
   }
 
+  /**
+   * <p>
+   * Registers the given workspace again if the registry hasn't been disposed and no build is running. Called by the
+   * {@link WorkspaceWatcher}.
+   * </p>
+   * 
+   * @param id
+   *          the id of the workspace
+   * @param workspaceDefinition
+   *          the workspace definition
+   * @return <code>false</code> if the registry has been disposed.
+   */
+  synchronized boolean refreshWatchedWorkspace(String id, WorkspaceDefinition workspaceDefinition) {
+    if (!isInitialized()) {
+      return false;
+    }
+    if (this._runningBuilds > 0) {
+      A4ELogging.trace("WorkspaceRegistry: refresh of workspace '%s' deferred, a build is running.", id);
+      return true;
+    }
+    registerWorkspace(id, workspaceDefinition);
+    return true;
+  }
+
   /**
    * {@inheritDoc}
    */
-  public void dispose() {
+  public synchronized void beginBuild() {
+    this._runningBuilds++;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized void endBuild() {
+    if (this._runningBuilds > 0) {
+      this._runningBuilds--;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addWorkspaceListener(WorkspaceListener listener) {
+    Assure.notNull("listener", listener);
+    this._listeners.add(listener);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void removeWorkspaceListener(WorkspaceListener listener) {
+    Assure.notNull("listener", listener);
+    this._listeners.remove(listener);
+  }
+
+  /**
+   * <p>
+   * Notifies the registered listeners. A failing listener doesn't prevent the remaining listeners from being notified.
+   * </p>
+   * 
+   * @param id
+   *          the id of the workspace
+   * @param workspace
+   *          the workspace
+   * @param removedProjects
+   *          the removed projects
+   * @param addedProjects
+   *          the added projects
+   */
+  private void fireWorkspaceChanged(String id, Workspace workspace, List<EclipseProject> removedProjects,
+      List<EclipseProject> addedProjects) {
+    A4ELogging.debug("WorkspaceRegistry: workspace '%s' changed (%d projects removed, %d projects added).", id, Integer
+        .valueOf(removedProjects.size()), Integer.valueOf(addedProjects.size()));
+    List<EclipseProject> removed = Collections.unmodifiableList(removedProjects);
+    List<EclipseProject> added = Collections.unmodifiableList(addedProjects);
+    for (WorkspaceListener listener : this._listeners) {
+      try {
+        listener.workspaceChanged(id, workspace, removed, added);
+      } catch (RuntimeException ex) {
+        A4ELogging.warn("Workspace listener '%s' failed: %s", listener, ex.toString());
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Reads the project in the given folder. The project is not registered with the given workspace. The stamp of the
+   * metadata files is taken before the project is read, so a modification while the project is read is detected when
+   * the workspace is registered again.
+   * </p>
+   * 
+   * @param workspace
+   *          the workspace
+   * @param projectFolder
+   *          the project folder
+   * @return the project and the stamp of its metadata files
+   */
+  private ProjectAndStamp readProject(WorkspaceImpl workspace, File projectFolder) {
+    ProjectMetadataStamp stamp = ProjectMetadataStamp.compute(projectFolder);
+    return new ProjectAndStamp(this._projectFactory.readProjectFromWorkspace(workspace, projectFolder), stamp);
+  }
+
+  /**
+   * <p>
+   * Reads the projects in the given folders. The projects are not registered with the given workspace.
+   * </p>
+   * 
+   * @param workspace
+   *          the workspace
+   * @param projectFolders
+   *          the project folders
+   * @return the projects (in the order of the project folders)
+   */
+  private List<ProjectAndStamp> readProjects(WorkspaceImpl workspace, File[] projectFolders) {
+    List<ProjectAndStamp> projects = new ArrayList<ProjectAndStamp>();
+    for (File projectFolder : projectFolders) {
+      projects.add(readProject(workspace, projectFolder));
+    }
+    return projects;
+  }
+
+  /**
+   * <p>
+   * Reads the projects in the given folders on the given number of threads. The projects are not registered with the
+   * given workspace. If a project can't be read, the remaining projects are skipped and the failure of the first
+   * project (in the order of the project folders) that couldn't be read is rethrown.
+   * </p>
+   * 
+   * @param id
+   *          the id of the workspace
+   * @param workspace
+   *          the workspace
+   * @param projectFolders
+   *          the project folders
+   * @param threadCount
+   *          the number of threads
+   * @return the projects (in the order of the project folders)
+   */
+  private List<ProjectAndStamp> readProjects(String id, final WorkspaceImpl workspace, File[] projectFolders,
+      int threadCount) {
+
+    A4ELogging.debug("WorkspaceRegistry.registerWorkspace: reading projects on %d threads.", Integer
+        .valueOf(threadCount));
+
+    ExecutorService executorService = Executors.newFixedThreadPool(threadCount, new RegistrationThreadFactory());
+    try {
+      List<Future<ProjectAndStamp>> futures = new ArrayList<Future<ProjectAndStamp>>();
+      for (final File projectFolder : projectFolders) {
+        futures.add(executorService.submit(new Callable<ProjectAndStamp>() {
+          public ProjectAndStamp call() {
+            return readProject(workspace, projectFolder);
+          }
+        }));
+      }
+
+      List<ProjectAndStamp> projects = new ArrayList<ProjectAndStamp>();
+      for (Future<ProjectAndStamp> future : futures) {
+        try {
+          projects.add(future.get());
+        } catch (ExecutionException ex) {
+          executorService.shutdownNow();
+          Throwable cause = ex.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new RuntimeException(cause);
+        } catch (InterruptedException ex) {
+          executorService.shutdownNow();
+          Thread.currentThread().interrupt();
+          throw new Ant4EclipseException(ex, PlatformExceptionCode.WORKSPACE_REGISTRATION_INTERRUPTED, id);
+        }
+      }
+      return projects;
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized void dispose() {
+    if (this._watcher != null) {
+      this._watcher.stop();
+      this._watcher = null;
+    }
     this._registry.clear();
     this._registry = null;
     this._projectFactory = null;
+    this._listeners = null;
   }
 
   /**
    * {@inheritDoc}
    */
-  public void initialize() {
-    this._registry = new HashMap<String, WorkspaceDefinitionAndWorkspace>();
+  public synchronized void initialize() {
+    this._registry = new ConcurrentHashMap<String, WorkspaceDefinitionAndWorkspace>();
     this._projectFactory = new ProjectFactory();
+    this._listeners = new CopyOnWriteArrayList<WorkspaceListener>();
+    this._watchInterval = Integer.getInteger(WATCH_INTERVAL_PROPERTY_NAME, 0).intValue();
   }
 
   /**
@@ -163,25 +462,79 @@ public class WorkspaceRegistryImpl implements WorkspaceRegistry {
     return (this._registry != null) && (this._projectFactory != null);
   }
 
+  /**
+   * <p>
+   * Creates the daemon threads that read the projects.
+   * </p>
+   */
+  private static class RegistrationThreadFactory implements ThreadFactory {
+
+    /** the number of created threads */
+    private AtomicInteger _count = new AtomicInteger();
+
+    /**
+     * {@inheritDoc}
+     */
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable);
+      thread.setName("A4E-WorkspaceRegistration-" + this._count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
   final class WorkspaceDefinitionAndWorkspace {
-    private final WorkspaceDefinition _workspaceDefinition;
+    private final WorkspaceDefinition        _workspaceDefinition;
 
-    private final Workspace           _workspace;
+    private final WorkspaceImpl              _workspace;
 
-    public WorkspaceDefinitionAndWorkspace(WorkspaceDefinition workspaceDefinition, Workspace workspace) {
+    /** the projects of the workspace and the stamps of their metadata files, keyed by project folder */
+    private final Map<File, ProjectAndStamp> _projects;
+
+    public WorkspaceDefinitionAndWorkspace(WorkspaceDefinition workspaceDefinition, WorkspaceImpl workspace,
+        Map<File, ProjectAndStamp> projects) {
       super();
       this._workspaceDefinition = workspaceDefinition;
       this._workspace = workspace;
+      this._projects = projects;
     }
 
     public WorkspaceDefinition getWorkspaceDefinition() {
       return this._workspaceDefinition;
     }
 
-    public Workspace getWorkspace() {
+    public WorkspaceImpl getWorkspace() {
       return this._workspace;
     }
 
+    public Map<File, ProjectAndStamp> getProjects() {
+      return this._projects;
+    }
+
+  }
+
+  /**
+   * <p>
+   * A project and the stamp of its metadata files at the time the project has been read.
+   * </p>
+   */
+  static final class ProjectAndStamp {
+    private final EclipseProject       _project;
+
+    private final ProjectMetadataStamp _stamp;
+
+    public ProjectAndStamp(EclipseProject project, ProjectMetadataStamp stamp) {
+      this._project = project;
+      this._stamp = stamp;
+    }
+
+    public EclipseProject getProject() {
+      return this._project;
+    }
+
+    public ProjectMetadataStamp getStamp() {
+      return this._stamp;
+    }
   }
 
 }
@@ -0,0 +1,125 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.platform.internal.model.resource.workspaceregistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ant4eclipse.lib.core.logging.A4ELogging;
+import org.ant4eclipse.lib.platform.model.resource.workspaceregistry.WorkspaceDefinition;
+
+/**
+ * <p>
+ * Keeps the workspaces of a {@link WorkspaceRegistryImpl} up to date by registering them again in a fixed interval on
+ * a daemon thread. The workspace registry only reads the projects whose metadata files have been modified, so the
+ * workspace instances are updated in place and the registered listeners are notified about the changes. While a build
+ * is running, the registry skips the refresh, so the changes are picked up in the first interval after the build.
+ * </p>
+ * <p>
+ * The file system is polled, as there is no portable way to get notified about file system changes on Java 5. If a
+ * workspace can't be registered again (e.g. because a metadata file is just being written), the failure is logged and
+ * the workspace is registered again in the next interval.
+ * </p>
+ * 
+ * @author agent
+ */
+class WorkspaceWatcher implements Runnable {
+
+  /** the workspace registry */
+  private WorkspaceRegistryImpl            _registry;
+
+  /** the interval (in milliseconds) */
+  private long                             _interval;
+
+  /** the watched workspace definitions, keyed by the id of the workspace */
+  private Map<String, WorkspaceDefinition> _workspaces;
+
+  /** the watcher thread, <code>null</code> if the watcher hasn't been started yet */
+  private Thread                           _thread;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link WorkspaceWatcher}.
+   * </p>
+   * 
+   * @param registry
+   *          the workspace registry
+   * @param interval
+   *          the interval (in milliseconds)
+   */
+  WorkspaceWatcher(WorkspaceRegistryImpl registry, long interval) {
+    this._registry = registry;
+    this._interval = interval;
+    this._workspaces = new LinkedHashMap<String, WorkspaceDefinition>();
+  }
+
+  /**
+   * <p>
+   * Watches the workspace with the given id. The watcher thread is started with the first watched workspace.
+   * </p>
+   * 
+   * @param id
+   *          the id of the workspace
+   * @param workspaceDefinition
+   *          the workspace definition
+   */
+  synchronized void watch(String id, WorkspaceDefinition workspaceDefinition) {
+    this._workspaces.put(id, workspaceDefinition);
+    if (this._thread == null) {
+      this._thread = new Thread(this, "A4E-WorkspaceWatcher");
+      this._thread.setDaemon(true);
+      this._thread.start();
+      A4ELogging.debug("WorkspaceWatcher: watching workspaces every %d ms.", Long.valueOf(this._interval));
+    }
+  }
+
+  /**
+   * <p>
+   * Stops the watcher thread.
+   * </p>
+   */
+  synchronized void stop() {
+    if (this._thread != null) {
+      this._thread.interrupt();
+      this._thread = null;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void run() {
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        Thread.sleep(this._interval);
+      } catch (InterruptedException ex) {
+        return;
+      }
+
+      Map<String, WorkspaceDefinition> workspaces;
+      synchronized (this) {
+        workspaces = new LinkedHashMap<String, WorkspaceDefinition>(this._workspaces);
+      }
+
+      for (Map.Entry<String, WorkspaceDefinition> entry : workspaces.entrySet()) {
+        try {
+          if (!this._registry.refreshWatchedWorkspace(entry.getKey(), entry.getValue())) {
+            // the workspace registry has been disposed
+            return;
+          }
+        } catch (RuntimeException ex) {
+          A4ELogging.warn("Could not refresh the workspace '%s' (will retry): %s", entry.getKey(), ex.toString());
+        }
+      }
+    }
+  }
+}
@@ -42,6 +42,10 @@ public interface ProjectRoleIdentifier {
    * be aware that accessing other EclipseProject instances through the workspace is prohibited since that project
    * itself might not have been created yet.
    * </p>
+   * <p>
+   * The roles of several projects may be created concurrently, so anything that depends on the order in which the
+   * projects are read (e.g. generated ids) has to be set up in {@link #postProcess(EclipseProject)}.
+   * </p>
    * 
    * @param project
    *          the eclipse project.
@@ -50,7 +54,8 @@ public interface ProjectRoleIdentifier {
 
   /**
    * This function will be invoked after each project within a workspace has been setup. Therefore each action that
-   * requires to access other projects within the workspace can be implemented here.
+   * requires to access other projects within the workspace can be implemented here. The projects are post processed
+   * one after another in the order of their project folders.
    * 
    * @param project
    *          The project which role has to be modified if necessary. Not <code>null</code>.
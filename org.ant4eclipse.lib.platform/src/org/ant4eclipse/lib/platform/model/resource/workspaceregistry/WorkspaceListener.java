@@ -0,0 +1,53 @@
+/**********************************************************************
+ * Copyright (c) 2005-2009 ant4eclipse project team.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Nils Hartmann, Daniel Kasmeroglu, Gerd Wuetherich
+ **********************************************************************/
+package org.ant4eclipse.lib.platform.model.resource.workspaceregistry;
+
+import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
+import org.ant4eclipse.lib.platform.model.resource.Workspace;
+
+import java.util.List;
+
+/**
+ * <p>
+ * A {@link WorkspaceListener} is notified by the {@link WorkspaceRegistry} whenever the projects of a registered
+ * {@link Workspace} change, e.g. to invalidate cached data (like resolved class paths) that has been computed from the
+ * projects of the workspace.
+ * </p>
+ * <p>
+ * A project whose metadata files have been modified is reported as removed (the previous {@link EclipseProject}
+ * instance) <b>and</b> as added (the new {@link EclipseProject} instance).
+ * </p>
+ * 
+ * @author agent
+ */
+public interface WorkspaceListener {
+
+  /**
+   * <p>
+   * Called after the projects of the workspace with the given id have changed. If the registered workspaces are watched
+   * (system property <code>ant4eclipse.workspaceWatchInterval</code>), listeners are called on a background thread, but
+   * only while no build is running (see {@link WorkspaceRegistry#beginBuild()}).
+   * </p>
+   * 
+   * @param id
+   *          the id of the workspace
+   * @param workspace
+   *          the workspace
+   * @param removedProjects
+   *          the projects that have been removed from the workspace. Not <code>null</code>.
+   * @param addedProjects
+   *          the projects that have been added to the workspace. Not <code>null</code>.
+   */
+  void workspaceChanged(String id, Workspace workspace, List<EclipseProject> removedProjects,
+      List<EclipseProject> addedProjects);
+
+} /* ENDINTERFACE */
@@ -18,6 +18,13 @@ import org.ant4eclipse.lib.platform.model.resource.Workspace;
  * <p>
  * The {@link WorkspaceRegistry} is used to maintain workspaces.
  * </p>
+ * <p>
+ * If the system property <code>ant4eclipse.workspaceWatchInterval</code> is set to a value greater than 0, the
+ * registered workspaces are checked for modified, added or removed projects in the given interval (in milliseconds).
+ * This keeps the registered workspaces up to date in long running processes (e.g. a build server that embeds Ant).
+ * Registered {@link WorkspaceListener WorkspaceListeners} are notified about the changes. The watched workspaces are
+ * only refreshed while no build is running (see {@link #beginBuild()}).
+ * </p>
  */
 public interface WorkspaceRegistry extends Lifecycle {
 
@@ -26,6 +33,10 @@ public interface WorkspaceRegistry extends Lifecycle {
    * Registers a new instance of type {@link Workspace} that is described by the given {@link WorkspaceDefinition} under
    * the specified id.
    * </p>
+   * <p>
+   * If a workspace has already been registered under the specified id, the registered instance is updated: projects
+   * whose metadata files haven't changed are kept, all other projects are read again.
+   * </p>
    * 
    * @param id
    *          the identifier under which the new {@link Workspace} instance is stored.
@@ -61,7 +72,7 @@ public interface WorkspaceRegistry extends Lifecycle {
   Workspace getWorkspace(String id);
 
   /**
-   * Refreshes the specified workspace, i.e. re-reads all project definitions
+   * Refreshes the specified workspace, i.e. re-reads the definitions of all projects whose metadata files have changed
    * 
    * <p>
    * This can be helpful in cases where project-relevant artifacts, like build.properties or .classpath are
@@ -107,4 +118,41 @@ public interface WorkspaceRegistry extends Lifecycle {
    */
   Workspace getCurrent();
 
+  /**
+   * <p>
+   * Adds the given {@link WorkspaceListener} that is notified whenever the projects of a registered {@link Workspace}
+   * change.
+   * </p>
+   * 
+   * @param listener
+   *          the listener. Not <code>null</code>.
+   */
+  void addWorkspaceListener(WorkspaceListener listener);
+
+  /**
+   * <p>
+   * Removes the given {@link WorkspaceListener}.
+   * </p>
+   * 
+   * @param listener
+   *          the listener. Not <code>null</code>.
+   */
+  void removeWorkspaceListener(WorkspaceListener listener);
+
+  /**
+   * <p>
+   * Notifies this registry that a build that uses the registered workspaces has been started. Until the build has been
+   * finished (see {@link #endBuild()}), the watched workspaces are not refreshed, so the build (and the data that is
+   * cached for the registered workspaces) doesn't see projects change while it is running.
+   * </p>
+   */
+  void beginBuild();
+
+  /**
+   * <p>
+   * Notifies this registry that a build that has been started with {@link #beginBuild()} has been finished.
+   * </p>
+   */
+  void endBuild();
+
 } /* ENDINTERFACE */
@@ -18,8 +18,10 @@ import org.ant4eclipse.lib.platform.model.resource.EclipseProject;
 import org.ant4eclipse.lib.platform.model.resource.Workspace;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * <p>
@@ -46,6 +48,62 @@ public class BuildOrderResolver {
   public static final List<EclipseProject> resolveBuildOrder(Workspace workspace, String[] projectNames,
       String[] referenceTypes, List<Object> additionalElements) {
 
+    // create the dependency graph
+    DependencyGraph<EclipseProject> dependencyGraph = resolveDependencyGraph(workspace, projectNames, referenceTypes,
+        additionalElements);
+
+    // calculate the order
+    return resolveBuildOrder(dependencyGraph, projectNames);
+  }
+
+  /**
+   * <p>
+   * Resolves the build order of the projects with the given names using the given dependency graph.
+   * </p>
+   * 
+   * @param dependencyGraph
+   *          the dependency graph as returned by {@link #resolveDependencyGraph(Workspace, String[], String[], List)}
+   * @param projectNames
+   *          an array with the names of all projects that should be sorted.
+   * @return the projects with the given names in build order.
+   */
+  public static final List<EclipseProject> resolveBuildOrder(DependencyGraph<EclipseProject> dependencyGraph,
+      String[] projectNames) {
+
+    // calculate the order
+    List<EclipseProject> orderProjects = dependencyGraph.calculateOrder();
+
+    // filter result - only the requested projects should be listed
+    List<EclipseProject> result = new LinkedList<EclipseProject>();
+    Set<String> names = new HashSet<String>(Arrays.asList(projectNames));
+    for (EclipseProject eclipseProject : orderProjects) {
+      if (names.contains(eclipseProject.getSpecifiedName())) {
+        result.add(eclipseProject);
+      }
+    }
+
+    // return the result
+    return result;
+  }
+
+  /**
+   * <p>
+   * Creates the {@link DependencyGraph} of the projects with the given names. The graph contains the given projects as
+   * well as all the projects referenced by them. It can be used to execute independent projects in parallel (see
+   * {@link org.ant4eclipse.lib.core.dependencygraph.DependencyGraphScheduler}).
+   * </p>
+   * 
+   * @param workspace
+   *          the workspace
+   * @param projectNames
+   *          an array with the names of all projects that should be added to the graph.
+   * @param referenceTypes
+   * @param additionalElements
+   * @return the {@link DependencyGraph} of the projects with the given names.
+   */
+  public static final DependencyGraph<EclipseProject> resolveDependencyGraph(Workspace workspace,
+      String[] projectNames, String[] referenceTypes, List<Object> additionalElements) {
+
     // retrieve all eclipse projects from the workspace
     EclipseProject[] eclipseProjects = workspace.getProjects(projectNames, true);
 
@@ -84,19 +142,7 @@ public class BuildOrderResolver {
       }
     }
 
-    // calculate the order
-    List<EclipseProject> orderProjects = dependencyGraph.calculateOrder();
-
-    // filter result - only the requested projects should be listed
-    List<EclipseProject> result = new LinkedList<EclipseProject>();
-    List<String> names = Arrays.asList(projectNames);
-    for (EclipseProject eclipseProject : orderProjects) {
-      if (names.contains(eclipseProject.getSpecifiedName())) {
-        result.add(eclipseProject);
-      }
-    }
-
-    // return the result
-    return result;
+    // return the graph
+    return dependencyGraph;
   }
 }